@@ -166,11 +166,13 @@ public class JProtMetrics{
         }
 
         if(usePDBs){
-          //PDBFileIO pdb = new PDBFileIO();
-          //Protein prot1 = pdb.readInPDBFile(mol1FileName);
-          Protein prot1 = new PDBFileIO().readInPDBFile(new FileInputStream(mol1FileName),mol1Base);
-          Protein prot2 = new PDBFileIO().readInPDBFile(new FileInputStream(mol2FileName),mol2Base);
-          //Protein prot2 = pdb.readInPDBFile(mol2FileName);
+          // the metrics only use the CA atoms, so only those are read in
+          PDBFileIO pdb1 = new PDBFileIO();
+          pdb1.setAtomSelection(PDBFileIO.AtomSelection.CA_ONLY);
+          Protein prot1 = pdb1.readInPDBFile(new FileInputStream(mol1FileName),mol1Base);
+          PDBFileIO pdb2 = new PDBFileIO();
+          pdb2.setAtomSelection(PDBFileIO.AtomSelection.CA_ONLY);
+          Protein prot2 = pdb2.readInPDBFile(new FileInputStream(mol2FileName),mol2Base);
           theTool = new Metrics(prot1, prot2);
         }
       } else {
@@ -0,0 +1,455 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+* Reads and writes Proteins in a compact binary format, so that a structure that is loaded again
+* and again only has to be parsed out of a PDB file once.
+* <p>
+* A file holds a header, a table of the chains, a table of the residues, holding the three letter
+* name of each so that its ResidueTemplate can be looked up without parsing any text, a table of
+* the atoms, the disulfide bonds, and last, the coordinates of every atom packed into three blocks,
+* one for each of x, y, and z, as a CoordinateStore holds them. Files are read by mapping them
+* into memory with FileChannel::map(), and the coordinates are read straight into the
+* CoordinateStore of the Protein, which its atoms are then built onto.
+* <p>
+* The coordinates can be stored as doubles, as floats, or quantized to fixed point thousandths of
+* an angstrom (the precision of a PDB file) in an int each. Quantized coordinates read from a PDB
+* file are read back exactly as they were read from the PDB file.
+* <p>
+* Format, version 1, every number little endian:
+* <pre>
+* header:     8 bytes "JPROTBSF", int version, int coordinate encoding, int number of chains,
+*             int number of residues, int number of atoms, int number of disulfide bonds,
+*             long offset of the coordinates, string protein name
+* chains:     string chainID, int number of residues, byte flags (1: built without bonds)
+* residues:   string three letter name, int residue ID, int number of atoms,
+*             byte flags (1: carboxyl terminus)
+* atoms:      string name, int serial number, double occupancy, double temp factor, double charge
+* disulfides: int chain index, int residue ID, int chain index, int residue ID
+* padding to a multiple of 8 bytes
+* coords:     every x, then every y, then every z, in the order of the atom table
+* </pre>
+* A string is an unsigned short length followed by that many bytes of UTF-8.
+* <p>
+* Usage:<br>
+* {@code BinaryStructureFileIO.write(path, prot, CoordinateEncoding.QUANTIZED);}<br>
+* {@code Protein prot = BinaryStructureFileIO.read(path);}<br>
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class BinaryStructureFileIO{
+  /** The version of the format this class writes. */
+  public static final int VERSION = 1;
+  private static final byte[] MAGIC = "JPROTBSF".getBytes(StandardCharsets.US_ASCII);
+  private static final double QUANTA_PER_ANGSTROM = 1000.0;
+  private static final byte CHAIN_WITHOUT_BONDS = 1;
+  private static final byte CARBOXYL_TERMINUS = 1;
+
+  /**
+  * How the coordinates are stored in a file.
+  */
+  public enum CoordinateEncoding {
+    /** Every coordinate as a double, 8 bytes. */
+    DOUBLE(8),
+    /** Every coordinate as a float, 4 bytes. */
+    FLOAT(4),
+    /** Every coordinate as an int number of thousandths of an angstrom, 4 bytes. */
+    QUANTIZED(4);
+
+    private final int numBytes;
+
+    private CoordinateEncoding(int numBytes){
+      this.numBytes = numBytes;
+    }
+  }
+
+  /**
+  * Write a Protein out to a file, with its coordinates stored as doubles.
+  * @param path the path of the file to write, which is replaced if it exists
+  * @param prot the Protein to write out
+  * @throws IOException if the file can not be written
+  */
+  public static void write(Path path, Protein prot) throws IOException{
+    write(path, prot, CoordinateEncoding.DOUBLE);
+  }
+
+  /**
+  * Write a Protein out to a file.
+  * @param path the path of the file to write, which is replaced if it exists
+  * @param prot the Protein to write out
+  * @param encoding how to store the coordinates
+  * @throws IOException if the file can not be written
+  * @throws IllegalArgumentException if a coordinate is too large to be quantized
+  */
+  public static void write(Path path, Protein prot, CoordinateEncoding encoding)
+      throws IOException{
+    ByteBuffer buffer = encode(prot, encoding);
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+      while(buffer.hasRemaining()){
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+  * Encode a Protein in the binary format.
+  * @param prot the Protein to encode
+  * @param encoding how to store the coordinates
+  * @return a buffer holding the encoded Protein, from position 0 to its limit
+  * @throws IllegalArgumentException if a coordinate is too large to be quantized
+  */
+  public static ByteBuffer encode(Protein prot, CoordinateEncoding encoding){
+    byte[] name = encodeString(prot.getProteinName());
+    ArrayList<PolypeptideChain> chains = new ArrayList<PolypeptideChain>();
+    HashMap<String, Integer> chainIndices = new HashMap<String, Integer>();
+    ArrayList<byte[]> chainIDs = new ArrayList<byte[]>();
+    ArrayList<byte[]> residueNames = new ArrayList<byte[]>();
+    ArrayList<Integer> residueNumAtoms = new ArrayList<Integer>();
+    ArrayList<Atom> atoms = new ArrayList<Atom>(prot.getNumAtoms());
+    ArrayList<byte[]> atomNames = new ArrayList<byte[]>(prot.getNumAtoms());
+    // the number of bytes of the tables, starting with the fixed size part of the header
+    long size = MAGIC.length + 6 * 4 + 8 + 2 + name.length;
+    for(PolypeptideChain chain : prot){
+      chainIndices.putIfAbsent(chain.getChainID(), chains.size());
+      chains.add(chain);
+      chainIDs.add(encodeString(chain.getChainID()));
+      size += 2 + chainIDs.get(chainIDs.size() - 1).length + 4 + 1;
+      for(Residue res : chain){
+        residueNames.add(encodeString(res.getThreeLetterName()));
+        size += 2 + residueNames.get(residueNames.size() - 1).length + 4 + 4 + 1;
+        int numAtoms = 0;
+        for(Atom atom : res){
+          atoms.add(atom);
+          atomNames.add(encodeString(atom.getName()));
+          size += 2 + atomNames.get(atomNames.size() - 1).length + 4 + 3 * 8;
+          numAtoms++;
+        }
+        residueNumAtoms.add(numAtoms);
+      }
+    }
+    List<Bond> disulfides = prot.getDisulfideBonds();
+    size += disulfides.size() * 4 * 4;
+    long coordinatesOffset = (size + 7) & ~7L;
+    long totalSize = coordinatesOffset + 3L * atoms.size() * encoding.numBytes;
+    if(totalSize > Integer.MAX_VALUE){
+      throw new IllegalArgumentException(String.format(
+          "Protein %s is too large to encode (%d bytes).", prot.getProteinName(), totalSize));
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) totalSize).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(encoding.ordinal());
+    buffer.putInt(chains.size());
+    buffer.putInt(residueNames.size());
+    buffer.putInt(atoms.size());
+    buffer.putInt(disulfides.size());
+    buffer.putLong(coordinatesOffset);
+    putString(buffer, name);
+    for(int i = 0; i < chains.size(); i++){
+      putString(buffer, chainIDs.get(i));
+      buffer.putInt(chains.get(i).getNumResidues());
+      buffer.put(chains.get(i).isBuiltWithoutBonds() ? CHAIN_WITHOUT_BONDS : 0);
+    }
+    int residueIndex = 0;
+    for(PolypeptideChain chain : chains){
+      for(Residue res : chain){
+        putString(buffer, residueNames.get(residueIndex));
+        buffer.putInt(res.getResidueID());
+        buffer.putInt(residueNumAtoms.get(residueIndex));
+        buffer.put(res.isCarboxylTerminus() ? CARBOXYL_TERMINUS : 0);
+        residueIndex++;
+      }
+    }
+    for(int i = 0; i < atoms.size(); i++){
+      Atom atom = atoms.get(i);
+      putString(buffer, atomNames.get(i));
+      buffer.putInt(atom.getSerialNumber());
+      buffer.putDouble(atom.getOccupancy());
+      buffer.putDouble(atom.getTempFactor());
+      buffer.putDouble(atom.getCharge());
+    }
+    for(Bond bond : disulfides){
+      for(Atom atom : new Atom[]{bond.getAtomOne(), bond.getAtomTwo()}){
+        buffer.putInt(chainIndices.get(prot.getChainID(atom)));
+        buffer.putInt(prot.getResidue(atom).getResidueID());
+      }
+    }
+    buffer.position((int) coordinatesOffset);
+    for(int axis = 0; axis < 3; axis++){
+      for(Atom atom : atoms){
+        double coordinate = axis == 0 ? atom.getX() : axis == 1 ? atom.getY() : atom.getZ();
+        putCoordinate(buffer, coordinate, encoding);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+  * Read in a Protein from a file.
+  * @param path the path of the file
+  * @return the Protein held in the file
+  * @throws IOException if the file can not be read
+  * @throws IllegalArgumentException if the file is not in a version of the binary format this
+  * class can read
+  */
+  public static Protein read(Path path) throws IOException{
+    return read(path, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Read in a Protein from a file, holding its coordinates in the given precision. The file is
+  * mapped into memory rather than read.
+  * @param path the path of the file
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein held in the file
+  * @throws IOException if the file can not be read
+  * @throws IllegalArgumentException if the file is not in a version of the binary format this
+  * class can read
+  */
+  public static Protein read(Path path, CoordinateStore.Precision precision) throws IOException{
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), precision);
+    }
+  }
+
+  /**
+  * Read in a Protein encoded in a buffer, from its position to its limit. The position of the
+  * buffer is not changed.
+  * @param buffer the buffer holding the encoded Protein
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein held in the buffer
+  * @throws IllegalArgumentException if the buffer does not hold a version of the binary format
+  * this class can read
+  */
+  public static Protein read(ByteBuffer buffer, CoordinateStore.Precision precision){
+    ByteBuffer bytes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    try{
+      for(int i = 0; i < MAGIC.length; i++){
+        if(bytes.get() != MAGIC[i]){
+          throw new IllegalArgumentException("The buffer does not hold a binary structure.");
+        }
+      }
+      int version = bytes.getInt();
+      if(version != VERSION){
+        throw new IllegalArgumentException(String.format(
+            "Binary structures of version %d can not be read, only version %d.",
+            version, VERSION));
+      }
+      int encodingIndex = bytes.getInt();
+      if(encodingIndex < 0 || encodingIndex >= CoordinateEncoding.values().length){
+        throw new IllegalArgumentException(String.format(
+            "Unknown coordinate encoding %d.", encodingIndex));
+      }
+      CoordinateEncoding encoding = CoordinateEncoding.values()[encodingIndex];
+      int numChains = bytes.getInt();
+      int numResidues = bytes.getInt();
+      int numAtoms = bytes.getInt();
+      int numDisulfides = bytes.getInt();
+      long coordinatesOffset = bytes.getLong();
+      String name = getString(bytes);
+      if(numChains < 0 || numResidues < 0 || numAtoms < 0 || numDisulfides < 0){
+        throw new IllegalArgumentException(String.format(
+            "The binary structure holds %d chains, %d residues, %d atoms, and %d disulfides.",
+            numChains, numResidues, numAtoms, numDisulfides));
+      }
+      // check the counts against the size of the buffer before allocating anything for them. Every
+      // record of the tables takes at least its fixed size part.
+      long tablesSize = numChains * 7L + numResidues * 11L + numAtoms * 30L + numDisulfides * 16L;
+      if(coordinatesOffset < bytes.position() + tablesSize || coordinatesOffset > bytes.limit()
+          || coordinatesOffset + 3L * numAtoms * encoding.numBytes > bytes.limit()){
+        throw new IllegalArgumentException(String.format(
+            "The header of the binary structure, %d atoms with their coordinates at offset %d, "
+            + "does not fit in its %d bytes.", numAtoms, coordinatesOffset, bytes.limit()));
+      }
+
+      Protein protein = new Protein(name, new PDBFileIO(), precision);
+      int firstIndex = readCoordinates(bytes, (int) coordinatesOffset, numAtoms, encoding,
+          protein.getCoordinateStore());
+      // build the protein in its own scope so that reading on several threads is safe
+      IdAllocator.Scope scope = IdAllocator.openScope();
+      try{
+        buildProtein(bytes, protein, numChains, numResidues, numAtoms, numDisulfides, firstIndex);
+        return protein;
+      } finally {
+        scope.close();
+      }
+    } catch(BufferUnderflowException | IndexOutOfBoundsException e){
+      throw new IllegalArgumentException("The binary structure is truncated.", e);
+    }
+  }
+
+  /**
+  * Read the tables and build the chains of protein, with the atoms viewing the coordinates that
+  * were already read into its CoordinateStore, starting at firstIndex.
+  */
+  private static void buildProtein(ByteBuffer bytes, Protein protein, int numChains,
+      int numResidues, int numAtoms, int numDisulfides, int firstIndex){
+    String[] chainIDs = new String[numChains];
+    int[] chainNumResidues = new int[numChains];
+    boolean[] chainsWithoutBonds = new boolean[numChains];
+    for(int i = 0; i < numChains; i++){
+      chainIDs[i] = getString(bytes);
+      chainNumResidues[i] = bytes.getInt();
+      chainsWithoutBonds[i] = (bytes.get() & CHAIN_WITHOUT_BONDS) != 0;
+    }
+    String[] residueNames = new String[numResidues];
+    int[] residueIDs = new int[numResidues];
+    int[] residueNumAtoms = new int[numResidues];
+    boolean[] carboxylTermini = new boolean[numResidues];
+    HashMap<String, String> names = new HashMap<String, String>();
+    for(int i = 0; i < numResidues; i++){
+      residueNames[i] = intern(names, getString(bytes));
+      residueIDs[i] = bytes.getInt();
+      residueNumAtoms[i] = bytes.getInt();
+      carboxylTermini[i] = (bytes.get() & CARBOXYL_TERMINUS) != 0;
+    }
+    long tableResidues = 0;
+    long tableAtoms = 0;
+    boolean negativeCount = false;
+    for(int count : chainNumResidues){
+      tableResidues += count;
+      negativeCount |= count < 0;
+    }
+    for(int count : residueNumAtoms){
+      tableAtoms += count;
+      negativeCount |= count < 0;
+    }
+    if(negativeCount || tableResidues != numResidues || tableAtoms != numAtoms){
+      throw new IllegalArgumentException(String.format(
+          "The tables of the binary structure hold %d residues and %d atoms, not %d and %d.",
+          tableResidues, tableAtoms, numResidues, numAtoms));
+    }
+
+    CoordinateStore store = protein.getCoordinateStore();
+    ArrayList<Atom> residueAtoms = new ArrayList<Atom>();
+    int residueIndex = 0;
+    int atomIndex = 0;
+    for(int chainIndex = 0; chainIndex < numChains; chainIndex++){
+      PolypeptideChain.Builder chainBuilder = new PolypeptideChain.Builder(chainIDs[chainIndex]);
+      if(chainsWithoutBonds[chainIndex]){
+        chainBuilder.withoutBonds();
+      }
+      for(int i = 0; i < chainNumResidues[chainIndex]; i++, residueIndex++){
+        residueAtoms.clear();
+        for(int j = 0; j < residueNumAtoms[residueIndex]; j++, atomIndex++){
+          String atomName = intern(names, getString(bytes));
+          int serial = bytes.getInt();
+          double occupancy = bytes.getDouble();
+          double tempFactor = bytes.getDouble();
+          double charge = bytes.getDouble();
+          residueAtoms.add(new Atom(atomName, serial, occupancy, tempFactor, charge,
+              store, firstIndex + atomIndex));
+        }
+        Residue res = new Residue(residueNames[residueIndex], residueIDs[residueIndex],
+            residueAtoms);
+        if(carboxylTermini[residueIndex]){
+          res.setAsCarboxylTerminus();
+        }
+        chainBuilder.addResidue(res);
+      }
+      protein.addChain(chainBuilder.build());
+    }
+    for(int i = 0; i < numDisulfides; i++){
+      String chainID1 = chainIDs[bytes.getInt()];
+      int resID1 = bytes.getInt();
+      String chainID2 = chainIDs[bytes.getInt()];
+      int resID2 = bytes.getInt();
+      protein.addDisulfideBond(chainID1, resID1, chainID2, resID2);
+    }
+  }
+
+  /**
+  * Read the three blocks of coordinates straight into store, appending them to it.
+  * @return the index in store of the coordinates of the first atom
+  */
+  private static int readCoordinates(ByteBuffer bytes, int offset, int numAtoms,
+      CoordinateEncoding encoding, CoordinateStore store){
+    int firstIndex = store.size();
+    store.ensureCapacity(firstIndex + numAtoms);
+    int blockSize = numAtoms * encoding.numBytes;
+    ByteBuffer xs = block(bytes, offset, blockSize);
+    ByteBuffer ys = block(bytes, offset + blockSize, blockSize);
+    ByteBuffer zs = block(bytes, offset + 2 * blockSize, blockSize);
+    if(encoding == CoordinateEncoding.DOUBLE){
+      for(int i = 0; i < numAtoms; i++){
+        store.add(xs.getDouble(), ys.getDouble(), zs.getDouble());
+      }
+    } else if(encoding == CoordinateEncoding.FLOAT){
+      for(int i = 0; i < numAtoms; i++){
+        store.add(xs.getFloat(), ys.getFloat(), zs.getFloat());
+      }
+    } else {
+      // dividing rather than multiplying by 0.001 gives the double nearest the decimal
+      for(int i = 0; i < numAtoms; i++){
+        store.add(xs.getInt() / QUANTA_PER_ANGSTROM, ys.getInt() / QUANTA_PER_ANGSTROM,
+            zs.getInt() / QUANTA_PER_ANGSTROM);
+      }
+    }
+    return firstIndex;
+  }
+
+  private static ByteBuffer block(ByteBuffer bytes, int offset, int size){
+    ByteBuffer block = bytes.duplicate();
+    block.limit(offset + size).position(offset);
+    return block.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void putCoordinate(ByteBuffer buffer, double coordinate,
+      CoordinateEncoding encoding){
+    if(encoding == CoordinateEncoding.DOUBLE){
+      buffer.putDouble(coordinate);
+    } else if(encoding == CoordinateEncoding.FLOAT){
+      buffer.putFloat((float) coordinate);
+    } else {
+      long quanta = Math.round(coordinate * QUANTA_PER_ANGSTROM);
+      if(quanta > Integer.MAX_VALUE || quanta < Integer.MIN_VALUE){
+        throw new IllegalArgumentException(String.format(
+            "The coordinate %f is too large to be quantized.", coordinate));
+      }
+      buffer.putInt((int) quanta);
+    }
+  }
+
+  private static byte[] encodeString(String text){
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    if(bytes.length > 0xffff){
+      throw new IllegalArgumentException(String.format(
+          "The text %s... is too long to encode.", text.substring(0, 16)));
+    }
+    return bytes;
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes){
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer){
+    int length = buffer.getShort() & 0xffff;
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // the same names are read over and over, so only keep one String for each
+  private static String intern(HashMap<String, String> names, String name){
+    String existing = names.putIfAbsent(name, name);
+    return existing == null ? name : existing;
+  }
+}
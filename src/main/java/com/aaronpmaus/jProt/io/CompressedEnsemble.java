@@ -0,0 +1,275 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.QuantizedCoordinateCodec.DeltaMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+* A CompressedEnsemble holds many conformations (frames) of one Protein, such as the decoys of a
+* structure prediction run or the frames of a simulation, each compressed into a block of bytes by
+* a QuantizedCoordinateCodec. A frame of a protein of n atoms takes about 3n to 6n bytes instead
+* of the 24n bytes of a double precision CoordinateStore.
+* <p>
+* The atoms themselves are held once, in a copy of the Protein the ensemble is constructed with.
+* A frame can be decoded into a CoordinateStore, into a copy of that Protein, or, with
+* forEachFrame(), straight into arrays of x, y, and z coordinates that a metric is run over,
+* reused from frame to frame so that going over the whole ensemble allocates nothing per frame.
+* <p>
+* An ensemble can be written to a file and read back. The file holds only the coordinates, so it
+* is read back onto a Protein with the same atoms, such as one written with BinaryStructureFileIO.
+* <p>
+* Format, version 1, every number big endian:
+* <pre>
+* header:    8 bytes "JPROTQCE", int version, int delta mode (0: reference frame,
+*            1: previous atom), int number of sets of coordinates per frame
+* reference: every quantized x, then y, then z, as ints, only in reference frame mode
+* frames:    int number of frames, then each frame as an int length followed by its block
+* </pre>
+* <p>
+* Usage:<br>
+* {@code CompressedEnsemble decoys = new CompressedEnsemble(prot, DeltaMode.PREVIOUS_ATOM);}<br>
+* {@code for(...){ sample(prot); decoys.addFrame(prot); }}<br>
+* {@code decoys.forEachFrame((index, x, y, z) -> radiusOfGyration(x, y, z));}<br>
+* <p>
+* A CompressedEnsemble is not thread safe.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class CompressedEnsemble{
+  /** The version of the format this class writes. */
+  public static final int VERSION = 1;
+  private static final byte[] MAGIC = "JPROTQCE".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+  * Visits the frames of a CompressedEnsemble.
+  */
+  public interface FrameVisitor {
+    /**
+    * Visit a frame. The arrays are reused for the next frame, so they must not be kept.
+    * @param index the index of the frame, counting from 0
+    * @param x the x coordinate of each atom, in the order of the CoordinateStore of the Protein
+    * @param y the y coordinate of each atom
+    * @param z the z coordinate of each atom
+    */
+    void visit(int index, double[] x, double[] y, double[] z);
+  }
+
+  private final Protein topology;
+  private final QuantizedCoordinateCodec codec;
+  private final ArrayList<byte[]> blocks;
+  private long encodedSize;
+
+  /**
+  * Construct an empty CompressedEnsemble of the conformations of a Protein. In reference frame
+  * mode, the current coordinates of the Protein are the reference frame, but are not added as a
+  * frame.
+  * @param prot the Protein, which is copied
+  * @param deltaMode what each coordinate is stored as the difference from
+  * @throws IllegalArgumentException if a coordinate of the reference is too large to be quantized
+  */
+  public CompressedEnsemble(Protein prot, DeltaMode deltaMode){
+    this(prot.copy(), deltaMode == DeltaMode.REFERENCE_FRAME
+        ? new QuantizedCoordinateCodec(prot.getCoordinateStore())
+        : new QuantizedCoordinateCodec(prot.getCoordinateStore().size()));
+  }
+
+  private CompressedEnsemble(Protein topology, QuantizedCoordinateCodec codec){
+    this.topology = topology;
+    this.codec = codec;
+    this.blocks = new ArrayList<byte[]>();
+    this.encodedSize = 0;
+  }
+
+  /**
+  * Add the current conformation of a Protein with the same atoms as this ensemble.
+  * @param prot the Protein
+  * @throws IllegalArgumentException if prot does not hold as many sets of coordinates as the
+  * Protein of this ensemble, or if a coordinate is too large to be quantized
+  */
+  public void addFrame(Protein prot){
+    addFrame(prot.getCoordinateStore());
+  }
+
+  /**
+  * Add a frame, the coordinates of the atoms of the Protein of this ensemble.
+  * @param frame the coordinates, such as a snapshot taken with Protein::snapshotCoordinates()
+  * @throws IllegalArgumentException if frame does not hold as many sets of coordinates as the
+  * Protein of this ensemble, or if a coordinate is too large to be quantized
+  */
+  public void addFrame(CoordinateStore frame){
+    byte[] block = this.codec.encode(frame);
+    this.blocks.add(block);
+    this.encodedSize += block.length;
+  }
+
+  /**
+  * @return the number of frames in this ensemble
+  */
+  public int getNumFrames(){
+    return this.blocks.size();
+  }
+
+  /**
+  * @return the number of bytes the frames of this ensemble are compressed into
+  */
+  public long getEncodedSize(){
+    return this.encodedSize;
+  }
+
+  /**
+  * @return the codec the frames of this ensemble are compressed with
+  */
+  public QuantizedCoordinateCodec getCodec(){
+    return this.codec;
+  }
+
+  /**
+  * Return the compressed block of a frame, which can be decoded with getCodec().
+  * @param index the index of the frame, counting from 0
+  * @return the block of the frame, which must not be changed
+  * @throws IndexOutOfBoundsException if there is no frame with that index
+  */
+  public byte[] getBlock(int index){
+    return this.blocks.get(index);
+  }
+
+  /**
+  * Decode a frame into a CoordinateStore, such as that of a Protein with the same atoms as this
+  * ensemble.
+  * @param index the index of the frame, counting from 0
+  * @param coordinates the CoordinateStore to overwrite with the coordinates of the frame
+  * @throws IndexOutOfBoundsException if there is no frame with that index
+  * @throws IllegalArgumentException if coordinates does not hold as many sets of coordinates as
+  * the Protein of this ensemble
+  */
+  public void getFrame(int index, CoordinateStore coordinates){
+    this.codec.decode(this.blocks.get(index), coordinates);
+  }
+
+  /**
+  * Return a frame as a Protein, a new copy of the Protein of this ensemble.
+  * @param index the index of the frame, counting from 0
+  * @return a Protein in the conformation of the frame
+  * @throws IndexOutOfBoundsException if there is no frame with that index
+  */
+  public Protein getFrame(int index){
+    Protein frame = this.topology.copy();
+    getFrame(index, frame.getCoordinateStore());
+    return frame;
+  }
+
+  /**
+  * Decode every frame in order, passing each to a FrameVisitor.
+  * @param visitor the visitor to pass the frames to
+  */
+  public void forEachFrame(FrameVisitor visitor){
+    int numCoordinates = this.codec.getNumCoordinates();
+    double[] x = new double[numCoordinates];
+    double[] y = new double[numCoordinates];
+    double[] z = new double[numCoordinates];
+    for(int i = 0; i < this.blocks.size(); i++){
+      this.codec.decode(this.blocks.get(i), x, y, z);
+      visitor.visit(i, x, y, z);
+    }
+  }
+
+  /**
+  * Write this ensemble to a file. The Protein of the ensemble is not written.
+  * @param path the path of the file to write, which is replaced if it exists
+  * @throws IOException if the file can not be written
+  */
+  public void write(Path path) throws IOException{
+    try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(path), 1 << 16))){
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.codec.getDeltaMode() == DeltaMode.REFERENCE_FRAME ? 0 : 1);
+      out.writeInt(this.codec.getNumCoordinates());
+      if(this.codec.getDeltaMode() == DeltaMode.REFERENCE_FRAME){
+        for(int[] axis : this.codec.getQuantizedReference()){
+          for(int quanta : axis){
+            out.writeInt(quanta);
+          }
+        }
+      }
+      out.writeInt(this.blocks.size());
+      for(byte[] block : this.blocks){
+        out.writeInt(block.length);
+        out.write(block);
+      }
+    }
+  }
+
+  /**
+  * Read an ensemble written by write() back onto a Protein with the same atoms as the one it was
+  * made from.
+  * @param path the path of the file to read
+  * @param prot the Protein of the ensemble, which is copied
+  * @return the ensemble
+  * @throws IOException if the file can not be read, is not an ensemble file, or does not hold
+  * as many sets of coordinates per frame as prot
+  */
+  public static CompressedEnsemble read(Path path, Protein prot) throws IOException{
+    try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(path), 1 << 16))){
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if(!Arrays.equals(magic, MAGIC)){
+        throw new IOException(path + " is not a compressed ensemble file.");
+      }
+      int version = in.readInt();
+      if(version != VERSION){
+        throw new IOException(String.format(
+            "%s is version %d of the format, only version %d can be read.",
+            path, version, VERSION));
+      }
+      int mode = in.readInt();
+      if(mode != 0 && mode != 1){
+        throw new IOException(String.format("%s has an unknown delta mode %d.", path, mode));
+      }
+      int numCoordinates = in.readInt();
+      if(numCoordinates != prot.getCoordinateStore().size()){
+        throw new IOException(String.format(
+            "%s holds %d sets of coordinates per frame, but protein %s has %d.",
+            path, numCoordinates, prot.getProteinName(), prot.getCoordinateStore().size()));
+      }
+      int[][] reference = new int[3][numCoordinates];
+      if(mode == 0){
+        for(int[] axis : reference){
+          for(int i = 0; i < numCoordinates; i++){
+            axis[i] = in.readInt();
+          }
+        }
+      }
+      CompressedEnsemble ensemble = new CompressedEnsemble(prot.copy(),
+          new QuantizedCoordinateCodec(mode == 0 ? DeltaMode.REFERENCE_FRAME
+              : DeltaMode.PREVIOUS_ATOM, numCoordinates, reference));
+      int numFrames = in.readInt();
+      ensemble.blocks.ensureCapacity(Math.min(numFrames, 1 << 16));
+      for(int i = 0; i < numFrames; i++){
+        int length = in.readInt();
+        if(length < 0){
+          throw new IOException(String.format("Frame %d of %s has a negative length.", i, path));
+        }
+        byte[] block = new byte[length];
+        in.readFully(block);
+        ensemble.blocks.add(block);
+        ensemble.encodedSize += length;
+      }
+      return ensemble;
+    } catch(EOFException e){
+      throw new IOException(path + " is truncated.", e);
+    }
+  }
+}
@@ -0,0 +1,359 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+* A DCDTrajectoryReader reads the frames of a DCD trajectory, the binary format written by CHARMM,
+* NAMD, X-PLOR, and OpenMM, onto the atoms of a Protein that has already been read in, such as
+* from the PDB file the simulation was started from. Only the coordinates are read, so the
+* topology of the Protein is built once rather than once per frame.
+* <p>
+* Every frame of a DCD file takes the same number of bytes, so the offset of any frame is known
+* without reading those before it, and frames can be read in any order. Each frame is read with a
+* single positional read into a reused buffer and its x, y, and z blocks are copied out in bulk.
+* A frame can be read into the CoordinateStore of the Protein, overwriting its coordinates in
+* place, or into a snapshot of it taken with Protein::snapshotCoordinates().
+* <p>
+* The atoms of a DCD frame are in the order of the ATOM and HETATM records of the PDB file of the
+* simulation. By default, the atoms of the Protein are bound to the first atoms of a frame in the
+* order they were read in, which is the order of their serial numbers. Serial numbers are not used
+* as indices, since TER records take up serial numbers too. Atoms of the frames after those of the
+* Protein, such as waters and ions, are skipped. If the Protein left records out, or the frames
+* hold other atoms before or among those of the Protein, the atoms must be bound explicitly.
+* <p>
+* Both byte orders and the optional unit cell and fourth dimension records of CHARMM files are
+* read. Files with fixed atoms are not.
+* <p>
+* Usage:<br>
+* {@code try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(path, prot)){}<br>
+* {@code   while(trajectory.readNextFrame()){}<br>
+* {@code     // prot holds the coordinates of frame trajectory.getFrameIndex()}<br>
+* {@code }}}<br>
+* <p>
+* A DCDTrajectoryReader is not thread safe.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class DCDTrajectoryReader implements Closeable {
+  private static final int HEADER_LENGTH = 84;
+  private static final int UNIT_CELL_LENGTH = 48;
+
+  private final FileChannel channel;
+  private final ByteOrder byteOrder;
+  private final Protein protein;
+  private final int numAtoms;
+  private final int numFrames;
+  private final long firstFrameOffset;
+  private final int frameLength;
+  private final boolean hasUnitCell;
+  private final boolean hasFourthDimension;
+  private final float timeStep;
+  // key: the index of an atom in a frame, value: the index of its coordinates in the
+  // CoordinateStore of the protein, or -1 if it is not in the protein
+  private final int[] storeIndices;
+  private final ByteBuffer frame;
+  private final float[] x;
+  private final float[] y;
+  private final float[] z;
+  private int frameIndex;
+
+  /**
+  * Open a DCD file, binding the atoms of prot, in the order they were read in, to the first atoms
+  * of each frame.
+  * @param path the path of the DCD file
+  * @param prot the Protein to read the frames onto
+  * @throws IOException if the file can not be read or is not a DCD file this class can read
+  * @throws IllegalArgumentException if a frame has fewer atoms than prot
+  */
+  public DCDTrajectoryReader(Path path, Protein prot) throws IOException{
+    this(path, prot, null);
+  }
+
+  /**
+  * Open a DCD file, binding the atoms of each frame to the given atoms of prot.
+  * @param path the path of the DCD file
+  * @param prot the Protein to read the frames onto
+  * @param frameAtoms the atom of prot each atom of a frame is bound to, in the order of the atoms
+  * of a frame, null for an atom that is not in prot. If frameAtoms is null, the atoms of prot are
+  * bound to the first atoms of a frame in the order they were read in.
+  * @throws IOException if the file can not be read or is not a DCD file this class can read
+  * @throws IllegalArgumentException if frameAtoms does not have an entry for every atom of a
+  * frame, or, if frameAtoms is null, if a frame has fewer atoms than prot
+  */
+  public DCDTrajectoryReader(Path path, Protein prot, Atom[] frameAtoms) throws IOException{
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try{
+      ByteBuffer header = read(0, 4 + HEADER_LENGTH + 4);
+      if(header.order(ByteOrder.LITTLE_ENDIAN).getInt(0) == HEADER_LENGTH){
+        this.byteOrder = ByteOrder.LITTLE_ENDIAN;
+      } else if(header.order(ByteOrder.BIG_ENDIAN).getInt(0) == HEADER_LENGTH){
+        this.byteOrder = ByteOrder.BIG_ENDIAN;
+      } else {
+        throw new IOException(path + " is not a DCD file.");
+      }
+      header.order(this.byteOrder);
+      if(header.get(4) != 'C' || header.get(5) != 'O' || header.get(6) != 'R'
+          || header.get(7) != 'D'){
+        throw new IOException(path + " is not a DCD file of coordinates.");
+      }
+      // the 20 control ints follow CORD
+      int[] control = new int[20];
+      for(int i = 0; i < control.length; i++){
+        control[i] = header.getInt(8 + 4 * i);
+      }
+      if(control[8] != 0){
+        throw new IOException(String.format(
+            "%s has %d fixed atoms, which are not supported.", path, control[8]));
+      }
+      boolean charmm = control[19] != 0;
+      this.hasUnitCell = charmm && control[10] != 0;
+      this.hasFourthDimension = charmm && control[11] != 0;
+      this.timeStep = header.getFloat(8 + 4 * 9);
+
+      // skip the title record, then read the number of atoms
+      long position = 4 + HEADER_LENGTH + 4;
+      int titleLength = read(position, 4).getInt(0);
+      position += 4 + titleLength + 4;
+      ByteBuffer atomRecord = read(position, 12);
+      if(atomRecord.getInt(0) != 4){
+        throw new IOException(path + " does not hold the number of atoms where expected.");
+      }
+      this.numAtoms = atomRecord.getInt(4);
+      this.firstFrameOffset = position + 12;
+
+      int blockLength = 4 + 4 * this.numAtoms + 4;
+      this.frameLength = (this.hasUnitCell ? 4 + UNIT_CELL_LENGTH + 4 : 0)
+          + (this.hasFourthDimension ? 4 : 3) * blockLength;
+      // the header's frame count is not updated if a simulation stops early, so count the
+      // frames that are actually in the file. A partly written last frame is not counted.
+      this.numFrames = (int) ((this.channel.size() - this.firstFrameOffset) / this.frameLength);
+      this.storeIndices = bindAtoms(prot, frameAtoms, this.numAtoms);
+    } catch(IOException | RuntimeException e){
+      this.channel.close();
+      throw e;
+    }
+    this.protein = prot;
+    this.frame = ByteBuffer.allocate(this.frameLength).order(this.byteOrder);
+    this.x = new float[this.numAtoms];
+    this.y = new float[this.numAtoms];
+    this.z = new float[this.numAtoms];
+    this.frameIndex = -1;
+  }
+
+  /**
+  * @return the number of frames in the file
+  */
+  public int getNumFrames(){
+    return this.numFrames;
+  }
+
+  /**
+  * @return the number of atoms in each frame, which may be more than are in the Protein
+  */
+  public int getNumAtoms(){
+    return this.numAtoms;
+  }
+
+  /**
+  * @return the time step of the simulation, in the units of the program that wrote the file
+  */
+  public float getTimeStep(){
+    return this.timeStep;
+  }
+
+  /**
+  * @return the index of the last frame read, counting from 0, or -1 if none has been read
+  */
+  public int getFrameIndex(){
+    return this.frameIndex;
+  }
+
+  /**
+  * Read the frame after the last one read (or the first frame) onto the Protein.
+  * @return false if the last frame has already been read
+  * @throws IOException if the frame can not be read
+  */
+  public boolean readNextFrame() throws IOException{
+    if(this.frameIndex + 1 >= this.numFrames){
+      return false;
+    }
+    readFrame(this.frameIndex + 1);
+    return true;
+  }
+
+  /**
+  * Read a frame onto the Protein, overwriting the coordinates of the atoms bound to the frame.
+  * @param index the index of the frame, counting from 0
+  * @throws IOException if the frame can not be read
+  * @throws IndexOutOfBoundsException if there is no frame with that index
+  */
+  public void readFrame(int index) throws IOException{
+    readFrame(index, this.protein.getCoordinateStore());
+  }
+
+  /**
+  * Read a frame into a CoordinateStore holding the coordinates of the Protein, such as a snapshot
+  * taken with Protein::snapshotCoordinates(). Only the coordinates of the atoms bound to the frame
+  * are overwritten.
+  * @param index the index of the frame, counting from 0
+  * @param coordinates the CoordinateStore to read the frame into
+  * @throws IOException if the frame can not be read
+  * @throws IndexOutOfBoundsException if there is no frame with that index
+  * @throws IllegalArgumentException if coordinates is not the same size as the CoordinateStore of
+  * the Protein
+  */
+  public void readFrame(int index, CoordinateStore coordinates) throws IOException{
+    if(coordinates.size() != this.protein.getCoordinateStore().size()){
+      throw new IllegalArgumentException(String.format(
+          "The CoordinateStore holds %d sets of coordinates, but the protein has %d.",
+          coordinates.size(), this.protein.getCoordinateStore().size()));
+    }
+    readCoordinates(index);
+    int[] storeIndices = this.storeIndices;
+    float[] x = this.x;
+    float[] y = this.y;
+    float[] z = this.z;
+    for(int i = 0; i < storeIndices.length; i++){
+      if(storeIndices[i] != -1){
+        coordinates.set(storeIndices[i], x[i], y[i], z[i]);
+      }
+    }
+  }
+
+  /**
+  * Read the raw coordinates of every atom of a frame, including those not in the Protein.
+  * @param index the index of the frame, counting from 0
+  * @param x filled with the x coordinate of each atom of the frame
+  * @param y filled with the y coordinate of each atom of the frame
+  * @param z filled with the z coordinate of each atom of the frame
+  * @throws IOException if the frame can not be read
+  * @throws IndexOutOfBoundsException if there is no frame with that index, or if an array is
+  * shorter than getNumAtoms()
+  */
+  public void readFrame(int index, float[] x, float[] y, float[] z) throws IOException{
+    readCoordinates(index);
+    System.arraycopy(this.x, 0, x, 0, this.numAtoms);
+    System.arraycopy(this.y, 0, y, 0, this.numAtoms);
+    System.arraycopy(this.z, 0, z, 0, this.numAtoms);
+  }
+
+  /**
+  * Close the file.
+  * @throws IOException if closing the file fails
+  */
+  @Override
+  public void close() throws IOException{
+    this.channel.close();
+  }
+
+  /**
+  * Read a frame into the x, y, and z arrays.
+  */
+  private void readCoordinates(int index) throws IOException{
+    if(index < 0 || index >= this.numFrames){
+      throw new IndexOutOfBoundsException(String.format(
+          "Frame %d is not one of the %d frames.", index, this.numFrames));
+    }
+    ByteBuffer frame = this.frame;
+    frame.clear();
+    long offset = this.firstFrameOffset + (long) index * this.frameLength;
+    while(frame.hasRemaining()){
+      if(this.channel.read(frame, offset + frame.position()) == -1){
+        throw new EOFException(String.format("Frame %d is truncated.", index));
+      }
+    }
+    frame.flip();
+    if(this.hasUnitCell){
+      checkRecordLength(frame, UNIT_CELL_LENGTH, index);
+      frame.position(frame.position() + UNIT_CELL_LENGTH + 4);
+    }
+    readBlock(frame, this.x, index);
+    readBlock(frame, this.y, index);
+    readBlock(frame, this.z, index);
+    this.frameIndex = index;
+  }
+
+  private void readBlock(ByteBuffer frame, float[] values, int index) throws IOException{
+    checkRecordLength(frame, 4 * this.numAtoms, index);
+    frame.asFloatBuffer().get(values);
+    frame.position(frame.position() + 4 * this.numAtoms + 4);
+  }
+
+  private static void checkRecordLength(ByteBuffer frame, int length, int index)
+      throws IOException{
+    int recordLength = frame.getInt();
+    if(recordLength != length){
+      throw new IOException(String.format(
+          "A record of frame %d is %d bytes long instead of %d.", index, recordLength, length));
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException{
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while(buffer.hasRemaining()){
+      if(this.channel.read(buffer, position + buffer.position()) == -1){
+        throw new EOFException("The DCD header is truncated.");
+      }
+    }
+    buffer.flip();
+    return buffer.order(this.byteOrder == null ? ByteOrder.BIG_ENDIAN : this.byteOrder);
+  }
+
+  /**
+  * @return the index in the CoordinateStore of prot of each atom of a frame, -1 for those that
+  * are not in prot
+  */
+  private static int[] bindAtoms(Protein prot, Atom[] frameAtoms, int numAtoms){
+    if(frameAtoms != null && frameAtoms.length != numAtoms){
+      throw new IllegalArgumentException(String.format(
+          "%d atoms are bound to frames of %d atoms.", frameAtoms.length, numAtoms));
+    }
+    int[] storeIndices = new int[numAtoms];
+    Arrays.fill(storeIndices, -1);
+    if(frameAtoms != null){
+      for(int i = 0; i < numAtoms; i++){
+        if(frameAtoms[i] != null){
+          if(frameAtoms[i].getCoordinateStore() != prot.getCoordinateStore()){
+            throw new IllegalArgumentException(String.format(
+                "Atom %s bound to atom %d of the frames is not in protein %s.",
+                frameAtoms[i].getName(), i, prot.getProteinName()));
+          }
+          storeIndices[i] = frameAtoms[i].getCoordinateIndex();
+        }
+      }
+      return storeIndices;
+    }
+    // sort the atoms into the order they were read in by their serial numbers, each packed with
+    // the index of its coordinates
+    long[] atoms = new long[prot.getCoordinateStore().size()];
+    int numProteinAtoms = 0;
+    for(PolypeptideChain chain : prot){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          atoms[numProteinAtoms++] = ((long) atom.getSerialNumber() << 32)
+              | atom.getCoordinateIndex();
+        }
+      }
+    }
+    if(numProteinAtoms > numAtoms){
+      throw new IllegalArgumentException(String.format(
+          "Frames of %d atoms can not hold the %d atoms of protein %s.", numAtoms,
+          numProteinAtoms, prot.getProteinName()));
+    }
+    Arrays.sort(atoms, 0, numProteinAtoms);
+    for(int i = 0; i < numProteinAtoms; i++){
+      storeIndices[i] = (int) atoms[i];
+    }
+    return storeIndices;
+  }
+}
@@ -0,0 +1,626 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+* Reads in mmCIF (PDBx) files. Structures too large for the PDB format, with more than 99,999
+* atoms or chain IDs longer than a single character, are only distributed as mmCIF files.
+* <p>
+* The file is read as a stream of tokens. The rows of the _atom_site category are turned into
+* Atoms as they are read and each residue is built as soon as its last atom has been read, so the
+* only memory used on the way to the Protein is one line of the file and the atoms of one residue,
+* no matter how many atoms the file holds. Residues are added to their chains with
+* PolypeptideChain.Builder. Disulfide bonds are read from the _struct_conn category.
+* <p>
+* As with PDBFileIO, only ATOM rows of the first model are read, residues missing any of the
+* backbone atoms N, CA, and C are left out, and the author chain IDs, residue IDs, and atom names
+* are used where the file has them. The atoms of a residue must be listed together, as they are in
+* every file written by the wwPDB. The file may be gzip compressed.
+* <p>
+* Usage:<br>
+* {@code Protein prot = new MMCIFFileIO().readInMMCIFFile(path, "6qzp");}<br>
+* <p>
+* An MMCIFFileIO can read any number of files, one after the other, reusing its buffers. It is
+* not thread safe.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class MMCIFFileIO{
+  // the kinds of token
+  private static final int END = 0;
+  private static final int WORD = 1;
+  private static final int QUOTED = 2;
+  private static final int TEXT_FIELD = 3;
+
+  // the categories that are read
+  private static final int OTHER_CATEGORY = 0;
+  private static final int ATOM_SITE = 1;
+  private static final int STRUCT_CONN = 2;
+
+  // the roles of the items of the categories that are read, as indices into the row arrays
+  private static final int NO_ROLE = -1;
+  private static final int GROUP_PDB = 0;
+  private static final int ID = 1;
+  private static final int AUTH_ATOM_ID = 2;
+  private static final int LABEL_ATOM_ID = 3;
+  private static final int AUTH_COMP_ID = 4;
+  private static final int LABEL_COMP_ID = 5;
+  private static final int AUTH_ASYM_ID = 6;
+  private static final int LABEL_ASYM_ID = 7;
+  private static final int AUTH_SEQ_ID = 8;
+  private static final int LABEL_SEQ_ID = 9;
+  private static final int CARTN_X = 10;
+  private static final int CARTN_Y = 11;
+  private static final int CARTN_Z = 12;
+  private static final int OCCUPANCY = 13;
+  private static final int B_ISO = 14;
+  private static final int FORMAL_CHARGE = 15;
+  private static final int MODEL_NUM = 16;
+  private static final int CONN_TYPE_ID = 17;
+  private static final int PTNR1_AUTH_ASYM_ID = 18;
+  private static final int PTNR1_LABEL_ASYM_ID = 19;
+  private static final int PTNR1_AUTH_SEQ_ID = 20;
+  private static final int PTNR1_LABEL_SEQ_ID = 21;
+  private static final int PTNR2_AUTH_ASYM_ID = 22;
+  private static final int PTNR2_LABEL_ASYM_ID = 23;
+  private static final int PTNR2_AUTH_SEQ_ID = 24;
+  private static final int PTNR2_LABEL_SEQ_ID = 25;
+  private static final int NUM_ROLES = 26;
+
+  private final PDBColumnDecoder line;
+  private byte[] lineBytes;
+
+  // the state of the file being read
+  private PDBLineReader lines;
+  // the column of the current line the next token starts at or after
+  private int column;
+  private int tokenStart;
+  private int tokenEnd;
+  // the values of the row being read. A value is only set if it is not missing.
+  private final String[] rowStrings;
+  private final int[] rowInts;
+  private final double[] rowDoubles;
+  private final boolean[] rowHasValue;
+  // true once a row has shown it is not needed, so the rest of its values are not decoded
+  private boolean skipRow;
+  private int firstModel;
+  private int numAtomRows;
+
+  // the residue whose atoms are being read
+  private String residueChainID;
+  private int residueID;
+  private String residueName;
+  private final ArrayList<Atom> residueAtoms;
+  private final LinkedHashMap<String, PolypeptideChain.Builder> chainBuilders;
+  private final ArrayList<DisulfideRecord> disulfides;
+
+  public MMCIFFileIO(){
+    this.line = new PDBColumnDecoder();
+    this.lineBytes = null;
+    this.rowStrings = new String[NUM_ROLES];
+    this.rowInts = new int[NUM_ROLES];
+    this.rowDoubles = new double[NUM_ROLES];
+    this.rowHasValue = new boolean[NUM_ROLES];
+    this.residueAtoms = new ArrayList<Atom>();
+    this.chainBuilders = new LinkedHashMap<String, PolypeptideChain.Builder>();
+    this.disulfides = new ArrayList<DisulfideRecord>();
+  }
+
+  /**
+  * Read in an mmCIF file and return a Protein.
+  * @param inputStream the inputStream to read from
+  * @param mmCIFFileNameBase the base name of the mmCIF file (the part before the extension).
+  * @return the Protein built from the _atom_site rows of the file
+  * @throws UncheckedIOException if reading from the stream fails
+  */
+  public Protein readInMMCIFFile(InputStream inputStream, String mmCIFFileNameBase){
+    return readInMMCIFFile(inputStream, mmCIFFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Read in an mmCIF file and return a Protein whose coordinates are held in the given precision.
+  * If the stream is gzip compressed, it is inflated on a separate thread while it is parsed.
+  * @param inputStream the inputStream to read from
+  * @param mmCIFFileNameBase the base name of the mmCIF file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the _atom_site rows of the file
+  * @throws UncheckedIOException if reading from the stream fails
+  */
+  public Protein readInMMCIFFile(InputStream inputStream, String mmCIFFileNameBase,
+      CoordinateStore.Precision precision){
+    try(InputStream stream = PipelinedGzipInputStream.inflateIfCompressed(inputStream)){
+      return read(stream, mmCIFFileNameBase, precision);
+    } catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+  * Read in an mmCIF file and return a Protein.
+  * @param path the path of the mmCIF file
+  * @param mmCIFFileNameBase the base name of the mmCIF file (the part before the extension).
+  * @return the Protein built from the _atom_site rows of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein readInMMCIFFile(Path path, String mmCIFFileNameBase) throws IOException{
+    return readInMMCIFFile(path, mmCIFFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Read in an mmCIF file and return a Protein whose coordinates are held in the given precision.
+  * @param path the path of the mmCIF file
+  * @param mmCIFFileNameBase the base name of the mmCIF file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the _atom_site rows of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein readInMMCIFFile(Path path, String mmCIFFileNameBase,
+      CoordinateStore.Precision precision) throws IOException{
+    try(InputStream file = Files.newInputStream(path);
+        InputStream stream = PipelinedGzipInputStream.inflateIfCompressed(file)){
+      return read(stream, mmCIFFileNameBase, precision);
+    }
+  }
+
+  private Protein read(InputStream inputStream, String mmCIFFileNameBase,
+      CoordinateStore.Precision precision) throws IOException{
+    this.lines = this.lineBytes == null ? new PDBLineReader(inputStream)
+        : new PDBLineReader(inputStream, this.lineBytes);
+    this.line.setLine(null, 0, 0);
+    this.column = 0;
+    this.firstModel = Integer.MIN_VALUE;
+    this.numAtomRows = 0;
+    this.residueChainID = null;
+    this.residueAtoms.clear();
+    this.chainBuilders.clear();
+    this.disulfides.clear();
+    // build the protein in its own scope so that reading files on several threads is safe and
+    // numbers any atoms without serial numbers the same way every time
+    IdAllocator.Scope scope = IdAllocator.openScope();
+    try{
+      parse();
+      addResidue();
+      Protein protein = new Protein(mmCIFFileNameBase, new PDBFileIO(), precision);
+      for(PolypeptideChain.Builder chainBuilder : this.chainBuilders.values()){
+        protein.addChain(chainBuilder.build());
+      }
+      addDisulfideBonds(protein);
+      return protein;
+    } finally {
+      scope.close();
+      this.lineBytes = this.lines.getBytes();
+      this.lines = null;
+      this.line.setLine(null, 0, 0);
+      this.residueAtoms.clear();
+      this.chainBuilders.clear();
+      this.disulfides.clear();
+    }
+  }
+
+  /**
+  * Read the tokens of the first data block, handing the values of the categories that are read
+  * to readValue(), whether they are in a loop or are single items.
+  */
+  private void parse() throws IOException{
+    boolean inDataBlock = false;
+    // the category of the single items being read, which form one row
+    int itemCategory = OTHER_CATEGORY;
+    int token = nextToken();
+    while(token != END){
+      if(token != WORD){
+        // a value without a tag
+        token = nextToken();
+        continue;
+      }
+      if(isReservedWord("data_")){
+        if(inDataBlock){
+          // only the first data block is read
+          break;
+        }
+        inDataBlock = true;
+        token = nextToken();
+      } else if(isTag()){
+        String tag = tokenText();
+        int category = getCategory(tag);
+        if(category != itemCategory){
+          endRow(itemCategory);
+          itemCategory = category;
+        }
+        int role = getRole(category, tag);
+        token = nextToken();
+        if(token != END && !isTagOrReservedWord(token)){
+          readValue(role, token);
+          token = nextToken();
+        }
+      } else if(isReservedWord("loop_")){
+        endRow(itemCategory);
+        itemCategory = OTHER_CATEGORY;
+        token = readLoop();
+      } else {
+        // save frames, stray values, etc
+        token = nextToken();
+      }
+    }
+    endRow(itemCategory);
+  }
+
+  /**
+  * Read a loop, from the token after loop_ up to the first token after its last value.
+  * @return the kind of the first token after the loop
+  */
+  private int readLoop() throws IOException{
+    ArrayList<Integer> roles = new ArrayList<Integer>();
+    int category = OTHER_CATEGORY;
+    int token = nextToken();
+    while(token == WORD && isTag()){
+      String tag = tokenText();
+      if(roles.isEmpty()){
+        category = getCategory(tag);
+      }
+      roles.add(getRole(category, tag));
+      token = nextToken();
+    }
+    if(roles.isEmpty()){
+      return token;
+    }
+    int numColumns = roles.size();
+    int value = 0;
+    while(token != END && !isTagOrReservedWord(token)){
+      if(category != OTHER_CATEGORY){
+        readValue(roles.get(value), token);
+      }
+      value++;
+      if(value == numColumns){
+        endRow(category);
+        value = 0;
+      }
+      token = nextToken();
+    }
+    return token;
+  }
+
+  /**
+  * Decode the value of the current token into the row being read.
+  */
+  private void readValue(int role, int token){
+    if(role == NO_ROLE || this.skipRow || token == TEXT_FIELD){
+      return;
+    }
+    // ? (unknown) and . (not applicable) mark missing values
+    if(token == WORD && this.tokenEnd - this.tokenStart == 1
+        && (this.line.charAt(this.tokenStart) == '?' || this.line.charAt(this.tokenStart) == '.')){
+      return;
+    }
+    switch(role){
+      case GROUP_PDB:
+        // HETATM rows are not read, so don't decode the rest of them
+        this.skipRow = !this.line.equalsTrimmed(this.tokenStart, this.tokenEnd, "ATOM");
+        return;
+      case MODEL_NUM:
+        int model = this.line.decodeInt(this.tokenStart, this.tokenEnd);
+        if(this.firstModel == Integer.MIN_VALUE){
+          this.firstModel = model;
+        }
+        this.skipRow = model != this.firstModel;
+        return;
+      case ID:
+      case AUTH_SEQ_ID:
+      case LABEL_SEQ_ID:
+      case PTNR1_AUTH_SEQ_ID:
+      case PTNR1_LABEL_SEQ_ID:
+      case PTNR2_AUTH_SEQ_ID:
+      case PTNR2_LABEL_SEQ_ID:
+        this.rowInts[role] = this.line.decodeInt(this.tokenStart, this.tokenEnd);
+        break;
+      case CARTN_X:
+      case CARTN_Y:
+      case CARTN_Z:
+      case OCCUPANCY:
+      case B_ISO:
+      case FORMAL_CHARGE:
+        this.rowDoubles[role] = this.line.decodeDouble(this.tokenStart, this.tokenEnd);
+        break;
+      default:
+        this.rowStrings[role] = tokenText();
+    }
+    this.rowHasValue[role] = true;
+  }
+
+  /**
+  * Handle the row that has been read and clear it for the next one.
+  */
+  private void endRow(int category){
+    if(!this.skipRow){
+      if(category == ATOM_SITE){
+        addAtomSiteRow();
+      } else if(category == STRUCT_CONN){
+        addStructConnRow();
+      }
+    }
+    Arrays.fill(this.rowHasValue, false);
+    this.skipRow = false;
+  }
+
+  private void addAtomSiteRow(){
+    String chainID = getString(AUTH_ASYM_ID, LABEL_ASYM_ID);
+    String atomName = getString(AUTH_ATOM_ID, LABEL_ATOM_ID);
+    String resName = getString(AUTH_COMP_ID, LABEL_COMP_ID);
+    Integer resID = getInt(AUTH_SEQ_ID, LABEL_SEQ_ID);
+    if(chainID == null || atomName == null || resName == null || resID == null
+        || !this.rowHasValue[CARTN_X] || !this.rowHasValue[CARTN_Y] || !this.rowHasValue[CARTN_Z]){
+      return;
+    }
+    this.numAtomRows++;
+    if(this.residueChainID == null || resID != this.residueID
+        || !chainID.equals(this.residueChainID)){
+      addResidue();
+      this.residueChainID = chainID;
+      this.residueID = resID;
+      this.residueName = resName;
+    }
+    int serial = this.rowHasValue[ID] ? this.rowInts[ID] : this.numAtomRows;
+    // make sure there are values for occupancy and temp factor, else default value of -1.0.
+    double occupancy = this.rowHasValue[OCCUPANCY] ? this.rowDoubles[OCCUPANCY] : -1.0;
+    double tempFactor = this.rowHasValue[B_ISO] ? this.rowDoubles[B_ISO] : -1.0;
+    double charge = this.rowHasValue[FORMAL_CHARGE] ? this.rowDoubles[FORMAL_CHARGE] : 0.0;
+    this.residueAtoms.add(new Atom(atomName, serial, occupancy, tempFactor, charge,
+        this.rowDoubles[CARTN_X], this.rowDoubles[CARTN_Y], this.rowDoubles[CARTN_Z]));
+  }
+
+  private void addStructConnRow(){
+    if(!this.rowHasValue[CONN_TYPE_ID]
+        || !this.rowStrings[CONN_TYPE_ID].equalsIgnoreCase("disulf")){
+      return;
+    }
+    String chainID1 = getString(PTNR1_AUTH_ASYM_ID, PTNR1_LABEL_ASYM_ID);
+    String chainID2 = getString(PTNR2_AUTH_ASYM_ID, PTNR2_LABEL_ASYM_ID);
+    Integer resID1 = getInt(PTNR1_AUTH_SEQ_ID, PTNR1_LABEL_SEQ_ID);
+    Integer resID2 = getInt(PTNR2_AUTH_SEQ_ID, PTNR2_LABEL_SEQ_ID);
+    if(chainID1 != null && chainID2 != null && resID1 != null && resID2 != null){
+      this.disulfides.add(new DisulfideRecord(chainID1, resID1, chainID2, resID2));
+    }
+  }
+
+  /**
+  * Build the residue whose atoms have been read and add it to its chain. Only residues that
+  * contain the backbone atoms N, CA, and C are added.
+  */
+  private void addResidue(){
+    if(this.residueAtoms.isEmpty()){
+      return;
+    }
+    boolean n = false;
+    boolean ca = false;
+    boolean c = false;
+    boolean oxt = false;
+    for(Atom atom : this.residueAtoms){
+      n |= atom.getName().equals("N");
+      ca |= atom.getName().equals("CA");
+      c |= atom.getName().equals("C");
+      oxt |= atom.getName().equals("OXT");
+    }
+    if(n && ca && c){
+      Residue res = new Residue(this.residueName, this.residueID, this.residueAtoms);
+      if(oxt){
+        res.setAsCarboxylTerminus();
+      }
+      PolypeptideChain.Builder chainBuilder = this.chainBuilders.get(this.residueChainID);
+      if(chainBuilder == null){
+        chainBuilder = new PolypeptideChain.Builder(this.residueChainID);
+        this.chainBuilders.put(this.residueChainID, chainBuilder);
+      }
+      chainBuilder.addResidue(res);
+    }
+    this.residueAtoms.clear();
+  }
+
+  private void addDisulfideBonds(Protein protein){
+    for(DisulfideRecord disulfide : this.disulfides){
+      String chainID1 = disulfide.chainID1;
+      String chainID2 = disulfide.chainID2;
+      int resID1 = disulfide.resID1;
+      int resID2 = disulfide.resID2;
+      if(protein.contains(chainID1) && protein.getChain(chainID1).contains(resID1)){
+        if(protein.contains(chainID2) && protein.getChain(chainID2).contains(resID2)){
+          if(!chainID1.equals(chainID2) || resID1 != resID2){
+            protein.addDisulfideBond(chainID1, resID1, chainID2, resID2);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+  * @return the value of the preferred role of the row, or of the fallback role if the preferred
+  * one is missing, or null if both are missing
+  */
+  private String getString(int preferred, int fallback){
+    if(this.rowHasValue[preferred]){
+      return this.rowStrings[preferred];
+    }
+    return this.rowHasValue[fallback] ? this.rowStrings[fallback] : null;
+  }
+
+  private Integer getInt(int preferred, int fallback){
+    if(this.rowHasValue[preferred]){
+      return this.rowInts[preferred];
+    }
+    return this.rowHasValue[fallback] ? this.rowInts[fallback] : null;
+  }
+
+  private static int getCategory(String tag){
+    int dot = tag.indexOf('.');
+    String category = (dot == -1 ? tag : tag.substring(0, dot)).toLowerCase(Locale.ROOT);
+    if(category.equals("_atom_site")){
+      return ATOM_SITE;
+    }
+    if(category.equals("_struct_conn")){
+      return STRUCT_CONN;
+    }
+    return OTHER_CATEGORY;
+  }
+
+  private static int getRole(int category, String tag){
+    String item = tag.substring(tag.indexOf('.') + 1).toLowerCase(Locale.ROOT);
+    if(category == ATOM_SITE){
+      switch(item){
+        case "group_pdb": return GROUP_PDB;
+        case "id": return ID;
+        case "auth_atom_id": return AUTH_ATOM_ID;
+        case "label_atom_id": return LABEL_ATOM_ID;
+        case "auth_comp_id": return AUTH_COMP_ID;
+        case "label_comp_id": return LABEL_COMP_ID;
+        case "auth_asym_id": return AUTH_ASYM_ID;
+        case "label_asym_id": return LABEL_ASYM_ID;
+        case "auth_seq_id": return AUTH_SEQ_ID;
+        case "label_seq_id": return LABEL_SEQ_ID;
+        case "cartn_x": return CARTN_X;
+        case "cartn_y": return CARTN_Y;
+        case "cartn_z": return CARTN_Z;
+        case "occupancy": return OCCUPANCY;
+        case "b_iso_or_equiv": return B_ISO;
+        case "pdbx_formal_charge": return FORMAL_CHARGE;
+        case "pdbx_pdb_model_num": return MODEL_NUM;
+        default: return NO_ROLE;
+      }
+    }
+    if(category == STRUCT_CONN){
+      switch(item){
+        case "conn_type_id": return CONN_TYPE_ID;
+        case "ptnr1_auth_asym_id": return PTNR1_AUTH_ASYM_ID;
+        case "ptnr1_label_asym_id": return PTNR1_LABEL_ASYM_ID;
+        case "ptnr1_auth_seq_id": return PTNR1_AUTH_SEQ_ID;
+        case "ptnr1_label_seq_id": return PTNR1_LABEL_SEQ_ID;
+        case "ptnr2_auth_asym_id": return PTNR2_AUTH_ASYM_ID;
+        case "ptnr2_label_asym_id": return PTNR2_LABEL_ASYM_ID;
+        case "ptnr2_auth_seq_id": return PTNR2_AUTH_SEQ_ID;
+        case "ptnr2_label_seq_id": return PTNR2_LABEL_SEQ_ID;
+        default: return NO_ROLE;
+      }
+    }
+    return NO_ROLE;
+  }
+
+  //*************** Tokenizer *******************//
+
+  /**
+  * Find the next token. Tokens are separated by whitespace, or are quoted with ' or ", in which
+  * case they end at a matching quote that is followed by whitespace. A text field, the lines
+  * between two lines starting with ;, is a single token whose text is not kept. Everything after
+  * a # outside of a token is a comment.
+  * @return the kind of token found, or END if the end of the file has been reached. The token is
+  * in the columns tokenStart to tokenEnd of the current line.
+  */
+  private int nextToken() throws IOException{
+    PDBColumnDecoder line = this.line;
+    while(true){
+      int length = line.getLineLength();
+      if(this.column >= length){
+        if(!this.lines.nextLine(line)){
+          return END;
+        }
+        this.column = 0;
+        if(line.getLineLength() > 0 && line.charAt(0) == ';'){
+          skipTextField();
+          return TEXT_FIELD;
+        }
+        continue;
+      }
+      int c = line.charAt(this.column);
+      if(c == ' ' || c == '\t'){
+        this.column++;
+        continue;
+      }
+      if(c == '#'){
+        this.column = length;
+        continue;
+      }
+      if(c == '\'' || c == '"'){
+        int close = this.column + 1;
+        while(close < length && !(line.charAt(close) == c
+            && (close + 1 == length || isWhitespace(line.charAt(close + 1))))){
+          close++;
+        }
+        this.tokenStart = this.column + 1;
+        this.tokenEnd = close;
+        this.column = close + 1;
+        return QUOTED;
+      }
+      this.tokenStart = this.column;
+      while(this.column < length && !isWhitespace(line.charAt(this.column))){
+        this.column++;
+      }
+      this.tokenEnd = this.column;
+      return WORD;
+    }
+  }
+
+  /**
+  * Skip the lines of a text field, up to and including the line starting with ; that ends it.
+  */
+  private void skipTextField() throws IOException{
+    while(this.lines.nextLine(this.line)){
+      if(this.line.getLineLength() > 0 && this.line.charAt(0) == ';'){
+        this.column = 1;
+        return;
+      }
+    }
+    this.column = 0;
+  }
+
+  private String tokenText(){
+    return this.line.decodeString(this.tokenStart, this.tokenEnd);
+  }
+
+  private boolean isTag(){
+    return this.line.charAt(this.tokenStart) == '_';
+  }
+
+  /**
+  * @return true if the current token starts with word, ignoring case, as reserved words do
+  */
+  private boolean isReservedWord(String word){
+    if(this.tokenEnd - this.tokenStart < word.length()){
+      return false;
+    }
+    for(int i = 0; i < word.length(); i++){
+      if(Character.toLowerCase(this.line.charAt(this.tokenStart + i)) != word.charAt(i)){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isTagOrReservedWord(int token){
+    return token == WORD && (isTag() || isReservedWord("loop_") || isReservedWord("data_")
+        || isReservedWord("save_") || isReservedWord("stop_") || isReservedWord("global_"));
+  }
+
+  private static boolean isWhitespace(int c){
+    return c == ' ' || c == '\t';
+  }
+
+  private static class DisulfideRecord{
+    private final String chainID1;
+    private final int resID1;
+    private final String chainID2;
+    private final int resID2;
+
+    public DisulfideRecord(String chainID1, int resID1, String chainID2, int resID2){
+      this.chainID1 = chainID1;
+      this.resID1 = resID1;
+      this.chainID2 = chainID2;
+      this.resID2 = resID2;
+    }
+  }
+}
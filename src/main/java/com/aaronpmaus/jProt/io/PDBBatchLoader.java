@@ -0,0 +1,261 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+* A PDBBatchLoader reads many PDB files concurrently and hands the Proteins to a consumer as they
+* are built.
+* <p>
+* Files are read through a pipeline. A pool of reader threads reads the bytes of each file and
+* passes them, through a bounded queue, to a pool of parser threads, one per core by default, which
+* build the Proteins. The Proteins pass through a second bounded queue to the consumer, which is
+* called on the thread that started the load, so it does not have to be thread safe. If the
+* consumer falls behind, the queues fill up and the parsers and readers wait for it, so no more
+* than a bounded number of files are held in memory at once.
+* <p>
+* A file that can not be read or parsed does not stop the rest of the batch. Its failure is
+* returned once every other file has been loaded.
+* <p>
+* Usage:<br>
+* {@code PDBBatchLoader loader = new PDBBatchLoader();}<br>
+* {@code Map<Path,Exception> failures = loader.loadDirectory(dir, (path, prot) -> process(prot));}
+* <br>
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class PDBBatchLoader {
+  private final int numReaders;
+  private final int numParsers;
+  private final int queueCapacity;
+  private final CoordinateStore.Precision precision;
+
+  /**
+  * Construct a PDBBatchLoader with 4 reader threads, a parser thread for each available
+  * processor, and room for 2 files per parser in each queue.
+  */
+  public PDBBatchLoader(){
+    this(4, Runtime.getRuntime().availableProcessors(),
+        2 * Runtime.getRuntime().availableProcessors(), CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Construct a PDBBatchLoader.
+  * @param numReaders the number of threads reading files
+  * @param numParsers the number of threads building Proteins out of the files read
+  * @param queueCapacity the number of files each of the queues between the readers, the parsers,
+  * and the consumer can hold
+  * @param precision the precision to hold the coordinates of the Proteins in
+  * @throws IllegalArgumentException if numReaders, numParsers, or queueCapacity is less than 1
+  */
+  public PDBBatchLoader(int numReaders, int numParsers, int queueCapacity,
+      CoordinateStore.Precision precision){
+    if(numReaders < 1 || numParsers < 1 || queueCapacity < 1){
+      throw new IllegalArgumentException(String.format(
+          "numReaders (%d), numParsers (%d), and queueCapacity (%d) must all be at least 1.",
+          numReaders, numParsers, queueCapacity));
+    }
+    this.numReaders = numReaders;
+    this.numParsers = numParsers;
+    this.queueCapacity = queueCapacity;
+    this.precision = precision;
+  }
+
+  /**
+  * Load every file in a directory whose name ends in .pdb or .pdb.gz. Subdirectories are not
+  * searched.
+  * @param directory the directory holding the PDB files
+  * @param consumer called, on this thread, with the path and Protein of each file loaded
+  * @return the exception each file that could not be loaded failed with, by path
+  * @throws IOException if the directory can not be listed
+  * @throws InterruptedException if this thread is interrupted while waiting for a Protein
+  */
+  public Map<Path, Exception> loadDirectory(Path directory, BiConsumer<Path, Protein> consumer)
+      throws IOException, InterruptedException{
+    ArrayList<Path> paths = new ArrayList<Path>();
+    try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{pdb,pdb.gz}")){
+      for(Path path : files){
+        if(Files.isRegularFile(path)){
+          paths.add(path);
+        }
+      }
+    }
+    Collections.sort(paths);
+    return load(paths, consumer);
+  }
+
+  /**
+  * Load every file listed in a manifest. The manifest lists one path per line. Relative paths are
+  * relative to the directory the manifest is in. Blank lines and lines starting with # are
+  * skipped.
+  * @param manifest the path of the manifest
+  * @param consumer called, on this thread, with the path and Protein of each file loaded
+  * @return the exception each file that could not be loaded failed with, by path
+  * @throws IOException if the manifest can not be read
+  * @throws InterruptedException if this thread is interrupted while waiting for a Protein
+  */
+  public Map<Path, Exception> loadManifest(Path manifest, BiConsumer<Path, Protein> consumer)
+      throws IOException, InterruptedException{
+    Path directory = manifest.toAbsolutePath().getParent();
+    ArrayList<Path> paths = new ArrayList<Path>();
+    try(BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)){
+      String line;
+      while((line = reader.readLine()) != null){
+        line = line.trim();
+        if(!line.isEmpty() && !line.startsWith("#")){
+          paths.add(directory.resolve(line));
+        }
+      }
+    }
+    return load(paths, consumer);
+  }
+
+  /**
+  * Load a list of PDB files, any of which may be gzip compressed. The consumer is called as each
+  * Protein is built, not in the order of the list. The name of each Protein is the name of its
+  * file without the extension (and without .gz).
+  * @param paths the paths of the PDB files
+  * @param consumer called, on this thread, with the path and Protein of each file loaded
+  * @return the exception each file that could not be loaded failed with, by path
+  * @throws InterruptedException if this thread is interrupted while waiting for a Protein
+  */
+  public Map<Path, Exception> load(List<Path> paths, BiConsumer<Path, Protein> consumer)
+      throws InterruptedException{
+    final BlockingQueue<FileContents> readQueue =
+        new ArrayBlockingQueue<FileContents>(this.queueCapacity);
+    final BlockingQueue<LoadResult> resultQueue =
+        new ArrayBlockingQueue<LoadResult>(this.queueCapacity);
+    final AtomicInteger nextPath = new AtomicInteger(0);
+    ExecutorService readers =
+        Executors.newFixedThreadPool(this.numReaders, PDBBatchLoader::newDaemonThread);
+    ExecutorService parsers =
+        Executors.newFixedThreadPool(this.numParsers, PDBBatchLoader::newDaemonThread);
+    TreeMap<Path, Exception> failures = new TreeMap<Path, Exception>();
+    try{
+      for(int i = 0; i < this.numReaders; i++){
+        readers.execute(() -> readFiles(paths, nextPath, readQueue, resultQueue));
+      }
+      for(int i = 0; i < this.numParsers; i++){
+        parsers.execute(() -> parseFiles(readQueue, resultQueue));
+      }
+      for(int i = 0; i < paths.size(); i++){
+        LoadResult result = resultQueue.take();
+        if(result.error instanceof Error){
+          throw (Error) result.error;
+        }
+        if(result.error != null){
+          failures.put(result.path, (Exception) result.error);
+        } else {
+          consumer.accept(result.path, result.protein);
+        }
+      }
+    } finally {
+      // stops the workers if the load is cut short by the consumer, an Error, or an interrupt
+      readers.shutdownNow();
+      parsers.shutdownNow();
+    }
+    return failures;
+  }
+
+  /**
+  * Read files until every path has been taken, passing their contents to the parsers.
+  */
+  private static void readFiles(List<Path> paths, AtomicInteger nextPath,
+      BlockingQueue<FileContents> readQueue, BlockingQueue<LoadResult> resultQueue){
+    try{
+      int i;
+      while((i = nextPath.getAndIncrement()) < paths.size()){
+        Path path = paths.get(i);
+        byte[] bytes;
+        try{
+          bytes = Files.readAllBytes(path);
+        } catch(Throwable e){
+          // an OutOfMemoryError reading one large file must not leave its path without a result
+          resultQueue.put(new LoadResult(path, null, e));
+          continue;
+        }
+        readQueue.put(new FileContents(path, bytes));
+      }
+    } catch(InterruptedException e){
+      // the load has been stopped
+    }
+  }
+
+  /**
+  * Build Proteins out of the contents of files until the load is stopped.
+  */
+  private void parseFiles(BlockingQueue<FileContents> readQueue,
+      BlockingQueue<LoadResult> resultQueue){
+    try{
+      while(true){
+        FileContents file = readQueue.take();
+        LoadResult result;
+        try{
+          Protein protein = PDBFileIO.getThreadInstance().readInPDBFile(
+              ByteBuffer.wrap(file.bytes), getFileNameBase(file.path), this.precision);
+          result = new LoadResult(file.path, protein, null);
+        } catch(Throwable e){
+          result = new LoadResult(file.path, null, e);
+        }
+        resultQueue.put(result);
+      }
+    } catch(InterruptedException e){
+      // the load has been stopped
+    }
+  }
+
+  static String getFileNameBase(Path path){
+    String fileName = path.getFileName().toString();
+    if(fileName.endsWith(".gz")){
+      fileName = fileName.substring(0, fileName.length() - 3);
+    }
+    int extension = fileName.lastIndexOf('.');
+    return extension > 0 ? fileName.substring(0, extension) : fileName;
+  }
+
+  private static Thread newDaemonThread(Runnable runnable){
+    Thread thread = new Thread(runnable, "PDBBatchLoader");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static class FileContents{
+    private final Path path;
+    private final byte[] bytes;
+
+    public FileContents(Path path, byte[] bytes){
+      this.path = path;
+      this.bytes = bytes;
+    }
+  }
+
+  private static class LoadResult{
+    private final Path path;
+    private final Protein protein;
+    private final Throwable error;
+
+    public LoadResult(Path path, Protein protein, Throwable error){
+      this.path = path;
+      this.protein = protein;
+      this.error = error;
+    }
+  }
+}
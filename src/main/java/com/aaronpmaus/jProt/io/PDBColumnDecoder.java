@@ -0,0 +1,324 @@
+package com.aaronpmaus.jProt.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+* A PDBColumnDecoder decodes the fixed width columns of PDB records straight from the bytes of a
+* ByteBuffer, without building a String for each line or field. Columns are given as in
+* String::substring(), a start (inclusive) and end (exclusive) index relative to the start of a
+* line, and a column past the end of the line reads as blank, as if the line were padded to 80
+* characters.
+* <p>
+* Integers and fixed point decimals (coordinates, occupancy, temperature factor) are decoded with
+* hand written decoders. The decimals are decoded to exactly the double Double::parseDouble()
+* would return. Short text fields (atom names, residue names, chain IDs, etc) come from a cache
+* so that each distinct value is only made into a String once per decoder.
+* <p>
+* A PDBColumnDecoder is not thread safe.
+* @version 0.8.0
+* @since 0.8.0
+*/
+final class PDBColumnDecoder {
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  // the largest mantissa that a double holds exactly
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  // text fields no longer than this are cached
+  private static final int MAX_CACHED_LENGTH = 7;
+
+  private ByteBuffer buffer;
+  private int lineStart;
+  private int lineEnd;
+  // open addressing cache of short text fields. A key holds the length of the field in its low
+  // byte and the bytes of the field above it. 0 marks an empty entry.
+  private long[] cacheKeys;
+  private String[] cacheValues;
+  private int cacheSize;
+
+  PDBColumnDecoder(){
+    this.cacheKeys = new long[256];
+    this.cacheValues = new String[256];
+    this.cacheSize = 0;
+  }
+
+  /**
+  * Set the line that columns are decoded from.
+  * @param buffer the buffer holding the line
+  * @param lineStart the index in buffer of the first character of the line
+  * @param lineEnd the index in buffer one past the last character of the line, not counting the
+  * line terminator
+  */
+  void setLine(ByteBuffer buffer, int lineStart, int lineEnd){
+    this.buffer = buffer;
+    this.lineStart = lineStart;
+    this.lineEnd = lineEnd;
+  }
+
+  /**
+  * @return the number of characters in the current line
+  */
+  int getLineLength(){
+    return this.lineEnd - this.lineStart;
+  }
+
+  /**
+  * @param column a column of the current line
+  * @return the character in that column, a space if it is past the end of the line
+  */
+  int charAt(int column){
+    int index = this.lineStart + column;
+    if(index >= this.lineEnd){
+      return ' ';
+    }
+    return this.buffer.get(index) & 0xff;
+  }
+
+  /**
+  * Check whether the trimmed text of a column range is equal to some text. Used to check record
+  * names without building Strings.
+  * @param start the first column
+  * @param end one past the last column
+  * @param text the text to compare against, with no leading or trailing whitespace
+  * @return true if the trimmed columns are equal to text
+  */
+  boolean equalsTrimmed(int start, int end, String text){
+    while(start < end && isWhitespace(charAt(start))){
+      start++;
+    }
+    while(end > start && isWhitespace(charAt(end - 1))){
+      end--;
+    }
+    if(end - start != text.length()){
+      return false;
+    }
+    for(int i = 0; i < text.length(); i++){
+      if(charAt(start + i) != text.charAt(i)){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+  * @param start the first column
+  * @param end one past the last column
+  * @return true if every column in the range is whitespace
+  */
+  boolean isBlank(int start, int end){
+    for(int column = start; column < end; column++){
+      if(!isWhitespace(charAt(column))){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+  * Decode the trimmed text of a column range. Short text is returned from a cache of the values
+  * this decoder has already seen.
+  * @param start the first column
+  * @param end one past the last column
+  * @return the trimmed text of the columns, as String::trim() would return it
+  */
+  String decodeString(int start, int end){
+    while(start < end && isWhitespace(charAt(start))){
+      start++;
+    }
+    while(end > start && isWhitespace(charAt(end - 1))){
+      end--;
+    }
+    int length = end - start;
+    if(length == 0){
+      return "";
+    }
+    if(length > MAX_CACHED_LENGTH){
+      return newString(start, end);
+    }
+    long key = 0;
+    for(int column = start; column < end; column++){
+      key = (key << 8) | charAt(column);
+    }
+    key = (key << 8) | length;
+    int mask = this.cacheKeys.length - 1;
+    int slot = hash(key) & mask;
+    while(this.cacheKeys[slot] != 0){
+      if(this.cacheKeys[slot] == key){
+        return this.cacheValues[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    String value = newString(start, end);
+    this.cacheKeys[slot] = key;
+    this.cacheValues[slot] = value;
+    this.cacheSize++;
+    if(this.cacheSize * 2 > this.cacheKeys.length){
+      growCache();
+    }
+    return value;
+  }
+
+  /**
+  * Decode a column range holding an integer, surrounded by any amount of whitespace.
+  * @param start the first column
+  * @param end one past the last column
+  * @return the integer in the columns
+  * @throws NumberFormatException if the trimmed columns are not an integer
+  */
+  int decodeInt(int start, int end){
+    while(start < end && isWhitespace(charAt(start))){
+      start++;
+    }
+    while(end > start && isWhitespace(charAt(end - 1))){
+      end--;
+    }
+    int column = start;
+    boolean negative = false;
+    if(column < end && (charAt(column) == '-' || charAt(column) == '+')){
+      negative = charAt(column) == '-';
+      column++;
+    }
+    // at most 9 digits always fit in an int, fall back to Integer::parseInt() for anything else
+    if(column == end || end - column > 9){
+      return Integer.parseInt(newString(start, end));
+    }
+    int value = 0;
+    for(; column < end; column++){
+      int digit = charAt(column) - '0';
+      if(digit < 0 || digit > 9){
+        return Integer.parseInt(newString(start, end));
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+  * Decode a column range holding a fixed point decimal number such as a coordinate, surrounded by
+  * any amount of whitespace. The result is exactly what Double::parseDouble() returns for the
+  * trimmed columns.
+  * @param start the first column
+  * @param end one past the last column
+  * @return the number in the columns
+  * @throws NumberFormatException if the trimmed columns are not a number
+  */
+  double decodeDouble(int start, int end){
+    while(start < end && isWhitespace(charAt(start))){
+      start++;
+    }
+    while(end > start && isWhitespace(charAt(end - 1))){
+      end--;
+    }
+    int column = start;
+    boolean negative = false;
+    if(column < end && (charAt(column) == '-' || charAt(column) == '+')){
+      negative = charAt(column) == '-';
+      column++;
+    }
+    long mantissa = 0;
+    int numDigits = 0;
+    int numDecimals = -1;
+    for(; column < end; column++){
+      int c = charAt(column);
+      if(c == '.' && numDecimals == -1){
+        numDecimals = 0;
+        continue;
+      }
+      int digit = c - '0';
+      if(digit < 0 || digit > 9 || numDigits == 18){
+        // exponents, stray characters, and very long numbers are left to Double::parseDouble()
+        return Double.parseDouble(newString(start, end));
+      }
+      mantissa = mantissa * 10 + digit;
+      numDigits++;
+      if(numDecimals != -1){
+        numDecimals++;
+      }
+    }
+    if(numDigits == 0 || mantissa >= MAX_EXACT_MANTISSA){
+      return Double.parseDouble(newString(start, end));
+    }
+    // both operands are exact doubles, so the division is correctly rounded, as parseDouble() is
+    double value = mantissa / POWERS_OF_TEN[Math.max(numDecimals, 0)];
+    return negative ? -value : value;
+  }
+
+  /**
+  * Decode the charge column of an ATOM record. By PDB Specification, the charge should be 2+, 1-,
+  * etc, but it could also be +2, -1, etc, or even simply 1, 2.
+  * @param start the first column of the charge
+  * @param end one past the last column of the charge
+  * @return the charge, 0 if the columns are blank or can not be read
+  */
+  double decodeCharge(int start, int end){
+    while(start < end && isWhitespace(charAt(start))){
+      start++;
+    }
+    while(end > start && isWhitespace(charAt(end - 1))){
+      end--;
+    }
+    double charge = 0;
+    if(end - start == 1){
+      if(isDigit(charAt(start))){
+        charge = charAt(start) - '0';
+      }
+    } else if(end - start == 2){
+      int first = charAt(start);
+      int second = charAt(start + 1);
+      if(isDigit(first)){
+        charge = first - '0';
+        if(second == '-'){
+          charge *= -1;
+        }
+      } else if(isDigit(second)){
+        charge = second - '0';
+        if(first == '-'){
+          charge *= -1;
+        }
+      }
+    }
+    return charge;
+  }
+
+  private String newString(int start, int end){
+    byte[] bytes = new byte[end - start];
+    for(int column = start; column < end; column++){
+      bytes[column - start] = (byte) charAt(column);
+    }
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  private void growCache(){
+    long[] oldKeys = this.cacheKeys;
+    String[] oldValues = this.cacheValues;
+    this.cacheKeys = new long[oldKeys.length * 2];
+    this.cacheValues = new String[oldKeys.length * 2];
+    int mask = this.cacheKeys.length - 1;
+    for(int i = 0; i < oldKeys.length; i++){
+      if(oldKeys[i] != 0){
+        int slot = hash(oldKeys[i]) & mask;
+        while(this.cacheKeys[slot] != 0){
+          slot = (slot + 1) & mask;
+        }
+        this.cacheKeys[slot] = oldKeys[i];
+        this.cacheValues[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int hash(long key){
+    key *= 0x9E3779B97F4A7C15L;
+    return (int) (key ^ (key >>> 32));
+  }
+
+  private static boolean isWhitespace(int c){
+    // the characters that String::trim() removes
+    return c <= ' ';
+  }
+
+  private static boolean isDigit(int c){
+    return c >= '0' && c <= '9';
+  }
+}
@@ -2,20 +2,30 @@ package com.aaronpmaus.jProt.io;
 
 import com.aaronpmaus.jProt.protein.*;
 
-import com.aaronpmaus.jMath.linearAlgebra.Vector3D;
-
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 
 import java.io.FileInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 /**
 * Provides the ability to read in and write out PDB Files. Every protein has its own
@@ -30,27 +40,184 @@ import java.io.IOException;
 * <br>
 * {@code Protein prot = PDBFileIO.readInPDBFile(in, proteinName)}
 * <p>
+* To read many files back to back, reuse one instance per thread, calling reset() between files,
+* or get this thread's instance with PDBFileIO.getThreadInstance(). Its record lists and buffers
+* are reused from one file to the next.
+* <p>
 * @author Aaron Maus aaron@aaronpmaus.com
 * @version 0.6.0
 * @since 0.6.0
 */
 public class PDBFileIO{
-  private ArrayList<String> fileLines;
+  // a buffer larger than this is not kept for the next file once a file has been read
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 24;
+  private static final ThreadLocal<PDBFileIO> THREAD_INSTANCE =
+      ThreadLocal.withInitial(PDBFileIO::new);
+
   private ArrayList<SSBondRecord> ssBonds;
   private ArrayList<AtomRecord> atomRecords;
   private static HashMap<String,ArrayList<AtomRecord>> defaultResiduesRecords =
       readInDefaultResidues();
   private boolean proteinReadIn = false;
+  // reused from one file to the next
+  private PDBColumnDecoder decoder;
+  // allocated on the first stream read, as most PDBFileIOs never read a stream
+  private byte[] streamBytes;
+  private AtomSelection atomSelection;
+  private PDBRecordFilter recordFilter;
+  // the residue whose atoms were last read in and the first alternate location ID in it, or a
+  // space if none of its records has had one yet
+  private String altLocChainID;
+  private int altLocResSeq;
+  private int altLocID;
+
+  /**
+  * The atoms of each residue that are kept when a PDB file is read in. Reading in only some of
+  * the atoms of each residue skips building the rest of them, the bonds of the residues, and the
+  * disulfide bonds, which is much faster when only those atoms are needed, for example for CA
+  * distance matrices.
+  * <p>
+  * Whatever atoms are kept, a residue is only read in if it has N, CA, and C atoms, so the same
+  * residues are read in as when all atoms are kept.
+  * @since 0.8.0
+  */
+  public enum AtomSelection {
+    /** Keep every atom. The residues and chains are built with all their bonds. */
+    ALL_ATOMS(),
+    /** Keep only the N, CA, C, and O atoms of each residue. No bonds are built. */
+    BACKBONE("N", "CA", "C", "O"),
+    /** Keep only the CA atom of each residue. No bonds are built. */
+    CA_ONLY("CA");
+
+    private final String[] atomNames;
+
+    private AtomSelection(String... atomNames){
+      this.atomNames = atomNames;
+    }
+
+    /**
+    * @param atomName the name of an atom
+    * @return true if atoms with this name are kept
+    */
+    public boolean keeps(String atomName){
+      if(this == ALL_ATOMS){
+        return true;
+      }
+      for(String name : this.atomNames){
+        if(name.equals(atomName)){
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // true if the record on the current line of line names an atom that is kept, or one of the
+    // backbone atoms a residue must have to be read in
+    private boolean isNeeded(PDBColumnDecoder line){
+      if(this == ALL_ATOMS || line.equalsTrimmed(12,16,"N") || line.equalsTrimmed(12,16,"CA")
+          || line.equalsTrimmed(12,16,"C")){
+        return true;
+      }
+      for(String name : this.atomNames){
+        if(line.equalsTrimmed(12,16,name)){
+          return true;
+        }
+      }
+      return false;
+    }
+  }
 
   public PDBFileIO(){
-    fileLines = new ArrayList<String>();
     ssBonds = new ArrayList<SSBondRecord>();
     atomRecords = new ArrayList<AtomRecord>();
+    decoder = new PDBColumnDecoder();
+    streamBytes = null;
+    atomSelection = AtomSelection.ALL_ATOMS;
+    recordFilter = PDBRecordFilter.ACCEPT_ALL;
+    altLocChainID = null;
+    altLocID = ' ';
+  }
+
+  /**
+  * Set the filter that selects which ATOM records are read in. Records are checked against the
+  * filter before they are parsed. By default, every record is read in.
+  * @param recordFilter the filter to check records against
+  * @since 0.8.0
+  */
+  public void setRecordFilter(PDBRecordFilter recordFilter){
+    this.recordFilter = recordFilter;
+  }
+
+  /**
+  * @return the filter that selects which ATOM records are read in
+  * @since 0.8.0
+  */
+  public PDBRecordFilter getRecordFilter(){
+    return this.recordFilter;
+  }
+
+  /**
+  * Set which atoms of each residue are kept when a PDB file is read in. By default, every atom is
+  * kept.
+  * @param atomSelection the atoms to keep
+  * @since 0.8.0
+  */
+  public void setAtomSelection(AtomSelection atomSelection){
+    this.atomSelection = atomSelection;
+  }
+
+  /**
+  * @return which atoms of each residue are kept when a PDB file is read in
+  * @since 0.8.0
+  */
+  public AtomSelection getAtomSelection(){
+    return this.atomSelection;
+  }
+
+  /**
+  * Return this thread's PDBFileIO, reset and ready to read in another PDB file. Each thread has
+  * its own instance, so a worker thread can read file after file without building a new parser,
+  * and new record lists and buffers, for each one.
+  * <p>
+  * The Proteins read in by the instance only use it to write themselves out to file, which
+  * does not depend on what has been read in, so they are not affected by it being reused.
+  * @return this thread's PDBFileIO
+  * @since 0.8.0
+  */
+  public static PDBFileIO getThreadInstance(){
+    PDBFileIO pdb = THREAD_INSTANCE.get();
+    pdb.reset();
+    return pdb;
   }
 
   /**
-  * Read in a PDB file and return a Protein. A PDBFileIO Object can only call this method once.
-  * If you wish to read in multiple pdb file, you must instantiate a PDBFileIO object for each.
+  * Reset this PDBFileIO so that it can read in another PDB file. The lists holding the records of
+  * the last file are cleared, not replaced, and the buffers used to read it are kept, so reading
+  * files one after another with a single instance does not allocate them again for each file.
+  * The atom selection is set back to AtomSelection.ALL_ATOMS and the record filter to
+  * PDBRecordFilter.ACCEPT_ALL.
+  * @since 0.8.0
+  */
+  public void reset(){
+    this.ssBonds.clear();
+    this.atomRecords.clear();
+    this.proteinReadIn = false;
+    this.atomSelection = AtomSelection.ALL_ATOMS;
+    this.recordFilter = PDBRecordFilter.ACCEPT_ALL;
+    this.altLocChainID = null;
+    this.altLocID = ' ';
+    if(this.streamBytes != null && this.streamBytes.length > MAX_RETAINED_BUFFER_SIZE){
+      this.streamBytes = null;
+    }
+  }
+
+  /**
+  * Read in a PDB file and return a Protein. A PDBFileIO Object can only call this method once
+  * until it is reset(). If you wish to read in multiple pdb file, you must either reset() it
+  * between them or instantiate a PDBFileIO object for each.
+  * <p>
+  * If the file holds several models, as NMR ensembles and trajectories do, only the first is
+  * read. Use a PDBModelReader to read all of them.
   * <p>
   * This method does not close the InputStream. It is the clients job to do so.
   * <p>
@@ -60,86 +227,281 @@ public class PDBFileIO{
   * @throws IllegalStateException if this method is attempted to be called more than once.
   */
   public Protein readInPDBFile(InputStream inputStream, String pdbFileNameBase){
-    if(this.proteinReadIn){
-      throw new IllegalStateException("A PDBFileIO Object can only read in a single PDB. " +
-          " If you wish to read in a second PDB file, you must instantiate another PDBFileIO.");
-    }
+    return readInPDBFile(inputStream, pdbFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Read in a PDB file and return a Protein whose coordinates are held in the given precision. A
+  * PDBFileIO Object can only call this method once.
+  * <p>
+  * {@code CoordinateStore.Precision.SINGLE} stores coordinates as floats. This roughly halves the
+  * memory used by coordinates and is precise enough to hold the 3 decimal places of the PDB
+  * format, so they are written back out unchanged.
+  * <p>
+  * The stream may be gzip compressed, as .pdb.gz files are. Compressed streams are recognized by
+  * their first bytes and are inflated on a separate thread while the records are parsed.
+  * <p>
+  * This method does not close the InputStream. It is the clients job to do so.
+  * <p>
+  * @param inputStream the inputStream to read from
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the information in this PDB
+  * @throws IllegalStateException if this method is attempted to be called more than once.
+  * @throws UncheckedIOException if reading from inputStream fails
+  * @since 0.8.0
+  */
+  public Protein readInPDBFile(InputStream inputStream, String pdbFileNameBase,
+      CoordinateStore.Precision precision){
+    checkNotReadIn();
     this.proteinReadIn = true;
-    Scanner in = new Scanner(inputStream);
+    try{
+      readRecords(inputStream);
+    } catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    return constructProteinInScope(pdbFileNameBase, precision);
+  }
+
+  /**
+  * Read in a PDB file by memory mapping it and return a Protein. A PDBFileIO Object can only call
+  * this method once.
+  * <p>
+  * The records are parsed straight from the bytes of the mapped file, see
+  * readInPDBFile(ByteBuffer, String, CoordinateStore.Precision).
+  * @param path the path of the PDB file, which must be smaller than 2 GB
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @return the Protein built from the information in this PDB
+  * @throws IOException if the file can not be opened or mapped
+  * @throws IllegalStateException if this method is attempted to be called more than once.
+  * @since 0.8.0
+  */
+  public Protein readInPDBFile(Path path, String pdbFileNameBase) throws IOException{
+    return readInPDBFile(path, pdbFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
 
-    while(in.hasNextLine()){
-      String line = in.nextLine();
-      if(line.length() < 80){
-        line = padRight(line);
+  /**
+  * Read in a PDB file by memory mapping it and return a Protein whose coordinates are held in the
+  * given precision. A PDBFileIO Object can only call this method once.
+  * <p>
+  * The file may be gzip compressed, in which case it is inflated on a separate thread while the
+  * records are parsed.
+  * @param path the path of the PDB file, which must be smaller than 2 GB
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the information in this PDB
+  * @throws IOException if the file can not be opened or mapped
+  * @throws IllegalStateException if this method is attempted to be called more than once.
+  * @since 0.8.0
+  */
+  public Protein readInPDBFile(Path path, String pdbFileNameBase,
+      CoordinateStore.Precision precision) throws IOException{
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+      if(channel.size() > Integer.MAX_VALUE){
+        throw new IOException(String.format("%s is too large to map.", path));
       }
-      String recordName = line.substring(0,6).trim();
-      switch(recordName){
-        case "SSBOND":
-          ssBonds.add(parseSSBondLine(line));
-          break;
-        case "ATOM":
-          atomRecords.add(parseAtomLine(line));
-          break;
-        case "TER":
-          break;
-        case "END":
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return readInPDBFile(buffer, pdbFileNameBase, precision);
+    }
+  }
+
+  /**
+  * Read in a PDB file held in a ByteBuffer and return a Protein. A PDBFileIO Object can only call
+  * this method once.
+  * <p>
+  * The records from buffer.position() to buffer.limit() are parsed straight from the bytes of
+  * the buffer. The fixed width columns of each record are decoded in place, so no String is built
+  * for any line. The position of buffer is not changed.
+  * @param buffer the buffer holding the contents of a PDB file
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @return the Protein built from the information in this PDB
+  * @throws IllegalStateException if this method is attempted to be called more than once.
+  * @since 0.8.0
+  */
+  public Protein readInPDBFile(ByteBuffer buffer, String pdbFileNameBase){
+    return readInPDBFile(buffer, pdbFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Read in a PDB file held in a ByteBuffer and return a Protein whose coordinates are held in the
+  * given precision. A PDBFileIO Object can only call this method once.
+  * <p>
+  * If the buffer holds a gzip compressed file, it is inflated on a separate thread while the
+  * records are parsed.
+  * @param buffer the buffer holding the contents of a PDB file
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the information in this PDB
+  * @throws IllegalStateException if this method is attempted to be called more than once.
+  * @throws UncheckedIOException if the buffer holds a gzip file that can not be inflated
+  * @since 0.8.0
+  */
+  public Protein readInPDBFile(ByteBuffer buffer, String pdbFileNameBase,
+      CoordinateStore.Precision precision){
+    checkNotReadIn();
+    this.proteinReadIn = true;
+    if(buffer.remaining() >= 2 && PipelinedGzipInputStream.isGzipMagic(
+        buffer.get(buffer.position()) & 0xff, buffer.get(buffer.position() + 1) & 0xff)){
+      try{
+        readRecords(new ByteBufferInputStream(buffer.duplicate()));
+      } catch(IOException e){
+        throw new UncheckedIOException(e);
+      }
+      return constructProteinInScope(pdbFileNameBase, precision);
+    }
+    PDBColumnDecoder decoder = this.decoder;
+    int position = buffer.position();
+    while(position < buffer.limit()){
+      position = nextLine(buffer, position, decoder);
+      // only the first model of an ensemble is read. PDBModelReader reads the others.
+      if(decoder.equalsTrimmed(0,6,"ENDMDL")){
+        break;
+      }
+      addRecord(decoder);
+    }
+    // don't hold on to the buffer, which may be a mapped file, while this PDBFileIO is kept
+    decoder.setLine(null, 0, 0);
+    return constructProteinInScope(pdbFileNameBase, precision);
+  }
+
+  /**
+  * Read the records from a stream, inflating it on a separate thread if it is gzip compressed.
+  */
+  private void readRecords(InputStream inputStream) throws IOException{
+    try(InputStream stream = PipelinedGzipInputStream.inflateIfCompressed(inputStream)){
+      readLines(stream);
+    }
+  }
+
+  private void readLines(InputStream inputStream) throws IOException{
+    if(this.streamBytes == null){
+      this.streamBytes = new byte[1 << 16];
+    }
+    PDBLineReader lines = new PDBLineReader(inputStream, this.streamBytes);
+    try{
+      while(lines.nextLine(this.decoder)){
+        // only the first model of an ensemble is read. PDBModelReader reads the others.
+        if(this.decoder.equalsTrimmed(0,6,"ENDMDL")){
           break;
+        }
+        addRecord(this.decoder);
+      }
+    } finally {
+      this.streamBytes = lines.getBytes();
+      this.decoder.setLine(null, 0, 0);
+    }
+  }
+
+  /**
+  * Add the record on the current line of decoder to the records the Protein will be built from.
+  * Lines that are not ATOM or SSBOND records are ignored.
+  * @param line the decoder pointing at the line holding the record
+  */
+  void addRecord(PDBColumnDecoder line){
+    if(line.equalsTrimmed(0,6,"ATOM")){
+      // records of atoms that will not be kept are skipped before they are parsed
+      if(this.atomSelection.isNeeded(line) && this.recordFilter.accepts(line)
+          && (!this.recordFilter.isFirstAltLocOnly() || isFirstAltLoc(line))){
+        atomRecords.add(parseAtomRecord(line));
       }
+    } else if(line.equalsTrimmed(0,6,"SSBOND")){
+      ssBonds.add(parseSSBondRecord(line));
+    }
+  }
+
+  /**
+  * @param line the decoder pointing at an ATOM record
+  * @return true if the altLoc column of the record is blank or holds the first alternate location
+  * ID of its residue
+  */
+  private boolean isFirstAltLoc(PDBColumnDecoder line){
+    int altLoc = line.charAt(16);
+    if(altLoc == ' '){
+      return true;
+    }
+    String chainID = line.decodeString(21,22);
+    int resSeq = line.decodeInt(22,26);
+    if(resSeq != this.altLocResSeq || !chainID.equals(this.altLocChainID)){
+      this.altLocChainID = chainID;
+      this.altLocResSeq = resSeq;
+      this.altLocID = ' ';
+    }
+    if(this.altLocID == ' '){
+      this.altLocID = altLoc;
+    }
+    return altLoc == this.altLocID;
+  }
+
+  /**
+  * Build the Protein out of the records that have been added. A PDBFileIO Object can only build
+  * one Protein.
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  * @return the Protein built from the records
+  * @throws IllegalStateException if a Protein has already been read in
+  */
+  Protein buildProtein(String pdbFileNameBase, CoordinateStore.Precision precision){
+    checkNotReadIn();
+    this.proteinReadIn = true;
+    return constructProteinInScope(pdbFileNameBase, precision);
+  }
+
+  private Protein constructProteinInScope(String pdbFileNameBase,
+      CoordinateStore.Precision precision){
+    // build the protein in its own scope so that reading PDBs on several threads is safe and
+    // numbers any atoms without serial numbers the same way every time
+    IdAllocator.Scope scope = IdAllocator.openScope();
+    try{
+      return constructProtein(pdbFileNameBase, precision);
+    } finally {
+      scope.close();
     }
-    return constructProtein(pdbFileNameBase);
   }
 
   /**
   * Write prot out to file.
+  * <p>
+  * The records are formatted by a PDBWriter and passed to outputStream in large blocks.
   * @param outputStream the OutputStreamWriter to write out to
   * @param prot the Protein to write out to file.
   * @throws IOException if an I/O error occurs
   */
   public void writeToPDB(OutputStreamWriter outputStream, Protein prot) throws IOException{
-    String chainID = null;
-    int resID = -1;
-    String resName = null;
-    int serialNum = -1;
-    for(PolypeptideChain chain : prot){
-      chainID = chain.getChainID();
-      for(Residue res : chain){
-        resID = res.getResidueID();
-        resName = res.getThreeLetterName();
-        for(Atom atom : res){
-          serialNum = atom.getSerialNumber();
-          String altLoc = " ";
-          String iCode = " ";
-          Vector3D loc = atom.getCoordinates();
-          AtomRecord atomRecord = new AtomRecord(serialNum, atom.getName(), altLoc,
-              resName, chainID, resID, iCode, loc.getX().doubleValue(), loc.getY().doubleValue(),
-              loc.getZ().doubleValue(), atom.getOccupancy(), atom.getTempFactor(),
-              atom.getElement(), atom.getCharge());
-          outputStream.write(atomRecord.toString());
-          outputStream.flush();
-        }
-      }
-      String ter = String.format("%-6s%5d      %s %s%4s\n",
-          "TER", serialNum+1, resName, chainID, resID);
-      outputStream.write(ter);
-      outputStream.flush();
-    }
-    String end = "END\n";
-    outputStream.write(end);
-    outputStream.flush();
+    PDBWriter writer = new PDBWriter(new WriterOutputStream(outputStream));
+    writer.writeProtein(prot);
+    writer.writeEnd();
+    writer.flush();
+  }
+
+  /**
+  * Write prot out to a stream. The records are formatted by a PDBWriter, which writes them to the
+  * stream in large blocks. The stream is flushed, but not closed.
+  * @param outputStream the OutputStream to write out to
+  * @param prot the Protein to write out to file.
+  * @throws IOException if an I/O error occurs
+  * @since 0.8.0
+  */
+  public void writeToPDB(OutputStream outputStream, Protein prot) throws IOException{
+    PDBWriter writer = new PDBWriter(outputStream);
+    writer.writeProtein(prot);
+    writer.writeEnd();
+    writer.flush();
   }
 
   private static HashMap<String, ArrayList<AtomRecord>> readInDefaultResidues(){
-    InputStream stream = PDBFileIO.class.getResourceAsStream("residues.pdb");
-    Scanner in = new Scanner(stream);
+    ByteBuffer buffer;
+    try(InputStream stream = PDBFileIO.class.getResourceAsStream("residues.pdb")){
+      buffer = readAllBytes(stream, new byte[1 << 16]);
+    } catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    PDBColumnDecoder decoder = new PDBColumnDecoder();
     ArrayList<AtomRecord> allResAtomRecords = new ArrayList<AtomRecord>();
-    while(in.hasNextLine()){
-      String line = in.nextLine();
-      if(line.length() < 80){
-        line = padRight(line);
-      }
-      allResAtomRecords.add(parseAtomLine(line));
+    int position = 0;
+    while(position < buffer.limit()){
+      position = nextLine(buffer, position, decoder);
+      allResAtomRecords.add(parseAtomRecord(decoder));
     }
-    in.close();
     return buildDefaultResiduesLists(allResAtomRecords);
   }
 
@@ -171,13 +533,13 @@ public class PDBFileIO{
   /*
   * Build HashMap of the lists of AtomRecords for each residue in a chain.
   * the key is the residueID, the value is an ArrayList holding all the atomRecords for
-  * that residue.
+  * that residue. The residues are iterated over in the order they first appear in atomRecords.
   */
   public HashMap<Integer, ArrayList<AtomRecord>> getResidueRecordsLists(
       Collection<AtomRecord> atomRecords){
 
     HashMap<Integer, ArrayList<AtomRecord>> residueRecordsLists =
-        new HashMap<Integer, ArrayList<AtomRecord>>();
+        new LinkedHashMap<Integer, ArrayList<AtomRecord>>();
     // add all atom records to their respective residue atomRecords lists.
     // At this point, the residueRecordsLists is empty. After this loop, it will
     // contain an arrayList of atomRecords for every residueID.
@@ -235,10 +597,10 @@ public class PDBFileIO{
 
   /**
   * Get a list all the chainIDs in this PDB.
-  * @return a list of all the chainIDs in this PDB.
+  * @return a list of all the chainIDs in this PDB, in the order they first appear in the file.
   */
   public Collection<String> getListOfChainIDs(){
-    HashSet<String> chainIDs = new HashSet<String>();
+    LinkedHashSet<String> chainIDs = new LinkedHashSet<String>();
     for(AtomRecord rec : this.atomRecords){
       chainIDs.add(rec.getChainID());
     }
@@ -249,146 +611,183 @@ public class PDBFileIO{
     return new ArrayList<SSBondRecord>(this.ssBonds);
   }
 
-  private static String padRight(String line){
-    return String.format("%-" + 80 + "s", line);
+  private void checkNotReadIn(){
+    if(this.proteinReadIn){
+      throw new IllegalStateException("A PDBFileIO Object can only read in a single PDB. " +
+          " If you wish to read in a second PDB file, you must reset() this PDBFileIO or" +
+          " instantiate another.");
+    }
+  }
+
+  /**
+  * Read the rest of an InputStream into a byte array, growing it if it is too small.
+  * @return a buffer wrapping the array the stream was read into, from 0 to the number of bytes
+  * read
+  */
+  private static ByteBuffer readAllBytes(InputStream inputStream, byte[] bytes)
+      throws IOException{
+    int length = 0;
+    int numRead;
+    while((numRead = inputStream.read(bytes, length, bytes.length - length)) != -1){
+      length += numRead;
+      if(length == bytes.length){
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+    }
+    return ByteBuffer.wrap(bytes, 0, length);
+  }
+
+  /**
+  * Point decoder at the line that starts at position in buffer.
+  * @return the position of the start of the following line
+  */
+  private static int nextLine(ByteBuffer buffer, int position, PDBColumnDecoder decoder){
+    int lineEnd = position;
+    while(lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r'){
+      lineEnd++;
+    }
+    decoder.setLine(buffer, position, lineEnd);
+    // a line ends with \n, \r, or \r\n
+    if(lineEnd < buffer.limit() - 1 && buffer.get(lineEnd) == '\r'
+        && buffer.get(lineEnd + 1) == '\n'){
+      return lineEnd + 2;
+    }
+    return lineEnd + 1;
   }
 
-  private static AtomRecord parseAtomLine(String line){
-    int serial = Integer.parseInt(line.substring(6,11).trim());
-    String atomName = line.substring(12,16).trim();
-    String altLoc = line.substring(16,17).trim();
-    String resName = line.substring(17,20).trim();
-    String chainID = line.substring(21,22).trim();
-    int resSeq = Integer.parseInt(line.substring(22,26).trim());
-    String iCode = line.substring(26,27).trim(); // code for insertion of residues
-    double x = Double.parseDouble(line.substring(30,38).trim());
-    double y = Double.parseDouble(line.substring(38,46).trim());
-    double z = Double.parseDouble(line.substring(46,54).trim());
+  private static AtomRecord parseAtomRecord(PDBColumnDecoder line){
+    int serial = line.decodeInt(6,11);
+    String atomName = line.decodeString(12,16);
+    String altLoc = line.decodeString(16,17);
+    String resName = line.decodeString(17,20);
+    String chainID = line.decodeString(21,22);
+    int resSeq = line.decodeInt(22,26);
+    String iCode = line.decodeString(26,27); // code for insertion of residues
+    double x = line.decodeDouble(30,38);
+    double y = line.decodeDouble(38,46);
+    double z = line.decodeDouble(46,54);
 
     // make sure there is a value for occupancy. if so, assign.
     // else, default value of -1.0.
-    String occupancyString = line.substring(54,60).trim();
     double occupancy = -1.0;
-    if(!occupancyString.equals("")){
-      occupancy = Double.parseDouble(occupancyString);
+    if(!line.isBlank(54,60)){
+      occupancy = line.decodeDouble(54,60);
     }
 
     // make sure there is a value for temp factor. if so, assign.
     // else, default value of -1.0.
-    String tempFactorString = line.substring(60,66).trim();
     double tempFactor = -1.0;
-    if(!tempFactorString.equals("")){
-      tempFactor = Double.parseDouble(tempFactorString);
+    if(!line.isBlank(60,66)){
+      tempFactor = line.decodeDouble(60,66);
     }
-    String element = line.substring(76,78).trim();
+    String element = line.decodeString(76,78);
 
     // make sure there is a value for charge. if so, parse and assign.
     // else default charge of 0.
     // PDB format specifies charge in form of 1+ or 2+ or 1-, but it could also
     // be +1, +2, or -1. It could also omit the sign.
-    String chargeString = line.substring(78,80).trim();
-    double charge = parseChargeString(chargeString);
+    double charge = line.decodeCharge(78,80);
 
     return new AtomRecord(serial, atomName, altLoc, resName, chainID, resSeq, iCode,
                           x, y, z, occupancy, tempFactor, element, charge);
   }
 
-  private static double parseChargeString(String chargeString){
-    // By PDB Specification, the chargeString should be 2+, 1-, etc,
-    // but they could also be +2, -1, etc, or even simply 1, 2.
-    double charge = 0;
-    if(!chargeString.equals("")){
-      // The charge string can be 1 or 2 characters long.
-      // If the chargeString is only 1 character long and that character
-      // is a digit, save it as the charge.
-      if(chargeString.length() == 1){
-        if(chargeString.matches("\\d")){
-          charge = Double.parseDouble(chargeString);
-        }
-      } else if(chargeString.length() == 2){
-        // The charge string must be 2 characters long
-        String firstChar = chargeString.substring(0,1);
-        String secondChar = chargeString.substring(1,2);
-        // If the first character is a digit, save it as the charge, and if the secondChar
-        // is "-", make the charge negative.
-        // Otherwise, if the second char is a digit, use it for the charge and the firstChar
-        // to determine the sign.
-        if(firstChar.matches("\\d")){
-          charge = Double.parseDouble(firstChar);
-          if(secondChar.equals("-")){
-            charge *= -1;
-          }
-        } else if(secondChar.matches("\\d")){
-          charge = Double.parseDouble(secondChar);
-          if(firstChar.equals("-")){
-            charge *= -1;
-          }
-        }
-      }
-    }
-    return charge;
-  }
-
-  private static SSBondRecord parseSSBondLine(String line){
-    String chainID1 = line.substring(15,16).trim();
-    int resID1 = Integer.parseInt(line.substring(17,21).trim());
-    String chainID2 = line.substring(29,30).trim();
-    int resID2 = Integer.parseInt(line.substring(31,35).trim());
+  private static SSBondRecord parseSSBondRecord(PDBColumnDecoder line){
+    String chainID1 = line.decodeString(15,16);
+    int resID1 = line.decodeInt(17,21);
+    String chainID2 = line.decodeString(29,30);
+    int resID2 = line.decodeInt(31,35);
     return new SSBondRecord(chainID1, resID1, chainID2, resID2);
   }
 
   //*************** Protein Construction Methods *******************//
-  private Protein constructProtein(String pdbName){
-    Protein protein = new Protein(pdbName, this);
-    Collection<String> chainIDs = getListOfChainIDs();
-    for(String chainID : chainIDs){
-      PolypeptideChain chain = new PolypeptideChain(chainID);
-      // get a list of all the atomRecords that have chainID
-      Collection<AtomRecord> chainAtomRecords = getAtomRecordsInChain(chainID);
-
-      HashMap<Integer, ArrayList<AtomRecord>> residueRecordsLists =
-          getResidueRecordsLists(chainAtomRecords);
-
+  private Protein constructProtein(String pdbName, CoordinateStore.Precision precision){
+    Protein protein = new Protein(pdbName, this, precision);
+    boolean allAtoms = this.atomSelection == AtomSelection.ALL_ATOMS;
+    for(Map.Entry<String, LinkedHashMap<Integer, ArrayList<AtomRecord>>> chainRecords :
+        groupAtomRecords().entrySet()){
+      PolypeptideChain.Builder chainBuilder = new PolypeptideChain.Builder(chainRecords.getKey());
+      if(!allAtoms){
+        chainBuilder.withoutBonds();
+      }
       // for every residue's list of AtomRecords, build a list of the atoms in that residue from the
       // AtomRecords. Use that list to construct and add that new residue with those atoms to the
       // chain.
-      for(ArrayList<AtomRecord> residueAtomRecords : residueRecordsLists.values()){
+      for(ArrayList<AtomRecord> residueAtomRecords : chainRecords.getValue().values()){
         String resName = residueAtomRecords.get(0).getResName();
         int resSeq = residueAtomRecords.get(0).getResSeq();
 
-        Collection<Atom> residueAtoms = constructAtoms(residueAtomRecords);
         // only build and add the residue if it contains the backbone atoms N CA C
-        if(resContainsBackboneAtoms(residueAtoms)){
+        if(recordsContainBackboneAtoms(residueAtomRecords)){
+          Collection<Atom> residueAtoms = constructAtoms(residueAtomRecords, this.atomSelection);
           Residue res = new Residue(resName, resSeq, residueAtoms);
           if(containsCarboxylOxygen(residueAtoms)){
             res.setAsCarboxylTerminus();
           }
-          chain.addResidue(res);
+          chainBuilder.addResidue(res);
         }
       }
-      protein.addChain(chain);
+      protein.addChain(chainBuilder.build());
     }
 
-    addDisulfideBonds(protein);
+    // the SG atoms of the cysteines are only there if every atom is kept
+    if(allAtoms){
+      addDisulfideBonds(protein);
+    }
     return protein;
   }
 
   /**
-  * @param atoms a Collection of atoms that make up a residue
-  * @return true if atoms contains atoms with the names N, CA, and C. All three must be present
+  * Group the AtomRecords by chain and then by residue in a single pass over them. Chains and the
+  * residues in each chain are iterated over in the order they first appear in the file, so a
+  * chain's residues are usually already in order by residue ID.
+  * @return a map from each chainID to a map from each residue ID in that chain to the
+  * AtomRecords of that residue
+  */
+  private LinkedHashMap<String, LinkedHashMap<Integer, ArrayList<AtomRecord>>> groupAtomRecords(){
+    LinkedHashMap<String, LinkedHashMap<Integer, ArrayList<AtomRecord>>> chainsRecords =
+        new LinkedHashMap<String, LinkedHashMap<Integer, ArrayList<AtomRecord>>>();
+    String chainID = null;
+    int resSeq = 0;
+    ArrayList<AtomRecord> residueRecords = null;
+    for(AtomRecord rec : this.atomRecords){
+      // the records of a residue are almost always consecutive, so the maps are only consulted
+      // when the residue changes
+      if(residueRecords == null || rec.getResSeq() != resSeq || !rec.getChainID().equals(chainID)){
+        chainID = rec.getChainID();
+        resSeq = rec.getResSeq();
+        LinkedHashMap<Integer, ArrayList<AtomRecord>> chainRecords = chainsRecords.get(chainID);
+        if(chainRecords == null){
+          chainRecords = new LinkedHashMap<Integer, ArrayList<AtomRecord>>();
+          chainsRecords.put(chainID, chainRecords);
+        }
+        residueRecords = chainRecords.get(resSeq);
+        if(residueRecords == null){
+          residueRecords = new ArrayList<AtomRecord>();
+          chainRecords.put(resSeq, residueRecords);
+        }
+      }
+      residueRecords.add(rec);
+    }
+    return chainsRecords;
+  }
+
+  /**
+  * @param records a Collection of the AtomRecords of the atoms that make up a residue
+  * @return true if records contains atoms with the names N, CA, and C. All three must be present
   */
-  private boolean resContainsBackboneAtoms(Collection<Atom> atoms){
+  private boolean recordsContainBackboneAtoms(Collection<AtomRecord> records){
     boolean n = false;
     boolean ca = false;
     boolean c = false;
-    for(Atom atom : atoms){
-      if(atom.getName().equals("N")){
+    for(AtomRecord rec : records){
+      if(rec.getName().equals("N")){
         n = true;
       }
-      if(atom.getName().equals("CA")){
+      if(rec.getName().equals("CA")){
         ca = true;
       }
-      if(atom.getName().equals("C")){
+      if(rec.getName().equals("C")){
         c = true;
       }
     }
@@ -410,7 +809,7 @@ public class PDBFileIO{
       String chainID2 = ssBondRec.getChainID2();
       int resID1 = ssBondRec.getResID1();
       int resID2 = ssBondRec.getResID2();
-      if(protein.contains(chainID1) && protein.getChain(chainID1).contains(resID2)){
+      if(protein.contains(chainID1) && protein.getChain(chainID1).contains(resID1)){
         if(protein.contains(chainID2) && protein.getChain(chainID2).contains(resID2)){
           if(!chainID1.equals(chainID2) || resID1 != resID2){
             protein.addDisulfideBond(chainID1, resID1, chainID2, resID2);
@@ -425,9 +824,20 @@ public class PDBFileIO{
   * From a Collection of Atom Records, build and return a collection of those Atoms.
   */
   private static Collection<Atom> constructAtoms(Collection<AtomRecord> atomRecords){
-    ArrayList<Atom> atoms = new ArrayList<Atom>();
+    return constructAtoms(atomRecords, AtomSelection.ALL_ATOMS);
+  }
+
+  /**
+  * From a Collection of Atom Records, build and return a collection of the Atoms that atomSelection
+  * keeps.
+  */
+  private static Collection<Atom> constructAtoms(Collection<AtomRecord> atomRecords,
+      AtomSelection atomSelection){
+    ArrayList<Atom> atoms = new ArrayList<Atom>(atomRecords.size());
     for(AtomRecord rec : atomRecords){
-      atoms.add(constructAtom(rec));
+      if(atomSelection.keeps(rec.getName())){
+        atoms.add(constructAtom(rec));
+      }
     }
     return atoms;
   }
@@ -505,6 +915,61 @@ public class PDBFileIO{
     }
   }
 
+  /**
+  * An OutputStream that passes the ASCII bytes written to it on to a Writer.
+  */
+  private static class WriterOutputStream extends OutputStream{
+    private final Writer writer;
+
+    public WriterOutputStream(Writer writer){
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException{
+      this.writer.write(b & 0xff);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException{
+      this.writer.write(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void flush() throws IOException{
+      this.writer.flush();
+    }
+  }
+
+  /**
+  * An InputStream over the bytes of a ByteBuffer from its position to its limit.
+  */
+  private static class ByteBufferInputStream extends InputStream{
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer){
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read(){
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length){
+      if(length == 0){
+        return 0;
+      }
+      if(!this.buffer.hasRemaining()){
+        return -1;
+      }
+      int numRead = Math.min(length, this.buffer.remaining());
+      this.buffer.get(bytes, offset, numRead);
+      return numRead;
+    }
+  }
+
   private static class SSBondRecord{
     private String chainID1;
     private int resID1;
@@ -0,0 +1,126 @@
+package com.aaronpmaus.jProt.io;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+* A PDBLineReader splits an InputStream into lines for a PDBColumnDecoder without reading the whole
+* stream into memory. Lines are read into a reusable buffer that only grows if a single line is
+* longer than it, so reading a stream of any length uses a bounded amount of memory.
+* <p>
+* Lines may end with \n, \r, or \r\n. A line is only valid until the next call to nextLine().
+* <p>
+* A PDBLineReader does not close its InputStream. It is the clients job to do so.
+* @version 0.8.0
+* @since 0.8.0
+*/
+final class PDBLineReader {
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final InputStream inputStream;
+  private byte[] bytes;
+  private ByteBuffer buffer;
+  // the index of the first character of the next line
+  private int position;
+  // one past the index of the last byte read from the stream
+  private int limit;
+  private boolean endOfStream;
+  // true if the last line ended with \r, in which case a \n that follows it is skipped
+  private boolean skipLineFeed;
+
+  PDBLineReader(InputStream inputStream){
+    this(inputStream, new byte[DEFAULT_BUFFER_SIZE]);
+  }
+
+  /**
+  * Construct a PDBLineReader that reads lines into an existing array, for example one left over
+  * from reading an earlier stream.
+  * @param inputStream the stream to read lines from
+  * @param bytes the array to read into, which is grown (replaced) if a line is longer than it
+  */
+  PDBLineReader(InputStream inputStream, byte[] bytes){
+    this.inputStream = inputStream;
+    this.bytes = bytes;
+    this.buffer = ByteBuffer.wrap(this.bytes);
+    this.position = 0;
+    this.limit = 0;
+    this.endOfStream = false;
+    this.skipLineFeed = false;
+  }
+
+  /**
+  * Point decoder at the next line of the stream.
+  * @param decoder the decoder to point at the line
+  * @return true if there was another line, false if the end of the stream has been reached
+  * @throws IOException if reading from the stream fails
+  */
+  boolean nextLine(PDBColumnDecoder decoder) throws IOException{
+    if(this.skipLineFeed){
+      if(this.position == this.limit){
+        fill();
+      }
+      if(this.position < this.limit && this.bytes[this.position] == '\n'){
+        this.position++;
+      }
+      this.skipLineFeed = false;
+    }
+    int length = 0;
+    while(true){
+      while(this.position + length < this.limit){
+        byte b = this.bytes[this.position + length];
+        if(b == '\n' || b == '\r'){
+          decoder.setLine(this.buffer, this.position, this.position + length);
+          this.position += length + 1;
+          this.skipLineFeed = b == '\r';
+          return true;
+        }
+        length++;
+      }
+      if(!fill()){
+        // the last line of the stream need not end with a line terminator
+        if(length == 0){
+          return false;
+        }
+        decoder.setLine(this.buffer, this.position, this.position + length);
+        this.position += length;
+        return true;
+      }
+    }
+  }
+
+  /**
+  * @return the array lines are read into, so that it can be reused for another stream
+  */
+  byte[] getBytes(){
+    return this.bytes;
+  }
+
+  /**
+  * Read more bytes from the stream, first moving the unread bytes to the front of the buffer or,
+  * if they fill it, growing the buffer.
+  * @return false if the end of the stream has been reached
+  */
+  private boolean fill() throws IOException{
+    if(this.endOfStream){
+      return false;
+    }
+    int numPending = this.limit - this.position;
+    if(this.position > 0){
+      System.arraycopy(this.bytes, this.position, this.bytes, 0, numPending);
+      this.position = 0;
+      this.limit = numPending;
+    } else if(this.limit == this.bytes.length){
+      this.bytes = Arrays.copyOf(this.bytes, this.bytes.length * 2);
+      this.buffer = ByteBuffer.wrap(this.bytes);
+    }
+    int numRead = this.inputStream.read(this.bytes, this.limit, this.bytes.length - this.limit);
+    if(numRead == -1){
+      this.endOfStream = true;
+      return false;
+    }
+    this.limit += numRead;
+    return true;
+  }
+}
@@ -0,0 +1,226 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+* A PDBModelReader reads the models of a multi-model PDB file, such as an NMR ensemble or a
+* trajectory, one at a time from a stream.
+* <p>
+* The Protein is built from the first model. Each later model only fills in the coordinates of
+* that same Protein, so next() returns the same Protein every time, holding the coordinates of a
+* different model. hasNext() reads the next model into a CoordinateStore of its own, and next()
+* copies it into the Protein, so the Protein keeps the coordinates of the model next() last
+* returned until next() is called again. At most two models are in memory at a time, no matter
+* how many models the file holds. To keep a model, copy it with Protein::copy() or
+* Protein::snapshotCoordinates() before moving on to the next one.
+* <p>
+* As when a file is read with PDBFileIO, an atom with alternate locations holds the coordinates of
+* its last alternate location, in every model.
+* <p>
+* The ATOM records of every model must be in the same order as those of the first model. A file
+* without MODEL and ENDMDL records is read as a single model.
+* <p>
+* Usage:<br>
+* {@code PDBModelReader models = new PDBModelReader(inputStream, "2k39");}<br>
+* {@code while(models.hasNext())}<br>
+* {@code     Protein model = models.next();}<br>
+* <p>
+* A PDBModelReader does not close the InputStream. It is the clients job to do so.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class PDBModelReader implements Iterator<Protein> {
+  private final PDBLineReader lines;
+  private final PDBColumnDecoder decoder;
+  private final String pdbFileNameBase;
+  private final CoordinateStore.Precision precision;
+  private Protein protein;
+  // key: the position of an ATOM record in a model, value: the atom of the protein whose
+  // coordinates it holds, or null if the record is not part of the protein
+  private Atom[] recordAtoms;
+  // the coordinates of the model read by hasNext(), which next() copies into the protein
+  private CoordinateStore nextModel;
+  private int modelNumber;
+  private boolean modelReady;
+  private boolean endReached;
+
+  /**
+  * Construct a PDBModelReader that reads the models of a PDB file from inputStream.
+  * @param inputStream the inputStream to read from
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  */
+  public PDBModelReader(InputStream inputStream, String pdbFileNameBase){
+    this(inputStream, pdbFileNameBase, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Construct a PDBModelReader that reads the models of a PDB file from inputStream into a Protein
+  * whose coordinates are held in the given precision.
+  * @param inputStream the inputStream to read from
+  * @param pdbFileNameBase the base name of the PDB file (the part before the extension).
+  * @param precision the precision to hold the coordinates of the Protein in
+  */
+  public PDBModelReader(InputStream inputStream, String pdbFileNameBase,
+      CoordinateStore.Precision precision){
+    this.lines = new PDBLineReader(inputStream);
+    this.decoder = new PDBColumnDecoder();
+    this.pdbFileNameBase = pdbFileNameBase;
+    this.precision = precision;
+    this.protein = null;
+    this.recordAtoms = null;
+    this.nextModel = null;
+    this.modelNumber = 0;
+    this.modelReady = false;
+    this.endReached = false;
+  }
+
+  /**
+  * Check whether there is another model, reading it in if there is. The Protein returned by the
+  * last call to next() is not changed.
+  * @return true if there is another model
+  * @throws UncheckedIOException if reading from the stream fails
+  * @throws IllegalStateException if the ATOM records of the next model do not match those of the
+  * first model
+  */
+  @Override
+  public boolean hasNext(){
+    if(!this.modelReady && !this.endReached){
+      try{
+        if(this.protein == null){
+          this.modelReady = readFirstModel();
+        } else {
+          this.modelReady = readNextModel();
+        }
+      } catch(IOException e){
+        throw new UncheckedIOException(e);
+      }
+      this.endReached = !this.modelReady;
+    }
+    return this.modelReady;
+  }
+
+  /**
+  * Return the Protein holding the coordinates of the next model. This is the same Protein every
+  * time.
+  * @return the Protein, holding the coordinates of the next model
+  * @throws NoSuchElementException if there are no more models
+  * @throws UncheckedIOException if reading from the stream fails
+  * @throws IllegalStateException if the ATOM records of the next model do not match those of the
+  * first model
+  */
+  @Override
+  public Protein next(){
+    if(!hasNext()){
+      throw new NoSuchElementException("There are no more models.");
+    }
+    this.modelReady = false;
+    if(this.modelNumber > 0){
+      this.protein.restoreCoordinates(this.nextModel);
+    }
+    this.modelNumber++;
+    return this.protein;
+  }
+
+  /**
+  * @return the number of models returned by next() so far, which is also the number of the model
+  * the Protein holds, counting from 1
+  */
+  public int getModelNumber(){
+    return this.modelNumber;
+  }
+
+  /**
+  * Read the first model and build the Protein out of it.
+  * @return false if there are no ATOM records in the stream
+  */
+  private boolean readFirstModel() throws IOException{
+    PDBFileIO pdb = new PDBFileIO();
+    ArrayList<String> chainIDs = new ArrayList<String>();
+    ArrayList<Integer> resIDs = new ArrayList<Integer>();
+    ArrayList<String> atomNames = new ArrayList<String>();
+    while(this.lines.nextLine(this.decoder)){
+      if(this.decoder.equalsTrimmed(0,6,"ENDMDL")){
+        break;
+      }
+      if(this.decoder.equalsTrimmed(0,6,"ATOM")){
+        atomNames.add(this.decoder.decodeString(12,16));
+        chainIDs.add(this.decoder.decodeString(21,22));
+        resIDs.add(this.decoder.decodeInt(22,26));
+      }
+      pdb.addRecord(this.decoder);
+    }
+    if(atomNames.isEmpty()){
+      return false;
+    }
+    this.protein = pdb.buildProtein(this.pdbFileNameBase, this.precision);
+    // find the atom of the protein each record became. Records of residues the protein left out
+    // have none. The protein holds the last alternate location of each atom, so the records are
+    // gone through from last to first, and alternate locations before the last have none.
+    this.recordAtoms = new Atom[atomNames.size()];
+    HashSet<Atom> mappedAtoms = new HashSet<Atom>();
+    for(int i = this.recordAtoms.length - 1; i >= 0; i--){
+      if(this.protein.contains(chainIDs.get(i))){
+        PolypeptideChain chain = this.protein.getChain(chainIDs.get(i));
+        if(chain.contains(resIDs.get(i))){
+          Residue residue = chain.getResidue(resIDs.get(i));
+          if(residue.contains(atomNames.get(i))){
+            Atom atom = residue.getAtom(atomNames.get(i));
+            if(mappedAtoms.add(atom)){
+              this.recordAtoms[i] = atom;
+            }
+          }
+        }
+      }
+    }
+    this.nextModel = this.protein.snapshotCoordinates();
+    return true;
+  }
+
+  /**
+  * Read the next model into nextModel. The coordinates of atoms without a record are those of the
+  * first model.
+  * @return false if there are no more models
+  */
+  private boolean readNextModel() throws IOException{
+    int numRecords = 0;
+    while(this.lines.nextLine(this.decoder)){
+      if(this.decoder.equalsTrimmed(0,6,"ENDMDL")){
+        break;
+      }
+      if(this.decoder.equalsTrimmed(0,6,"ATOM")){
+        if(numRecords == this.recordAtoms.length){
+          throw new IllegalStateException(String.format(
+              "Model %d has more ATOM records than the %d of the first model.",
+              this.modelNumber + 1, this.recordAtoms.length));
+        }
+        Atom atom = this.recordAtoms[numRecords++];
+        if(atom != null){
+          if(!this.decoder.equalsTrimmed(12,16,atom.getName())){
+            throw new IllegalStateException(String.format(
+                "ATOM record %d of model %d is not atom %s, as it is in the first model.",
+                numRecords, this.modelNumber + 1, atom.getName()));
+          }
+          this.nextModel.set(atom.getCoordinateIndex(), this.decoder.decodeDouble(30,38),
+              this.decoder.decodeDouble(38,46), this.decoder.decodeDouble(46,54));
+        }
+      }
+    }
+    if(numRecords == 0){
+      return false;
+    }
+    if(numRecords != this.recordAtoms.length){
+      throw new IllegalStateException(String.format(
+          "Model %d has %d ATOM records, but the first model has %d.",
+          this.modelNumber + 1, numRecords, this.recordAtoms.length));
+    }
+    return true;
+  }
+}
@@ -0,0 +1,304 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+* A PDBStructureCache keeps the Proteins read in from PDB files, so that a file that is read again
+* and again, such as a reference structure every model is compared against, is only parsed once.
+* <p>
+* Proteins are cached under the real path of the file, its last modified time and size, and the
+* options it was read with (the precision, AtomSelection, and PDBRecordFilter), so a file that is
+* changed is read in again, and reading a file with other options does not return the Protein read
+* with the first ones. The cache holds at most a given number of atoms. When it holds more, the
+* least recently used Proteins are dropped until it does not, which also drops the Proteins of
+* files that have since changed. A Protein with more atoms than the cache can hold is returned
+* without being cached, so it does not push every other Protein out.
+* <p>
+* get() returns the cached Protein itself, which is shared with every other caller, and must not be
+* changed. A caller that will change the Protein, by moving its atoms or otherwise, should use
+* getCopy(), which returns a Protein::copy() of it. Copying rebuilds the chains, residues, atoms,
+* and bonds of the Protein, but parses nothing, so it is still far cheaper than reading the file.
+* <p>
+* A PDBStructureCache is thread safe. Files are read in outside of its lock, and threads that ask
+* for a file that is being read in wait for that read rather than reading it again. The atom index
+* and BondTable of a Protein are built before it is handed out, so the threads sharing it never
+* build them at the same time.
+* getSharedInstance() returns a cache shared by the whole process.
+* <p>
+* Usage:<br>
+* {@code Protein reference = PDBStructureCache.getSharedInstance().get(referencePath);}<br>
+* {@code Protein model = PDBStructureCache.getSharedInstance().getCopy(modelPath);}<br>
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class PDBStructureCache{
+  /** The number of atoms the shared cache holds. */
+  public static final long DEFAULT_MAX_NUM_ATOMS = 5000000;
+  private static final PDBStructureCache SHARED_INSTANCE =
+      new PDBStructureCache(DEFAULT_MAX_NUM_ATOMS);
+
+  private final long maxNumAtoms;
+  // guarded by this. In access order, so the least recently used entry is first.
+  private final LinkedHashMap<Key, Entry> entries;
+  private long numAtoms;
+  private long numHits;
+  private long numMisses;
+
+  /**
+  * Construct a PDBStructureCache.
+  * @param maxNumAtoms the number of atoms the cached Proteins can hold in total
+  * @throws IllegalArgumentException if maxNumAtoms is less than 1
+  */
+  public PDBStructureCache(long maxNumAtoms){
+    if(maxNumAtoms < 1){
+      throw new IllegalArgumentException(String.format(
+          "The maximum number of atoms %d is less than 1.", maxNumAtoms));
+    }
+    this.maxNumAtoms = maxNumAtoms;
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    this.numAtoms = 0;
+    this.numHits = 0;
+    this.numMisses = 0;
+  }
+
+  /**
+  * @return the PDBStructureCache shared by the whole process, which holds up to
+  * DEFAULT_MAX_NUM_ATOMS atoms
+  */
+  public static PDBStructureCache getSharedInstance(){
+    return SHARED_INSTANCE;
+  }
+
+  /**
+  * Return the Protein of a PDB file, with every atom, in double precision, reading the file in if
+  * it is not cached. The Protein is shared and must not be changed.
+  * @param path the path of the PDB file, which may be gzip compressed
+  * @return the shared Protein of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein get(Path path) throws IOException{
+    return get(path, CoordinateStore.Precision.DOUBLE, PDBFileIO.AtomSelection.ALL_ATOMS,
+        PDBRecordFilter.ACCEPT_ALL);
+  }
+
+  /**
+  * Return the Protein of a PDB file read with the given options, reading the file in if it is not
+  * cached. The Protein is shared and must not be changed.
+  * @param path the path of the PDB file, which may be gzip compressed
+  * @param precision the precision to hold the coordinates in
+  * @param atomSelection the atoms of each residue to keep
+  * @param recordFilter the filter that selects which ATOM records are read in
+  * @return the shared Protein of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein get(Path path, CoordinateStore.Precision precision,
+      PDBFileIO.AtomSelection atomSelection, PDBRecordFilter recordFilter) throws IOException{
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    Key key = new Key(path.toRealPath(), attributes.lastModifiedTime().toMillis(),
+        attributes.size(), precision, atomSelection, recordFilter);
+    Entry entry;
+    boolean reading = false;
+    synchronized(this){
+      entry = this.entries.get(key);
+      if(entry == null){
+        entry = new Entry();
+        this.entries.put(key, entry);
+        this.numMisses++;
+        reading = true;
+      } else {
+        this.numHits++;
+      }
+    }
+    if(reading){
+      read(key, entry);
+    }
+    try{
+      return entry.protein.get();
+    } catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + path
+          + " to be read in.");
+    } catch(ExecutionException e){
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException){
+        throw (IOException) cause;
+      }
+      if(cause instanceof RuntimeException){
+        throw (RuntimeException) cause;
+      }
+      if(cause instanceof Error){
+        throw (Error) cause;
+      }
+      throw new IOException("Could not read " + path, cause);
+    }
+  }
+
+  /**
+  * Return a copy of the Protein of a PDB file, with every atom, in double precision, reading the
+  * file in if it is not cached. The copy belongs to the caller and can be changed.
+  * @param path the path of the PDB file, which may be gzip compressed
+  * @return a copy of the Protein of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein getCopy(Path path) throws IOException{
+    return get(path).copy();
+  }
+
+  /**
+  * Return a copy of the Protein of a PDB file read with the given options, reading the file in if
+  * it is not cached. The copy belongs to the caller and can be changed.
+  * @param path the path of the PDB file, which may be gzip compressed
+  * @param precision the precision to hold the coordinates in
+  * @param atomSelection the atoms of each residue to keep
+  * @param recordFilter the filter that selects which ATOM records are read in
+  * @return a copy of the Protein of the file
+  * @throws IOException if the file can not be read
+  */
+  public Protein getCopy(Path path, CoordinateStore.Precision precision,
+      PDBFileIO.AtomSelection atomSelection, PDBRecordFilter recordFilter) throws IOException{
+    return get(path, precision, atomSelection, recordFilter).copy();
+  }
+
+  /**
+  * Drop every cached Protein.
+  */
+  public synchronized void clear(){
+    // Proteins still being read in are dropped when they have been
+    this.entries.clear();
+    this.numAtoms = 0;
+  }
+
+  /**
+  * @return the number of Proteins cached, including those being read in
+  */
+  public synchronized int getNumEntries(){
+    return this.entries.size();
+  }
+
+  /**
+  * @return the number of atoms in the cached Proteins
+  */
+  public synchronized long getNumAtoms(){
+    return this.numAtoms;
+  }
+
+  /**
+  * @return the number of calls that found their Protein cached
+  */
+  public synchronized long getNumHits(){
+    return this.numHits;
+  }
+
+  /**
+  * @return the number of calls that read their Protein in
+  */
+  public synchronized long getNumMisses(){
+    return this.numMisses;
+  }
+
+  /**
+  * Read in the file of an entry, and complete it. The entry is dropped if the file can not be read
+  * in, so the next call tries again, or if its Protein has more atoms than the cache can hold.
+  */
+  private void read(Key key, Entry entry){
+    Protein prot;
+    try{
+      PDBFileIO pdb = PDBFileIO.getThreadInstance();
+      pdb.setAtomSelection(key.atomSelection);
+      pdb.setRecordFilter(key.recordFilter);
+      prot = pdb.readInPDBFile(key.path, PDBBatchLoader.getFileNameBase(key.path), key.precision);
+      // the lazily built indices are built here, before the Protein is published to other threads
+      // by completing the entry, so that the threads sharing it only ever read it
+      prot.buildIndices();
+    } catch(Throwable e){
+      // even on an Error, the threads waiting for this entry must be released
+      synchronized(this){
+        this.entries.remove(key, entry);
+      }
+      entry.protein.completeExceptionally(e);
+      return;
+    }
+    synchronized(this){
+      // the entry was not dropped by clear() while the file was read in
+      if(this.entries.get(key) == entry){
+        if(prot.getNumAtoms() > this.maxNumAtoms){
+          this.entries.remove(key);
+        } else {
+          entry.numAtoms = prot.getNumAtoms();
+          this.numAtoms += entry.numAtoms;
+          evict();
+        }
+      }
+    }
+    entry.protein.complete(prot);
+  }
+
+  /**
+  * Drop the least recently used Proteins until the cache holds no more than maxNumAtoms atoms.
+  */
+  private void evict(){
+    Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+    while(this.numAtoms > this.maxNumAtoms && iterator.hasNext()){
+      Entry entry = iterator.next().getValue();
+      // entries still being read in hold no atoms yet
+      if(entry.numAtoms > 0){
+        iterator.remove();
+        this.numAtoms -= entry.numAtoms;
+      }
+    }
+  }
+
+  private static class Entry{
+    private final CompletableFuture<Protein> protein = new CompletableFuture<Protein>();
+    // guarded by the cache, 0 until the Protein has been read in
+    private long numAtoms;
+  }
+
+  private static class Key{
+    private final Path path;
+    private final long lastModifiedTime;
+    private final long size;
+    private final CoordinateStore.Precision precision;
+    private final PDBFileIO.AtomSelection atomSelection;
+    private final PDBRecordFilter recordFilter;
+
+    public Key(Path path, long lastModifiedTime, long size, CoordinateStore.Precision precision,
+        PDBFileIO.AtomSelection atomSelection, PDBRecordFilter recordFilter){
+      this.path = path;
+      this.lastModifiedTime = lastModifiedTime;
+      this.size = size;
+      this.precision = Objects.requireNonNull(precision);
+      this.atomSelection = Objects.requireNonNull(atomSelection);
+      this.recordFilter = Objects.requireNonNull(recordFilter);
+    }
+
+    @Override
+    public boolean equals(Object other){
+      if(!(other instanceof Key)){
+        return false;
+      }
+      Key key = (Key) other;
+      return this.path.equals(key.path) && this.lastModifiedTime == key.lastModifiedTime
+          && this.size == key.size && this.precision == key.precision
+          && this.atomSelection == key.atomSelection && this.recordFilter.equals(key.recordFilter);
+    }
+
+    @Override
+    public int hashCode(){
+      return Objects.hash(this.path, this.lastModifiedTime, this.size, this.precision,
+          this.atomSelection, this.recordFilter);
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+* A PDBWriter writes Proteins out as PDB records, one model or many. Records are formatted straight
+* into a reusable byte buffer, with hand written formatting of the fixed width number columns, and
+* the buffer is only written to the OutputStream when it is full, when flush() is called, or when
+* the PDBWriter is closed. Writing an atom allocates nothing, and writing a many model trajectory
+* takes a handful of large writes instead of a write and a flush per line.
+* <p>
+* The records are exactly those String.format() would produce for the same fields in
+* Locale.ROOT, whatever the default locale is.
+* <p>
+* Usage:<br>
+* {@code try(PDBWriter writer = new PDBWriter(new FileOutputStream("traj.pdb"))){}<br>
+* {@code   writer.writeModel(prot, 1);}<br>
+* {@code   writer.writeModel(prot, 2);}<br>
+* {@code   writer.writeEnd();}<br>
+* {@code }}<br>
+* <p>
+* Closing a PDBWriter flushes it and closes the OutputStream. A PDBWriter is not thread safe.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class PDBWriter implements Closeable, Flushable {
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  // the longest record written, so that a record never has to be split across two writes
+  private static final int MAX_RECORD_LENGTH = 256;
+  private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L};
+  // scaled values at or beyond this are left to String.format(). Below it an ulp of the scaled
+  // value is under 1.2e-7, well inside the 1e-6 window around ties that is also left to it.
+  private static final double MAX_FAST_VALUE = 1e9;
+
+  private final OutputStream outputStream;
+  private final byte[] buffer;
+  private int position;
+
+  /**
+  * Construct a PDBWriter that writes to outputStream through a 64 KB buffer.
+  * @param outputStream the stream to write the records to
+  */
+  public PDBWriter(OutputStream outputStream){
+    this(outputStream, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+  * Construct a PDBWriter that writes to outputStream through a buffer of the given size.
+  * @param outputStream the stream to write the records to
+  * @param bufferSize the number of bytes to gather before writing them to the stream
+  * @throws IllegalArgumentException if bufferSize is less than 256
+  */
+  public PDBWriter(OutputStream outputStream, int bufferSize){
+    if(bufferSize < MAX_RECORD_LENGTH){
+      throw new IllegalArgumentException(String.format(
+          "The buffer size %d is less than %d.", bufferSize, MAX_RECORD_LENGTH));
+    }
+    this.outputStream = outputStream;
+    this.buffer = new byte[bufferSize];
+    this.position = 0;
+  }
+
+  /**
+  * Write the ATOM records of a Protein, with a TER record after each chain. Neither MODEL nor END
+  * records are written.
+  * @param prot the Protein to write out
+  * @throws IOException if an I/O error occurs
+  */
+  public void writeProtein(Protein prot) throws IOException{
+    String chainID = null;
+    int resID = -1;
+    String resName = null;
+    int serialNum = -1;
+    for(PolypeptideChain chain : prot){
+      chainID = chain.getChainID();
+      for(Residue res : chain){
+        resID = res.getResidueID();
+        resName = res.getThreeLetterName();
+        for(Atom atom : res){
+          serialNum = atom.getSerialNumber();
+          writeAtomRecord(atom, resName, chainID, resID);
+        }
+      }
+      writeTerRecord(serialNum + 1, resName, chainID, resID);
+    }
+  }
+
+  /**
+  * Write a Protein as a model of a multi-model file: a MODEL record, its ATOM and TER records,
+  * and an ENDMDL record.
+  * @param prot the Protein to write out
+  * @param modelNumber the number of the model, counting from 1
+  * @throws IOException if an I/O error occurs
+  */
+  public void writeModel(Protein prot, int modelNumber) throws IOException{
+    reserve();
+    putText("MODEL     ");
+    putInt(modelNumber, 4);
+    putNewLine();
+    writeProtein(prot);
+    reserve();
+    putText("ENDMDL");
+    putNewLine();
+  }
+
+  /**
+  * Write the END record that ends a PDB file.
+  * @throws IOException if an I/O error occurs
+  */
+  public void writeEnd() throws IOException{
+    reserve();
+    putText("END");
+    putNewLine();
+  }
+
+  /**
+  * Write everything in the buffer to the OutputStream and flush it.
+  * @throws IOException if an I/O error occurs
+  */
+  @Override
+  public void flush() throws IOException{
+    drain();
+    this.outputStream.flush();
+  }
+
+  /**
+  * Flush this PDBWriter and close the OutputStream.
+  * @throws IOException if an I/O error occurs
+  */
+  @Override
+  public void close() throws IOException{
+    try{
+      drain();
+    } finally {
+      this.outputStream.close();
+    }
+  }
+
+  // "%-6s%5d %-4s%s%3s %s%4d%s   %8.3f%8.3f%8.3f%6.2f%6.2f          %2s%2s\n"
+  private void writeAtomRecord(Atom atom, String resName, String chainID, int resID)
+      throws IOException{
+    reserve();
+    putText("ATOM  ");
+    putInt(atom.getSerialNumber(), 5);
+    putByte(' ');
+    putLeftJustified(atom.getName(), 4);
+    // altLoc
+    putByte(' ');
+    putRightJustified(resName, 3);
+    putByte(' ');
+    putText(chainID);
+    putInt(resID, 4);
+    // iCode, then 3 blank columns
+    putText("    ");
+    putDecimal(atom.getX(), 3, 8);
+    putDecimal(atom.getY(), 3, 8);
+    putDecimal(atom.getZ(), 3, 8);
+    putDecimal(atom.getOccupancy(), 2, 6);
+    putDecimal(atom.getTempFactor(), 2, 6);
+    putText("          ");
+    putRightJustified(atom.getElement(), 2);
+    putInt((int) atom.getCharge(), 2);
+    putNewLine();
+  }
+
+  // "%-6s%5d      %s %s%4s\n"
+  private void writeTerRecord(int serial, String resName, String chainID, int resID)
+      throws IOException{
+    reserve();
+    putText("TER   ");
+    putInt(serial, 5);
+    putText("      ");
+    putText(resName);
+    putByte(' ');
+    putText(chainID);
+    putInt(resID, 4);
+    putNewLine();
+  }
+
+  /**
+  * Make room in the buffer for a record, writing the buffer out if it might not fit.
+  */
+  private void reserve() throws IOException{
+    if(this.buffer.length - this.position < MAX_RECORD_LENGTH){
+      drain();
+    }
+  }
+
+  private void drain() throws IOException{
+    if(this.position > 0){
+      this.outputStream.write(this.buffer, 0, this.position);
+      this.position = 0;
+    }
+  }
+
+  private void putNewLine() throws IOException{
+    putByte('\n');
+  }
+
+  /**
+  * Put a byte in the buffer. Only the text fields of a record (names, chain IDs) can make it
+  * longer than MAX_RECORD_LENGTH, so they are the only place the buffer can fill up mid record.
+  */
+  private void putByte(int b) throws IOException{
+    if(this.position == this.buffer.length){
+      drain();
+    }
+    this.buffer[this.position++] = (byte) b;
+  }
+
+  /**
+  * Put text, which is expected to be ASCII, in the buffer. A null String is put as "null", as
+  * String.format() would.
+  */
+  private void putText(String text) throws IOException{
+    if(text == null){
+      text = "null";
+    }
+    for(int i = 0; i < text.length(); i++){
+      char c = text.charAt(i);
+      putByte(c < 128 ? c : '?');
+    }
+  }
+
+  private void putLeftJustified(String text, int width) throws IOException{
+    putText(text);
+    for(int i = text == null ? 4 : text.length(); i < width; i++){
+      putByte(' ');
+    }
+  }
+
+  private void putRightJustified(String text, int width) throws IOException{
+    for(int i = text == null ? 4 : text.length(); i < width; i++){
+      putByte(' ');
+    }
+    putText(text);
+  }
+
+  /**
+  * Put an integer right justified in a field of the given width, as "%[width]d" would.
+  */
+  private void putInt(long value, int width) throws IOException{
+    boolean negative = value < 0;
+    long magnitude = Math.abs(value);
+    int numDigits = 1;
+    for(long rest = magnitude / 10; rest > 0; rest /= 10){
+      numDigits++;
+    }
+    int length = numDigits + (negative ? 1 : 0);
+    for(int i = length; i < width; i++){
+      putByte(' ');
+    }
+    if(negative){
+      putByte('-');
+    }
+    putDigits(magnitude, numDigits);
+  }
+
+  /**
+  * Put a number right justified in a field of the given width with the given number of decimals,
+  * as "%[width].[decimals]f" would. Values that are close to halfway between two roundings, or
+  * are not finite, or are very large, are formatted by String.format() so that the result is
+  * always the same as its.
+  */
+  private void putDecimal(double value, int decimals, int width) throws IOException{
+    double scaled = Math.abs(value) * POWERS_OF_TEN[decimals];
+    double floor = Math.floor(scaled);
+    double fraction = scaled - floor;
+    // String.format() rounds the shortest decimal that represents the value half up, which is
+    // only different from rounding the scaled value when it is within an ulp or so of a tie
+    if(!(scaled < MAX_FAST_VALUE) || Math.abs(fraction - 0.5) < 1e-6){
+      putText(String.format(Locale.ROOT, "%" + width + "." + decimals + "f", value));
+      return;
+    }
+    long rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+    long integerPart = rounded / POWERS_OF_TEN[decimals];
+    long decimalPart = rounded % POWERS_OF_TEN[decimals];
+    // String.format() keeps the sign of negative values that round to 0, and of -0.0
+    boolean negative = Double.doubleToRawLongBits(value) < 0;
+    int numDigits = 1;
+    for(long rest = integerPart / 10; rest > 0; rest /= 10){
+      numDigits++;
+    }
+    int length = (negative ? 1 : 0) + numDigits + 1 + decimals;
+    for(int i = length; i < width; i++){
+      putByte(' ');
+    }
+    if(negative){
+      putByte('-');
+    }
+    putDigits(integerPart, numDigits);
+    putByte('.');
+    putDigits(decimalPart, decimals);
+  }
+
+  /**
+  * Put the last numDigits digits of a non negative value, with leading zeros if it has fewer.
+  */
+  private void putDigits(long value, int numDigits) throws IOException{
+    if(this.buffer.length - this.position < numDigits){
+      drain();
+    }
+    for(int i = this.position + numDigits - 1; i >= this.position; i--){
+      this.buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    this.position += numDigits;
+  }
+}
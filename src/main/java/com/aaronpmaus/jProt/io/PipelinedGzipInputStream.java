@@ -0,0 +1,247 @@
+package com.aaronpmaus.jProt.io;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+* A PipelinedGzipInputStream decompresses a gzip stream on a separate thread, so that inflating
+* the stream and parsing what has been inflated overlap instead of taking turns.
+* <p>
+* The inflating thread fills a ring of a few fixed size chunks. Filled chunks are passed to the
+* reader, which hands each one back once it has read it, so no memory is allocated after the
+* stream is opened and the inflating thread never gets more than the ring's worth of chunks ahead
+* of the reader.
+* <p>
+* Closing a PipelinedGzipInputStream stops the inflating thread and waits for it to finish, but
+* does not close the compressed stream. It is the clients job to do so. An interrupt does not
+* unblock a thread reading most streams, so if the inflating thread is stuck reading the compressed
+* stream, close() only waits a second for it. The daemon thread then outlives close() and ends as
+* soon as its read returns, which closing the compressed stream usually makes happen.
+* @version 0.8.0
+* @since 0.8.0
+*/
+final class PipelinedGzipInputStream extends InputStream {
+  private static final int CHUNK_SIZE = 1 << 16;
+  private static final int NUM_CHUNKS = 4;
+  // how long close() waits for the inflating thread to finish
+  private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // the first two bytes of every gzip stream
+  private static final int GZIP_MAGIC_ONE = 0x1f;
+  private static final int GZIP_MAGIC_TWO = 0x8b;
+  // passed to the reader after the last chunk
+  private static final Chunk END = new Chunk(0);
+
+  private final BlockingQueue<Chunk> freeChunks;
+  private final BlockingQueue<Chunk> filledChunks;
+  private final Thread inflater;
+  // set by the inflating thread before it passes END if inflating failed
+  private volatile Throwable error;
+  private Chunk current;
+  private int position;
+  private boolean ended;
+  private boolean closed;
+
+  /**
+  * Start inflating a gzip stream.
+  * @param compressed the gzip stream
+  */
+  PipelinedGzipInputStream(InputStream compressed){
+    this.freeChunks = new ArrayBlockingQueue<Chunk>(NUM_CHUNKS);
+    // room for every chunk and END, so the inflating thread never waits to pass END
+    this.filledChunks = new ArrayBlockingQueue<Chunk>(NUM_CHUNKS + 1);
+    for(int i = 0; i < NUM_CHUNKS; i++){
+      this.freeChunks.add(new Chunk(CHUNK_SIZE));
+    }
+    this.current = null;
+    this.position = 0;
+    this.ended = false;
+    this.closed = false;
+    this.inflater = new Thread(() -> inflate(compressed), "PipelinedGzipInputStream");
+    this.inflater.setDaemon(true);
+    this.inflater.start();
+  }
+
+  /**
+  * Check whether a buffer starts with the gzip magic number.
+  * @param first the first byte of the buffer, or -1 if it is empty
+  * @param second the second byte of the buffer, or -1 if it is shorter than 2 bytes
+  * @return true if the two bytes start a gzip stream
+  */
+  static boolean isGzipMagic(int first, int second){
+    return first == GZIP_MAGIC_ONE && second == GZIP_MAGIC_TWO;
+  }
+
+  /**
+  * Wrap a stream that may or may not be gzip compressed. Compressed streams are recognized by
+  * their first two bytes and inflated by a PipelinedGzipInputStream.
+  * <p>
+  * Closing the returned stream stops the inflating thread, if there is one, but does not close
+  * inputStream.
+  * @param inputStream the stream to wrap
+  * @return a stream of the inflated bytes of inputStream, or of its bytes if it is not compressed
+  * @throws IOException if the first bytes of inputStream can not be read
+  */
+  static InputStream inflateIfCompressed(InputStream inputStream) throws IOException{
+    // peek at the first two bytes to see if the stream is compressed
+    PushbackInputStream stream = new PushbackInputStream(inputStream, 2);
+    int first = stream.read();
+    int second = first == -1 ? -1 : stream.read();
+    if(second != -1){
+      stream.unread(second);
+    }
+    if(first != -1){
+      stream.unread(first);
+    }
+    if(isGzipMagic(first, second)){
+      return new PipelinedGzipInputStream(stream);
+    }
+    return new FilterInputStream(stream){
+      @Override
+      public void close(){
+      }
+    };
+  }
+
+  private void inflate(InputStream compressed){
+    // closing the GZIPInputStream frees its Inflater, but must not close the compressed stream
+    InputStream unclosable = new FilterInputStream(compressed){
+      @Override
+      public void close(){
+      }
+    };
+    try(GZIPInputStream gzip = new GZIPInputStream(unclosable, CHUNK_SIZE)){
+      while(true){
+        Chunk chunk = this.freeChunks.take();
+        chunk.length = 0;
+        int numRead = 0;
+        while(chunk.length < chunk.bytes.length
+            && (numRead = gzip.read(chunk.bytes, chunk.length, chunk.bytes.length - chunk.length))
+            != -1){
+          chunk.length += numRead;
+        }
+        if(chunk.length > 0){
+          this.filledChunks.put(chunk);
+        }
+        if(numRead == -1){
+          break;
+        }
+      }
+    } catch(InterruptedException e){
+      // the stream has been closed
+    } catch(Throwable e){
+      // anything, even an Error, is passed on to the reader, who would otherwise wait forever
+      this.error = e;
+    } finally {
+      this.filledChunks.add(END);
+    }
+  }
+
+  @Override
+  public int read() throws IOException{
+    if(!nextChunk()){
+      return -1;
+    }
+    return this.current.bytes[this.position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException{
+    if(length == 0){
+      return 0;
+    }
+    if(!nextChunk()){
+      return -1;
+    }
+    int numRead = Math.min(length, this.current.length - this.position);
+    System.arraycopy(this.current.bytes, this.position, bytes, offset, numRead);
+    this.position += numRead;
+    return numRead;
+  }
+
+  /**
+  * Make sure there is an unread byte in the current chunk, handing back the current chunk and
+  * waiting for the next one if it has all been read.
+  * @return false if the end of the stream has been reached
+  */
+  private boolean nextChunk() throws IOException{
+    if(this.closed){
+      throw new IOException("Stream closed");
+    }
+    if(this.current != null && this.position < this.current.length){
+      return true;
+    }
+    if(this.current != null){
+      this.freeChunks.add(this.current);
+      this.current = null;
+    }
+    if(this.ended){
+      return false;
+    }
+    Chunk chunk;
+    try{
+      chunk = this.filledChunks.take();
+    } catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the gzip stream to inflate.");
+    }
+    if(chunk == END){
+      this.ended = true;
+      if(this.error instanceof IOException){
+        throw (IOException) this.error;
+      }
+      if(this.error instanceof RuntimeException){
+        throw (RuntimeException) this.error;
+      }
+      if(this.error instanceof Error){
+        throw (Error) this.error;
+      }
+      return false;
+    }
+    this.current = chunk;
+    this.position = 0;
+    return true;
+  }
+
+  /**
+  * Stop the inflating thread and wait up to a second for it to finish. The compressed stream is
+  * not closed, so a thread blocked reading it may outlive this call.
+  */
+  @Override
+  public void close(){
+    if(this.closed){
+      return;
+    }
+    this.closed = true;
+    this.inflater.interrupt();
+    boolean interrupted = false;
+    long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+    long remaining;
+    while(this.inflater.isAlive() && (remaining = deadline - System.nanoTime()) > 0){
+      try{
+        TimeUnit.NANOSECONDS.timedJoin(this.inflater, remaining);
+      } catch(InterruptedException e){
+        interrupted = true;
+      }
+    }
+    if(interrupted){
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Chunk{
+    private final byte[] bytes;
+    private int length;
+
+    public Chunk(int size){
+      this.bytes = new byte[size];
+      this.length = 0;
+    }
+  }
+}
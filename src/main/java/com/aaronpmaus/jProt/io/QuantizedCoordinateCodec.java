@@ -0,0 +1,314 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.util.Arrays;
+
+/**
+* A QuantizedCoordinateCodec compresses the coordinates of a frame, a conformation of a Protein,
+* into a block of bytes, and decodes blocks back into coordinates. It is the codec behind a
+* CompressedEnsemble, and can be used by any other container of many frames of the same atoms.
+* <p>
+* Coordinates are quantized to fixed point thousandths of an angstrom, the precision of a PDB file,
+* so coordinates read from a PDB file are decoded exactly as they were read. Each quantized
+* coordinate is stored as its difference from either
+* <ul>
+* <li>the same coordinate of a reference frame (DeltaMode.REFERENCE_FRAME), which suits frames
+* that stay close to the reference, such as those of a simulation or of refinements of one model,
+* or</li>
+* <li>the same coordinate of the previous atom (DeltaMode.PREVIOUS_ATOM), which needs no
+* reference and suits frames that share little but their sequence, such as decoys, since bonded
+* atoms are never more than a couple of angstroms apart.</li>
+* </ul>
+* The differences are zigzag encoded into variable length integers of 7 bits a byte, every x,
+* then every y, then every z, as a CoordinateStore holds them. A difference of up to 0.063 A takes
+* one byte and one of up to 8.191 A takes two, where a double takes eight.
+* <p>
+* A block is decoded in one pass over its bytes, either into a CoordinateStore or straight into
+* arrays of x, y, and z coordinates that metrics can be run over without building a Protein.
+* <p>
+* Decoding is thread safe. Encoding reuses a buffer, so a QuantizedCoordinateCodec should only
+* encode frames on one thread at a time.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class QuantizedCoordinateCodec{
+  private static final double QUANTA_PER_ANGSTROM = 1000.0;
+  // quantized coordinates are kept to 31 bits so that the difference of any two fits in an int
+  private static final long MAX_QUANTA = (1 << 30) - 1;
+  // the longest variable length int
+  private static final int MAX_VARINT_LENGTH = 5;
+
+  /**
+  * What each quantized coordinate is stored as the difference from.
+  */
+  public enum DeltaMode {
+    /** The same coordinate of the reference frame. */
+    REFERENCE_FRAME,
+    /** The same coordinate of the previous atom, or 0 for the first atom. */
+    PREVIOUS_ATOM
+  }
+
+  private final DeltaMode deltaMode;
+  private final int numCoordinates;
+  // the quantized reference frame, all zeros in PREVIOUS_ATOM mode
+  private final int[][] reference;
+  private final int[] quanta;
+  private byte[] buffer;
+
+  /**
+  * Construct a QuantizedCoordinateCodec that stores each coordinate as its difference from the
+  * same coordinate of the previous atom.
+  * @param numCoordinates the number of sets of coordinates in every frame
+  */
+  public QuantizedCoordinateCodec(int numCoordinates){
+    this(DeltaMode.PREVIOUS_ATOM, numCoordinates, new int[3][numCoordinates]);
+  }
+
+  /**
+  * Construct a QuantizedCoordinateCodec that stores each coordinate as its difference from the
+  * same coordinate of a reference frame. The reference is quantized when this is constructed, so
+  * changing it afterwards changes nothing.
+  * @param reference the coordinates of the reference frame
+  * @throws IllegalArgumentException if a coordinate of the reference is too large to be quantized
+  */
+  public QuantizedCoordinateCodec(CoordinateStore reference){
+    this(DeltaMode.REFERENCE_FRAME, reference.size(), quantize(reference));
+  }
+
+  /**
+  * Construct a QuantizedCoordinateCodec from a reference frame that has already been quantized,
+  * such as one read back from a file.
+  * @param deltaMode what each coordinate is stored as the difference from
+  * @param numCoordinates the number of sets of coordinates in every frame
+  * @param reference the quantized x, y, and z coordinates of the reference frame, all 0 for
+  * DeltaMode.PREVIOUS_ATOM
+  */
+  QuantizedCoordinateCodec(DeltaMode deltaMode, int numCoordinates, int[][] reference){
+    this.deltaMode = deltaMode;
+    this.numCoordinates = numCoordinates;
+    this.reference = reference;
+    this.quanta = new int[numCoordinates];
+    this.buffer = new byte[16];
+  }
+
+  /**
+  * @return what each coordinate is stored as the difference from
+  */
+  public DeltaMode getDeltaMode(){
+    return this.deltaMode;
+  }
+
+  /**
+  * @return the number of sets of coordinates in every frame
+  */
+  public int getNumCoordinates(){
+    return this.numCoordinates;
+  }
+
+  /**
+  * @return the quantized x, y, and z coordinates of the reference frame, all 0 for
+  * DeltaMode.PREVIOUS_ATOM. The arrays are not copied, and must not be changed.
+  */
+  int[][] getQuantizedReference(){
+    return this.reference;
+  }
+
+  /**
+  * Encode a frame into a block.
+  * @param frame the coordinates of the frame
+  * @return the block, holding nothing but the encoded coordinates
+  * @throws IllegalArgumentException if frame does not hold getNumCoordinates() sets of
+  * coordinates, or if a coordinate is too large to be quantized
+  */
+  public byte[] encode(CoordinateStore frame){
+    if(frame.size() != this.numCoordinates){
+      throw new IllegalArgumentException(String.format(
+          "The frame holds %d sets of coordinates instead of %d.",
+          frame.size(), this.numCoordinates));
+    }
+    int capacity = 3 * MAX_VARINT_LENGTH * this.numCoordinates;
+    if(this.buffer.length < capacity){
+      this.buffer = new byte[capacity];
+    }
+    int[] quanta = this.quanta;
+    for(int i = 0; i < this.numCoordinates; i++){
+      quanta[i] = quantize(frame.getX(i));
+    }
+    int position = encodeAxis(quanta, this.reference[0], 0);
+    for(int i = 0; i < this.numCoordinates; i++){
+      quanta[i] = quantize(frame.getY(i));
+    }
+    position = encodeAxis(quanta, this.reference[1], position);
+    for(int i = 0; i < this.numCoordinates; i++){
+      quanta[i] = quantize(frame.getZ(i));
+    }
+    position = encodeAxis(quanta, this.reference[2], position);
+    return Arrays.copyOf(this.buffer, position);
+  }
+
+  /**
+  * Decode a block into a CoordinateStore, such as the CoordinateStore of a Protein, overwriting
+  * its coordinates. The block is decoded straight into the store, without allocating anything. It
+  * is checked before any coordinate is overwritten, so a block that is not valid leaves frame as
+  * it was.
+  * @param block a block encoded by a QuantizedCoordinateCodec with the same reference
+  * @param frame the CoordinateStore to decode the block into
+  * @throws IllegalArgumentException if frame does not hold getNumCoordinates() sets of
+  * coordinates, or block is not a block of that many coordinates
+  */
+  public void decode(byte[] block, CoordinateStore frame){
+    if(frame.size() != this.numCoordinates){
+      throw new IllegalArgumentException(String.format(
+          "The frame holds %d sets of coordinates instead of %d.",
+          frame.size(), this.numCoordinates));
+    }
+    checkBlock(block);
+    int position = decodeAxis(block, 0, this.reference[0], null, frame, 0);
+    position = decodeAxis(block, position, this.reference[1], null, frame, 1);
+    decodeAxis(block, position, this.reference[2], null, frame, 2);
+  }
+
+  /**
+  * Decode a block into arrays of x, y, and z coordinates.
+  * @param block a block encoded by a QuantizedCoordinateCodec with the same reference
+  * @param x filled with the x coordinate of each atom
+  * @param y filled with the y coordinate of each atom
+  * @param z filled with the z coordinate of each atom
+  * @throws IllegalArgumentException if block is not a block of getNumCoordinates() sets of
+  * coordinates, or an array is shorter than that
+  */
+  public void decode(byte[] block, double[] x, double[] y, double[] z){
+    if(x.length < this.numCoordinates || y.length < this.numCoordinates
+        || z.length < this.numCoordinates){
+      throw new IllegalArgumentException(String.format(
+          "The arrays are too short to hold %d sets of coordinates.", this.numCoordinates));
+    }
+    int position = decodeAxis(block, 0, this.reference[0], x, null, 0);
+    position = decodeAxis(block, position, this.reference[1], y, null, 1);
+    position = decodeAxis(block, position, this.reference[2], z, null, 2);
+    if(position != block.length){
+      throw new IllegalArgumentException(String.format(
+          "The block holds %d bytes after the last coordinate.", block.length - position));
+    }
+  }
+
+  /**
+  * Check that a block holds exactly 3 * getNumCoordinates() differences, each at most
+  * MAX_VARINT_LENGTH bytes long, without decoding them.
+  * @throws IllegalArgumentException if it does not
+  */
+  private void checkBlock(byte[] block){
+    long numDifferences = 3L * this.numCoordinates;
+    int position = 0;
+    int length = 0;
+    while(numDifferences > 0 && position < block.length){
+      if(++length > MAX_VARINT_LENGTH){
+        throw new IllegalArgumentException("The block holds a malformed difference.");
+      }
+      // the last byte of a difference has its high bit clear
+      if(block[position++] >= 0){
+        numDifferences--;
+        length = 0;
+      }
+    }
+    if(numDifferences > 0){
+      throw new IllegalArgumentException(String.format(
+          "The block is too short to hold %d sets of coordinates.", this.numCoordinates));
+    }
+    if(position != block.length){
+      throw new IllegalArgumentException(String.format(
+          "The block holds %d bytes after the last coordinate.", block.length - position));
+    }
+  }
+
+  /**
+  * Put the zigzag encoded differences of one axis in the buffer.
+  * @return the position in the buffer after the last difference
+  */
+  private int encodeAxis(int[] quanta, int[] reference, int position){
+    byte[] buffer = this.buffer;
+    boolean previousAtom = this.deltaMode == DeltaMode.PREVIOUS_ATOM;
+    int previous = 0;
+    for(int i = 0; i < quanta.length; i++){
+      int delta = quanta[i] - (previousAtom ? previous : reference[i]);
+      previous = quanta[i];
+      int zigzag = (delta << 1) ^ (delta >> 31);
+      while((zigzag & ~0x7F) != 0){
+        buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+        zigzag >>>= 7;
+      }
+      buffer[position++] = (byte) zigzag;
+    }
+    return position;
+  }
+
+  /**
+  * Decode the differences of one axis from the block into values, or, if values is null, into
+  * that axis of frame.
+  * @return the position in the block after the last difference
+  */
+  private int decodeAxis(byte[] block, int position, int[] reference, double[] values,
+      CoordinateStore frame, int axis){
+    boolean previousAtom = this.deltaMode == DeltaMode.PREVIOUS_ATOM;
+    int previous = 0;
+    try{
+      for(int i = 0; i < this.numCoordinates; i++){
+        int zigzag = block[position++];
+        // most differences fit in one or two bytes
+        if(zigzag < 0){
+          zigzag &= 0x7F;
+          int shift = 7;
+          int b;
+          do{
+            if(shift > 28){
+              throw new IllegalArgumentException("The block holds a malformed difference.");
+            }
+            b = block[position++];
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+          } while(b < 0);
+        }
+        int delta = (zigzag >>> 1) ^ -(zigzag & 1);
+        int quanta = delta + (previousAtom ? previous : reference[i]);
+        previous = quanta;
+        double value = quanta / QUANTA_PER_ANGSTROM;
+        if(values != null){
+          values[i] = value;
+        } else if(axis == 0){
+          frame.set(i, value, frame.getY(i), frame.getZ(i));
+        } else if(axis == 1){
+          frame.set(i, frame.getX(i), value, frame.getZ(i));
+        } else {
+          frame.set(i, frame.getX(i), frame.getY(i), value);
+        }
+      }
+    } catch(ArrayIndexOutOfBoundsException e){
+      throw new IllegalArgumentException(String.format(
+          "The block is too short to hold %d sets of coordinates.", this.numCoordinates));
+    }
+    return position;
+  }
+
+  /**
+  * @return the quantized x, y, and z coordinates of a frame
+  */
+  private static int[][] quantize(CoordinateStore frame){
+    int[][] quanta = new int[3][frame.size()];
+    for(int i = 0; i < frame.size(); i++){
+      quanta[0][i] = quantize(frame.getX(i));
+      quanta[1][i] = quantize(frame.getY(i));
+      quanta[2][i] = quantize(frame.getZ(i));
+    }
+    return quanta;
+  }
+
+  private static int quantize(double coordinate){
+    long quanta = Math.round(coordinate * QUANTA_PER_ANGSTROM);
+    if(quanta > MAX_QUANTA || quanta < -MAX_QUANTA){
+      throw new IllegalArgumentException(String.format(
+          "The coordinate %f is too large to be quantized.", coordinate));
+    }
+    return (int) quanta;
+  }
+}
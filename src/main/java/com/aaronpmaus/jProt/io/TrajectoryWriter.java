@@ -0,0 +1,317 @@
+package com.aaronpmaus.jProt.io;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+* A TrajectoryWriter writes the conformations of a Protein, such as those visited by a sampling
+* run, to a single multi-model PDB file, each as a MODEL ... ENDMDL frame. The file is opened once
+* and the frames are written by a PDBWriter on a background thread, so the thread doing the
+* sampling only pays for copying the coordinates.
+* <p>
+* addFrame() copies the coordinates of the Protein into a CoordinateStore taken from a pool, and
+* queues it. The background thread puts each queued set of coordinates into its own copy of the
+* Protein, writes it out, and returns the CoordinateStore to the pool. If the disk falls so far
+* behind that every CoordinateStore in the pool is queued, addFrame() waits for one to be written.
+* <p>
+* Every frame must hold the same atoms as the first. Frames are written and flushed in the
+* background, flush() waits until every frame added so far is written, and close() waits for the
+* rest and closes the file. An error writing the file is thrown by the next call to addFrame(),
+* flush(), or close().
+* <p>
+* No END record is written, so a file can be added to by opening another TrajectoryWriter on it in
+* append mode. The files can be read back a frame at a time with a PDBModelReader.
+* <p>
+* Usage:<br>
+* {@code try(TrajectoryWriter trajectory = new TrajectoryWriter(path, false)){}<br>
+* {@code   for(int step = 0; step < numSteps; step++){}<br>
+* {@code     manipulator.modifyDihedralAngle(...);}<br>
+* {@code     if(step % 100 == 0) trajectory.addFrame(prot);}<br>
+* {@code }}}<br>
+* <p>
+* A TrajectoryWriter is not thread safe; frames should be added from a single thread.
+* @version 0.8.0
+* @since 0.8.0
+*/
+public class TrajectoryWriter implements Closeable, Flushable {
+  private static final int DEFAULT_CAPACITY = 64;
+  // passed to the writing thread after the last frame
+  private static final Frame END = new Frame(null, 0);
+
+  private final PDBWriter writer;
+  private final int capacity;
+  private final BlockingQueue<Frame> queuedFrames;
+  private final BlockingQueue<CoordinateStore> freeCoordinates;
+  private final Thread writingThread;
+  // the copy of the Protein the frames are written from, made from the first frame
+  private Protein topology;
+  private int numCoordinates;
+  private int numCoordinateStores;
+  private int nextModelNumber;
+  private int numFramesAdded;
+  // guarded by this
+  private int numFramesWritten;
+  private volatile Throwable error;
+  private boolean closed;
+
+  /**
+  * Open a trajectory file, with a pool of 64 sets of coordinates.
+  * @param path the path of the file to write the frames to
+  * @param append if true, frames are added after any already in the file, numbered after them.
+  * If false, the file is replaced.
+  * @throws IOException if the file can not be opened
+  */
+  public TrajectoryWriter(Path path, boolean append) throws IOException{
+    this(path, append, DEFAULT_CAPACITY);
+  }
+
+  /**
+  * Open a trajectory file.
+  * @param path the path of the file to write the frames to
+  * @param append if true, frames are added after any already in the file, numbered after them.
+  * If false, the file is replaced.
+  * @param capacity the number of frames that can be waiting to be written before addFrame() waits
+  * @throws IOException if the file can not be opened
+  * @throws IllegalArgumentException if capacity is less than 1
+  */
+  public TrajectoryWriter(Path path, boolean append, int capacity) throws IOException{
+    if(capacity < 1){
+      throw new IllegalArgumentException(String.format(
+          "The capacity %d is less than 1.", capacity));
+    }
+    this.nextModelNumber = 1;
+    if(append && Files.exists(path)){
+      this.nextModelNumber = countModels(path) + 1;
+    }
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    this.writer = new PDBWriter(Channels.newOutputStream(channel));
+    this.capacity = capacity;
+    // room for every frame and END, so close() never waits to pass END
+    this.queuedFrames = new ArrayBlockingQueue<Frame>(capacity + 1);
+    this.freeCoordinates = new ArrayBlockingQueue<CoordinateStore>(capacity);
+    this.topology = null;
+    this.numCoordinateStores = 0;
+    this.numFramesAdded = 0;
+    this.numFramesWritten = 0;
+    this.closed = false;
+    this.writingThread = new Thread(this::writeFrames, "TrajectoryWriter");
+    this.writingThread.setDaemon(true);
+    this.writingThread.start();
+  }
+
+  /**
+  * Add the current conformation of a Protein to the trajectory. Its coordinates are copied before
+  * this returns, so the Protein can be changed right away.
+  * @param prot the Protein, holding the same atoms as in every other frame
+  * @throws IOException if writing an earlier frame failed
+  * @throws InterruptedIOException if this thread is interrupted while waiting for a frame to be
+  * written
+  * @throws IllegalArgumentException if prot does not hold as many sets of coordinates as the
+  * first frame
+  * @throws IllegalStateException if this TrajectoryWriter is closed
+  */
+  public void addFrame(Protein prot) throws IOException{
+    checkOpen();
+    throwError();
+    CoordinateStore coordinates;
+    if(this.topology == null){
+      this.topology = prot.copy();
+      this.numCoordinates = prot.getCoordinateStore().size();
+      coordinates = prot.snapshotCoordinates();
+      this.numCoordinateStores++;
+    } else {
+      if(prot.getCoordinateStore().size() != this.numCoordinates){
+        throw new IllegalArgumentException(String.format(
+            "Protein %s has %d sets of coordinates, but the first frame has %d.",
+            prot.getProteinName(), prot.getCoordinateStore().size(), this.numCoordinates));
+      }
+      coordinates = this.freeCoordinates.poll();
+      if(coordinates == null && this.numCoordinateStores < this.capacity){
+        coordinates = prot.snapshotCoordinates();
+        this.numCoordinateStores++;
+      } else {
+        if(coordinates == null){
+          coordinates = takeFreeCoordinates();
+        }
+        coordinates.copyFrom(prot.getCoordinateStore());
+      }
+    }
+    this.numFramesAdded++;
+    // there are never more frames queued than CoordinateStores, so this never waits
+    this.queuedFrames.add(new Frame(coordinates, this.nextModelNumber++));
+  }
+
+  /**
+  * @return the number of frames added to this TrajectoryWriter
+  */
+  public int getNumFrames(){
+    return this.numFramesAdded;
+  }
+
+  /**
+  * Wait until every frame added so far has been written to the file.
+  * @throws IOException if writing a frame failed
+  * @throws InterruptedIOException if this thread is interrupted while waiting
+  */
+  @Override
+  public void flush() throws IOException{
+    checkOpen();
+    synchronized(this){
+      while(this.numFramesWritten < this.numFramesAdded && this.error == null){
+        try{
+          wait();
+        } catch(InterruptedException e){
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for frames to be written.");
+        }
+      }
+    }
+    throwError();
+  }
+
+  /**
+  * Wait until every frame has been written, and close the file.
+  * @throws IOException if writing a frame or closing the file failed
+  */
+  @Override
+  public void close() throws IOException{
+    if(this.closed){
+      return;
+    }
+    this.closed = true;
+    this.queuedFrames.add(END);
+    boolean interrupted = false;
+    while(this.writingThread.isAlive()){
+      try{
+        this.writingThread.join();
+      } catch(InterruptedException e){
+        interrupted = true;
+      }
+    }
+    if(interrupted){
+      Thread.currentThread().interrupt();
+    }
+    try{
+      this.writer.close();
+    } catch(IOException e){
+      if(this.error == null){
+        this.error = e;
+      }
+    }
+    throwError();
+  }
+
+  /**
+  * Write the queued frames until END is taken. After an error, frames are taken but not written,
+  * so that addFrame() never waits on a thread that has stopped writing.
+  */
+  private void writeFrames(){
+    while(true){
+      Frame frame;
+      try{
+        frame = this.queuedFrames.take();
+      } catch(InterruptedException e){
+        // only END stops the thread
+        continue;
+      }
+      if(frame == END){
+        return;
+      }
+      try{
+        if(this.error == null){
+          this.topology.restoreCoordinates(frame.coordinates);
+          this.writer.writeModel(this.topology, frame.modelNumber);
+          // don't leave frames in the buffer while there is nothing else to do
+          if(this.queuedFrames.isEmpty()){
+            this.writer.flush();
+          }
+        }
+      } catch(IOException e){
+        this.error = e;
+      } catch(RuntimeException e){
+        this.error = new IOException("Could not write frame " + frame.modelNumber, e);
+      } catch(Throwable e){
+        this.error = e;
+      } finally {
+        // the frame is accounted for however writing it ended, so no caller waits for it forever
+        this.freeCoordinates.add(frame.coordinates);
+        synchronized(this){
+          this.numFramesWritten++;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+  * Wait for the writing thread to return a CoordinateStore to the pool.
+  */
+  private CoordinateStore takeFreeCoordinates() throws InterruptedIOException{
+    try{
+      return this.freeCoordinates.take();
+    } catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a frame to be written.");
+    }
+  }
+
+  private void checkOpen(){
+    if(this.closed){
+      throw new IllegalStateException("The TrajectoryWriter is closed.");
+    }
+  }
+
+  private void throwError() throws IOException{
+    Throwable error = this.error;
+    if(error instanceof IOException){
+      throw (IOException) error;
+    }
+    if(error instanceof Error){
+      throw (Error) error;
+    }
+    if(error != null){
+      throw new IOException("Could not write a frame", error);
+    }
+  }
+
+  /**
+  * @return the number of MODEL records in a PDB file
+  */
+  private static int countModels(Path path) throws IOException{
+    int numModels = 0;
+    try(InputStream stream = Files.newInputStream(path)){
+      PDBLineReader lines = new PDBLineReader(stream);
+      PDBColumnDecoder line = new PDBColumnDecoder();
+      while(lines.nextLine(line)){
+        if(line.equalsTrimmed(0,6,"MODEL")){
+          numModels++;
+        }
+      }
+    }
+    return numModels;
+  }
+
+  private static class Frame{
+    private final CoordinateStore coordinates;
+    private final int modelNumber;
+
+    public Frame(CoordinateStore coordinates, int modelNumber){
+      this.coordinates = coordinates;
+      this.modelNumber = modelNumber;
+    }
+  }
+}
@@ -35,6 +35,12 @@ public class CascadeConformationManipulator extends ConformationManipulator {
     this.protein = protein;
   }
 
+  @Override
+  public void rebind(Protein copy){
+    super.rebind(copy);
+    this.protein = copy;
+  }
+
   @Override
   public void modifyAngle(Atom atomOne, Atom atomTwo, Atom atomThree, double degrees){
 
@@ -43,8 +49,7 @@ public class CascadeConformationManipulator extends ConformationManipulator {
     ConformationManipulator.AngleTriplet triplet =
         new ConformationManipulator.AngleTriplet(atomOne, atomTwo, atomThree);
 
-    String chainID = protein.getChainID(triplet.getAtomTwo());
-    PolypeptideChain chain = protein.getChain(chainID);
+    PolypeptideChain chain = protein.getChain(triplet.getAtomTwo());
     Residue res = chain.getResidue(triplet.getAtomThree());
 
     applyTransformation(t, triplet.isOnBackbone(), chain, res, triplet.getAtomThree());
@@ -60,8 +65,7 @@ public class CascadeConformationManipulator extends ConformationManipulator {
     ConformationManipulator.DihedralQuartet quartet =
         new ConformationManipulator.DihedralQuartet(atomOne, atomTwo, atomThree, atomFour);
 
-    String chainID = protein.getChainID(quartet.getAtomThree());
-    PolypeptideChain chain = protein.getChain(chainID);
+    PolypeptideChain chain = protein.getChain(quartet.getAtomThree());
     Residue res = chain.getResidue(quartet.getAtomThree());
 
     // Apply the transformation to all atoms after bond.getAtomTwo() within its residue
@@ -107,8 +111,7 @@ public class CascadeConformationManipulator extends ConformationManipulator {
     // a gap. The bonds that missing are all backbone bonds, so apply the cascade to all rotatable
     // bonds and all bonds on the backbone.
     if(isRotatableBond(atomOne, atomTwo) || bond.isOnBackbone()){
-      String chainID = protein.getChainID(bond.getAtomTwo());
-      PolypeptideChain chain = protein.getChain(chainID);
+      PolypeptideChain chain = protein.getChain(bond.getAtomTwo());
       Residue res = chain.getResidue(atomTwo);
       //  Apply the transformation to all atoms after bond.getAtomTwo() within its residue
       //  If the bond is on the backbone, apply the transformation to all following residues.
@@ -132,16 +135,18 @@ public class CascadeConformationManipulator extends ConformationManipulator {
   private void applyTransformation(Transformation t, boolean isOnBackbone,
                                    PolypeptideChain chain, Residue res, Atom atom){
     int resID = res.getResidueID();
+    // convert the transformation to a matrix once, instead of once per atom
+    RigidTransform rigidTransform = RigidTransform.fromTransformation(t);
     // get all atoms after atom in the Residue and apply the transformation to them
     Collection<Atom> atomsToTransform = res.getAtomsAfterAndIncluding(atom);
     //System.out.printf("There are %d atoms to transform.\n", atomsToTransform.size());
-    for(Atom atomToTransform : res.getAtomsAfterAndIncluding(atom)){
+    for(Atom atomToTransform : atomsToTransform){
       //System.out.printf("   Applying Transformation to %s.\n", atomToTransform.getName());
-      atomToTransform.applyTransformation(t);
+      atomToTransform.applyTransformation(rigidTransform);
     }
     if(isOnBackbone){
       for(Residue residueToTransform : chain.getResiduesToEnd(resID + 1)){
-        residueToTransform.applyTransformation(t);
+        residueToTransform.applyTransformation(rigidTransform);
       }
     }
   }
@@ -8,6 +8,7 @@ import com.aaronpmaus.jProt.protein.*;
 
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Comparator;
@@ -68,8 +69,8 @@ public abstract class ConformationManipulator {
   private HashSet<DihedralQuartet> validQuartets;
   // a mapping between each rotatable bond and the quartet of atoms that define its dihedral angle.
   private HashMap<OrderedBond, DihedralQuartet> dihedrals;
-  // All valid bonds.
-  private HashSet<OrderedBond> validBonds;
+  // All valid bonds, over the indices of the atoms in the protein's CoordinateStore.
+  private BondTable validBonds;
 
   /**
   * Construct a ConformationManipulator to manipulate a Protein.
@@ -81,7 +82,7 @@ public abstract class ConformationManipulator {
     this.validTriplets = buildAngleTriplets();
     this.validQuartets = new HashSet<DihedralQuartet>();
     this.dihedrals = buildDihedralQuartets();
-    this.validBonds = buildBonds();
+    this.validBonds = this.protein.getBondTable();
   }
 
   /**
@@ -94,7 +95,72 @@ public abstract class ConformationManipulator {
     this.validTriplets = buildAngleTriplets();
     this.validQuartets = new HashSet<DihedralQuartet>();
     this.dihedrals = buildDihedralQuartets();
-    this.validBonds = buildBonds();
+    this.validBonds = this.protein.getBondTable();
+  }
+
+  /**
+  * Move this manipulator onto a copy of the Protein it operates on, such as one made by
+  * Protein::copy(). The bonds, angle triplets, and dihedral quartets of this manipulator are
+  * carried over to the atoms of the copy rather than rebuilt from its residues as update() does,
+  * so moving a manipulator between the members of an ensemble is cheap.
+  * @param copy a copy of the Protein this manipulator operates on
+  * @throws IllegalArgumentException if copy does not have the same atoms at the same indices as
+  * the Protein this manipulator operates on
+  * @since 0.8.0
+  */
+  public void rebind(Protein copy){
+    HashMap<Atom,Integer> copiedAtomIndices =
+        new HashMap<Atom,Integer>(this.atomIndices.size() * 2);
+    for(Map.Entry<Atom,Integer> entry : this.atomIndices.entrySet()){
+      copiedAtomIndices.put(copyOf(entry.getKey(), copy), entry.getValue());
+    }
+    HashSet<AngleTriplet> copiedTriplets =
+        new HashSet<AngleTriplet>(this.validTriplets.size() * 2);
+    for(AngleTriplet triplet : this.validTriplets){
+      copiedTriplets.add(new AngleTriplet(triplet, copy));
+    }
+    HashSet<DihedralQuartet> copiedQuartets =
+        new HashSet<DihedralQuartet>(this.validQuartets.size() * 2);
+    for(DihedralQuartet quartet : this.validQuartets){
+      copiedQuartets.add(new DihedralQuartet(quartet, copy));
+    }
+    HashMap<OrderedBond, DihedralQuartet> copiedDihedrals =
+        new HashMap<OrderedBond, DihedralQuartet>(this.dihedrals.size() * 2);
+    for(Map.Entry<OrderedBond, DihedralQuartet> entry : this.dihedrals.entrySet()){
+      copiedDihedrals.put(new OrderedBond(entry.getKey(), copy),
+                          new DihedralQuartet(entry.getValue(), copy));
+    }
+    this.protein = copy;
+    this.atomIndices = copiedAtomIndices;
+    this.validTriplets = copiedTriplets;
+    this.validQuartets = copiedQuartets;
+    this.dihedrals = copiedDihedrals;
+    this.validBonds = copy.getBondTable();
+  }
+
+  /**
+  * Return the atom of copy that is a copy of atom: the atom at the same index in its
+  * CoordinateStore.
+  * @param atom an atom of the Protein this manipulator operates on
+  * @param copy a copy of that Protein
+  * @return the copy of atom in copy
+  * @throws IllegalArgumentException if the atom of copy at that index is not a copy of atom
+  */
+  private static Atom copyOf(Atom atom, Protein copy){
+    int index = atom.getCoordinateIndex();
+    Atom copied = null;
+    if(index < copy.getCoordinateStore().size()){
+      copied = copy.getAtom(index);
+    }
+    // the atoms of a copy are not equal to those they are copies of, but have their serial numbers
+    if(copied == null || copied.getSerialNumber() != atom.getSerialNumber()
+        || !copied.getName().equals(atom.getName())){
+      throw new IllegalArgumentException(
+          String.format("Protein %s is not a copy of the protein this manipulator operates on. "
+              + "It has no copy of atom %s-%d.",
+              copy.getProteinName(), atom.getName(), atom.getSerialNumber()));
+    }
+    return copied;
   }
 
   //###########################################################################################\\
@@ -506,7 +572,7 @@ public abstract class ConformationManipulator {
   * @return true if the two Atoms passed in are a valid bond in this Protein, false otherwise.
   */
   private boolean isValidBond(Atom atomOne, Atom atomTwo){
-    return this.validBonds.contains(new OrderedBond(atomOne, atomTwo));
+    return this.validBonds.isBonded(atomOne, atomTwo);
   }
 
   /**
@@ -576,7 +642,7 @@ public abstract class ConformationManipulator {
   */
   public List<Atom[]> getBonds(){
     ArrayList<Atom[]> allBonds = new ArrayList<Atom[]>();
-    for(OrderedBond bond : this.validBonds){
+    for(OrderedBond bond : buildOrderedBonds()){
       allBonds.add(new Atom[]{bond.getAtomOne(), bond.getAtomTwo()});
     }
     return allBonds;
@@ -589,7 +655,7 @@ public abstract class ConformationManipulator {
   */
   public List<Atom[]> getBackboneBonds(){
     ArrayList<Atom[]> allBonds = new ArrayList<Atom[]>();
-    for(OrderedBond bond : this.validBonds){
+    for(OrderedBond bond : buildOrderedBonds()){
       if(bond.isOnBackbone()){
         allBonds.add(new Atom[]{bond.getAtomOne(), bond.getAtomTwo()});
       }
@@ -829,23 +895,25 @@ public abstract class ConformationManipulator {
   }
 
   /**
-  * Build all of the valid Bonds: sets of two consecutive atoms that define a Bond.
-  * This set can be used to efficiently validate arguments passed in when manipulating bonds.
-  * Importantly, since order matters when calculating angles, it also imposes an ordering the atoms
-  * in the triplet - from N-Terminus to C-Terminus and within the side chain, from CA on back.
-  * @return a {@code HashSet<OrderedBond>} containing the valid Bond Atom pairs for the protein.
+  * Build an OrderedBond for each of the valid Bonds: pairs of consecutive atoms that define a
+  * Bond. Validating bonds uses the BondTable of the protein directly, these are only built to list
+  * the bonds. Importantly, since order matters when calculating angles, this imposes an ordering
+  * on the atoms in the bond - from N-Terminus to C-Terminus and within the side chain, from CA on
+  * back.
+  * @return a {@code List<OrderedBond>} containing the valid Bond Atom pairs for the protein.
   */
-  private HashSet<OrderedBond> buildBonds(){
-    HashSet<OrderedBond> validBonds = new HashSet<OrderedBond>();
-    for(PolypeptideChain chain : this.protein){
-      for(Bond bond : chain.getBonds()){
-        validBonds.add(new OrderedBond(bond.getAtomOne(), bond.getAtomTwo()));
+  private List<OrderedBond> buildOrderedBonds(){
+    BondTable table = this.validBonds;
+    ArrayList<OrderedBond> orderedBonds = new ArrayList<OrderedBond>(table.getNumBonds());
+    for(int i = 0; i < table.getNumAtoms(); i++){
+      for(int k = table.getNeighborsStart(i); k < table.getNeighborsEnd(i); k++){
+        int j = table.getNeighbor(k);
+        if(i < j){
+          orderedBonds.add(new OrderedBond(table.getAtom(i), table.getAtom(j)));
+        }
       }
     }
-    for(Bond disulfideBond : this.protein.getDisulfideBonds()){
-      validBonds.add(new OrderedBond(disulfideBond.getAtomOne(), disulfideBond.getAtomTwo()));
-    }
-    return validBonds;
+    return orderedBonds;
   }
 
   //###########################################################################################\\
@@ -860,6 +928,11 @@ public abstract class ConformationManipulator {
   class OrderedBond extends OrderedAtoms{
     private boolean onBackbone;
 
+    public OrderedBond(OrderedBond other, Protein copy){
+      super(other, copy);
+      this.onBackbone = other.onBackbone;
+    }
+
     public OrderedBond(Atom one, Atom two){
       super(one, two);
       this.onBackbone = false;
@@ -895,6 +968,11 @@ public abstract class ConformationManipulator {
   class AngleTriplet extends OrderedAtoms{
     private boolean onBackbone;
 
+    public AngleTriplet(AngleTriplet other, Protein copy){
+      super(other, copy);
+      this.onBackbone = other.onBackbone;
+    }
+
     public AngleTriplet(Atom one, Atom two, Atom three){
       super(one, two, three);
       this.onBackbone = false;
@@ -934,6 +1012,11 @@ public abstract class ConformationManipulator {
   class DihedralQuartet extends OrderedAtoms{
     private boolean onBackbone;
 
+    public DihedralQuartet(DihedralQuartet other, Protein copy){
+      super(other, copy);
+      this.onBackbone = other.onBackbone;
+    }
+
     public DihedralQuartet(Atom one, Atom two, Atom three, Atom four){
       super(one, two, three, four);
       this.onBackbone = false;
@@ -997,6 +1080,16 @@ public abstract class ConformationManipulator {
       Collections.sort(orderedAtoms, new AtomComparator());
     }
 
+    /**
+    * Copy other onto the copies of its atoms in copy. The atoms are already in order.
+    */
+    public OrderedAtoms(OrderedAtoms other, Protein copy){
+      this.orderedAtoms = new ArrayList<Atom>(other.getNumAtoms());
+      for(Atom atom : other.orderedAtoms){
+        this.orderedAtoms.add(copyOf(atom, copy));
+      }
+    }
+
     public Atom getAtom(int index){
       return this.orderedAtoms.get(index);
     }
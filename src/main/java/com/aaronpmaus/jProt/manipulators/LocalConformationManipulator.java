@@ -21,6 +21,12 @@ public class LocalConformationManipulator extends ConformationManipulator {
     this.protein = protein;
   }
 
+  @Override
+  public void rebind(Protein copy){
+    super.rebind(copy);
+    this.protein = copy;
+  }
+
   @Override
   public void modifyAngle(Atom atomOne, Atom atomTwo, Atom atomThree, double degrees){
     Transformation t = buildAngleTransformation(atomOne, atomTwo, atomThree, degrees);
@@ -10,21 +10,25 @@ import com.aaronpmaus.jMath.transformations.Transformation;
 * An atom is defined as having a mass, charge, radius, and coordinates.
 * It also knows its element, which is the string representations of its
 * element name. Eg. "H", "C", "N", "O", "S".
+* <p>
+* An Atom does not hold its own coordinates. It is a view onto a slot in a CoordinateStore. An Atom
+* that has just been constructed has a store of its own. When it is added to a Protein, its
+* coordinates are moved into the Protein's CoordinateStore so that all the coordinates of the
+* Protein are held in contiguous arrays.
 *
 * @author Aaron Maus aaron@aaronpmaus.com
 * @version 0.6.0
 * @since 0.1.0
 */
 public class Atom implements Comparable<Atom>, Transformable{
-  // maxSerialNum is used for constructing Atoms when they haven't been read in from
-  // a PDB file. Every atom is given (maxSerialNum+1)
-  private static int maxSerialNum = 0;
   private final double mass;
   private double charge;
   private final String element;
   private final String atomName;
   private final double radius;
-  private Vector3D itsCoordinates;
+  // the coordinates of this atom are at coordinateIndex in coordinates
+  private CoordinateStore coordinates;
+  private int coordinateIndex;
   private int serialNumber;
   private double occupancy; // -1.0 means no value
   private double tempFactor; // -1.0 means no value
@@ -69,17 +73,38 @@ public class Atom implements Comparable<Atom>, Transformable{
   */
   public Atom(String atomName, int serialNumber, double occupancy,
   double tempFactor, double charge, double x, double y, double z){
-    this.itsCoordinates = new Vector3D(x,y,z);
+    this(atomName, serialNumber, occupancy, tempFactor, charge, singleCoordinate(x, y, z), 0);
+  }
+
+  /**
+  * Builds an atom whose coordinates are already held in a CoordinateStore, such as the store of
+  * the Protein it is going to be added to, so that they do not have to be moved there.
+  *
+  * @param atomName   The String representation of the atom. One
+  * of "CA", "CB", "CG", "O", "C", "NH1", etc...
+  * @param serialNumber The Serial Number for this Atom.
+  * @param occupancy the Occupancy for this Atom.
+  * @param tempFactor the Temperature Factor for this Atom.
+  * @param charge the charge of the atom.
+  * @param store the CoordinateStore holding the coordinates of this atom
+  * @param coordinateIndex the index of the coordinates of this atom in store
+  * @throws IndexOutOfBoundsException if coordinateIndex is not an index of store
+  * @since 0.8.0
+  */
+  public Atom(String atomName, int serialNumber, double occupancy,
+  double tempFactor, double charge, CoordinateStore store, int coordinateIndex){
+    if(coordinateIndex < 0 || coordinateIndex >= store.size()){
+      throw new IndexOutOfBoundsException(String.format(
+          "%d is not an index of a CoordinateStore of %d coordinates.",
+          coordinateIndex, store.size()));
+    }
+    this.coordinates = store;
+    this.coordinateIndex = coordinateIndex;
     this.atomName = atomName.toUpperCase().trim();
     this.charge = charge;
     // If the serialNumber is -1, then this atom was built from one of the default amino acids.
-    // Assign the serianNumber to be be the max serial number + 1
-    if(serialNumber == -1){
-      this.serialNumber = Atom.maxSerialNum+1;
-    } else {
-      this.serialNumber = serialNumber;
-    }
-    Atom.maxSerialNum = Math.max(Atom.maxSerialNum, this.serialNumber);
+    // The IdAllocator of this thread assigns it the max serial number + 1
+    this.serialNumber = IdAllocator.current().allocateSerialNumber(serialNumber);
     this.occupancy = occupancy;
     this.tempFactor = tempFactor;
 
@@ -112,14 +137,109 @@ public class Atom implements Comparable<Atom>, Transformable{
     }
   }
 
+  private static CoordinateStore singleCoordinate(double x, double y, double z){
+    CoordinateStore store = CoordinateStore.create(CoordinateStore.Precision.DOUBLE, 1);
+    store.add(x, y, z);
+    return store;
+  }
+
+  /**
+  * Construct a copy of an atom whose coordinates are at the same index in another CoordinateStore,
+  * a copy of the store that other is in. The copy has the same serial number as other.
+  * @param other the atom to copy
+  * @param store the CoordinateStore that holds the coordinates of the copy
+  */
+  Atom(Atom other, CoordinateStore store){
+    this.mass = other.mass;
+    this.charge = other.charge;
+    this.element = other.element;
+    this.atomName = other.atomName;
+    this.radius = other.radius;
+    this.coordinates = store;
+    this.coordinateIndex = other.coordinateIndex;
+    this.serialNumber = other.serialNumber;
+    this.occupancy = other.occupancy;
+    this.tempFactor = other.tempFactor;
+  }
+
   /**
   * Return the coordinates of this atom.
+  * <p>
+  * The Vector returned is a copy. Modifying it does not move the atom. To move the atom use
+  * setCoordinates() or applyTransformation().
   *
   * @return a Vector containing the coordinates of this atom
   * @since 0.1.0
   */
   public Vector3D getCoordinates(){
-    return itsCoordinates;
+    return this.coordinates.getCoordinates(this.coordinateIndex);
+  }
+
+  /**
+  * @return the x coordinate of this atom
+  * @since 0.8.0
+  */
+  public double getX(){
+    return this.coordinates.getX(this.coordinateIndex);
+  }
+
+  /**
+  * @return the y coordinate of this atom
+  * @since 0.8.0
+  */
+  public double getY(){
+    return this.coordinates.getY(this.coordinateIndex);
+  }
+
+  /**
+  * @return the z coordinate of this atom
+  * @since 0.8.0
+  */
+  public double getZ(){
+    return this.coordinates.getZ(this.coordinateIndex);
+  }
+
+  /**
+  * Move this atom to the coordinates specified.
+  * @param x the new x coordinate of this atom
+  * @param y the new y coordinate of this atom
+  * @param z the new z coordinate of this atom
+  * @since 0.8.0
+  */
+  public void setCoordinates(double x, double y, double z){
+    this.coordinates.set(this.coordinateIndex, x, y, z);
+  }
+
+  /**
+  * Return the CoordinateStore that holds the coordinates of this atom.
+  * @return the CoordinateStore holding this atom's coordinates
+  * @since 0.8.0
+  */
+  public CoordinateStore getCoordinateStore(){
+    return this.coordinates;
+  }
+
+  /**
+  * Return the index of this atom's coordinates in its CoordinateStore.
+  * @return the index of this atom in getCoordinateStore()
+  * @since 0.8.0
+  */
+  public int getCoordinateIndex(){
+    return this.coordinateIndex;
+  }
+
+  /**
+  * Move the coordinates of this atom into store. The coordinates are appended to the end of the
+  * store and this atom becomes a view onto that slot.
+  * @param store the CoordinateStore to move this atom's coordinates into
+  */
+  void moveInto(CoordinateStore store){
+    if(store == this.coordinates){
+      return;
+    }
+    int index = store.add(getX(), getY(), getZ());
+    this.coordinates = store;
+    this.coordinateIndex = index;
   }
 
   /**
@@ -213,25 +333,49 @@ public class Atom implements Comparable<Atom>, Transformable{
   * @since 0.1.0
   */
   public double distance(Atom otherAtom) {
-    return getCoordinates().distance(otherAtom.getCoordinates());
+    double dx = getX() - otherAtom.getX();
+    double dy = getY() - otherAtom.getY();
+    double dz = getZ() - otherAtom.getZ();
+    return Math.sqrt(dx*dx + dy*dy + dz*dz);
   }
 
   @Override
   public void applyTransformation(Transformation t){
-    this.itsCoordinates.applyTransformation(t);
+    this.coordinates.applyTransformation(this.coordinateIndex, t);
   }
 
   /**
-  * Compare the two atoms based on their serialNumber
+  * Apply a RigidTransform to this atom.
+  * @param t the RigidTransform to apply
+  * @since 0.8.0
+  */
+  public void applyTransformation(RigidTransform t){
+    this.coordinates.applyTransformation(this.coordinateIndex, t);
+  }
+
+  /**
+  * Compare the two atoms based on their serialNumber. Atoms with the same serial number in
+  * different Proteins, which are not equal, are ordered by their CoordinateStores' identity hash
+  * codes and then by the indices of their coordinates, so that the order is consistent with
+  * equals() for all but the rare stores whose identity hash codes collide.
   *
   * @return a negative number if {@code this.getSerialNumber() < other.getSerialNumber()}
-  *      0 if this.getSerialNumber() == other.getSerialNumber()
+  *      0 if this.equals(other)
   *      a positive number if {@code this.getSerialNumber() > other.getSerialNumber()}
   * @since 0.6.0
   */
   @Override
   public int compareTo(Atom other){
-    return this.getSerialNumber() - other.getSerialNumber();
+    int comparison = Integer.compare(this.getSerialNumber(), other.getSerialNumber());
+    if(comparison != 0 || this.coordinates == other.coordinates){
+      return comparison;
+    }
+    comparison = Integer.compare(System.identityHashCode(this.coordinates),
+        System.identityHashCode(other.coordinates));
+    if(comparison != 0){
+      return comparison;
+    }
+    return Integer.compare(this.coordinateIndex, other.coordinateIndex);
   }
 
   /**
@@ -258,7 +402,8 @@ public class Atom implements Comparable<Atom>, Transformable{
   /**
   * Return a hash code value for this Atom.
   *
-  * The hash code is the atom's serial number
+  * The hash code is the atom's serial number. It does not depend on the CoordinateStore, which
+  * changes when the atom's residue is added to a Protein.
   *
   * @return the hash code
   * @since 0.6.0
@@ -270,16 +415,21 @@ public class Atom implements Comparable<Atom>, Transformable{
 
   /**
   *
-  * Equality is based on the serial number. Every atom must have a different serial number
+  * Equality is based on the serial number and the structure the atom is in. Serial numbers are
+  * only unique within a structure, every Protein numbers its atoms from 1, so two atoms are equal
+  * if they have the same serial number and their coordinates are held in the same
+  * CoordinateStore. Atoms of different Proteins, including an atom and its copy made by
+  * Protein::copy(), are never equal.
   *
-  * @return returns true if the two atoms have the same serial number
+  * @return returns true if the two atoms have the same serial number and CoordinateStore
   * @since 0.6.0
   */
   @Override
   public boolean equals(Object obj){
     if(obj instanceof Atom){
       Atom other = (Atom)obj;
-      if(other.getSerialNumber() == this.getSerialNumber()){
+      if(other.getSerialNumber() == this.getSerialNumber()
+          && other.getCoordinateStore() == this.getCoordinateStore()){
         return true;
       }
     }
@@ -106,9 +106,8 @@ public class Bond {
 
     @Override
     public int hashCode(){
-      long hash = Long.parseLong("" + getAtomOne().hashCode() + getAtomTwo().hashCode());
-      hash %= Integer.MAX_VALUE;
-      return (int) hash;
+      // the atoms are always held in order, so this agrees with equals
+      return 31 * getAtomOne().hashCode() + getAtomTwo().hashCode();
     }
 
     /**
@@ -0,0 +1,275 @@
+package com.aaronpmaus.jProt.protein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+* A BondTable is an immutable, compressed sparse row table of the covalent bonds of a Protein.
+* Atoms are identified by their index in the Protein's CoordinateStore. The neighbors of atom i are
+* held, in ascending order, in one shared int array from position getNeighborsStart(i) (inclusive)
+* to getNeighborsEnd(i) (exclusive).
+* <p>
+* Iterating over the neighbors of an atom does not allocate any objects, and since no atom has
+* more than a handful of bonds, checking whether two atoms are bonded takes constant time.
+* <p>
+* Usage:<br>
+* {@code BondTable table = prot.getBondTable();}<br>
+* {@code for(int k = table.getNeighborsStart(i); k < table.getNeighborsEnd(i); k++)}<br>
+* {@code     int j = table.getNeighbor(k);}<br>
+*
+* @version 0.8.0
+* @since 0.8.0
+*/
+public final class BondTable {
+  // the neighbors of atom i are neighbors[offsets[i]] to neighbors[offsets[i+1]-1]
+  private final int[] offsets;
+  private final int[] neighbors;
+  // the strength of the bond to each entry of neighbors
+  private final int[] strengths;
+  // key: index of the atom, value: the atom (null if no atom of the protein has that index)
+  private final Atom[] atoms;
+  private final CoordinateStore coordinates;
+  private final int numBonds;
+
+  private BondTable(int[] offsets, int[] neighbors, int[] strengths, Atom[] atoms,
+                    CoordinateStore coordinates, int numBonds){
+    this.offsets = offsets;
+    this.neighbors = neighbors;
+    this.strengths = strengths;
+    this.atoms = atoms;
+    this.coordinates = coordinates;
+    this.numBonds = numBonds;
+  }
+
+  /**
+  * Build a BondTable of a set of bonds between atoms in a CoordinateStore. Bonds listed more than
+  * once are only added once.
+  * @param coordinates the CoordinateStore that holds the coordinates of every atom in the bonds
+  * @param bonds the bonds to put in the table
+  * @return a new BondTable
+  * @throws IllegalArgumentException if an atom in one of the bonds is not in coordinates
+  */
+  static BondTable build(CoordinateStore coordinates, Collection<Bond> bonds){
+    int numAtoms = coordinates.size();
+    Atom[] atoms = new Atom[numAtoms];
+    int[] degrees = new int[numAtoms + 1];
+    for(Bond bond : bonds){
+      int one = indexOf(coordinates, bond.getAtomOne());
+      int two = indexOf(coordinates, bond.getAtomTwo());
+      atoms[one] = bond.getAtomOne();
+      atoms[two] = bond.getAtomTwo();
+      degrees[one]++;
+      degrees[two]++;
+    }
+    int[] offsets = new int[numAtoms + 1];
+    for(int i = 0; i < numAtoms; i++){
+      offsets[i+1] = offsets[i] + degrees[i];
+    }
+    // fill each row, reusing degrees as the next free position in each row
+    int[] neighbors = new int[offsets[numAtoms]];
+    int[] strengths = new int[offsets[numAtoms]];
+    System.arraycopy(offsets, 0, degrees, 0, numAtoms);
+    for(Bond bond : bonds){
+      int one = bond.getAtomOne().getCoordinateIndex();
+      int two = bond.getAtomTwo().getCoordinateIndex();
+      neighbors[degrees[one]] = two;
+      strengths[degrees[one]++] = bond.getStrength();
+      neighbors[degrees[two]] = one;
+      strengths[degrees[two]++] = bond.getStrength();
+    }
+    // sort each row and remove any duplicate bonds, compacting the rows as we go
+    int numEntries = 0;
+    int rowStart = 0;
+    for(int i = 0; i < numAtoms; i++){
+      int rowEnd = offsets[i+1];
+      sortRow(neighbors, strengths, rowStart, rowEnd);
+      offsets[i] = numEntries;
+      for(int k = rowStart; k < rowEnd; k++){
+        if(k == rowStart || neighbors[k] != neighbors[k-1]){
+          neighbors[numEntries] = neighbors[k];
+          strengths[numEntries] = strengths[k];
+          numEntries++;
+        }
+      }
+      rowStart = rowEnd;
+    }
+    offsets[numAtoms] = numEntries;
+    return new BondTable(offsets, Arrays.copyOf(neighbors, numEntries),
+        Arrays.copyOf(strengths, numEntries), atoms, coordinates, numEntries / 2);
+  }
+
+  /**
+  * Build a BondTable with the same bonds as this one over copies of its atoms. The arrays holding
+  * the bonds are never modified, so they are shared with this table rather than copied.
+  * @param coordinates the CoordinateStore holding the coordinates of the copied atoms
+  * @param atoms the copied atoms, each at the index of the atom it is a copy of
+  * @return a new BondTable over the copied atoms
+  */
+  BondTable copy(CoordinateStore coordinates, Atom[] atoms){
+    return new BondTable(this.offsets, this.neighbors, this.strengths, atoms, coordinates,
+        this.numBonds);
+  }
+
+  private static int indexOf(CoordinateStore coordinates, Atom atom){
+    if(atom.getCoordinateStore() != coordinates){
+      throw new IllegalArgumentException(
+          String.format("Atom: %s is not in the CoordinateStore of the BondTable.", atom));
+    }
+    return atom.getCoordinateIndex();
+  }
+
+  // insertion sort: rows hold at most a few neighbors
+  private static void sortRow(int[] neighbors, int[] strengths, int from, int to){
+    for(int k = from + 1; k < to; k++){
+      int neighbor = neighbors[k];
+      int strength = strengths[k];
+      int l = k - 1;
+      while(l >= from && neighbors[l] > neighbor){
+        neighbors[l+1] = neighbors[l];
+        strengths[l+1] = strengths[l];
+        l--;
+      }
+      neighbors[l+1] = neighbor;
+      strengths[l+1] = strength;
+    }
+  }
+
+  /**
+  * @return the number of atom indices in this table, the size of the CoordinateStore it was built
+  * over
+  */
+  public int getNumAtoms(){
+    return this.atoms.length;
+  }
+
+  /**
+  * @return the number of bonds in this table
+  */
+  public int getNumBonds(){
+    return this.numBonds;
+  }
+
+  /**
+  * @param atomIndex the index of an atom
+  * @return the Atom with that index, or null if no bonded atom has that index
+  */
+  public Atom getAtom(int atomIndex){
+    return this.atoms[atomIndex];
+  }
+
+  /**
+  * @param atomIndex the index of an atom
+  * @return the number of atoms bonded to the atom
+  */
+  public int getNumNeighbors(int atomIndex){
+    return this.offsets[atomIndex+1] - this.offsets[atomIndex];
+  }
+
+  /**
+  * @param atomIndex the index of an atom
+  * @return the position of the first neighbor of the atom
+  */
+  public int getNeighborsStart(int atomIndex){
+    return this.offsets[atomIndex];
+  }
+
+  /**
+  * @param atomIndex the index of an atom
+  * @return one past the position of the last neighbor of the atom
+  */
+  public int getNeighborsEnd(int atomIndex){
+    return this.offsets[atomIndex+1];
+  }
+
+  /**
+  * @param position a position between getNeighborsStart(i) and getNeighborsEnd(i) of some atom i
+  * @return the index of the atom bonded to i at that position
+  */
+  public int getNeighbor(int position){
+    return this.neighbors[position];
+  }
+
+  /**
+  * @param position a position between getNeighborsStart(i) and getNeighborsEnd(i) of some atom i
+  * @return the strength of the bond at that position, 1 for single, 2 for double, etc...
+  */
+  public int getStrength(int position){
+    return this.strengths[position];
+  }
+
+  /**
+  * @param i the index of one atom
+  * @param j the index of the other atom
+  * @return true if the two atoms are bonded
+  */
+  public boolean isBonded(int i, int j){
+    for(int k = this.offsets[i]; k < this.offsets[i+1]; k++){
+      if(this.neighbors[k] == j){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+  * @param one one atom
+  * @param two the other atom
+  * @return true if both atoms are in this table and are bonded to each other
+  */
+  public boolean isBonded(Atom one, Atom two){
+    if(!contains(one) || !contains(two)){
+      return false;
+    }
+    return isBonded(one.getCoordinateIndex(), two.getCoordinateIndex());
+  }
+
+  /**
+  * @param atom an atom
+  * @return true if atom is one of the atoms in this table
+  */
+  public boolean contains(Atom atom){
+    if(atom.getCoordinateStore() != this.coordinates
+        || atom.getCoordinateIndex() >= this.atoms.length){
+      return false;
+    }
+    return this.atoms[atom.getCoordinateIndex()] == atom;
+  }
+
+  /**
+  * Build a list of Bond objects for the bonds in this table, in order of the index of their first
+  * atom.
+  * @return a new {@code List<Bond>} with one Bond for each bond in this table
+  */
+  public List<Bond> getBonds(){
+    ArrayList<Bond> bonds = new ArrayList<Bond>(this.numBonds);
+    for(int i = 0; i < this.atoms.length; i++){
+      for(int k = this.offsets[i]; k < this.offsets[i+1]; k++){
+        int j = this.neighbors[k];
+        if(i < j){
+          bonds.add(new Bond(this.atoms[i], this.atoms[j], this.strengths[k]));
+        }
+      }
+    }
+    return bonds;
+  }
+
+  /**
+  * @param atom an atom in this table
+  * @return a new {@code List<Atom>} of the atoms bonded to atom
+  * @throws IllegalArgumentException if atom is not in this table
+  */
+  public List<Atom> getNeighbors(Atom atom){
+    if(!contains(atom)){
+      throw new IllegalArgumentException(
+          String.format("Atom: %s is not in the BondTable.", atom));
+    }
+    int i = atom.getCoordinateIndex();
+    ArrayList<Atom> bondedAtoms = new ArrayList<Atom>(getNumNeighbors(i));
+    for(int k = this.offsets[i]; k < this.offsets[i+1]; k++){
+      bondedAtoms.add(this.atoms[this.neighbors[k]]);
+    }
+    return bondedAtoms;
+  }
+}
@@ -0,0 +1,295 @@
+package com.aaronpmaus.jProt.protein;
+
+import com.aaronpmaus.jMath.linearAlgebra.Vector3D;
+import com.aaronpmaus.jMath.transformations.Transformation;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+* A CoordinateStore holds the coordinates of a set of Atoms in contiguous primitive arrays, one
+* array for each of the x, y, and z values. Every Protein has a CoordinateStore that holds the
+* coordinates of all of its atoms, and every Atom is a view onto one slot (an index) of a store.
+* <p>
+* Keeping the coordinates in arrays rather than in an object per atom keeps large structures
+* compact in memory and lets whole structure operations (distance matrices, transformations, etc)
+* run as tight loops over the arrays.
+* <p>
+* A store holds its coordinates either in double precision (the default) or in single precision
+* (see {@link Precision}). Single precision halves the memory used by the coordinates and is
+* precise enough to hold the 3 decimal place coordinates of a PDB file. The accessors of both
+* read and write doubles, so code using a store does not need to know its precision.
+* <p>
+* Usage:<br>
+* {@code CoordinateStore store = prot.getCoordinateStore();}<br>
+* {@code for(int i = 0; i < store.size(); i++)}<br>
+* {@code     centroidX += store.getX(i);}<br>
+* <p>
+* Whole structure transformations should use the {@link RigidTransform} methods, which transform
+* every coordinate in one pass over the arrays without allocating any objects:<br>
+* {@code store.applyTransformation(RigidTransform.fromTransformation(t));}<br>
+*
+* @version 0.8.0
+* @since 0.8.0
+*/
+public abstract class CoordinateStore {
+  /**
+  * The precision that a CoordinateStore holds its coordinates in.
+  */
+  public enum Precision {
+    /** coordinates are held as 64 bit doubles */
+    DOUBLE,
+    /** coordinates are held as 32 bit floats, half the memory of DOUBLE */
+    SINGLE
+  }
+
+  // the number of coordinates a store must hold before applyTransformationInParallel splits the
+  // work across threads. Each parallel task transforms a chunk of this many coordinates.
+  private static final int PARALLEL_CHUNK_SIZE = 16384;
+
+  protected int size;
+
+  /**
+  * Create an empty double precision CoordinateStore.
+  * @return a new, empty, double precision CoordinateStore
+  */
+  public static CoordinateStore create(){
+    return create(Precision.DOUBLE, 16);
+  }
+
+  /**
+  * Create an empty CoordinateStore with the given precision and room for initialCapacity
+  * coordinates before it must grow.
+  * @param precision the precision to hold coordinates in
+  * @param initialCapacity the number of coordinates the store can initially hold
+  * @return a new, empty CoordinateStore
+  */
+  public static CoordinateStore create(Precision precision, int initialCapacity){
+    initialCapacity = Math.max(initialCapacity, 1);
+    switch(precision){
+      case SINGLE:
+        return new SinglePrecisionCoordinateStore(initialCapacity);
+      default:
+        return new DoublePrecisionCoordinateStore(initialCapacity);
+    }
+  }
+
+  /**
+  * @return the precision that this store holds its coordinates in
+  */
+  public abstract Precision getPrecision();
+
+  /**
+  * Append a set of coordinates to the end of this store.
+  * @param x the x coordinate
+  * @param y the y coordinate
+  * @param z the z coordinate
+  * @return the index of the newly added coordinates
+  */
+  public int add(double x, double y, double z){
+    if(this.size == capacity()){
+      grow(this.size + 1);
+    }
+    int index = this.size;
+    this.size++;
+    set(index, x, y, z);
+    return index;
+  }
+
+  /**
+  * @return the number of coordinates in this store
+  */
+  public int size(){
+    return this.size;
+  }
+
+  /**
+  * @param index the index of a set of coordinates in this store
+  * @return the x coordinate at index
+  */
+  public abstract double getX(int index);
+
+  /**
+  * @param index the index of a set of coordinates in this store
+  * @return the y coordinate at index
+  */
+  public abstract double getY(int index);
+
+  /**
+  * @param index the index of a set of coordinates in this store
+  * @return the z coordinate at index
+  */
+  public abstract double getZ(int index);
+
+  /**
+  * @param index the index of a set of coordinates in this store
+  * @return a new Vector3D holding the coordinates at index
+  */
+  public Vector3D getCoordinates(int index){
+    return new Vector3D(getX(index), getY(index), getZ(index));
+  }
+
+  /**
+  * Overwrite the coordinates at index. In a single precision store the values are rounded to the
+  * nearest float.
+  * @param index the index of the coordinates to overwrite
+  * @param x the new x coordinate
+  * @param y the new y coordinate
+  * @param z the new z coordinate
+  */
+  public abstract void set(int index, double x, double y, double z);
+
+  /**
+  * Return the euclidean distance between two sets of coordinates in this store.
+  * @param i the index of one set of coordinates
+  * @param j the index of the other set of coordinates
+  * @return the distance between the coordinates at i and j
+  */
+  public abstract double distance(int i, int j);
+
+  /**
+  * Apply a Transformation to the coordinates at index.
+  * @param index the index of the coordinates to transform
+  * @param t the Transformation to apply
+  */
+  public void applyTransformation(int index, Transformation t){
+    Vector3D coordinates = getCoordinates(index);
+    coordinates.applyTransformation(t);
+    set(index, coordinates.getX().doubleValue(), coordinates.getY().doubleValue(),
+        coordinates.getZ().doubleValue());
+  }
+
+  /**
+  * Apply a RigidTransform to the coordinates at index.
+  * @param index the index of the coordinates to transform
+  * @param t the RigidTransform to apply
+  */
+  public void applyTransformation(int index, RigidTransform t){
+    applyTransformation(t, index, index + 1);
+  }
+
+  /**
+  * Apply a RigidTransform to every set of coordinates in this store in a single pass.
+  * @param t the RigidTransform to apply
+  */
+  public void applyTransformation(RigidTransform t){
+    transform(t, 0, this.size);
+  }
+
+  /**
+  * Apply a list of RigidTransforms, in order, to every set of coordinates in this store. The
+  * transforms are composed first, so this is still a single pass over the coordinates.
+  * @param transforms the RigidTransforms to apply, first to be applied first
+  */
+  public void applyTransformation(List<RigidTransform> transforms){
+    applyTransformation(RigidTransform.compose(transforms));
+  }
+
+  /**
+  * Apply a RigidTransform to the coordinates from index from (inclusive) to index to (exclusive).
+  * @param t the RigidTransform to apply
+  * @param from the index of the first set of coordinates to transform
+  * @param to one past the index of the last set of coordinates to transform
+  * @throws IndexOutOfBoundsException if from and to do not describe a range in this store
+  */
+  public void applyTransformation(RigidTransform t, int from, int to){
+    if(from < 0 || to > this.size || from > to){
+      throw new IndexOutOfBoundsException(String.format(
+          "Range [%d, %d) is not within a CoordinateStore of size %d.", from, to, this.size));
+    }
+    transform(t, from, to);
+  }
+
+  /**
+  * Apply a RigidTransform to every set of coordinates in this store, splitting the work across
+  * the threads of the common fork join pool. Stores too small to benefit are transformed on the
+  * calling thread.
+  * @param t the RigidTransform to apply
+  */
+  public void applyTransformationInParallel(RigidTransform t){
+    final int size = this.size;
+    if(size <= PARALLEL_CHUNK_SIZE){
+      transform(t, 0, size);
+      return;
+    }
+    int numChunks = (size + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+    IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+      int from = chunk * PARALLEL_CHUNK_SIZE;
+      transform(t, from, Math.min(from + PARALLEL_CHUNK_SIZE, size));
+    });
+  }
+
+  /**
+  * Transform the coordinates from index from (inclusive) to index to (exclusive) in place.
+  * @param t the RigidTransform to apply
+  * @param from the index of the first set of coordinates to transform
+  * @param to one past the index of the last set of coordinates to transform
+  */
+  protected abstract void transform(RigidTransform t, int from, int to);
+
+  /**
+  * @return a new CoordinateStore with the same precision and the same coordinates as this one
+  */
+  public abstract CoordinateStore copy();
+
+  /**
+  * Overwrite every set of coordinates in this store with the coordinates at the same index in
+  * source. If both stores have the same precision the arrays are copied directly.
+  * @param source a CoordinateStore the same size as this one
+  * @throws IllegalArgumentException if source is not the same size as this store
+  */
+  public void copyFrom(CoordinateStore source){
+    if(source.size() != this.size){
+      throw new IllegalArgumentException(String.format(
+          "Can not copy a CoordinateStore of size %d into one of size %d.",
+          source.size(), this.size));
+    }
+    copyCoordinates(source);
+  }
+
+  /**
+  * Copy the coordinates of source, a store the same size as this one, into this store.
+  * Implementations copy the arrays directly when source has the same precision.
+  * @param source the CoordinateStore to copy the coordinates of
+  */
+  protected void copyCoordinates(CoordinateStore source){
+    for(int i = 0; i < this.size; i++){
+      set(i, source.getX(i), source.getY(i), source.getZ(i));
+    }
+  }
+
+  /**
+  * Shrink the arrays of this store to hold exactly size() coordinates.
+  */
+  public abstract void trimToSize();
+
+  /**
+  * Ensure this store can hold at least minCapacity coordinates without growing again.
+  * @param minCapacity the number of coordinates this store must be able to hold
+  */
+  public void ensureCapacity(int minCapacity){
+    if(minCapacity > capacity()){
+      grow(minCapacity);
+    }
+  }
+
+  /**
+  * @return the number of coordinates this store can hold before it must grow
+  */
+  protected abstract int capacity();
+
+  /**
+  * Grow the arrays of this store to hold at least minCapacity coordinates.
+  * @param minCapacity the number of coordinates this store must be able to hold
+  */
+  protected abstract void grow(int minCapacity);
+
+  /**
+  * @param capacity the current capacity of a store
+  * @param minCapacity the minimum capacity needed
+  * @return the capacity a store should grow to
+  */
+  protected static int newCapacity(int capacity, int minCapacity){
+    return Math.max(minCapacity, capacity + (capacity >> 1) + 1);
+  }
+}
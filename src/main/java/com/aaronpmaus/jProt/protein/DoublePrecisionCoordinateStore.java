@@ -0,0 +1,104 @@
+package com.aaronpmaus.jProt.protein;
+
+import java.util.Arrays;
+
+/**
+* A CoordinateStore that holds its coordinates in double precision arrays.
+* @version 0.8.0
+* @since 0.8.0
+*/
+final class DoublePrecisionCoordinateStore extends CoordinateStore {
+  private double[] x;
+  private double[] y;
+  private double[] z;
+
+  DoublePrecisionCoordinateStore(int initialCapacity){
+    this.x = new double[initialCapacity];
+    this.y = new double[initialCapacity];
+    this.z = new double[initialCapacity];
+    this.size = 0;
+  }
+
+  @Override
+  public Precision getPrecision(){
+    return Precision.DOUBLE;
+  }
+
+  @Override
+  public double getX(int index){
+    return this.x[index];
+  }
+
+  @Override
+  public double getY(int index){
+    return this.y[index];
+  }
+
+  @Override
+  public double getZ(int index){
+    return this.z[index];
+  }
+
+  @Override
+  public void set(int index, double x, double y, double z){
+    this.x[index] = x;
+    this.y[index] = y;
+    this.z[index] = z;
+  }
+
+  @Override
+  public double distance(int i, int j){
+    double dx = this.x[i] - this.x[j];
+    double dy = this.y[i] - this.y[j];
+    double dz = this.z[i] - this.z[j];
+    return Math.sqrt(dx*dx + dy*dy + dz*dz);
+  }
+
+  @Override
+  protected void transform(RigidTransform t, int from, int to){
+    t.apply(this.x, this.y, this.z, from, to);
+  }
+
+  @Override
+  public CoordinateStore copy(){
+    DoublePrecisionCoordinateStore copy =
+        new DoublePrecisionCoordinateStore(Math.max(this.size, 1));
+    copy.size = this.size;
+    copy.copyCoordinates(this);
+    return copy;
+  }
+
+  @Override
+  protected void copyCoordinates(CoordinateStore source){
+    if(!(source instanceof DoublePrecisionCoordinateStore)){
+      super.copyCoordinates(source);
+      return;
+    }
+    DoublePrecisionCoordinateStore other = (DoublePrecisionCoordinateStore) source;
+    System.arraycopy(other.x, 0, this.x, 0, this.size);
+    System.arraycopy(other.y, 0, this.y, 0, this.size);
+    System.arraycopy(other.z, 0, this.z, 0, this.size);
+  }
+
+  @Override
+  public void trimToSize(){
+    if(this.size < this.x.length){
+      this.x = Arrays.copyOf(this.x, this.size);
+      this.y = Arrays.copyOf(this.y, this.size);
+      this.z = Arrays.copyOf(this.z, this.size);
+    }
+  }
+
+  @Override
+  protected int capacity(){
+    return this.x.length;
+  }
+
+  @Override
+  protected void grow(int minCapacity){
+    int newCapacity = newCapacity(this.x.length, minCapacity);
+    this.x = Arrays.copyOf(this.x, newCapacity);
+    this.y = Arrays.copyOf(this.y, newCapacity);
+    this.z = Arrays.copyOf(this.z, newCapacity);
+  }
+}
@@ -0,0 +1,119 @@
+package com.aaronpmaus.jProt.protein;
+
+/**
+* An IdAllocator assigns serial numbers to Atoms and residue IDs to Residues that are constructed
+* without one (with an ID of -1). Each newly constructed atom or residue without an ID is given one
+* more than the largest ID the allocator has seen.
+* <p>
+* Every thread has its own current IdAllocator, so structures can be built on several threads at
+* once. A Scope replaces the current allocator of a thread with a fresh one until it is closed.
+* Anything built inside a scope is numbered from 1, independent of what was built before it or on
+* other threads, so the IDs of a structure built in a scope are deterministic. PDBFileIO and
+* VirtualRibosome build every Protein in its own scope. When a scope closes, the largest IDs it
+* assigned are passed on to the allocator it replaced.
+* <p>
+* Usage:<br>
+* {@code IdAllocator.Scope scope = IdAllocator.openScope();}<br>
+* {@code // build a structure}<br>
+* {@code scope.close();}<br>
+*
+* @version 0.8.0
+* @since 0.8.0
+*/
+public final class IdAllocator {
+  private static final ThreadLocal<IdAllocator> CURRENT =
+      ThreadLocal.withInitial(IdAllocator::new);
+
+  private int maxSerialNumber = 0;
+  private int maxResidueID = 0;
+
+  private IdAllocator(){
+  }
+
+  /**
+  * @return the IdAllocator that Atoms and Residues constructed on this thread get their IDs from
+  */
+  public static IdAllocator current(){
+    return CURRENT.get();
+  }
+
+  /**
+  * Replace the current IdAllocator of this thread with a new, empty one until the returned Scope
+  * is closed. Scopes may be nested, but must be closed in the reverse order they were opened.
+  * @return the Scope, to be closed when the structure has been built
+  */
+  public static Scope openScope(){
+    IdAllocator enclosing = CURRENT.get();
+    CURRENT.set(new IdAllocator());
+    return new Scope(enclosing);
+  }
+
+  /**
+  * Allocate a serial number for an Atom.
+  * @param serialNumber the serial number of the atom, or -1 if it has none
+  * @return serialNumber, or one more than the largest serial number seen if serialNumber is -1
+  */
+  public int allocateSerialNumber(int serialNumber){
+    if(serialNumber == -1){
+      serialNumber = this.maxSerialNumber + 1;
+    }
+    this.maxSerialNumber = Math.max(this.maxSerialNumber, serialNumber);
+    return serialNumber;
+  }
+
+  /**
+  * Allocate a residue ID for a Residue.
+  * @param residueID the ID of the residue, or -1 if it has none
+  * @return residueID, or one more than the largest residue ID seen if residueID is -1
+  */
+  public int allocateResidueID(int residueID){
+    if(residueID == -1){
+      residueID = this.maxResidueID + 1;
+    }
+    this.maxResidueID = Math.max(this.maxResidueID, residueID);
+    return residueID;
+  }
+
+  /**
+  * @return the largest serial number this allocator has seen
+  */
+  public int getMaxSerialNumber(){
+    return this.maxSerialNumber;
+  }
+
+  /**
+  * @return the largest residue ID this allocator has seen
+  */
+  public int getMaxResidueID(){
+    return this.maxResidueID;
+  }
+
+  /**
+  * A Scope is the period during which a thread allocates IDs from a fresh IdAllocator. Closing it
+  * restores the allocator that was current when it was opened.
+  */
+  public static final class Scope implements AutoCloseable {
+    private final IdAllocator enclosing;
+    private boolean closed = false;
+
+    private Scope(IdAllocator enclosing){
+      this.enclosing = enclosing;
+    }
+
+    /**
+    * Restore the IdAllocator that was current when this scope was opened. Closing a scope more
+    * than once has no effect.
+    */
+    @Override
+    public void close(){
+      if(this.closed){
+        return;
+      }
+      this.closed = true;
+      IdAllocator scoped = CURRENT.get();
+      this.enclosing.allocateSerialNumber(scoped.getMaxSerialNumber());
+      this.enclosing.allocateResidueID(scoped.getMaxResidueID());
+      CURRENT.set(this.enclosing);
+    }
+  }
+}
@@ -17,6 +17,16 @@ import java.util.Iterator;
 
 /**
 * A PolypeptideChain is a single chain of amino acids.
+* <p>
+* Residues can be added to a chain one at a time with addResidue(), or all at once with a
+* PolypeptideChain.Builder, which sorts and indexes them and creates their peptide bonds in a
+* single pass:
+* <p>
+* {@code PolypeptideChain.Builder builder = new PolypeptideChain.Builder("A");}<br>
+* {@code for(Residue res : residues)}<br>
+* {@code     builder.addResidue(res);}<br>
+* {@code PolypeptideChain chain = builder.build();}<br>
+*
 * @author Aaron Maus aaron@aaronpmaus.com
 * @version 0.6.0
 * @since 0.6.0
@@ -32,6 +42,10 @@ public class PolypeptideChain extends Molecule implements Iterable<Residue>, Tra
   private HashMap<Atom, Residue> residuesByAtom;
   private ArrayList<Bond> rotatableBonds;
   private String chainID;
+  // the CoordinateStore of the Protein this chain is in, null until the chain is added to one.
+  private CoordinateStore coordinates;
+  // true if this chain was built by a Builder without bonds
+  private boolean builtWithoutBonds = false;
 
   /**
   * A constructor for a PolypeptideChain.
@@ -56,67 +70,105 @@ public class PolypeptideChain extends Molecule implements Iterable<Residue>, Tra
   }
 
   /**
-  * Add a residue to this chain
-  * @param residue the residue to add
+  * @return true if this chain was built by a Builder without bonds, as chains holding only some
+  * atoms of each residue are
+  * @since 0.8.0
   */
-  public void addResidue(Residue residue){
-    residues.add(residue);
-    Collections.sort(residues, new ResidueComparator());
-    buildResidueIndices();
-    addBondsFromResidue(residue);
-    for(Atom atom : residue){
-      this.residuesByAtom.put(atom, residue);
-    }
-  }
-
-  private void buildResidueIndices(){
-    residueIndices = new HashMap<Integer,Integer>();
-    int index = 0;
-    for(Residue res : this){
-      residueIndices.put(res.getResidueID(), index);
-      index++;
-    }
+  public boolean isBuiltWithoutBonds(){
+    return this.builtWithoutBonds;
   }
 
   /**
-  * Get and add all Bonds from the Residue to this Chain.
-  * @param residue the residue whose bonds need to be added to this chain.
+  * Add a residue to this chain. To build a chain from many residues, use a
+  * PolypeptideChain.Builder.
+  * @param residue the residue to add
   */
-  private void addBondsFromResidue(Residue residue){
-    Collection<Bond> bonds = residue.getBonds();
-    for(Bond b : bonds){
-      this.addBond(b); // inherited from Molecule
-      if(b.containsAtom("N") && b.containsAtom("CA")){
-        this.bondResidueIDs.put(b, residue.getResidueID());
-        this.rotatableBonds.add(b);
+  public void addResidue(Residue residue){
+    if(this.coordinates != null){
+      residue.moveAtomsInto(this.coordinates);
+    }
+    // find where the residue goes: after every residue with a residueID less than or equal to its
+    // own. Residues are almost always added in order, so check the end first.
+    int index = this.residues.size();
+    if(index > 0 && getLastResidue().getResidueID() > residue.getResidueID()){
+      index = Collections.binarySearch(this.residues, residue, RESIDUE_COMPARATOR);
+      if(index < 0){
+        index = -(index + 1);
       }
-      if(b.containsAtom("CA") && b.containsAtom("C")){
-        this.bondResidueIDs.put(b, residue.getResidueID());
-        this.rotatableBonds.add(b);
+      while(index < this.residues.size()
+          && this.residues.get(index).getResidueID() <= residue.getResidueID()){
+        index++;
       }
     }
+    this.residues.add(index, residue);
+    buildResidueIndices(index);
+    addResidueBonds(residue);
     // if the previous residue - the residue with the residueID immediately
     // preceeding this residue's ID - exists, then add a bond between it's
     // C and this residue's N.
     if(this.contains(residue.getResidueID()-1)){
-      Residue prevResidue = getResidue(residue.getResidueID()-1);
-      Bond b = new Bond(prevResidue.getAtom("C"), residue.getAtom("N"), 1);
-      this.addBond(b);
-      this.bondResidueIDs.put(b, residue.getResidueID());
-      this.rotatableBonds.add(b);
+      addPeptideBond(getResidue(residue.getResidueID()-1), residue);
     }
     // if the next residue - the residue with the residueID immediately
     // after this residue's ID - exists, then add a bond between this
     // residue's C and its N.
     if(this.contains(residue.getResidueID()+1)){
-      Residue nextResidue = getResidue(residue.getResidueID()+1);
-      Bond b = new Bond(residue.getAtom("C"), nextResidue.getAtom("N"), 1);
-      this.addBond(b);
-      this.bondResidueIDs.put(b, nextResidue.getResidueID());
-      this.rotatableBonds.add(b);
+      addPeptideBond(residue, getResidue(residue.getResidueID()+1));
+    }
+  }
+
+  // index the residues from the residue at fromIndex to the end of the chain
+  private void buildResidueIndices(int fromIndex){
+    for(int index = fromIndex; index < this.residues.size(); index++){
+      residueIndices.put(this.residues.get(index).getResidueID(), index);
     }
   }
 
+  /**
+  * Add all the Bonds in residue to this chain and index its atoms.
+  * @param residue the residue whose bonds need to be added to this chain.
+  */
+  private void addResidueBonds(Residue residue){
+    addResidueBonds(residue, true);
+  }
+
+  /**
+  * Index the atoms of residue and, if withBonds, add all the Bonds in residue to this chain.
+  * @param residue the residue to add the bonds of and index the atoms of
+  * @param withBonds whether to add the bonds of residue
+  */
+  private void addResidueBonds(Residue residue, boolean withBonds){
+    Collection<Bond> bonds = withBonds ? residue.getBonds() : Collections.<Bond>emptyList();
+    for(Bond b : bonds){
+      this.addBond(b); // inherited from Molecule
+      String atomOneName = b.getAtomOne().getName();
+      String atomTwoName = b.getAtomTwo().getName();
+      // the N-CA and CA-C bonds are rotatable
+      if(atomOneName.equals("CA") || atomTwoName.equals("CA")){
+        String otherName = atomOneName.equals("CA") ? atomTwoName : atomOneName;
+        if(otherName.equals("N") || otherName.equals("C")){
+          this.bondResidueIDs.put(b, residue.getResidueID());
+          this.rotatableBonds.add(b);
+        }
+      }
+    }
+    for(Atom atom : residue){
+      this.residuesByAtom.put(atom, residue);
+    }
+  }
+
+  /**
+  * Add the peptide bond between the C of prevResidue and the N of nextResidue.
+  * @param prevResidue the residue whose C is in the bond
+  * @param nextResidue the residue whose N is in the bond, the residue after prevResidue
+  */
+  private void addPeptideBond(Residue prevResidue, Residue nextResidue){
+    Bond b = new Bond(prevResidue.getAtom("C"), nextResidue.getAtom("N"), 1);
+    this.addBond(b);
+    this.bondResidueIDs.put(b, nextResidue.getResidueID());
+    this.rotatableBonds.add(b);
+  }
+
   /**
   * Get the residue with the given residueID.
   * @param residueID the residueID of the residue to get
@@ -357,19 +409,148 @@ public class PolypeptideChain extends Molecule implements Iterable<Residue>, Tra
 
   @Override
   public void applyTransformation(Transformation t){
+    applyTransformation(RigidTransform.fromTransformation(t));
+  }
+
+  /**
+  * Apply a RigidTransform to all the atoms in this chain.
+  * @param t the RigidTransform to apply
+  * @since 0.8.0
+  */
+  public void applyTransformation(RigidTransform t){
     for(Residue residue : this ){
       residue.applyTransformation(t);
     }
   }
 
+  /**
+  * Move the coordinates of all the atoms of this chain into store. Residues added to this chain
+  * afterwards are moved into store as they are added.
+  * @param store the CoordinateStore of the Protein this chain is a part of
+  */
+  void setCoordinateStore(CoordinateStore store){
+    this.coordinates = store;
+    for(Residue residue : this){
+      residue.moveAtomsInto(store);
+    }
+  }
+
+  /**
+  * Copy this chain. The copies of its atoms have their coordinates at the same indices in store,
+  * which must be a copy of the CoordinateStore its atoms are in.
+  * @param store the CoordinateStore holding the coordinates of the copy
+  * @return a copy of this PolypeptideChain, without any disulfide bonds
+  */
+  PolypeptideChain copy(CoordinateStore store){
+    Builder builder = new Builder(getChainID());
+    if(this.builtWithoutBonds){
+      builder.withoutBonds();
+    }
+    for(Residue residue : this.residues){
+      builder.addResidue(residue.copy(store));
+    }
+    return builder.build();
+  }
+
   @Override
   public Iterator<Residue> iterator(){
     return this.getResidues().iterator();
   }
 
-  private class ResidueComparator implements Comparator<Residue>{
+  private static final Comparator<Residue> RESIDUE_COMPARATOR = new ResidueComparator();
+
+  private static class ResidueComparator implements Comparator<Residue>{
     public int compare(Residue one, Residue two){
-      return one.getResidueID() - two.getResidueID();
+      return Integer.compare(one.getResidueID(), two.getResidueID());
+    }
+  }
+
+  /**
+  * A Builder collects the residues of a chain in any order and builds the chain from them at
+  * once. The residues are sorted and indexed once and the peptide bonds between consecutive
+  * residues are made in a single pass, rather than on every addResidue().
+  * @since 0.8.0
+  */
+  public static class Builder {
+    private final String chainID;
+    private final ArrayList<Residue> residues;
+    private boolean withBonds;
+
+    /**
+    * Create a Builder for a chain.
+    * @param chainID the letter ID of the chain to build
+    */
+    public Builder(String chainID){
+      this.chainID = chainID;
+      this.residues = new ArrayList<Residue>();
+      this.withBonds = true;
+    }
+
+    /**
+    * Build the chain without any bonds, neither those within residues nor the peptide bonds
+    * between them. Used to build chains whose residues only hold some of their atoms, such as
+    * only their CA atoms, where the bonds are neither needed nor complete.
+    * @return this Builder
+    * @since 0.8.0
+    */
+    public Builder withoutBonds(){
+      this.withBonds = false;
+      return this;
+    }
+
+    /**
+    * Add a residue to the chain being built. Residues can be added in any order.
+    * @param residue the residue to add
+    * @return this Builder
+    */
+    public Builder addResidue(Residue residue){
+      this.residues.add(residue);
+      return this;
+    }
+
+    /**
+    * Add residues to the chain being built. Residues can be added in any order.
+    * @param residues the residues to add
+    * @return this Builder
+    */
+    public Builder addResidues(Collection<Residue> residues){
+      this.residues.addAll(residues);
+      return this;
+    }
+
+    /**
+    * @return the number of residues added to this Builder
+    */
+    public int getNumResidues(){
+      return this.residues.size();
+    }
+
+    /**
+    * Build the chain from the residues added to this Builder. The residues are not copied: the
+    * chain holds the Residue and Atom instances that were added, so building twice from the same
+    * Builder gives two chains that share them. Residues added to a Builder should not be added to
+    * any other chain.
+    * @return a PolypeptideChain containing all the residues added to this Builder
+    */
+    public PolypeptideChain build(){
+      PolypeptideChain chain = new PolypeptideChain(this.chainID);
+      chain.builtWithoutBonds = !this.withBonds;
+      ArrayList<Residue> sorted = new ArrayList<Residue>(this.residues);
+      // a stable sort, so residues that share an ID stay in the order they were added
+      Collections.sort(sorted, RESIDUE_COMPARATOR);
+      chain.residues = sorted;
+      chain.residueIndices = new HashMap<Integer,Integer>(sorted.size() * 2);
+      chain.buildResidueIndices(0);
+      Residue prevResidue = null;
+      for(Residue residue : sorted){
+        chain.addResidueBonds(residue, this.withBonds);
+        if(this.withBonds && prevResidue != null
+            && prevResidue.getResidueID() == residue.getResidueID() - 1){
+          chain.addPeptideBond(prevResidue, residue);
+        }
+        prevResidue = residue;
+      }
+      return chain;
     }
   }
 }
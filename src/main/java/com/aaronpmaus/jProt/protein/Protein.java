@@ -16,9 +16,10 @@ import java.util.Collection;
 import java.util.Iterator;
 
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
@@ -41,6 +42,23 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   private ArrayList<Bond> disulfideBondsBetweenChains;
   private ArrayList<Bond> disulfideBondsWithinChains;
   private UndirectedGraph<Atom> atoms;
+  // the coordinates of every atom in this protein, in order of chain, residue, and atom.
+  private CoordinateStore coordinates;
+  // key: chain ID, value: the chain with that ID
+  private HashMap<String, PolypeptideChain> chainsByID;
+  // An index of which chain and residue every atom is in. Both arrays are indexed by the index of
+  // the atom in coordinates. The index is rebuilt when atoms or chains have been added since it
+  // was last built. The OXT atom of a residue that is not yet the carboxyl terminus is indexed
+  // with its residue, so a lookup that misses never has to rebuild it.
+  private int[] atomChainIndices;
+  private Residue[] atomResidues;
+  private Atom[] indexedAtoms;
+  private int indexedNumAtoms = -1;
+  private int indexedNumChains = -1;
+  // the covalent bonds of this protein over the indices of atoms in coordinates. Rebuilt when the
+  // number of atoms or bonds has changed since it was last built.
+  private BondTable bondTable;
+  private int bondTableNumBonds = -1;
   private PDBFileIO pdbIO;
 
   /**
@@ -50,11 +68,29 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @param pdbIO a PDBFileIO instance that this protein can use to write out to file
   */
   public Protein(String proteinName, PDBFileIO pdbIO){
+    this(proteinName, pdbIO, CoordinateStore.Precision.DOUBLE);
+  }
+
+  /**
+  * Create an instance of a Protein whose coordinates are held in the given precision. All chains
+  * will then have to be added to this instance.
+  * <p>
+  * {@code CoordinateStore.Precision.SINGLE} roughly halves the memory used by coordinates and is
+  * useful when holding many structures (e.g. decoys) in memory at once.
+  * @param proteinName the name of the protein, recommended: the PDB filename base (the part before
+  * the extension).
+  * @param pdbIO a PDBFileIO instance that this protein can use to write out to file
+  * @param precision the precision to hold this protein's coordinates in
+  * @since 0.8.0
+  */
+  public Protein(String proteinName, PDBFileIO pdbIO, CoordinateStore.Precision precision){
     this.chains = new ArrayList<PolypeptideChain>();
     this.disulfideBondsBetweenChains = new ArrayList<Bond>();
     this.disulfideBondsWithinChains = new ArrayList<Bond>();
     this.proteinName = proteinName;
     this.pdbIO = pdbIO;
+    this.coordinates = CoordinateStore.create(precision, 16);
+    this.chainsByID = new HashMap<String, PolypeptideChain>();
   }
 
   /**
@@ -75,11 +111,112 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   }
 
   /**
-  * Add a chain to this protein
+  * Add a chain to this protein. The coordinates of all the atoms in the chain are moved into this
+  * Protein's CoordinateStore, as are those of any residues later added to the chain. Atoms built
+  * with their coordinates already in that store stay where they are. A chain can only be a part of
+  * one Protein.
   * @param chain the PolypeptideChain to add to this protein
   */
   public void addChain(PolypeptideChain chain){
+    int numAtomsToMove = 0;
+    for(Residue res : chain){
+      for(Atom atom : res){
+        if(atom.getCoordinateStore() != this.coordinates){
+          numAtomsToMove++;
+        }
+      }
+    }
+    this.coordinates.ensureCapacity(this.coordinates.size() + numAtomsToMove);
+    addChainInStore(chain);
+  }
+
+  // add a chain whose atoms are already in, or have room in, this Protein's CoordinateStore
+  private void addChainInStore(PolypeptideChain chain){
     this.chains.add(chain);
+    if(!this.chainsByID.containsKey(chain.getChainID())){
+      this.chainsByID.put(chain.getChainID(), chain);
+    }
+    chain.setCoordinateStore(this.coordinates);
+  }
+
+  /**
+  * Make an independent copy of this Protein. The coordinates are copied as whole arrays, but the
+  * chains, residues, atoms, and bonds are rebuilt: the copy has its own instance of each, so
+  * copying takes time and memory in proportion to the number of atoms. Only the immutable parts
+  * are shared with this Protein, namely the ResidueTemplates and the BondTable arrays. Every atom
+  * of the copy has the same serial number and the same index in its CoordinateStore as the atom it
+  * is a copy of, but is not equal to it.
+  * <p>
+  * Copying is far faster than writing a Protein out and reading it back in, as nothing is parsed
+  * and no bonds are looked up, and is meant for building ensembles and for sampling. To save and
+  * restore the conformation of one Protein, snapshotCoordinates() and restoreCoordinates() only
+  * copy the coordinate arrays. A ConformationManipulator can be moved to the copy with
+  * ConformationManipulator::rebind().
+  * @return a copy of this Protein
+  * @since 0.8.0
+  */
+  public Protein copy(){
+    Protein copy = new Protein(this.proteinName, this.pdbIO, this.coordinates.getPrecision());
+    copy.coordinates = this.coordinates.copy();
+    // the copied store already holds the atoms of every chain, so it is not grown
+    for(PolypeptideChain chain : this.chains){
+      copy.addChainInStore(chain.copy(copy.coordinates));
+    }
+    for(Bond bond : this.disulfideBondsWithinChains){
+      Bond copiedBond = copy.copyBond(bond);
+      copy.getChain(copiedBond.getAtomOne()).addBond(copiedBond);
+      copy.disulfideBondsWithinChains.add(copiedBond);
+    }
+    for(Bond bond : this.disulfideBondsBetweenChains){
+      copy.disulfideBondsBetweenChains.add(copy.copyBond(bond));
+    }
+    BondTable table = getBondTable();
+    Atom[] copiedAtoms = new Atom[table.getNumAtoms()];
+    for(int i = 0; i < copiedAtoms.length; i++){
+      if(table.getAtom(i) != null){
+        copiedAtoms[i] = copy.getAtom(i);
+      }
+    }
+    copy.bondTable = table.copy(copy.coordinates, copiedAtoms);
+    copy.bondTableNumBonds = this.bondTableNumBonds;
+    return copy;
+  }
+
+  // a Bond between the atoms of this Protein at the same indices as the atoms of bond
+  private Bond copyBond(Bond bond){
+    return new Bond(getAtom(bond.getAtomOne().getCoordinateIndex()),
+        getAtom(bond.getAtomTwo().getCoordinateIndex()), bond.getStrength());
+  }
+
+  /**
+  * Take a snapshot of the coordinates of this Protein. The snapshot is a copy of its
+  * CoordinateStore and can be given to restoreCoordinates() to return this Protein (or a copy of
+  * it) to its current conformation.
+  * @return a copy of the CoordinateStore of this Protein
+  * @since 0.8.0
+  */
+  public CoordinateStore snapshotCoordinates(){
+    return this.coordinates.copy();
+  }
+
+  /**
+  * Restore the coordinates of this Protein from a snapshot taken with snapshotCoordinates(), of
+  * this Protein or of a Protein it is a copy of. The coordinates are copied as whole arrays.
+  * @param snapshot the snapshot to restore
+  * @throws IllegalArgumentException if the snapshot does not hold as many atoms as this Protein
+  * @since 0.8.0
+  */
+  public void restoreCoordinates(CoordinateStore snapshot){
+    this.coordinates.copyFrom(snapshot);
+  }
+
+  /**
+  * Return the CoordinateStore holding the coordinates of all the atoms in this Protein.
+  * @return the CoordinateStore of this Protein
+  * @since 0.8.0
+  */
+  public CoordinateStore getCoordinateStore(){
+    return this.coordinates;
   }
 
   /**
@@ -127,12 +264,144 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @return the PolypeptideChain with the ID provided as an argument
   */
   public PolypeptideChain getChain(String chainID){
-    for(PolypeptideChain chain : chains){
-      if(chain.getChainID().equals(chainID)){
-        return chain;
+    PolypeptideChain chain = this.chainsByID.get(chainID);
+    if(chain == null){
+      throw new IllegalArgumentException("There is no chain " + chainID + " in the protein.");
+    }
+    return chain;
+  }
+
+  /**
+  * Get the chain that contains an Atom. This is a constant time lookup.
+  * @param atom an Atom in this Protein
+  * @return the PolypeptideChain that contains atom
+  * @throws IllegalStateException if no chain contains the atom
+  * @since 0.8.0
+  */
+  public PolypeptideChain getChain(Atom atom){
+    int index = getAtomIndex(atom);
+    if(index == -1){
+      throw new IllegalStateException(
+          String.format("Atom: %s Not contained in any chain.",atom));
+    }
+    return this.chains.get(this.atomChainIndices[index]);
+  }
+
+  /**
+  * Get the chain that contains a Residue. This is a constant time lookup.
+  * @param residue a Residue in this Protein
+  * @return the PolypeptideChain that contains residue
+  * @throws IllegalStateException if no chain contains the residue
+  * @since 0.8.0
+  */
+  public PolypeptideChain getChain(Residue residue){
+    Atom atom = residue.getFirstAtom();
+    int index = atom == null ? -1 : getAtomIndex(atom);
+    if(index == -1 || this.atomResidues[index] != residue){
+      throw new IllegalStateException(
+          String.format("Residue: %s Not contained in any chain.",residue));
+    }
+    return this.chains.get(this.atomChainIndices[index]);
+  }
+
+  /**
+  * Get the Residue that contains an Atom. This is a constant time lookup.
+  * @param atom an Atom in this Protein
+  * @return the Residue that contains atom
+  * @throws IllegalStateException if no residue contains the atom
+  * @since 0.8.0
+  */
+  public Residue getResidue(Atom atom){
+    int index = getAtomIndex(atom);
+    if(index == -1){
+      throw new IllegalStateException(
+          String.format("Atom: %s Not contained in any chain.",atom));
+    }
+    return this.atomResidues[index];
+  }
+
+  /**
+  * Get the Atom whose coordinates are at an index of the CoordinateStore of this Protein. This is
+  * a constant time lookup.
+  * @param index the index of the atom in getCoordinateStore()
+  * @return the Atom at index, or null if no atom of any residue is at that index
+  * @throws IndexOutOfBoundsException if index is not an index of getCoordinateStore()
+  * @since 0.8.0
+  */
+  public Atom getAtom(int index){
+    if(this.indexedNumAtoms != this.coordinates.size()
+        || this.indexedNumChains != this.chains.size()){
+      buildAtomIndex();
+    }
+    Atom atom = this.indexedAtoms[index];
+    // an OXT atom is indexed before it joins its residue
+    if(atom == null || !this.atomResidues[index].contains(atom)){
+      return null;
+    }
+    return atom;
+  }
+
+  /**
+  * Return the index of atom in the CoordinateStore of this Protein, or -1 if atom is not in this
+  * Protein. The index of which chain and residue each atom is in is brought up to date first.
+  * @param atom an Atom, maybe in this Protein, maybe not
+  * @return the index of atom in getCoordinateStore(), or -1 if it is not in this Protein
+  */
+  private int getAtomIndex(Atom atom){
+    if(atom.getCoordinateStore() != this.coordinates){
+      return -1;
+    }
+    if(this.indexedNumAtoms != this.coordinates.size()
+        || this.indexedNumChains != this.chains.size()){
+      buildAtomIndex();
+    }
+    int index = atom.getCoordinateIndex();
+    // the OXT atom of a residue is indexed with the residue before it joins it, when the residue
+    // is set as the carboxyl terminus, so the index never has to be rebuilt on a miss
+    if(this.atomResidues[index] == null || !this.atomResidues[index].contains(atom)){
+      return -1;
+    }
+    return index;
+  }
+
+  /**
+  * Build the index of which chain and residue each atom is in and the BondTable of this Protein
+  * now, rather than on their first use. Lookups and getBondTable() only read them afterwards,
+  * until atoms, chains, or bonds are added, so a Protein that is built up on one thread and then
+  * safely published can be read by many threads at once.
+  * @since 0.8.0
+  */
+  public void buildIndices(){
+    buildAtomIndex();
+    getBondTable();
+  }
+
+  private void buildAtomIndex(){
+    int numAtoms = this.coordinates.size();
+    this.atomChainIndices = new int[numAtoms];
+    this.atomResidues = new Residue[numAtoms];
+    this.indexedAtoms = new Atom[numAtoms];
+    for(int chainIndex = 0; chainIndex < this.chains.size(); chainIndex++){
+      for(Residue res : this.chains.get(chainIndex)){
+        for(Atom atom : res){
+          indexAtom(atom, res, chainIndex);
+        }
+        Atom carboxylOxygen = res.getCarboxylOxygen();
+        if(carboxylOxygen != null){
+          indexAtom(carboxylOxygen, res, chainIndex);
+        }
       }
     }
-    throw new IllegalArgumentException("There is no chain " + chainID + " in the protein.");
+    this.indexedNumAtoms = numAtoms;
+    this.indexedNumChains = this.chains.size();
+  }
+
+  private void indexAtom(Atom atom, Residue res, int chainIndex){
+    if(atom.getCoordinateStore() == this.coordinates){
+      this.atomChainIndices[atom.getCoordinateIndex()] = chainIndex;
+      this.atomResidues[atom.getCoordinateIndex()] = res;
+      this.indexedAtoms[atom.getCoordinateIndex()] = atom;
+    }
   }
 
   /**
@@ -143,17 +412,7 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @since 0.7.0
   */
   public String getChainID(Residue residue){
-    String chainID = null;
-    for(PolypeptideChain chain : this){
-      if(chain.contains(residue)){
-        chainID = chain.getChainID();
-      }
-    }
-    if(chainID == null){
-      throw new IllegalStateException(
-          String.format("Residue: %s Not contained in any chain.",residue));
-    }
-    return chainID;
+    return getChain(residue).getChainID();
   }
 
   /**
@@ -164,17 +423,7 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @since 0.7.0
   */
   public String getChainID(Atom atom){
-    String chainID = null;
-    for(PolypeptideChain chain : this){
-      if(chain.contains(atom)){
-        chainID = chain.getChainID();
-      }
-    }
-    if(chainID == null){
-      throw new IllegalStateException(
-          String.format("Atom: %s Not contained in any chain.",atom));
-    }
-    return chainID;
+    return getChain(atom).getChainID();
   }
 
   /**
@@ -225,12 +474,28 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @return a Collection of all the covalent bonds in this Protein
   */
   public List<Bond> getBonds(){
-    ArrayList<Bond> bonds = new ArrayList<Bond>();
-    for(PolypeptideChain chain : this){
-      bonds.addAll(chain.getBonds());
+    return getBondTable().getBonds();
+  }
+
+  /**
+  * Return a table of all the covalent bonds in this Protein over the indices of its atoms in
+  * getCoordinateStore(). The table is built once and rebuilt only after atoms or bonds are added.
+  * @return the BondTable of this Protein
+  * @since 0.8.0
+  */
+  public BondTable getBondTable(){
+    int numBonds = getNumBonds();
+    if(this.bondTable == null || this.bondTable.getNumAtoms() != this.coordinates.size()
+        || this.bondTableNumBonds != numBonds){
+      ArrayList<Bond> bonds = new ArrayList<Bond>(numBonds);
+      for(PolypeptideChain chain : this){
+        bonds.addAll(chain.getBonds());
+      }
+      bonds.addAll(this.disulfideBondsBetweenChains);
+      this.bondTable = BondTable.build(this.coordinates, bonds);
+      this.bondTableNumBonds = numBonds;
     }
-    bonds.addAll(this.disulfideBondsBetweenChains);
-    return bonds;
+    return this.bondTable;
   }
 
   /**
@@ -296,12 +561,7 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   * @return true if this protein contains the atom
   */
   private boolean contains(Atom atom){
-    for(PolypeptideChain chain : this){
-      if(chain.contains(atom)){
-        return true;
-      }
-    }
-    return false;
+    return getAtomIndex(atom) != -1;
   }
 
   /**
@@ -313,41 +573,69 @@ public class Protein implements Iterable<PolypeptideChain>, Transformable{
   }
 
   public boolean contains(String chainID){
-    for(PolypeptideChain chain: this){
-      if(chain.getChainID().equals(chainID)){
-        return true;
-      }
-    }
-    return false;
+    return this.chainsByID.containsKey(chainID);
   }
 
   private String getAtomChainID(Atom atom){
-    String chainID;
-    for(PolypeptideChain chain : this){
-      if(chain.containsAtom(atom)){
-        return chain.getChainID();
-      }
+    if(!contains(atom)){
+      throw new IllegalStateException(String.format("Atom \n%sNot in Protein",atom));
     }
-    throw new IllegalStateException(String.format("Atom \n%sNot in Protein",atom));
+    return getChain(atom).getChainID();
   }
 
   /**
-  * Write this protein out to a PDB file.
+  * Write this protein out to a PDB file. If fileName ends in .gz, the file is gzip compressed.
   * @param fileName the name of the file to write out to, will create new file if doesn't exist,
   * will override if does exist.
   * @throws IOException if the output file can not be opened
   */
   public void writeToFile(String fileName) throws IOException{
-    OutputStreamWriter outputStream = new FileWriter(fileName);
-    this.pdbIO.writeToPDB(outputStream, this);
-    outputStream.close();
+    OutputStream outputStream;
+    if(fileName.endsWith(".gz")){
+      outputStream = new GZIPOutputStream(new FileOutputStream(fileName), 1 << 16);
+    } else {
+      outputStream = new FileOutputStream(fileName);
+    }
+    try{
+      this.pdbIO.writeToPDB(outputStream, this);
+    } finally {
+      outputStream.close();
+    }
   }
 
   @Override
   public void applyTransformation(Transformation t){
-    for(PolypeptideChain chain : this ){
-      chain.applyTransformation(t);
-    }
+    applyTransformation(RigidTransform.fromTransformation(t));
+  }
+
+  /**
+  * Apply a RigidTransform to every atom in this Protein. This is a single pass over the
+  * CoordinateStore of this Protein.
+  * @param t the RigidTransform to apply
+  * @since 0.8.0
+  */
+  public void applyTransformation(RigidTransform t){
+    this.coordinates.applyTransformation(t);
+  }
+
+  /**
+  * Apply a list of RigidTransforms, in order, to every atom in this Protein. The transforms are
+  * composed first so that this is a single pass over the CoordinateStore of this Protein.
+  * @param transforms the RigidTransforms to apply, first to be applied first
+  * @since 0.8.0
+  */
+  public void applyTransformation(List<RigidTransform> transforms){
+    this.coordinates.applyTransformation(transforms);
+  }
+
+  /**
+  * Apply a RigidTransform to every atom in this Protein, splitting the work across threads. This
+  * is only faster than applyTransformation(RigidTransform) for very large structures.
+  * @param t the RigidTransform to apply
+  * @since 0.8.0
+  */
+  public void applyTransformationInParallel(RigidTransform t){
+    this.coordinates.applyTransformationInParallel(t);
   }
 
   @Override
@@ -1,25 +1,19 @@
 package com.aaronpmaus.jProt.protein;
 
-import com.aaronpmaus.jMath.graph.*;
 import com.aaronpmaus.jMath.linearAlgebra.Vector3D;
 import com.aaronpmaus.jMath.transformations.Transformable;
 import com.aaronpmaus.jMath.transformations.Transformation;
 import com.aaronpmaus.jProt.io.PDBFileIO;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Iterator;
-import java.util.Comparator;
 
 import java.io.File;
-import java.io.InputStream;
 
 /**
 * A Residue is one of the 20 standard Amino acids.
@@ -27,6 +21,9 @@ import java.io.InputStream;
 * By default, residues are not terminal. If a residue is to be the c-terminus, the method
 * setAsCarboxylTerminus() must be called BEFORE the Residue is added to the chain, otherwise the
 * carboxyl Oxygen will be missing from the Chain.
+* <p>
+* A Residue holds only its atoms. Its bonds, angle triplets, and dihedral angles come from the
+* ResidueTemplate of its type, which is shared by every residue of that type.
 *
 * @author Aaron Maus aaron@aaronpmaus.com
 * @version 0.7.0
@@ -38,31 +35,18 @@ public class Residue implements Iterable<Atom>, Transformable{
   private final String oneLetterName;
   private final int residueID;
   private boolean residueComplete = true;
-  private static int maxResidueID = 0;
   private boolean isCarboxylTerminus = false;
 
-  // valid keys are the atomNames: CA, CB, CD, CD1, CD2, CE, C, O, N, etc...
-  private HashMap<String, Atom> heavyAtoms;
-  private HashMap<String, Atom> hydrogens;
-  private HashMap<String, ArrayList<String>> heavyAtomHydrogens;
+  // the topology of this residue's type, shared by every residue of the type. It holds the bonds,
+  // angle triplets, dihedral angles, and the order of the atoms as specified by the .dat files in
+  // the resources directory for this package.
+  private final ResidueTemplate template;
+  // the atoms of this residue indexed by their slot in the template. null if missing.
+  private Atom[] atoms;
+  // atoms whose names are not in the template. null until there is one.
+  private ArrayList<Atom> extraAtoms;
+  // the OXT atom, held here until this residue is setAsCarboxylTerminus()
   private Atom carboxylOxygen;
-  private ArrayList<Bond> bonds;
-  private ArrayList<Atom[]> angleTriplets;
-  // bonds_hydrogens: unusual var name format to avoid confusion with hydrogen bonds
-  private ArrayList<Bond> bondsToHydrogens;
-  // A list of atom types, every consecutive 4 define a dihedral angle
-  // Eg.
-  // N CA CB CG CD NE CZ
-  // There are 4 dihedral angles:
-  // N-CA-CB-CG, CA-CB-CG-CD, CB-CG-CD-NE, and CG-CD-NE-CZ
-  private ArrayList<String> definedDihedralAngles;
-  // A list of all the atom types in the residue, ordered by the level they occupy.
-  // For example, all atoms at the delta level are before the atoms at the epsilon level.
-  // excludes backbone atoms.
-  private ArrayList<String> atomsInOrder;
-  // a directed graph of all the atoms in this residue. contains edges as specified by the .dat
-  // files in the resources directory for this package.
-  private Graph<Atom> atomsGraph;
 
   private static String[][] resNames = {
     {"ALA","A","Alanine"},        {"GLY","G","Glycine"},
@@ -82,7 +66,21 @@ public class Residue implements Iterable<Atom>, Transformable{
   };
 
   protected void addAtom(Atom atom){
-    this.heavyAtoms.put(atom.getName(), atom);
+    int slot = this.template.getSlot(atom.getName());
+    if(slot != -1){
+      this.atoms[slot] = atom;
+      return;
+    }
+    if(this.extraAtoms == null){
+      this.extraAtoms = new ArrayList<Atom>(1);
+    }
+    for(int i = 0; i < this.extraAtoms.size(); i++){
+      if(this.extraAtoms.get(i).getName().equals(atom.getName())){
+        this.extraAtoms.set(i, atom);
+        return;
+      }
+    }
+    this.extraAtoms.add(atom);
   }
   /**
   * A constructor for a residue that builds a default residue of this type
@@ -112,36 +110,59 @@ public class Residue implements Iterable<Atom>, Transformable{
     this.threeLetterName = threeLetterName;
     this.oneLetterName = Residue.lookUpOneLetterName(this.threeLetterName);
     this.name = Residue.lookUpFullName(this.threeLetterName);
-    if(residueID == -1){
-      this.residueID = Residue.maxResidueID + 1;
-    } else {
-      this.residueID = residueID;
-    }
-    Residue.maxResidueID = Math.max(this.residueID, Residue.maxResidueID);
-    this.heavyAtoms = new HashMap<String, Atom>();
-    this.bonds = new ArrayList<Bond>();
-    this.hydrogens = new HashMap<String, Atom>();
-    this.bondsToHydrogens = new ArrayList<Bond>();
-    this.definedDihedralAngles = new ArrayList<String>();
-    this.heavyAtomHydrogens = new HashMap<String, ArrayList<String>>();
-    this.angleTriplets = new ArrayList<Atom[]>();
-    this.atomsGraph = new Graph<Atom>();
-    this.atomsInOrder = new ArrayList<String>();
-    this.atomsInOrder.add("N");
-    this.atomsInOrder.add("CA");
-    initializeAminoAcid(this.threeLetterName+".dat", atoms);
-    this.atomsInOrder.add("C");
-    this.atomsInOrder.add("O");
-    this.atomsInOrder.add("OXT");
-    Collections.sort(this.bonds, new ResidueBondComparator());
-    Collections.sort(this.bondsToHydrogens, new ResidueBondComparator());
+    this.residueID = IdAllocator.current().allocateResidueID(residueID);
+    this.template = ResidueTemplate.get(this.threeLetterName);
+    this.atoms = new Atom[this.template.getNumSlots()];
+    initializeAminoAcid(atoms);
+  }
+
+  // A copy of other whose atoms have their coordinates in store, a copy of the store that the atoms
+  // of other are in. The template is shared.
+  private Residue(Residue other, CoordinateStore store){
+    this.name = other.name;
+    this.threeLetterName = other.threeLetterName;
+    this.oneLetterName = other.oneLetterName;
+    this.residueID = other.residueID;
+    this.residueComplete = other.residueComplete;
+    this.isCarboxylTerminus = other.isCarboxylTerminus;
+    this.template = other.template;
+    this.atoms = new Atom[other.atoms.length];
+    for(int slot = 0; slot < this.atoms.length; slot++){
+      if(other.atoms[slot] != null){
+        this.atoms[slot] = new Atom(other.atoms[slot], store);
+      }
+    }
+    if(other.extraAtoms != null){
+      this.extraAtoms = new ArrayList<Atom>(other.extraAtoms.size());
+      for(Atom atom : other.extraAtoms){
+        this.extraAtoms.add(new Atom(atom, store));
+      }
+    }
+    if(other.carboxylOxygen != null){
+      // once this residue is the carboxyl terminus, the OXT is also the atom in its slot
+      if(other.getAtomOrNull("OXT") == other.carboxylOxygen){
+        this.carboxylOxygen = getAtomOrNull("OXT");
+      } else {
+        this.carboxylOxygen = new Atom(other.carboxylOxygen, store);
+      }
+    }
+  }
+
+  /**
+  * Copy this residue. The copies of its atoms have their coordinates at the same indices in store,
+  * which must be a copy of the CoordinateStore its atoms are in.
+  * @param store the CoordinateStore holding the coordinates of the copy
+  * @return a copy of this Residue
+  */
+  Residue copy(CoordinateStore store){
+    return new Residue(this, store);
   }
 
   // For Initializing all Residues:
-  // use the atoms passed in. add all to hashMap and create all bonds.
+  // use the atoms passed in, placing each in its slot.
   // What to do about missing atoms? Flag this residue as incomplete. Then have the protein
   // constructor resolve all incomplete residues after they've all been added.
-  private void initializeAminoAcid(String dataFileName, Collection<Atom> atoms){
+  private void initializeAminoAcid(Collection<Atom> atoms){
     this.residueComplete = true;
     if(atoms.isEmpty()){
       throw new IllegalArgumentException("Collection of Atoms must not be empty");
@@ -149,111 +170,28 @@ public class Residue implements Iterable<Atom>, Transformable{
     // use the atoms passed in
     for(Atom a: atoms){
       //System.out.printf("Adding %s to residue atoms\n",a.getName());
-      if(a.getElement().equals("H")){
-        this.hydrogens.put(a.getName(), a);
-      } else if(a.getName().equals("OXT")){
+      if(a.getName().equals("OXT") && !a.getElement().equals("H")){
         this.carboxylOxygen = a;
       } else {
-        this.heavyAtoms.put(a.getName(), a);
+        addAtom(a);
       }
     }
-    // read in residue data file. use it to add all main bonds.
-    // Then add all hydrogens
-    InputStream stream = Residue.class.getResourceAsStream(dataFileName);
-    Scanner in = new Scanner(stream);
-
-    while(in.hasNext()){
-      String line = in.nextLine().trim();
-      //System.out.println(line);
-      String firstChar = line.substring(0,1);
-      if(line.equals("!main bonds")){
-        while(in.hasNext()) {
-          line = in.nextLine().trim();
-          if(!line.substring(0,1).equals("!")){
-            String[] tokens = line.trim().split("\\s+");
-            String atomOne = tokens[0].trim();
-            String atomTwo = tokens[1].trim();
-            //System.out.printf("[%s-%s]\n",atomOne, atomTwo);
-            // TODO specify single or double bond depending on
-            // atoms and residue
-            if(atomTwo.equals("OXT")){
-              // do nothing. The bond will be added if this residue is setAsCarboxylTerminus()
-            } else {
-              residueComplete = addBond(atomOne, atomTwo) & residueComplete;
-            }
-            if(!atomOne.equals("N") && !atomOne.equals("CA") && !atomOne.equals("C")
-                && !atomOne.equals("O") && !atomOne.equals("OXT")){
-
-              if(!this.atomsInOrder.contains(atomOne)){
-                this.atomsInOrder.add(atomOne);
-              }
-            }
-            if(!atomTwo.equals("N") && !atomTwo.equals("CA") && !atomTwo.equals("C")
-                && !atomTwo.equals("O") && !atomTwo.equals("OXT")){
-
-              if(!this.atomsInOrder.contains(atomTwo)){
-                this.atomsInOrder.add(atomTwo);
-              }
-            }
-          } else { // read next section header
-            break;
-          }
-        }
-      }
-      if(line.equals("!hydrogens")){
-        while(in.hasNext()) {
-          line = in.nextLine().trim();
-          if(!line.substring(0,1).equals("!")){
-            String[] tokens = line.trim().split("\\s+");
-            String heavyAtom = tokens[0];
-            String hydrogen = tokens[1];
-            addBondToHydrogen(heavyAtom, hydrogen);
-            if(!this.atomsInOrder.contains(hydrogen)){
-              int index = this.atomsInOrder.indexOf(heavyAtom);
-              this.atomsInOrder.add(index+1, hydrogen);
-            }
-            if(heavyAtomHydrogens.containsKey(heavyAtom)){
-              heavyAtomHydrogens.get(heavyAtom).add(hydrogen);
-            } else {
-              heavyAtomHydrogens.put(heavyAtom, new ArrayList<String>());
-            }
-          } else { // read next section header
-            break;
-          }
-        }
-      }
-      if(line.equals("!defined dihedral angles")){
-        line = in.nextLine().trim();
-        if(!line.substring(0,1).equals("!") && !line.substring(0,1).equals("#")){
-          String[] atomTypes = line.split("\\s+");
-          for(String atomType : atomTypes){
-            definedDihedralAngles.add(atomType);
-          }
-        }
-      }
-      if(line.equals("!defined angle triplets")){
-        while(in.hasNext()) {
-          line = in.nextLine().trim();
-          if(!line.substring(0,1).equals("!")){
-            if(!line.substring(0,1).equals("#")){
-              String[] tokens = line.trim().split("\\s+");
-              if(this.contains(tokens[0]) && this.contains(tokens[1]) && this.contains(tokens[2])){
-                this.angleTriplets.add(new Atom[]{getAtom(tokens[0]),
-                                                      getAtom(tokens[1]),
-                                                      getAtom(tokens[2])});
-              }
-            }
-          } else { // read next section header
-            break;
-          }
-        }
-      }
-      if(line.equals("!atom types")){
-        // place holder for future use of this information
+    // the residue is complete if both atoms of every main bond are present. The bond to OXT will be
+    // added if this residue is setAsCarboxylTerminus()
+    int[] mainBonds = this.template.getMainBondSlots();
+    int oxt = this.template.getSlot("OXT");
+    for(int i = 0; i < mainBonds.length; i += 2){
+      if(mainBonds[i+1] != oxt && !(isPresent(mainBonds[i]) && isPresent(mainBonds[i+1]))){
+        this.residueComplete = false;
       }
     }
   }
 
+  // true if the slot is in the template and this residue has an atom in it
+  private boolean isPresent(int slot){
+    return slot != -1 && this.atoms[slot] != null;
+  }
+
   /**
   * gets an atom by its name. C, CA, CB, CD, etc...
   * @param atomName the name of the atom, C, CA, CB, CD, etc...
@@ -261,10 +199,7 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @throws NoSuchElementException if the atom is not present in this residue
   */
   public Atom getAtom(String atomName){
-    Atom atom = this.heavyAtoms.get(atomName);
-    if(atom == null){
-      atom = this.hydrogens.get(atomName);
-    }
+    Atom atom = getAtomOrNull(atomName);
     if(atom == null){
       throw new NoSuchElementException("No atom of name " + atomName
           + " in residue " + getResidueID() +": " +getThreeLetterName());
@@ -272,24 +207,73 @@ public class Residue implements Iterable<Atom>, Transformable{
     return atom;
   }
 
+  private Atom getAtomOrNull(String atomName){
+    int slot = this.template.getSlot(atomName);
+    if(slot != -1){
+      return this.atoms[slot];
+    }
+    if(this.extraAtoms != null){
+      for(Atom atom : this.extraAtoms){
+        if(atom.getName().equals(atomName)){
+          return atom;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+  * @return the first atom of this residue in order from N to C and from CA back, or null if it
+  * has none
+  */
+  Atom getFirstAtom(){
+    for(Atom atom : this.atoms){
+      if(atom != null){
+        return atom;
+      }
+    }
+    if(this.extraAtoms != null && !this.extraAtoms.isEmpty()){
+      return this.extraAtoms.get(0);
+    }
+    return null;
+  }
+
   /**
   * @return a {@code Collection<Atom>} containing all the atoms in this residue. If hydrogens are
   * enabled, it will include the hydrogens
   */
   public Collection<Atom> getAtoms(){
-    ArrayList<Atom> atoms = new ArrayList<Atom>(this.heavyAtoms.values());
-    atoms.addAll(this.getHydrogens());
+    ArrayList<Atom> atoms = new ArrayList<Atom>(this.atoms.length);
+    addAtoms(atoms, false);
+    addAtoms(atoms, true);
     return atoms;
   }
 
+  // add the atoms of this residue that are (or are not) hydrogens to atoms, in slot order then
+  // any extra atoms.
+  private void addAtoms(List<Atom> atoms, boolean hydrogens){
+    for(Atom atom : this.atoms){
+      if(atom != null && atom.getElement().equals("H") == hydrogens){
+        atoms.add(atom);
+      }
+    }
+    if(this.extraAtoms != null){
+      for(Atom atom : this.extraAtoms){
+        if(atom.getElement().equals("H") == hydrogens){
+          atoms.add(atom);
+        }
+      }
+    }
+  }
+
   /**
   * @return a List of the Atoms in the Residue in order from N to C and from CA back.
   */
   public List<Atom> getAtomsInOrder(){
-    ArrayList<Atom> atoms = new ArrayList<Atom>();
-    for(String atomName : this.atomsInOrder){
-      if(this.contains(atomName)){
-        atoms.add(this.getAtom(atomName));
+    ArrayList<Atom> atoms = new ArrayList<Atom>(this.atoms.length);
+    for(Atom atom : this.atoms){
+      if(atom != null){
+        atoms.add(atom);
       }
     }
     return atoms;
@@ -300,7 +284,9 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return a {@code Collection<Atom>} containing the heavy atoms in this residue
   */
   protected Collection<Atom> getHeavyAtoms(){
-    return this.heavyAtoms.values();
+    ArrayList<Atom> heavyAtoms = new ArrayList<Atom>(this.atoms.length);
+    addAtoms(heavyAtoms, false);
+    return heavyAtoms;
   }
 
   /**
@@ -308,7 +294,9 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return a {@code Collection<Atom>} containing the hydrogens in this residue
   */
   protected Collection<Atom> getHydrogens(){
-    return this.hydrogens.values();
+    ArrayList<Atom> hydrogens = new ArrayList<Atom>(this.atoms.length);
+    addAtoms(hydrogens, true);
+    return hydrogens;
   }
 
   /**
@@ -322,7 +310,7 @@ public class Residue implements Iterable<Atom>, Transformable{
     if(!this.contains(atom)){
       throw new NoSuchElementException(String.format("Atom %s not in residue.",atom.getName()));
     }
-    return this.atomsGraph.depthFirstSearch(atom);
+    return depthFirstSearch(atom);
   }
 
   /**
@@ -336,7 +324,37 @@ public class Residue implements Iterable<Atom>, Transformable{
     if(!this.contains(atomName)){
       throw new NoSuchElementException(String.format("Atom %s not in residue.",atomName));
     }
-    return this.atomsGraph.depthFirstSearch(this.getAtom(atomName));
+    return depthFirstSearch(this.getAtom(atomName));
+  }
+
+  // Search the bonds of the template from atom, away from N (and from CA in the side chain),
+  // through the atoms present in this residue.
+  private Collection<Atom> depthFirstSearch(Atom atom){
+    ArrayList<Atom> found = new ArrayList<Atom>();
+    int start = this.template.getSlot(atom.getName());
+    if(start == -1 || this.atoms[start] != atom){
+      // an atom the template has no bonds for
+      found.add(atom);
+      return found;
+    }
+    boolean[] visited = new boolean[this.atoms.length];
+    int[] stack = new int[this.atoms.length];
+    int top = 0;
+    stack[top++] = start;
+    while(top > 0){
+      int slot = stack[--top];
+      if(visited[slot]){
+        continue;
+      }
+      visited[slot] = true;
+      found.add(this.atoms[slot]);
+      for(int next : this.template.getBondedSlots(slot)){
+        if(!visited[next] && this.atoms[next] != null){
+          stack[top++] = next;
+        }
+      }
+    }
+    return found;
   }
 
   /**
@@ -354,7 +372,7 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return the number of Heavy Atoms in this Residue
   */
   public int getNumHeavyAtoms(){
-    return this.heavyAtoms.size();
+    return getNumAtoms(false);
   }
 
   /**
@@ -362,7 +380,24 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return the number of Hydrogens in this Residue
   */
   public int getNumHydrogens(){
-    return this.hydrogens.size();
+    return getNumAtoms(true);
+  }
+
+  private int getNumAtoms(boolean hydrogens){
+    int numAtoms = 0;
+    for(Atom atom : this.atoms){
+      if(atom != null && atom.getElement().equals("H") == hydrogens){
+        numAtoms++;
+      }
+    }
+    if(this.extraAtoms != null){
+      for(Atom atom : this.extraAtoms){
+        if(atom.getElement().equals("H") == hydrogens){
+          numAtoms++;
+        }
+      }
+    }
+    return numAtoms;
   }
 
   /**
@@ -371,13 +406,7 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return true if this Residue contains an Atom with this name, false otherwise
   */
   public final boolean contains(String atomName){
-    if(this.heavyAtoms.containsKey(atomName)){
-      return true;
-    }
-    if(this.hydrogens.containsKey(atomName)){
-      return true;
-    }
-    return false;
+    return getAtomOrNull(atomName) != null;
   }
 
   /**
@@ -385,7 +414,8 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return true if this Residue contains this Atom, false otherwise
   */
   public final boolean contains(Atom atom){
-    return this.atomsGraph.contains(atom);
+    Atom atomWithName = getAtomOrNull(atom.getName());
+    return atomWithName != null && atomWithName.equals(atom);
   }
 
   /**
@@ -430,7 +460,18 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return the bonds in this residue
   */
   public Collection<Bond> getBonds(){
-    ArrayList<Bond> bonds = new ArrayList<Bond>(this.bonds);
+    ArrayList<Bond> bonds = new ArrayList<Bond>();
+    int[] mainBonds = this.template.getMainBondSlots();
+    int oxt = this.template.getSlot("OXT");
+    // the bond to OXT is last, after the residue's other main bonds
+    for(int i = 0; i < mainBonds.length; i += 2){
+      if(mainBonds[i+1] != oxt && isPresent(mainBonds[i]) && isPresent(mainBonds[i+1])){
+        bonds.add(new Bond(this.atoms[mainBonds[i]], this.atoms[mainBonds[i+1]], 1));
+      }
+    }
+    if(this.isCarboxylTerminus && contains("C")){
+      bonds.add(new Bond(getAtom("C"), this.carboxylOxygen, 1));
+    }
     bonds.addAll(getBondsToHydrogens());
     return bonds;
   }
@@ -442,7 +483,14 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @return a {@code Collection<Bond>} containing all bonds with a hydrogen
   */
   public Collection<Bond> getBondsToHydrogens(){
-    return new ArrayList<Bond>(this.bondsToHydrogens);
+    ArrayList<Bond> bonds = new ArrayList<Bond>();
+    int[] bondsToHydrogens = this.template.getBondsToHydrogensSlots();
+    for(int i = 0; i < bondsToHydrogens.length; i += 2){
+      if(isPresent(bondsToHydrogens[i]) && isPresent(bondsToHydrogens[i+1])){
+        bonds.add(new Bond(this.atoms[bondsToHydrogens[i]], this.atoms[bondsToHydrogens[i+1]], 1));
+      }
+    }
+    return bonds;
   }
 
   /**
@@ -461,18 +509,18 @@ public class Residue implements Iterable<Atom>, Transformable{
   public void setAsCarboxylTerminus(){
     if(carboxylOxygen != null){
       this.isCarboxylTerminus = true;
-      this.heavyAtoms.put(carboxylOxygen.getName(), carboxylOxygen);
-      if(contains("C")){
-        Atom carbon = getAtom("C");
-        this.bonds.add(new Bond(carbon, carboxylOxygen, 1));
-        this.atomsGraph.addEdge(carbon, carboxylOxygen);
-      }
-      if(this.contains("CA") && this.contains("C") && this.contains("OXT")){
-        this.angleTriplets.add(new Atom[]{getAtom("CA"), getAtom("C"), getAtom("OXT")});
-      }
+      addAtom(carboxylOxygen);
     }
   }
 
+  /**
+  * @return the OXT atom of this residue if it has one, whether or not it has been added to this
+  * residue by setAsCarboxylTerminus(), null if it has none
+  */
+  Atom getCarboxylOxygen(){
+    return this.carboxylOxygen;
+  }
+
   /**
   * @return true if this residue is the carboxyl terminus
   */
@@ -480,31 +528,6 @@ public class Residue implements Iterable<Atom>, Transformable{
     return this.isCarboxylTerminus;
   }
 
-  private boolean addBond(String atomNameOne, String atomNameTwo){
-    return addBond(atomNameOne, atomNameTwo,1);
-  }
-
-  private boolean addBond(String atomNameOne, String atomNameTwo, int bondStrength){
-    if(contains(atomNameOne) && contains(atomNameTwo)){
-      Atom atomOne = getAtom(atomNameOne);
-      Atom atomTwo = getAtom(atomNameTwo);
-      Bond bond = new Bond(atomOne, atomTwo, bondStrength);
-      this.atomsGraph.addEdge(atomOne,atomTwo);
-      this.bonds.add(bond);
-      return true;
-    }
-    return false;
-  }
-
-  private void addBondToHydrogen(String heavyAtomName, String hydrogenName){
-    if(contains(heavyAtomName) && contains(hydrogenName)){
-      Atom heavyAtom = getAtom(heavyAtomName);
-      Atom hydrogen = getAtom(hydrogenName);
-      this.bondsToHydrogens.add(new Bond(heavyAtom, hydrogen, 1));
-      this.atomsGraph.addEdge(heavyAtom, hydrogen);
-    }
-  }
-
   /**
   * Static lookup method to get a residue one letter name from
   * a three letter name.
@@ -560,7 +583,22 @@ public class Residue implements Iterable<Atom>, Transformable{
   * @since 0.7.0
   */
   public ArrayList<Atom[]> getAngleTriplets(){
-    return new ArrayList<Atom[]>(this.angleTriplets);
+    ArrayList<Atom[]> angleTriplets = new ArrayList<Atom[]>();
+    int[] triplets = this.template.getAngleTripletSlots();
+    int oxt = this.template.getSlot("OXT");
+    for(int i = 0; i < triplets.length; i += 3){
+      if(triplets[i] != oxt && triplets[i+1] != oxt && triplets[i+2] != oxt
+          && isPresent(triplets[i]) && isPresent(triplets[i+1]) && isPresent(triplets[i+2])){
+        angleTriplets.add(new Atom[]{this.atoms[triplets[i]],
+                                     this.atoms[triplets[i+1]],
+                                     this.atoms[triplets[i+2]]});
+      }
+    }
+    // the triplet with OXT is last, after the residue's other triplets
+    if(this.isCarboxylTerminus && this.contains("CA") && this.contains("C")){
+      angleTriplets.add(new Atom[]{getAtom("CA"), getAtom("C"), getAtom("OXT")});
+    }
+    return angleTriplets;
   }
 
   /**
@@ -574,12 +612,12 @@ public class Residue implements Iterable<Atom>, Transformable{
     ArrayList<Atom[]> dihedralQuartets = new ArrayList<Atom[]>();
     // N  CA  CB  CG  CD  NE  CZ
     // 0   1   2   3   4   5   6
-    if(this.definedDihedralAngles.size() >= 3){
-      for(int i = 3; i < this.definedDihedralAngles.size(); i++){
-        String atomOneName = this.definedDihedralAngles.get(i-3);
-        String atomTwoName = this.definedDihedralAngles.get(i-2);
-        String atomThreeName = this.definedDihedralAngles.get(i-1);
-        String atomFourName = this.definedDihedralAngles.get(i);
+    if(this.template.getDefinedDihedralAngles().size() >= 3){
+      for(int i = 3; i < this.template.getDefinedDihedralAngles().size(); i++){
+        String atomOneName = this.template.getDefinedDihedralAngles().get(i-3);
+        String atomTwoName = this.template.getDefinedDihedralAngles().get(i-2);
+        String atomThreeName = this.template.getDefinedDihedralAngles().get(i-1);
+        String atomFourName = this.template.getDefinedDihedralAngles().get(i);
         if(this.contains(atomOneName) && this.contains(atomTwoName)
             && this.contains(atomThreeName) && this.contains(atomFourName)){
 
@@ -603,12 +641,12 @@ public class Residue implements Iterable<Atom>, Transformable{
     ArrayList<Atom[]> rotatableBonds = new ArrayList<Atom[]>();
     // N  CA  CB  CG  CD  NE  CZ
     // 0   1   2   3   4   5   6
-    if(this.definedDihedralAngles.size() >= 3){
-      for(int i = 3; i < this.definedDihedralAngles.size(); i++){
-        String atomOneName = this.definedDihedralAngles.get(i-3);
-        String atomTwoName = this.definedDihedralAngles.get(i-2);
-        String atomThreeName = this.definedDihedralAngles.get(i-1);
-        String atomFourName = this.definedDihedralAngles.get(i);
+    if(this.template.getDefinedDihedralAngles().size() >= 3){
+      for(int i = 3; i < this.template.getDefinedDihedralAngles().size(); i++){
+        String atomOneName = this.template.getDefinedDihedralAngles().get(i-3);
+        String atomTwoName = this.template.getDefinedDihedralAngles().get(i-2);
+        String atomThreeName = this.template.getDefinedDihedralAngles().get(i-1);
+        String atomFourName = this.template.getDefinedDihedralAngles().get(i);
         if(this.contains(atomOneName) && this.contains(atomTwoName)
             && this.contains(atomThreeName) && this.contains(atomFourName)){
 
@@ -641,8 +679,8 @@ public class Residue implements Iterable<Atom>, Transformable{
   */
   public double getDihedralAngle(String atomOneName, String atomTwoName){
     try{
-      int indexOfAtomOne = this.definedDihedralAngles.indexOf(atomOneName);
-      int indexOfAtomTwo = this.definedDihedralAngles.indexOf(atomTwoName);
+      int indexOfAtomOne = this.template.getDefinedDihedralAngles().indexOf(atomOneName);
+      int indexOfAtomTwo = this.template.getDefinedDihedralAngles().indexOf(atomTwoName);
       int indexOfB = indexOfAtomOne;
       if(indexOfAtomOne > indexOfAtomTwo){
         indexOfB = indexOfAtomTwo;
@@ -650,10 +688,10 @@ public class Residue implements Iterable<Atom>, Transformable{
         atomOneName = atomTwoName;
         atomTwoName = temp;
       }
-      Vector3D a = this.getAtom(this.definedDihedralAngles.get(indexOfB-1)).getCoordinates();
+      Vector3D a = this.getAtom(this.template.getDefinedDihedralAngles().get(indexOfB-1)).getCoordinates();
       Vector3D b = this.getAtom(atomOneName).getCoordinates();
       Vector3D c = this.getAtom(atomTwoName).getCoordinates();
-      Vector3D d = this.getAtom(this.definedDihedralAngles.get(indexOfB+2)).getCoordinates();
+      Vector3D d = this.getAtom(this.template.getDefinedDihedralAngles().get(indexOfB+2)).getCoordinates();
       return -1 * Vector3D.calculateDihedralAngle(a,b,c,d);
     } catch(NoSuchElementException e){
       // one of the atoms is missing from the residue, can't calculate a dihedral angle
@@ -693,8 +731,46 @@ public class Residue implements Iterable<Atom>, Transformable{
 
   @Override
   public void applyTransformation(Transformation t){
-    for(Atom atom : getAtoms()){
-      atom.applyTransformation(t);
+    applyTransformation(RigidTransform.fromTransformation(t));
+  }
+
+  /**
+  * Apply a RigidTransform to all the atoms in this residue.
+  * @param t the RigidTransform to apply
+  * @since 0.8.0
+  */
+  public void applyTransformation(RigidTransform t){
+    for(Atom atom : this.atoms){
+      if(atom != null){
+        atom.applyTransformation(t);
+      }
+    }
+    if(this.extraAtoms != null){
+      for(Atom atom : this.extraAtoms){
+        atom.applyTransformation(t);
+      }
+    }
+  }
+
+  /**
+  * Move the coordinates of all the atoms of this residue into store. This includes the OXT atom
+  * if it has not yet been added by setAsCarboxylTerminus() so that it is already in place if it
+  * is.
+  * @param store the CoordinateStore to move the atoms into
+  */
+  void moveAtomsInto(CoordinateStore store){
+    for(Atom atom : this.atoms){
+      if(atom != null){
+        atom.moveInto(store);
+      }
+    }
+    if(this.extraAtoms != null){
+      for(Atom atom : this.extraAtoms){
+        atom.moveInto(store);
+      }
+    }
+    if(this.carboxylOxygen != null){
+      this.carboxylOxygen.moveInto(store);
     }
   }
 
@@ -715,18 +791,4 @@ public class Residue implements Iterable<Atom>, Transformable{
   public Iterator<Atom> iterator(){
     return getAtoms().iterator();
   }
-
-  private class ResidueBondComparator implements Comparator<Bond>{
-    public int compare(Bond a, Bond b){
-      int indexA1 = atomsInOrder.indexOf(a.getAtomOne());
-      int indexA2 = atomsInOrder.indexOf(a.getAtomTwo());
-      int indexB1 = atomsInOrder.indexOf(b.getAtomOne());
-      int indexB2 = atomsInOrder.indexOf(b.getAtomTwo());
-      if(indexA1 - indexB1 == 0){
-        return indexA2 - indexB2;
-      } else {
-        return indexA1 - indexB1;
-      }
-    }
-  }
 }
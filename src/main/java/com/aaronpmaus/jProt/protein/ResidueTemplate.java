@@ -0,0 +1,345 @@
+package com.aaronpmaus.jProt.protein;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.io.InputStream;
+
+/**
+* A ResidueTemplate holds the topology of one residue type as defined by its .dat file in the
+* resources directory of this package: the bonds between heavy atoms, the bonds to hydrogens, the
+* defined dihedral angles, the angle triplets, and the order of the atoms from N to C and from CA
+* back.
+* <p>
+* Templates are immutable and are read from their .dat file only once, the first time they are
+* requested. Every Residue of a type shares that type's template. The arrays in the lists a
+* template returns are shared as well and must not be modified.
+* <p>
+* Every atom name of the type has a slot: its index in getAtomsInOrder(). Residues hold their
+* atoms in an array indexed by slot, and the template holds its topology (bonds, angle triplets,
+* and dihedral angles) as arrays of slots so that residues share it rather than each building
+* their own bonds and graph.
+* <p>
+* Usage:<br>
+* {@code ResidueTemplate phe = ResidueTemplate.get("PHE");}<br>
+* {@code for(String[] bond : phe.getMainBonds())}<br>
+* {@code     System.out.println(bond[0] + "-" + bond[1]);}<br>
+*
+* @version 0.8.0
+* @since 0.8.0
+*/
+public final class ResidueTemplate {
+  private static final ConcurrentHashMap<String, ResidueTemplate> templates =
+      new ConcurrentHashMap<String, ResidueTemplate>();
+
+  private final String threeLetterName;
+  // pairs of atom names, in the order they appear in the .dat file
+  private final List<String[]> mainBonds;
+  // pairs of heavy atom name, hydrogen name, in the order they appear in the .dat file
+  private final List<String[]> bondsToHydrogens;
+  // key: heavy atom name, value: the names of the hydrogens bonded to it
+  private final Map<String, List<String>> heavyAtomHydrogens;
+  // every consecutive 4 atom names define a dihedral angle. See Residue.
+  private final List<String> definedDihedralAngles;
+  // triplets of atom names
+  private final List<String[]> angleTriplets;
+  // all the atom names, ordered from N to C and from CA back
+  private final List<String> atomsInOrder;
+
+  // The same topology as slots: indices into atomsInOrder.
+  // key: atom name, value: slot
+  private final HashMap<String, Integer> slots;
+  // consecutive pairs of slots, one pair per main bond
+  private final int[] mainBondSlots;
+  // consecutive pairs of slots (heavy atom, hydrogen), one pair per bond to a hydrogen
+  private final int[] bondsToHydrogensSlots;
+  // consecutive triples of slots, one triple per angle triplet
+  private final int[] angleTripletSlots;
+  // for each slot, the slots bonded to it further from N (main bonds) or from the heavy atom
+  // (bonds to hydrogens). These are the edges of the directed graph of the residue.
+  private final int[][] bondedSlots;
+
+  private ResidueTemplate(String threeLetterName, List<String[]> mainBonds,
+      List<String[]> bondsToHydrogens, Map<String, List<String>> heavyAtomHydrogens,
+      List<String> definedDihedralAngles, List<String[]> angleTriplets,
+      List<String> atomsInOrder){
+    this.threeLetterName = threeLetterName;
+    this.mainBonds = Collections.unmodifiableList(mainBonds);
+    this.bondsToHydrogens = Collections.unmodifiableList(bondsToHydrogens);
+    this.heavyAtomHydrogens = Collections.unmodifiableMap(heavyAtomHydrogens);
+    this.definedDihedralAngles = Collections.unmodifiableList(definedDihedralAngles);
+    this.angleTriplets = Collections.unmodifiableList(angleTriplets);
+    this.atomsInOrder = Collections.unmodifiableList(atomsInOrder);
+
+    this.slots = new HashMap<String, Integer>();
+    for(int slot = 0; slot < atomsInOrder.size(); slot++){
+      this.slots.put(atomsInOrder.get(slot), slot);
+    }
+    this.mainBondSlots = toSlots(mainBonds, 2);
+    this.bondsToHydrogensSlots = toSlots(bondsToHydrogens, 2);
+    this.angleTripletSlots = toSlots(angleTriplets, 3);
+    ArrayList<ArrayList<Integer>> bonded = new ArrayList<ArrayList<Integer>>();
+    for(int slot = 0; slot < atomsInOrder.size(); slot++){
+      bonded.add(new ArrayList<Integer>());
+    }
+    for(int[] pairs : new int[][]{this.mainBondSlots, this.bondsToHydrogensSlots}){
+      for(int i = 0; i < pairs.length; i += 2){
+        if(pairs[i] != -1 && pairs[i+1] != -1){
+          bonded.get(pairs[i]).add(pairs[i+1]);
+        }
+      }
+    }
+    this.bondedSlots = new int[atomsInOrder.size()][];
+    for(int slot = 0; slot < atomsInOrder.size(); slot++){
+      ArrayList<Integer> bondedToSlot = bonded.get(slot);
+      this.bondedSlots[slot] = new int[bondedToSlot.size()];
+      for(int i = 0; i < bondedToSlot.size(); i++){
+        this.bondedSlots[slot][i] = bondedToSlot.get(i);
+      }
+    }
+  }
+
+  // flatten a list of arrays of atom names into their slots. Names without a slot are -1.
+  private int[] toSlots(List<String[]> atomNames, int width){
+    int[] atomSlots = new int[atomNames.size() * width];
+    int i = 0;
+    for(String[] names : atomNames){
+      for(int j = 0; j < width; j++){
+        atomSlots[i++] = getSlot(names[j]);
+      }
+    }
+    return atomSlots;
+  }
+
+  /**
+  * Return the template for a residue type, reading it from its .dat file if this is the first
+  * time it has been requested. This method is safe to call from multiple threads.
+  * @param threeLetterName the three letter name of the residue type: ALA, ARG, etc...
+  * @return the ResidueTemplate for that residue type
+  * @throws IllegalArgumentException if there is no .dat file for threeLetterName
+  */
+  public static ResidueTemplate get(String threeLetterName){
+    ResidueTemplate template = templates.get(threeLetterName);
+    if(template == null){
+      template = templates.computeIfAbsent(threeLetterName, ResidueTemplate::readTemplate);
+    }
+    return template;
+  }
+
+  /**
+  * @return the three letter name of the residue type of this template
+  */
+  public String getThreeLetterName(){
+    return this.threeLetterName;
+  }
+
+  /**
+  * Return the bonds between heavy atoms. Each bond is an array of the two atom names. This
+  * includes the C-OXT bond.
+  * @return an unmodifiable list of the bonds between heavy atoms
+  */
+  public List<String[]> getMainBonds(){
+    return this.mainBonds;
+  }
+
+  /**
+  * Return the bonds to hydrogens. Each bond is an array of the heavy atom name and the hydrogen
+  * name.
+  * @return an unmodifiable list of the bonds to hydrogens
+  */
+  public List<String[]> getBondsToHydrogens(){
+    return this.bondsToHydrogens;
+  }
+
+  /**
+  * @param heavyAtomName the name of a heavy atom
+  * @return an unmodifiable list of the names of the hydrogens bonded to heavyAtomName, empty if
+  * there are none
+  */
+  public List<String> getHydrogens(String heavyAtomName){
+    List<String> hydrogens = this.heavyAtomHydrogens.get(heavyAtomName);
+    if(hydrogens == null){
+      return Collections.emptyList();
+    }
+    return hydrogens;
+  }
+
+  /**
+  * Return the atom names defining the dihedral angles of this residue type. Every consecutive 4
+  * names define a dihedral angle. For example, {@code N CA CB CG CD} defines N-CA-CB-CG and
+  * CA-CB-CG-CD.
+  * @return an unmodifiable list of the atom names defining the dihedral angles
+  */
+  public List<String> getDefinedDihedralAngles(){
+    return this.definedDihedralAngles;
+  }
+
+  /**
+  * @return an unmodifiable list of the angle triplets of this residue type. Each is an array of
+  * three atom names with the pivot in the middle.
+  */
+  public List<String[]> getAngleTriplets(){
+    return this.angleTriplets;
+  }
+
+  /**
+  * @return an unmodifiable list of all the atom names of this residue type in order from N to C
+  * and from CA back
+  */
+  public List<String> getAtomsInOrder(){
+    return this.atomsInOrder;
+  }
+
+  /**
+  * @return the number of atom slots of this residue type, the size of getAtomsInOrder()
+  */
+  public int getNumSlots(){
+    return this.atomsInOrder.size();
+  }
+
+  /**
+  * @param atomName the name of an atom
+  * @return the slot of atomName in this residue type, or -1 if this type has no atom of that name
+  */
+  public int getSlot(String atomName){
+    Integer slot = this.slots.get(atomName);
+    if(slot == null){
+      return -1;
+    }
+    return slot;
+  }
+
+  /**
+  * @return consecutive pairs of slots, one pair for each bond in getMainBonds()
+  */
+  int[] getMainBondSlots(){
+    return this.mainBondSlots;
+  }
+
+  /**
+  * @return consecutive pairs of slots, one pair for each bond in getBondsToHydrogens()
+  */
+  int[] getBondsToHydrogensSlots(){
+    return this.bondsToHydrogensSlots;
+  }
+
+  /**
+  * @return consecutive triples of slots, one triple for each triplet in getAngleTriplets()
+  */
+  int[] getAngleTripletSlots(){
+    return this.angleTripletSlots;
+  }
+
+  /**
+  * @param slot a slot of this residue type
+  * @return the slots bonded to slot that are further from N, or from CA in the side chain
+  */
+  int[] getBondedSlots(int slot){
+    return this.bondedSlots[slot];
+  }
+
+  private static ResidueTemplate readTemplate(String threeLetterName){
+    InputStream stream = ResidueTemplate.class.getResourceAsStream(threeLetterName + ".dat");
+    if(stream == null){
+      throw new IllegalArgumentException(threeLetterName + ": no residue template.");
+    }
+    ArrayList<String[]> mainBonds = new ArrayList<String[]>();
+    ArrayList<String[]> bondsToHydrogens = new ArrayList<String[]>();
+    HashMap<String, List<String>> heavyAtomHydrogens = new HashMap<String, List<String>>();
+    ArrayList<String> definedDihedralAngles = new ArrayList<String>();
+    ArrayList<String[]> angleTriplets = new ArrayList<String[]>();
+    ArrayList<String> atomsInOrder = new ArrayList<String>();
+    atomsInOrder.add("N");
+    atomsInOrder.add("CA");
+
+    Scanner in = new Scanner(stream);
+    while(in.hasNext()){
+      String line = in.nextLine().trim();
+      if(line.equals("!main bonds")){
+        while(in.hasNext()) {
+          line = in.nextLine().trim();
+          if(!line.substring(0,1).equals("!")){
+            String[] tokens = line.split("\\s+");
+            String atomOne = tokens[0];
+            String atomTwo = tokens[1];
+            mainBonds.add(new String[]{atomOne, atomTwo});
+            if(!isBackboneAtom(atomOne) && !atomsInOrder.contains(atomOne)){
+              atomsInOrder.add(atomOne);
+            }
+            if(!isBackboneAtom(atomTwo) && !atomsInOrder.contains(atomTwo)){
+              atomsInOrder.add(atomTwo);
+            }
+          } else { // read next section header
+            break;
+          }
+        }
+      }
+      if(line.equals("!hydrogens")){
+        while(in.hasNext()) {
+          line = in.nextLine().trim();
+          if(!line.substring(0,1).equals("!")){
+            String[] tokens = line.split("\\s+");
+            String heavyAtom = tokens[0];
+            String hydrogen = tokens[1];
+            bondsToHydrogens.add(new String[]{heavyAtom, hydrogen});
+            // place each hydrogen directly after the atom it is bonded to
+            if(!atomsInOrder.contains(hydrogen)){
+              int index = atomsInOrder.indexOf(heavyAtom);
+              atomsInOrder.add(index+1, hydrogen);
+            }
+            if(!heavyAtomHydrogens.containsKey(heavyAtom)){
+              heavyAtomHydrogens.put(heavyAtom, new ArrayList<String>());
+            }
+            heavyAtomHydrogens.get(heavyAtom).add(hydrogen);
+          } else { // read next section header
+            break;
+          }
+        }
+      }
+      if(line.equals("!defined dihedral angles")){
+        line = in.nextLine().trim();
+        if(!line.substring(0,1).equals("!") && !line.substring(0,1).equals("#")){
+          for(String atomType : line.split("\\s+")){
+            definedDihedralAngles.add(atomType);
+          }
+        }
+      }
+      if(line.equals("!defined angle triplets")){
+        while(in.hasNext()) {
+          line = in.nextLine().trim();
+          if(!line.substring(0,1).equals("!")){
+            if(!line.substring(0,1).equals("#")){
+              String[] tokens = line.split("\\s+");
+              angleTriplets.add(new String[]{tokens[0], tokens[1], tokens[2]});
+            }
+          } else { // read next section header
+            break;
+          }
+        }
+      }
+      if(line.equals("!atom types")){
+        // place holder for future use of this information
+      }
+    }
+    in.close();
+    atomsInOrder.add("C");
+    atomsInOrder.add("O");
+    atomsInOrder.add("OXT");
+
+    for(Map.Entry<String, List<String>> entry : heavyAtomHydrogens.entrySet()){
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+    return new ResidueTemplate(threeLetterName, mainBonds, bondsToHydrogens, heavyAtomHydrogens,
+        definedDihedralAngles, angleTriplets, atomsInOrder);
+  }
+
+  private static boolean isBackboneAtom(String atomName){
+    return atomName.equals("N") || atomName.equals("CA") || atomName.equals("C")
+        || atomName.equals("O") || atomName.equals("OXT");
+  }
+}
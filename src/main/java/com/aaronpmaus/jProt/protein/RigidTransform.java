@@ -0,0 +1,218 @@
+package com.aaronpmaus.jProt.protein;
+
+import com.aaronpmaus.jMath.linearAlgebra.Vector3D;
+import com.aaronpmaus.jMath.transformations.Transformation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* A RigidTransform is an immutable 4x4 homogeneous transformation matrix (rotations and
+* translations) that can be applied to all the coordinates of a CoordinateStore in a single pass.
+* Only the top three rows of the matrix are stored, the bottom row is always {@code 0 0 0 1}.
+* <p>
+* A RigidTransform can be built directly from a matrix or from a jMath Transformation. Several
+* transforms can be composed into one, so that a sequence of transforms costs a single pass over
+* the coordinates.
+* <p>
+* Usage:<br>
+* {@code RigidTransform rt = RigidTransform.fromTransformation(t);}<br>
+* {@code prot.applyTransformation(rt);}<br>
+*
+* @version 0.8.0
+* @since 0.8.0
+*/
+public final class RigidTransform {
+  private static final RigidTransform IDENTITY = new RigidTransform(new double[]{
+      1.0, 0.0, 0.0, 0.0,
+      0.0, 1.0, 0.0, 0.0,
+      0.0, 0.0, 1.0, 0.0});
+
+  // the top three rows of the matrix in row major order:
+  // m[0] m[1] m[2]  m[3]
+  // m[4] m[5] m[6]  m[7]
+  // m[8] m[9] m[10] m[11]
+  private final double[] m;
+
+  private RigidTransform(double[] m){
+    this.m = m;
+  }
+
+  /**
+  * @return the identity transform
+  */
+  public static RigidTransform identity(){
+    return IDENTITY;
+  }
+
+  /**
+  * Build a RigidTransform from a 4x4 (or 3x4) homogeneous matrix. The matrix is copied.
+  * @param matrix the matrix, indexed {@code matrix[row][column]}. The translation is the fourth
+  * column.
+  * @return the RigidTransform of matrix
+  * @throws IllegalArgumentException if matrix does not have 3 or 4 rows of 4 columns
+  */
+  public static RigidTransform fromMatrix(double[][] matrix){
+    if(matrix.length != 3 && matrix.length != 4){
+      throw new IllegalArgumentException("A RigidTransform matrix must have 3 or 4 rows.");
+    }
+    double[] m = new double[12];
+    for(int row = 0; row < 3; row++){
+      if(matrix[row].length != 4){
+        throw new IllegalArgumentException("A RigidTransform matrix must have 4 columns.");
+      }
+      System.arraycopy(matrix[row], 0, m, row*4, 4);
+    }
+    return new RigidTransform(m);
+  }
+
+  /**
+  * Build a RigidTransform equivalent to a jMath Transformation. The matrix is recovered by
+  * applying t to the origin and the three unit vectors, so this costs four vector
+  * transformations no matter how many coordinates the result is then applied to.
+  * @param t the Transformation to convert
+  * @return a RigidTransform that moves coordinates the same way t does
+  */
+  public static RigidTransform fromTransformation(Transformation t){
+    Vector3D origin = transform(t, 0.0, 0.0, 0.0);
+    Vector3D xAxis = transform(t, 1.0, 0.0, 0.0).subtract(origin);
+    Vector3D yAxis = transform(t, 0.0, 1.0, 0.0).subtract(origin);
+    Vector3D zAxis = transform(t, 0.0, 0.0, 1.0).subtract(origin);
+    double[] m = new double[12];
+    Vector3D[] columns = {xAxis, yAxis, zAxis, origin};
+    for(int col = 0; col < 4; col++){
+      m[col] = columns[col].getX().doubleValue();
+      m[4 + col] = columns[col].getY().doubleValue();
+      m[8 + col] = columns[col].getZ().doubleValue();
+    }
+    return new RigidTransform(m);
+  }
+
+  private static Vector3D transform(Transformation t, double x, double y, double z){
+    Vector3D vec = new Vector3D(x, y, z);
+    vec.applyTransformation(t);
+    return vec;
+  }
+
+  /**
+  * Compose a list of transforms into one. Applying the result is the same as applying each
+  * transform in the list in order.
+  * @param transforms the transforms to compose, first to be applied first
+  * @return a single RigidTransform equivalent to the list
+  */
+  public static RigidTransform compose(List<RigidTransform> transforms){
+    RigidTransform result = IDENTITY;
+    for(RigidTransform transform : transforms){
+      result = result.then(transform);
+    }
+    return result;
+  }
+
+  /**
+  * Return the transform that applies this transform and then next.
+  * @param next the transform to apply after this one
+  * @return the composition {@code next * this}
+  */
+  public RigidTransform then(RigidTransform next){
+    double[] a = next.m;
+    double[] b = this.m;
+    double[] c = new double[12];
+    for(int row = 0; row < 3; row++){
+      int r = row*4;
+      for(int col = 0; col < 4; col++){
+        c[r + col] = a[r]*b[col] + a[r + 1]*b[4 + col] + a[r + 2]*b[8 + col];
+      }
+      c[r + 3] += a[r + 3];
+    }
+    return new RigidTransform(c);
+  }
+
+  /**
+  * @param row the row, 0 to 3
+  * @param col the column, 0 to 3
+  * @return the element of the 4x4 matrix at row, col
+  */
+  public double get(int row, int col){
+    if(row == 3){
+      return col == 3 ? 1.0 : 0.0;
+    }
+    return this.m[row*4 + col];
+  }
+
+  /**
+  * @return a copy of the 4x4 matrix of this transform, indexed {@code matrix[row][column]}
+  */
+  public double[][] toMatrix(){
+    double[][] matrix = new double[4][4];
+    for(int row = 0; row < 3; row++){
+      System.arraycopy(this.m, row*4, matrix[row], 0, 4);
+    }
+    matrix[3][3] = 1.0;
+    return matrix;
+  }
+
+  /**
+  * Transform the coordinates in the arrays x, y, and z from index from (inclusive) to to
+  * (exclusive) in place.
+  * @param x the x coordinates
+  * @param y the y coordinates
+  * @param z the z coordinates
+  * @param from the first index to transform
+  * @param to one past the last index to transform
+  */
+  void apply(double[] x, double[] y, double[] z, int from, int to){
+    double m0 = m[0], m1 = m[1], m2 = m[2], m3 = m[3];
+    double m4 = m[4], m5 = m[5], m6 = m[6], m7 = m[7];
+    double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+    for(int i = from; i < to; i++){
+      double px = x[i], py = y[i], pz = z[i];
+      x[i] = m0*px + m1*py + m2*pz + m3;
+      y[i] = m4*px + m5*py + m6*pz + m7;
+      z[i] = m8*px + m9*py + m10*pz + m11;
+    }
+  }
+
+  /**
+  * Transform the coordinates in the arrays x, y, and z from index from (inclusive) to to
+  * (exclusive) in place. The arithmetic is done in double precision.
+  * @param x the x coordinates
+  * @param y the y coordinates
+  * @param z the z coordinates
+  * @param from the first index to transform
+  * @param to one past the last index to transform
+  */
+  void apply(float[] x, float[] y, float[] z, int from, int to){
+    double m0 = m[0], m1 = m[1], m2 = m[2], m3 = m[3];
+    double m4 = m[4], m5 = m[5], m6 = m[6], m7 = m[7];
+    double m8 = m[8], m9 = m[9], m10 = m[10], m11 = m[11];
+    for(int i = from; i < to; i++){
+      double px = x[i], py = y[i], pz = z[i];
+      x[i] = (float) (m0*px + m1*py + m2*pz + m3);
+      y[i] = (float) (m4*px + m5*py + m6*pz + m7);
+      z[i] = (float) (m8*px + m9*py + m10*pz + m11);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj){
+    if(obj instanceof RigidTransform){
+      return Arrays.equals(this.m, ((RigidTransform) obj).m);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode(){
+    return Arrays.hashCode(this.m);
+  }
+
+  @Override
+  public String toString(){
+    String str = "";
+    for(int row = 0; row < 4; row++){
+      str += String.format("%10.4f %10.4f %10.4f %10.4f\n",
+          get(row, 0), get(row, 1), get(row, 2), get(row, 3));
+    }
+    return str;
+  }
+}
@@ -0,0 +1,107 @@
+package com.aaronpmaus.jProt.protein;
+
+import java.util.Arrays;
+
+/**
+* A CoordinateStore that holds its coordinates in single precision arrays. A float has 24 bits of
+* significand, so coordinates up to the largest a PDB file can hold (9999.999) are stored to within
+* 0.0005, enough to reproduce the 3 decimal places of the PDB format.
+* @version 0.8.0
+* @since 0.8.0
+*/
+final class SinglePrecisionCoordinateStore extends CoordinateStore {
+  private float[] x;
+  private float[] y;
+  private float[] z;
+
+  SinglePrecisionCoordinateStore(int initialCapacity){
+    this.x = new float[initialCapacity];
+    this.y = new float[initialCapacity];
+    this.z = new float[initialCapacity];
+    this.size = 0;
+  }
+
+  @Override
+  public Precision getPrecision(){
+    return Precision.SINGLE;
+  }
+
+  @Override
+  public double getX(int index){
+    return this.x[index];
+  }
+
+  @Override
+  public double getY(int index){
+    return this.y[index];
+  }
+
+  @Override
+  public double getZ(int index){
+    return this.z[index];
+  }
+
+  @Override
+  public void set(int index, double x, double y, double z){
+    this.x[index] = (float) x;
+    this.y[index] = (float) y;
+    this.z[index] = (float) z;
+  }
+
+  @Override
+  public double distance(int i, int j){
+    // difference in double so that nearby atoms do not lose precision to cancellation
+    double dx = (double) this.x[i] - this.x[j];
+    double dy = (double) this.y[i] - this.y[j];
+    double dz = (double) this.z[i] - this.z[j];
+    return Math.sqrt(dx*dx + dy*dy + dz*dz);
+  }
+
+  @Override
+  protected void transform(RigidTransform t, int from, int to){
+    t.apply(this.x, this.y, this.z, from, to);
+  }
+
+  @Override
+  public CoordinateStore copy(){
+    SinglePrecisionCoordinateStore copy =
+        new SinglePrecisionCoordinateStore(Math.max(this.size, 1));
+    copy.size = this.size;
+    copy.copyCoordinates(this);
+    return copy;
+  }
+
+  @Override
+  protected void copyCoordinates(CoordinateStore source){
+    if(!(source instanceof SinglePrecisionCoordinateStore)){
+      super.copyCoordinates(source);
+      return;
+    }
+    SinglePrecisionCoordinateStore other = (SinglePrecisionCoordinateStore) source;
+    System.arraycopy(other.x, 0, this.x, 0, this.size);
+    System.arraycopy(other.y, 0, this.y, 0, this.size);
+    System.arraycopy(other.z, 0, this.z, 0, this.size);
+  }
+
+  @Override
+  public void trimToSize(){
+    if(this.size < this.x.length){
+      this.x = Arrays.copyOf(this.x, this.size);
+      this.y = Arrays.copyOf(this.y, this.size);
+      this.z = Arrays.copyOf(this.z, this.size);
+    }
+  }
+
+  @Override
+  protected int capacity(){
+    return this.x.length;
+  }
+
+  @Override
+  protected void grow(int minCapacity){
+    int newCapacity = newCapacity(this.x.length, minCapacity);
+    this.x = Arrays.copyOf(this.x, newCapacity);
+    this.y = Arrays.copyOf(this.y, newCapacity);
+    this.z = Arrays.copyOf(this.z, newCapacity);
+  }
+}
@@ -17,6 +17,9 @@ import java.util.List;
 * of Residues. They can then be manipulated into different conformations. VirtualRibosome can
 * produce single multi chain Proteins.
 * <p>
+* Each Protein is synthesized in its own IdAllocator.Scope, so Proteins can be synthesized on
+* several threads at once and the same sequence is always numbered the same way.
+* <p>
 * Usage: <br>
 * {code // Construct a custom protein from the sequence IAMSTARSTFF}<br>
 * {code Protein prot = VirtualRibosome.synthesizeProtein(new ProteinSequence("IAMSTARSTFF"), "strstf");}<br>}
@@ -39,6 +42,15 @@ public class VirtualRibosome {
           + "constructing proteins with up to 62 chains. Issue a feature request to tell the\n"
           + "maintainer to increase this limit!",sequences.size()));
     }
+    IdAllocator.Scope scope = IdAllocator.openScope();
+    try{
+      return buildProtein(sequences, pdbFileNameBase);
+    } finally {
+      scope.close();
+    }
+  }
+
+  private static Protein buildProtein(List<ProteinSequence> sequences, String pdbFileNameBase){
     Protein prot = new Protein(pdbFileNameBase);
     ConformationManipulator manip = new CascadeConformationManipulator(prot);
     String[] chainIDs = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M",
@@ -64,6 +76,15 @@ public class VirtualRibosome {
   * @return a Protein with a single chain built out of the residues in that sequence
   */
   public static Protein synthesizeProtein(ProteinSequence sequence, String pdbFileNameBase){
+    IdAllocator.Scope scope = IdAllocator.openScope();
+    try{
+      return buildProtein(sequence, pdbFileNameBase);
+    } finally {
+      scope.close();
+    }
+  }
+
+  private static Protein buildProtein(ProteinSequence sequence, String pdbFileNameBase){
     Protein prot = new Protein(pdbFileNameBase);
     ConformationManipulator manip = new CascadeConformationManipulator(prot);
     PolypeptideChain chain = synthesizeChain(sequence, "A");
@@ -96,7 +117,7 @@ public class VirtualRibosome {
   */
   private static PolypeptideChain synthesizeChain(ProteinSequence sequence, String chainID){
 
-    PolypeptideChain chain = new PolypeptideChain(chainID);
+    PolypeptideChain.Builder chainBuilder = new PolypeptideChain.Builder(chainID);
     Residue prevResidue = null;
     Residue newResidue = null;
     int resID = 1;
@@ -106,19 +127,19 @@ public class VirtualRibosome {
     for(Character resString : sequence){
       if(resID == 1){
         prevResidue = new Residue(resString, resID);
-        chain.addResidue(prevResidue);
+        chainBuilder.addResidue(prevResidue);
       } else {
         newResidue = new Residue(resString, resID);
         if(resID == lastResidueID){
           newResidue.setAsCarboxylTerminus();
         }
-        chain.addResidue(newResidue);
+        chainBuilder.addResidue(newResidue);
         moveResidueIntoPlace(prevResidue, newResidue);
         prevResidue = newResidue;
       }
       resID++;
     }
-    return chain;
+    return chainBuilder.build();
   }
 
   /*
@@ -50,16 +50,28 @@ public class DistanceMatrixCalculator{
 
   private static Double[][] calculateDistanceMatrix(Collection<Atom> atoms){
     int numAtoms = atoms.size();
+    // gather the coordinates into arrays so the n^2 loop below runs over primitives only.
+    double[] x = new double[numAtoms];
+    double[] y = new double[numAtoms];
+    double[] z = new double[numAtoms];
+    int index = 0;
+    for(Atom atom : atoms){
+      x[index] = atom.getX();
+      y[index] = atom.getY();
+      z[index] = atom.getZ();
+      index++;
+    }
     Double[][] distanceMatrix = new Double[numAtoms][numAtoms];
-    int i = 0;
-    int j = 0;
-    for(Atom atomOne : atoms){
-      for(Atom atomTwo : atoms){
-        distanceMatrix[i][j] = atomOne.distance(atomTwo);
-        j++;
+    for(int i = 0; i < numAtoms; i++){
+      distanceMatrix[i][i] = 0.0;
+      for(int j = i+1; j < numAtoms; j++){
+        double dx = x[i] - x[j];
+        double dy = y[i] - y[j];
+        double dz = z[i] - z[j];
+        Double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+        distanceMatrix[i][j] = distance;
+        distanceMatrix[j][i] = distance;
       }
-      j = 0;
-      i++;
     }
     return distanceMatrix;
   }
@@ -0,0 +1,50 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+
+import static org.junit.Assert.*;
+
+/*
+ * Assertions shared by the tests of the readers and writers, which check that a Protein read back
+ * in is the one that was written out.
+*/
+final class ProteinAssertions{
+  private ProteinAssertions(){
+  }
+
+  /*
+   * Assert that two Proteins have the same chains, residues, and bonds, and that each atom has the
+   * same serial number, coordinates, occupancy, temperature factor, and charge.
+  */
+  static void assertSameProtein(Protein expected, Protein actual){
+    assertSameProtein(expected, actual, 0.0);
+  }
+
+  /*
+   * Assert that two Proteins are the same, with coordinates that differ by no more than delta,
+   * for formats that round them.
+  */
+  static void assertSameProtein(Protein expected, Protein actual, double delta){
+    assertEquals(expected.getNumAtoms(), actual.getNumAtoms());
+    assertEquals(expected.getNumBonds(), actual.getNumBonds());
+    assertEquals(expected.getDisulfideBonds().size(), actual.getDisulfideBonds().size());
+    for(PolypeptideChain chain : expected){
+      PolypeptideChain actualChain = actual.getChain(chain.getChainID());
+      assertEquals(chain.getNumResidues(), actualChain.getNumResidues());
+      for(Residue res : chain){
+        Residue actualRes = actualChain.getResidue(res.getResidueID());
+        assertEquals(res.getThreeLetterName(), actualRes.getThreeLetterName());
+        for(Atom atom : res){
+          Atom actualAtom = actualRes.getAtom(atom.getName());
+          assertEquals(atom.getSerialNumber(), actualAtom.getSerialNumber());
+          assertEquals(atom.getX(), actualAtom.getX(), delta);
+          assertEquals(atom.getY(), actualAtom.getY(), delta);
+          assertEquals(atom.getZ(), actualAtom.getZ(), delta);
+          assertEquals(atom.getOccupancy(), actualAtom.getOccupancy(), 0.0);
+          assertEquals(atom.getTempFactor(), actualAtom.getTempFactor(), 0.0);
+          assertEquals(atom.getCharge(), actualAtom.getCharge(), 0.0);
+        }
+      }
+    }
+  }
+}
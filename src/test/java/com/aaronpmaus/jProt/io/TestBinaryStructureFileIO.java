@@ -0,0 +1,118 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import static com.aaronpmaus.jProt.ProteinAssertions.assertSameProtein;
+import org.junit.Test;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestBinaryStructureFileIO{
+  private Protein m2j;
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestBinaryStructureFileIO.class.getResourceAsStream("5m2j.pdb");
+    m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+  }
+
+  @Test
+  public void testRoundTripThroughFile() throws IOException{
+    Path file = Files.createTempFile("5m2j", ".jpb");
+    try{
+      BinaryStructureFileIO.write(file, m2j);
+      Protein prot = BinaryStructureFileIO.read(file);
+      assertEquals("5m2j", prot.getProteinName());
+      assertEquals(2, prot.getDisulfideBonds().size());
+      assertSameProtein(m2j, prot, 0.0);
+
+      // coordinates read from a PDB file have three decimals, so quantizing them loses nothing
+      BinaryStructureFileIO.write(file, m2j, BinaryStructureFileIO.CoordinateEncoding.QUANTIZED);
+      assertSameProtein(m2j, BinaryStructureFileIO.read(file), 0.0);
+      assertTrue(Files.size(file) < BinaryStructureFileIO.encode(m2j,
+          BinaryStructureFileIO.CoordinateEncoding.DOUBLE).remaining());
+
+      BinaryStructureFileIO.write(file, m2j, BinaryStructureFileIO.CoordinateEncoding.FLOAT);
+      Protein single = BinaryStructureFileIO.read(file, CoordinateStore.Precision.SINGLE);
+      assertEquals(CoordinateStore.Precision.SINGLE,
+          single.getCoordinateStore().getPrecision());
+      assertSameProtein(m2j, single, 1e-4);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testCAOnlyAndBadInput(){
+    PDBFileIO pdb = new PDBFileIO();
+    pdb.setAtomSelection(PDBFileIO.AtomSelection.CA_ONLY);
+    Protein caOnly = pdb.readInPDBFile(
+        TestBinaryStructureFileIO.class.getResourceAsStream("5m2j.pdb"), "5m2j");
+    ByteBuffer encoded = BinaryStructureFileIO.encode(caOnly,
+        BinaryStructureFileIO.CoordinateEncoding.QUANTIZED);
+    Protein prot = BinaryStructureFileIO.read(encoded, CoordinateStore.Precision.DOUBLE);
+    assertEquals(0, encoded.position());
+    assertSameProtein(caOnly, prot, 0.0);
+    for(PolypeptideChain chain : prot){
+      assertTrue(chain.isBuiltWithoutBonds());
+    }
+
+    ByteBuffer truncated = encoded.duplicate();
+    truncated.limit(encoded.limit() - 1);
+    try{
+      BinaryStructureFileIO.read(truncated, CoordinateStore.Precision.DOUBLE);
+      fail("read a truncated binary structure");
+    } catch(IllegalArgumentException e){
+    }
+    try{
+      BinaryStructureFileIO.read(ByteBuffer.wrap(new byte[64]), CoordinateStore.Precision.DOUBLE);
+      fail("read a buffer that is not a binary structure");
+    } catch(IllegalArgumentException e){
+    }
+  }
+
+  @Test
+  public void testCorruptCountsAreRejectedBeforeAllocating(){
+    ByteBuffer encoded = BinaryStructureFileIO.encode(m2j,
+        BinaryStructureFileIO.CoordinateEncoding.QUANTIZED).order(ByteOrder.LITTLE_ENDIAN);
+    // the number of atoms follows the magic, version, encoding, and numbers of chains and residues
+    int numAtomsPosition = 8 + 4 * 4;
+    int offsetPosition = numAtomsPosition + 2 * 4;
+    for(int numAtoms : new int[]{-1, Integer.MAX_VALUE, m2j.getNumAtoms() + 1}){
+      ByteBuffer corrupt = copyOf(encoded);
+      corrupt.putInt(numAtomsPosition, numAtoms);
+      assertRejected(corrupt);
+    }
+    // offsets outside the buffer, and one that would be truncated to 0 as an int
+    for(long offset : new long[]{1L << 32, -8L, encoded.limit() + 8L}){
+      ByteBuffer corrupt = copyOf(encoded);
+      corrupt.putLong(offsetPosition, offset);
+      assertRejected(corrupt);
+    }
+    assertSameProtein(m2j, BinaryStructureFileIO.read(copyOf(encoded),
+        CoordinateStore.Precision.DOUBLE), 0.0);
+  }
+
+  private static ByteBuffer copyOf(ByteBuffer buffer){
+    ByteBuffer copy = ByteBuffer.allocate(buffer.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+    copy.put(buffer.duplicate()).flip();
+    return copy;
+  }
+
+  private static void assertRejected(ByteBuffer corrupt){
+    try{
+      BinaryStructureFileIO.read(corrupt, CoordinateStore.Precision.DOUBLE);
+      fail("read a binary structure with a corrupt header");
+    } catch(IllegalArgumentException e){
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+import com.aaronpmaus.jProt.io.QuantizedCoordinateCodec.DeltaMode;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TestCompressedEnsemble{
+  private Protein rop;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestCompressedEnsemble.class.getResourceAsStream("1rop.pdb");
+    rop = new PDBFileIO().readInPDBFile(stream, "1rop");
+    stream.close();
+  }
+
+  @Test
+  public void testPDBCoordinatesAreDecodedExactly(){
+    for(DeltaMode mode : DeltaMode.values()){
+      CompressedEnsemble ensemble = new CompressedEnsemble(rop, mode);
+      ensemble.addFrame(rop);
+      CoordinateStore frame = rop.snapshotCoordinates();
+      ensemble.getFrame(0, frame);
+      assertSameCoordinates(rop.getCoordinateStore(), frame, 0.0);
+      assertSameCoordinates(rop.getCoordinateStore(),
+          ensemble.getFrame(0).getCoordinateStore(), 0.0);
+      // far smaller than the 24 bytes a set of coordinates as doubles
+      assertTrue(ensemble.getEncodedSize() < 8 * rop.getCoordinateStore().size());
+    }
+  }
+
+  @Test
+  public void testFramesAreQuantized(){
+    CompressedEnsemble ensemble = new CompressedEnsemble(rop, DeltaMode.REFERENCE_FRAME);
+    for(int frame = 1; frame <= 10; frame++){
+      rop.applyTransformation(RigidTransform.fromMatrix(new double[][]{
+          {1, 0, 0, 0.1234 * frame}, {0, 1, 0, -0.0005}, {0, 0, 1, 2.0}, {0, 0, 0, 1}}));
+      ensemble.addFrame(rop);
+    }
+    assertEquals(10, ensemble.getNumFrames());
+    CoordinateStore last = rop.snapshotCoordinates();
+    CoordinateStore decoded = rop.snapshotCoordinates();
+    ensemble.getFrame(9, decoded);
+    assertSameCoordinates(last, decoded, 0.0005 + 1e-9);
+
+    // small moves away from the reference take a byte or two a coordinate
+    CompressedEnsemble near = new CompressedEnsemble(rop, DeltaMode.REFERENCE_FRAME);
+    rop.applyTransformation(RigidTransform.fromMatrix(new double[][]{
+        {1, 0, 0, 0.05}, {0, 1, 0, 0.0}, {0, 0, 1, 0.0}, {0, 0, 0, 1}}));
+    near.addFrame(rop);
+    assertTrue(near.getEncodedSize() <= 4 * rop.getCoordinateStore().size());
+  }
+
+  @Test
+  public void testForEachFrame(){
+    CompressedEnsemble ensemble = new CompressedEnsemble(rop, DeltaMode.PREVIOUS_ATOM);
+    for(int frame = 0; frame < 5; frame++){
+      ensemble.addFrame(rop);
+      rop.applyTransformation(RigidTransform.fromMatrix(new double[][]{
+          {1, 0, 0, 1.0}, {0, 1, 0, 0.0}, {0, 0, 1, 0.0}, {0, 0, 0, 1}}));
+    }
+    int firstAtom = rop.getChain("A").getResidue(1).getAtom("N").getCoordinateIndex();
+    double[] firstX = new double[5];
+    int[] numFrames = {0};
+    ensemble.forEachFrame((index, x, y, z) -> {
+      firstX[index] = x[firstAtom];
+      numFrames[0]++;
+    });
+    assertEquals(5, numFrames[0]);
+    for(int frame = 1; frame < 5; frame++){
+      assertEquals(1.0, firstX[frame] - firstX[frame - 1], 1e-9);
+    }
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException{
+    Path file = Files.createTempFile("1rop", ".qce");
+    try{
+      CompressedEnsemble ensemble = new CompressedEnsemble(rop, DeltaMode.REFERENCE_FRAME);
+      ensemble.addFrame(rop);
+      rop.applyTransformation(RigidTransform.fromMatrix(new double[][]{
+          {0, -1, 0, 0.0}, {1, 0, 0, 0.0}, {0, 0, 1, 0.0}, {0, 0, 0, 1}}));
+      ensemble.addFrame(rop);
+      ensemble.write(file);
+
+      CompressedEnsemble read = CompressedEnsemble.read(file, rop);
+      assertEquals(2, read.getNumFrames());
+      assertEquals(ensemble.getEncodedSize(), read.getEncodedSize());
+      assertEquals(DeltaMode.REFERENCE_FRAME, read.getCodec().getDeltaMode());
+      CoordinateStore frame = rop.snapshotCoordinates();
+      read.getFrame(1, frame);
+      assertSameCoordinates(rop.getCoordinateStore(), frame, 0.0005 + 1e-9);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testFrameOfAnotherProtein() throws IOException{
+    InputStream stream = TestCompressedEnsemble.class.getResourceAsStream("5m2j.pdb");
+    Protein m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+    CompressedEnsemble ensemble = new CompressedEnsemble(rop, DeltaMode.PREVIOUS_ATOM);
+    thrown.expect(IllegalArgumentException.class);
+    ensemble.addFrame(m2j);
+  }
+
+  @Test
+  public void testInvalidBlocksLeaveTheFrameAsItWas(){
+    QuantizedCoordinateCodec codec = new QuantizedCoordinateCodec(rop.getCoordinateStore());
+    CoordinateStore moved = rop.snapshotCoordinates();
+    for(int i = 0; i < moved.size(); i++){
+      moved.set(i, moved.getX(i) + 1.0, moved.getY(i), moved.getZ(i) - 1.0);
+    }
+    byte[] block = codec.encode(moved);
+    CoordinateStore frame = rop.snapshotCoordinates();
+    byte[][] invalid = {Arrays.copyOf(block, block.length - 1),
+        Arrays.copyOf(block, block.length + 1)};
+    for(byte[] bytes : invalid){
+      try{
+        codec.decode(bytes, frame);
+        fail("decoded a block of the wrong length");
+      } catch(IllegalArgumentException e){
+      }
+      assertSameCoordinates(rop.getCoordinateStore(), frame, 0.0);
+    }
+    codec.decode(block, frame);
+    assertSameCoordinates(moved, frame, 0.0005);
+  }
+
+  private static void assertSameCoordinates(CoordinateStore expected, CoordinateStore actual,
+      double delta){
+    assertEquals(expected.size(), actual.size());
+    for(int i = 0; i < expected.size(); i++){
+      assertEquals(expected.getX(i), actual.getX(i), delta);
+      assertEquals(expected.getY(i), actual.getY(i), delta);
+      assertEquals(expected.getZ(i), actual.getZ(i), delta);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class TestDCDTrajectoryReader{
+  // 1rop.pdb has 447 ATOM records, followed by a TER record and the HETATM records of 48 waters,
+  // which are not read into a Protein
+  private static final int NUM_FRAME_ATOMS = 495;
+  private Protein rop;
+  // key: the serial number of an ATOM or HETATM record of 1rop.pdb, value: its index in a frame
+  private HashMap<Integer, Integer> ropFrameIndices;
+  private Path file;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestDCDTrajectoryReader.class.getResourceAsStream("1rop.pdb");
+    rop = new PDBFileIO().readInPDBFile(stream, "1rop");
+    stream.close();
+    ropFrameIndices = readFrameIndices("1rop.pdb");
+    file = Files.createTempFile("1rop", ".dcd");
+  }
+
+  @After
+  public void tearDown() throws IOException{
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testReadFramesInPlace() throws IOException{
+    writeDCD(file, ByteOrder.LITTLE_ENDIAN, true, 5, NUM_FRAME_ATOMS);
+    try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(file, rop)){
+      assertEquals(5, trajectory.getNumFrames());
+      assertEquals(NUM_FRAME_ATOMS, trajectory.getNumAtoms());
+      assertEquals(0.5f, trajectory.getTimeStep(), 0.0f);
+      assertEquals(-1, trajectory.getFrameIndex());
+      int numFramesRead = 0;
+      while(trajectory.readNextFrame()){
+        assertEquals(numFramesRead, trajectory.getFrameIndex());
+        assertFrame(rop, ropFrameIndices, numFramesRead);
+        numFramesRead++;
+      }
+      assertEquals(5, numFramesRead);
+
+      // random access, in any order
+      trajectory.readFrame(3);
+      assertFrame(rop, ropFrameIndices, 3);
+      trajectory.readFrame(1);
+      assertFrame(rop, ropFrameIndices, 1);
+    }
+  }
+
+  @Test
+  public void testReadFrameIntoSnapshot() throws IOException{
+    // X-PLOR files have no unit cell, and may be big endian
+    writeDCD(file, ByteOrder.BIG_ENDIAN, false, 3, NUM_FRAME_ATOMS);
+    Atom atom = rop.getChain("A").getResidue(10).getAtom("CA");
+    double x = atom.getX();
+    try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(file, rop)){
+      CoordinateStore frame = rop.snapshotCoordinates();
+      trajectory.readFrame(2, frame);
+      // the protein is left as it was
+      assertEquals(x, atom.getX(), 0.0);
+      rop.restoreCoordinates(frame);
+      assertFrame(rop, ropFrameIndices, 2);
+
+      float[] frameX = new float[NUM_FRAME_ATOMS];
+      float[] frameY = new float[NUM_FRAME_ATOMS];
+      float[] frameZ = new float[NUM_FRAME_ATOMS];
+      trajectory.readFrame(1, frameX, frameY, frameZ);
+      // the last atom is a water, which is not in the protein
+      assertEquals(coordinate(1, NUM_FRAME_ATOMS - 1, 0), frameX[NUM_FRAME_ATOMS - 1], 0.0f);
+      assertEquals(coordinate(1, NUM_FRAME_ATOMS - 1, 2), frameZ[NUM_FRAME_ATOMS - 1], 0.0f);
+    }
+  }
+
+  @Test
+  public void testBindAtoms() throws IOException{
+    writeDCD(file, ByteOrder.LITTLE_ENDIAN, true, 2, 2);
+    Atom n = rop.getChain("A").getResidue(1).getAtom("N");
+    Atom ca = rop.getChain("A").getResidue(1).getAtom("CA");
+    double caX = ca.getX();
+    try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(file, rop,
+        new Atom[]{null, n})){
+      trajectory.readFrame(1);
+      assertEquals(coordinate(1, 1, 1), n.getY(), 0.0);
+      assertEquals(caX, ca.getX(), 0.0);
+    }
+  }
+
+  @Test
+  public void testAtomsOfLaterChainsAreBoundInRecordOrder() throws IOException{
+    // the TER record after chain A of 5m2j takes up serial number 1078, so the serial numbers of
+    // chain D are one ahead of the indices of its atoms in a frame
+    InputStream stream = TestDCDTrajectoryReader.class.getResourceAsStream("5m2j.pdb");
+    Protein m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+    HashMap<Integer, Integer> frameIndices = readFrameIndices("5m2j.pdb");
+    writeDCD(file, ByteOrder.LITTLE_ENDIAN, true, 2, frameIndices.size());
+    try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(file, m2j)){
+      trajectory.readFrame(1);
+      assertFrame(m2j, frameIndices, 1);
+    }
+    Atom chainDAtom = m2j.getChain("D").iterator().next().getAtom("N");
+    assertEquals(1077, (int) frameIndices.get(chainDAtom.getSerialNumber()));
+    assertEquals(coordinate(1, 1077, 0), chainDAtom.getX(), 0.0);
+  }
+
+  @Test
+  public void testFramesWithFewerAtomsThanTheProtein() throws IOException{
+    writeDCD(file, ByteOrder.LITTLE_ENDIAN, true, 2, 2);
+    thrown.expect(IllegalArgumentException.class);
+    new DCDTrajectoryReader(file, rop);
+  }
+
+  @Test
+  public void testPartlyWrittenFrameIsNotCounted() throws IOException{
+    writeDCD(file, ByteOrder.LITTLE_ENDIAN, true, 4, NUM_FRAME_ATOMS);
+    try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+      channel.truncate(channel.size() - 100);
+    }
+    try(DCDTrajectoryReader trajectory = new DCDTrajectoryReader(file, rop)){
+      assertEquals(3, trajectory.getNumFrames());
+      thrown.expect(IndexOutOfBoundsException.class);
+      trajectory.readFrame(3);
+    }
+  }
+
+  @Test
+  public void testNotADCDFile() throws IOException{
+    Files.write(file, "HEADER    not a trajectory\n".getBytes("US-ASCII"));
+    thrown.expect(IOException.class);
+    new DCDTrajectoryReader(file, rop);
+  }
+
+  /**
+  * The coordinates of an atom in a frame: the frame, atom, and axis packed into a float.
+  */
+  private static float coordinate(int frame, int atom, int axis){
+    return frame * 1000 + atom + axis * 0.25f;
+  }
+
+  private static void assertFrame(Protein prot, HashMap<Integer, Integer> frameIndices,
+      int frame){
+    for(PolypeptideChain chain : prot){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          int i = frameIndices.get(atom.getSerialNumber());
+          assertEquals(coordinate(frame, i, 0), atom.getX(), 0.0);
+          assertEquals(coordinate(frame, i, 1), atom.getY(), 0.0);
+          assertEquals(coordinate(frame, i, 2), atom.getZ(), 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+  * The index in a frame of the atom of each ATOM and HETATM record of a PDB file, which is the
+  * order of the records.
+  */
+  private static HashMap<Integer, Integer> readFrameIndices(String name) throws IOException{
+    HashMap<Integer, Integer> frameIndices = new HashMap<Integer, Integer>();
+    InputStream stream = TestDCDTrajectoryReader.class.getResourceAsStream(name);
+    BufferedReader in = new BufferedReader(
+        new InputStreamReader(stream, StandardCharsets.US_ASCII));
+    String line;
+    while((line = in.readLine()) != null){
+      if(line.startsWith("ATOM  ") || line.startsWith("HETATM")){
+        frameIndices.put(Integer.parseInt(line.substring(6,11).trim()), frameIndices.size());
+      }
+    }
+    in.close();
+    return frameIndices;
+  }
+
+  /**
+  * Write a DCD file the way CHARMM and NAMD do (with a unit cell) or the way X-PLOR does.
+  */
+  private static void writeDCD(Path path, ByteOrder order, boolean charmm, int numFrames,
+      int numAtoms) throws IOException{
+    int frameLength = (charmm ? 56 : 0) + 3 * (8 + 4 * numAtoms);
+    ByteBuffer buffer = ByteBuffer.allocate(92 + 92 + 12 + numFrames * frameLength).order(order);
+    buffer.putInt(84).put("CORD".getBytes("US-ASCII"));
+    int[] control = new int[20];
+    control[0] = numFrames;
+    control[2] = 10;
+    control[10] = charmm ? 1 : 0;
+    control[19] = charmm ? 24 : 0;
+    for(int i = 0; i < control.length; i++){
+      if(i == 9){
+        buffer.putFloat(0.5f);
+      } else {
+        buffer.putInt(control[i]);
+      }
+    }
+    buffer.putInt(84);
+    byte[] title = new byte[80];
+    Arrays.fill(title, (byte) ' ');
+    buffer.putInt(4 + title.length).putInt(1).put(title).putInt(4 + title.length);
+    buffer.putInt(4).putInt(numAtoms).putInt(4);
+    for(int frame = 0; frame < numFrames; frame++){
+      if(charmm){
+        buffer.putInt(48);
+        for(int i = 0; i < 6; i++){
+          buffer.putDouble(i < 3 ? 50.0 : 90.0);
+        }
+        buffer.putInt(48);
+      }
+      for(int axis = 0; axis < 3; axis++){
+        buffer.putInt(4 * numAtoms);
+        for(int atom = 0; atom < numAtoms; atom++){
+          buffer.putFloat(coordinate(frame, atom, axis));
+        }
+        buffer.putInt(4 * numAtoms);
+      }
+    }
+    Files.write(path, Arrays.copyOf(buffer.array(), buffer.position()));
+  }
+}
@@ -0,0 +1,142 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import static com.aaronpmaus.jProt.ProteinAssertions.assertSameProtein;
+import org.junit.Test;
+import org.junit.Before;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+public class TestMMCIFFileIO{
+  private Protein m2j;
+  private String m2jCIF;
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestMMCIFFileIO.class.getResourceAsStream("5m2j.pdb");
+    m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+
+    // write the ATOM and HETATM records of 5m2j out as an mmCIF file, the way the wwPDB does
+    StringBuilder cif = new StringBuilder();
+    cif.append("data_5M2J\n#\n_entry.id 5M2J\n#\n");
+    cif.append("_struct.title\n;\nA text field, with a line that looks like a tag\n");
+    cif.append("_atom_site.id 1\n;\n#\n");
+    cif.append("loop_\n_struct_conn.id\n_struct_conn.conn_type_id\n");
+    cif.append("_struct_conn.ptnr1_label_asym_id\n_struct_conn.ptnr1_auth_asym_id\n");
+    cif.append("_struct_conn.ptnr1_auth_seq_id\n_struct_conn.ptnr2_label_asym_id\n");
+    cif.append("_struct_conn.ptnr2_auth_asym_id\n_struct_conn.ptnr2_auth_seq_id\n");
+    cif.append("disulf1 disulf X A 69 X A 101\ndisulf2 disulf Y D 22 Y D 96\n");
+    cif.append("covale1 covale X A 9 ? ? ?\n#\n");
+    cif.append("loop_\n");
+    for(String item : new String[]{"group_PDB", "id", "type_symbol", "label_atom_id",
+        "label_alt_id", "label_comp_id", "label_asym_id", "label_seq_id", "Cartn_x", "Cartn_y",
+        "Cartn_z", "occupancy", "B_iso_or_equiv", "pdbx_formal_charge", "auth_seq_id",
+        "auth_asym_id", "pdbx_PDB_model_num"}){
+      cif.append("_atom_site.").append(item).append(" \n");
+    }
+    stream = TestMMCIFFileIO.class.getResourceAsStream("5m2j.pdb");
+    BufferedReader reader = new BufferedReader(new InputStreamReader(stream,
+        StandardCharsets.US_ASCII));
+    String line;
+    while((line = reader.readLine()) != null){
+      if(!line.startsWith("ATOM  ") && !line.startsWith("HETATM")){
+        continue;
+      }
+      String atomName = line.substring(12,16).trim();
+      // names are quoted in mmCIF files if they hold a quote, quote a few others as well
+      if(atomName.startsWith("C")){
+        atomName = "\"" + atomName + "\"";
+      }
+      String altLoc = line.substring(16,17).trim();
+      String charge = line.length() < 80 ? "" : line.substring(78,80).trim();
+      // the label chain and residue IDs differ from the author ones, which are the ones read
+      cif.append(String.format("%s %s %s %s %s %s %s %d %s %s %s %s %s %s %s %s 1\n",
+          line.substring(0,6).trim(), line.substring(6,11).trim(), line.substring(76,78).trim(),
+          atomName, altLoc.isEmpty() ? "." : altLoc, line.substring(17,20).trim(),
+          "X" + line.substring(21,22), Integer.parseInt(line.substring(22,26).trim()) + 1000,
+          line.substring(30,38).trim(), line.substring(38,46).trim(),
+          line.substring(46,54).trim(), line.substring(54,60).trim(),
+          line.substring(60,66).trim(), charge.isEmpty() ? "?" : charge,
+          line.substring(22,26).trim(), line.substring(21,22)));
+    }
+    reader.close();
+    cif.append("#\nloop_\n_pdbx_poly_seq_scheme.asym_id\n_pdbx_poly_seq_scheme.seq_id\nA 1\n#\n");
+    m2jCIF = cif.toString();
+  }
+
+  @Test
+  public void testAtomSiteMatchesPDB(){
+    Protein prot = new MMCIFFileIO().readInMMCIFFile(
+        new ByteArrayInputStream(m2jCIF.getBytes(StandardCharsets.US_ASCII)), "5m2j");
+    assertEquals("5m2j", prot.getProteinName());
+    assertEquals(m2j.getNumChains(), prot.getNumChains());
+    assertEquals(2, prot.getDisulfideBonds().size());
+    assertSameProtein(m2j, prot);
+
+    // the same file, gzip compressed and with \r\n line endings, read from a path
+    Path file = null;
+    try{
+      file = Files.createTempFile("5m2j", ".cif.gz");
+      try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))){
+        out.write(m2jCIF.replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII));
+      }
+      assertSameProtein(m2j, new MMCIFFileIO().readInMMCIFFile(file, "5m2j"));
+    } catch(IOException e){
+      fail(e.getMessage());
+    } finally {
+      try{
+        if(file != null){
+          Files.delete(file);
+        }
+      } catch(IOException e){
+      }
+    }
+  }
+
+  @Test
+  public void testLargeStructureFeatures(){
+    // chain IDs longer than one character, serial numbers over 99999, HETATMs, and a second model
+    String[] atoms = {"N", "CA", "C", "O", "CB", "OG"};
+    double[][] xyz = {{-1.5, 0.2, 0.0}, {0.0, 0.0, 0.0}, {0.5, 1.4, 0.0}, {1.7, 1.6, 0.0},
+        {-0.5, -0.8, -1.2}, {-1.9, -0.9, -1.2}};
+    StringBuilder cif = new StringBuilder("data_big\nloop_\n_atom_site.group_PDB\n");
+    cif.append("_atom_site.id\n_atom_site.label_atom_id\n_atom_site.label_comp_id\n");
+    cif.append("_atom_site.auth_asym_id\n_atom_site.auth_seq_id\n_atom_site.Cartn_x\n");
+    cif.append("_atom_site.Cartn_y\n_atom_site.Cartn_z\n_atom_site.pdbx_PDB_model_num\n");
+    int serial = 123456;
+    for(int model = 1; model <= 2; model++){
+      for(String chainID : new String[]{"AAA", "B1"}){
+        for(int i = 0; i < atoms.length; i++){
+          // split each row over two lines, values may be separated by any whitespace
+          cif.append(String.format("ATOM %d '%s' SER %s 7\n\t%.3f %.3f %.3f %d\n", serial++,
+              atoms[i], chainID, xyz[i][0] + model, xyz[i][1], xyz[i][2], model));
+        }
+        cif.append(String.format("HETATM %d O HOH %s 8 0.0 0.0 0.0 %d\n", serial++, chainID,
+            model));
+      }
+    }
+    Protein prot = new MMCIFFileIO().readInMMCIFFile(
+        new ByteArrayInputStream(cif.toString().getBytes(StandardCharsets.US_ASCII)), "big");
+    assertEquals(2, prot.getNumChains());
+    assertEquals(2 * atoms.length, prot.getNumAtoms());
+    assertTrue(prot.contains("AAA"));
+    Residue ser = prot.getChain("B1").getResidue(7);
+    assertEquals("SER", ser.getThreeLetterName());
+    assertEquals(123456 + atoms.length + 1, ser.getAtom("N").getSerialNumber());
+    assertEquals(-0.9, ser.getAtom("OG").getX(), 0.0);
+    assertFalse(prot.getChain("B1").contains(8));
+  }
+}
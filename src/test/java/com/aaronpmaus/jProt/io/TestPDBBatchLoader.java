@@ -0,0 +1,73 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestPDBBatchLoader{
+  private Path dir;
+
+  @Before
+  public void setup() throws IOException{
+    dir = Files.createTempDirectory("pdbs");
+    for(String name : new String[]{"1rop", "5m2j"}){
+      InputStream stream = TestPDBBatchLoader.class.getResourceAsStream(name + ".pdb");
+      Files.copy(stream, dir.resolve(name + ".pdb"));
+      stream.close();
+    }
+    Files.write(dir.resolve("broken.pdb"),
+        "ATOM      1  N   MET A   1     not a number\n".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @After
+  public void tearDown() throws IOException{
+    for(String name : new String[]{"1rop.pdb", "5m2j.pdb", "broken.pdb", "manifest.txt"}){
+      Files.deleteIfExists(dir.resolve(name));
+    }
+    Files.delete(dir);
+  }
+
+  @Test
+  public void testLoadDirectoryReportsFailuresWithoutStopping() throws Exception{
+    // a single slot in each queue makes the readers and parsers wait on the consumer
+    PDBBatchLoader loader = new PDBBatchLoader(2, 2, 1, CoordinateStore.Precision.DOUBLE);
+    final Thread caller = Thread.currentThread();
+    final HashMap<String, Integer> numAtoms = new HashMap<String, Integer>();
+    Map<Path, Exception> failures = loader.loadDirectory(dir, (path, prot) -> {
+      assertTrue(Thread.currentThread() == caller);
+      numAtoms.put(prot.getProteinName(), prot.getNumAtoms());
+    });
+    assertEquals(2, numAtoms.size());
+    assertEquals(447, (int) numAtoms.get("1rop"));
+    assertTrue(numAtoms.containsKey("5m2j"));
+    assertEquals(1, failures.size());
+    assertTrue(failures.containsKey(dir.resolve("broken.pdb")));
+    assertTrue(failures.get(dir.resolve("broken.pdb")) instanceof NumberFormatException);
+  }
+
+  @Test
+  public void testLoadManifest() throws Exception{
+    Files.write(dir.resolve("manifest.txt"), Arrays.asList("# decoys", "5m2j.pdb", "",
+        "missing.pdb"), StandardCharsets.UTF_8);
+    final HashMap<String, Integer> numAtoms = new HashMap<String, Integer>();
+    Map<Path, Exception> failures = new PDBBatchLoader().loadManifest(dir.resolve("manifest.txt"),
+        (path, prot) -> numAtoms.put(prot.getProteinName(), prot.getNumAtoms()));
+    assertEquals(1, numAtoms.size());
+    assertTrue(numAtoms.containsKey("5m2j"));
+    assertEquals(1, failures.size());
+    assertTrue(failures.get(dir.toAbsolutePath().resolve("missing.pdb")) instanceof IOException);
+  }
+}
@@ -0,0 +1,450 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import static com.aaronpmaus.jProt.ProteinAssertions.assertSameProtein;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.After;
+import org.junit.AfterClass;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * @Test flags a method as a test method.
+ * @Before indicates that a method will be run before every
+ *test method is run.
+ * @BeforeClass indicates that a method will be run once before
+ *  any of the other methods in the test suite are run.
+ * @After indicates that a method will be run after every
+ *  test method is run.
+ * @AfterClass indicates that a method will be run once after
+ *  all the other methods in the test suite finish..
+*/
+public class TestPDBFileIO{
+  private Protein m2j;
+  private String m2jText;
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestPDBFileIO.class.getResourceAsStream("5m2j.pdb");
+    m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+
+    stream = TestPDBFileIO.class.getResourceAsStream("5m2j.pdb");
+    BufferedReader reader = new BufferedReader(new InputStreamReader(stream,
+        StandardCharsets.US_ASCII));
+    StringBuilder text = new StringBuilder();
+    String line;
+    while((line = reader.readLine()) != null){
+      text.append(line).append("\n");
+    }
+    reader.close();
+    m2jText = text.toString();
+  }
+
+  @Test
+  public void testColumnsDecodeLikeParseDouble(){
+    // key: serial number, value: the ATOM line with that serial number
+    HashMap<Integer, String> lines = new HashMap<Integer, String>();
+    for(String line : m2jText.split("\n")){
+      if(line.startsWith("ATOM  ")){
+        lines.put(Integer.parseInt(line.substring(6,11).trim()), line);
+      }
+    }
+    assertEquals(lines.size(), m2j.getNumAtoms());
+    for(PolypeptideChain chain : m2j){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          String line = lines.get(atom.getSerialNumber());
+          assertEquals(line.substring(12,16).trim(), atom.getName());
+          assertEquals(Double.parseDouble(line.substring(30,38).trim()), atom.getX(), 0.0);
+          assertEquals(Double.parseDouble(line.substring(38,46).trim()), atom.getY(), 0.0);
+          assertEquals(Double.parseDouble(line.substring(46,54).trim()), atom.getZ(), 0.0);
+          assertEquals(Double.parseDouble(line.substring(54,60).trim()), atom.getOccupancy(), 0.0);
+          assertEquals(Double.parseDouble(line.substring(60,66).trim()), atom.getTempFactor(), 0.0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMappedFileAndBufferMatchStream() throws IOException{
+    Path file = Files.createTempFile("5m2j", ".pdb");
+    try{
+      InputStream stream = TestPDBFileIO.class.getResourceAsStream("5m2j.pdb");
+      Files.copy(stream, file, StandardCopyOption.REPLACE_EXISTING);
+      stream.close();
+      assertSameProtein(m2j, new PDBFileIO().readInPDBFile(file, "5m2j"));
+    } finally {
+      Files.delete(file);
+    }
+    // windows line endings
+    ByteBuffer buffer = ByteBuffer.wrap(
+        m2jText.replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII));
+    assertSameProtein(m2j, new PDBFileIO().readInPDBFile(buffer, "5m2j"));
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void testModelReaderReadsEachModel(){
+    // build a two model ensemble, the second model shifted by 1 angstrom along x
+    StringBuilder ensemble = new StringBuilder("MODEL        1\n");
+    StringBuilder shifted = new StringBuilder("MODEL        2\n");
+    for(String line : m2jText.split("\n")){
+      if(line.startsWith("ATOM  ")){
+        ensemble.append(line).append("\n");
+        double x = Double.parseDouble(line.substring(30,38).trim()) + 1.0;
+        shifted.append(line.substring(0,30)).append(String.format("%8.3f", x))
+            .append(line.substring(38)).append("\n");
+      } else if(line.startsWith("SSBOND")){
+        ensemble.insert(0, line + "\n");
+      }
+    }
+    ensemble.append("ENDMDL\n").append(shifted).append("ENDMDL\nEND\n");
+    byte[] bytes = ensemble.toString().getBytes(StandardCharsets.US_ASCII);
+
+    // reading the ensemble as a single protein only reads the first model
+    Protein first = new PDBFileIO().readInPDBFile(ByteBuffer.wrap(bytes), "5m2j");
+    assertSameProtein(m2j, first);
+
+    PDBModelReader models = new PDBModelReader(new ByteArrayInputStream(bytes), "5m2j");
+    assertTrue(models.hasNext());
+    Protein model = models.next();
+    assertEquals(1, models.getModelNumber());
+    assertSameProtein(m2j, model);
+    assertTrue(models.hasNext());
+    // reading the next model does not change the one next() returned
+    assertSameProtein(m2j, model);
+    assertTrue(models.hasNext());
+    assertTrue(model == models.next());
+    assertEquals(2, models.getModelNumber());
+    for(PolypeptideChain chain : m2j){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          Atom shiftedAtom = model.getChain(chain.getChainID()).getResidue(res.getResidueID())
+              .getAtom(atom.getName());
+          assertEquals(atom.getX() + 1.0, shiftedAtom.getX(), 0.0005);
+          assertEquals(atom.getY(), shiftedAtom.getY(), 0.0);
+        }
+      }
+    }
+    assertFalse(models.hasNext());
+    try{
+      models.next();
+      fail("next() must throw once every model has been read");
+    } catch(NoSuchElementException e){
+    }
+  }
+
+  @Test
+  public void testModelReaderKeepsTheLastAltLocOfEachAtom(){
+    // give the first atom alternate locations A and B, 5 angstroms apart along x, and shift the
+    // second model by 1 angstrom along x
+    StringBuilder ensemble = new StringBuilder("MODEL        1\n");
+    StringBuilder shifted = new StringBuilder("MODEL        2\n");
+    boolean first = true;
+    for(String line : m2jText.split("\n")){
+      if(line.startsWith("ATOM  ")){
+        double x = Double.parseDouble(line.substring(30,38).trim());
+        if(first){
+          first = false;
+          for(double dx : new double[]{0.0, 5.0}){
+            String altLoc = dx == 0.0 ? "A" : "B";
+            ensemble.append(line.substring(0,16)).append(altLoc).append(line.substring(17,30))
+                .append(String.format("%8.3f", x + dx)).append(line.substring(38)).append("\n");
+            shifted.append(line.substring(0,16)).append(altLoc).append(line.substring(17,30))
+                .append(String.format("%8.3f", x + dx + 1.0)).append(line.substring(38))
+                .append("\n");
+          }
+        } else {
+          ensemble.append(line).append("\n");
+          shifted.append(line.substring(0,30)).append(String.format("%8.3f", x + 1.0))
+              .append(line.substring(38)).append("\n");
+        }
+      }
+    }
+    ensemble.append("ENDMDL\n").append(shifted).append("ENDMDL\nEND\n");
+    byte[] bytes = ensemble.toString().getBytes(StandardCharsets.US_ASCII);
+    Residue firstRes = m2j.getChain("A").iterator().next();
+    Atom n = firstRes.getAtom("N");
+
+    PDBModelReader models = new PDBModelReader(new ByteArrayInputStream(bytes), "5m2j");
+    Protein model = models.next();
+    Atom modelN = model.getChain("A").getResidue(firstRes.getResidueID()).getAtom("N");
+    assertEquals(n.getX() + 5.0, modelN.getX(), 0.0005);
+    models.next();
+    // the atom keeps alternate location B in the second model
+    assertEquals(n.getX() + 6.0, modelN.getX(), 0.0005);
+    assertEquals(n.getY(), modelN.getY(), 0.0);
+    Atom ca = firstRes.getAtom("CA");
+    assertEquals(ca.getX() + 1.0,
+        model.getChain("A").getResidue(firstRes.getResidueID()).getAtom("CA").getX(), 0.0005);
+    assertFalse(models.hasNext());
+  }
+
+  @Test
+  public void testChainsAreBuiltInFileOrder(){
+    // move chain D ahead of chain A
+    StringBuilder chainA = new StringBuilder();
+    StringBuilder reordered = new StringBuilder();
+    for(String line : m2jText.split("\n")){
+      if(line.startsWith("ATOM  ") && line.charAt(21) == 'A'){
+        chainA.append(line).append("\n");
+      } else {
+        reordered.append(line).append("\n");
+      }
+    }
+    reordered.append(chainA);
+    Protein prot = new PDBFileIO().readInPDBFile(
+        ByteBuffer.wrap(reordered.toString().getBytes(StandardCharsets.US_ASCII)), "5m2j");
+    assertSameProtein(m2j, prot);
+    String chainIDs = "";
+    for(PolypeptideChain chain : prot){
+      chainIDs += chain.getChainID();
+      int prevResID = Integer.MIN_VALUE;
+      for(Residue res : chain){
+        assertTrue(res.getResidueID() > prevResID);
+        prevResID = res.getResidueID();
+      }
+    }
+    assertEquals("DA", chainIDs);
+  }
+
+  @Test
+  public void testResetAndThreadInstance() throws Exception{
+    PDBFileIO pdb = new PDBFileIO();
+    InputStream stream = TestPDBFileIO.class.getResourceAsStream("1rop.pdb");
+    Protein rop = pdb.readInPDBFile(stream, "1rop");
+    stream.close();
+    try{
+      pdb.readInPDBFile(ByteBuffer.wrap(m2jText.getBytes(StandardCharsets.US_ASCII)), "5m2j");
+      fail("a PDBFileIO must be reset before reading a second file");
+    } catch(IllegalStateException e){
+    }
+    pdb.reset();
+    stream = TestPDBFileIO.class.getResourceAsStream("5m2j.pdb");
+    assertSameProtein(m2j, pdb.readInPDBFile(stream, "5m2j"));
+    stream.close();
+    assertEquals(447, rop.getNumAtoms());
+
+    final PDBFileIO threadInstance = PDBFileIO.getThreadInstance();
+    assertTrue(threadInstance == PDBFileIO.getThreadInstance());
+    final PDBFileIO[] otherInstance = new PDBFileIO[1];
+    Thread thread = new Thread(() -> otherInstance[0] = PDBFileIO.getThreadInstance());
+    thread.start();
+    thread.join();
+    assertTrue(otherInstance[0] != null && otherInstance[0] != threadInstance);
+    for(int i = 0; i < 2; i++){
+      stream = TestPDBFileIO.class.getResourceAsStream("5m2j.pdb");
+      assertSameProtein(m2j, PDBFileIO.getThreadInstance().readInPDBFile(stream, "5m2j"));
+      stream.close();
+    }
+  }
+
+  @Test
+  public void testBackboneSelection(){
+    PDBFileIO pdb = new PDBFileIO();
+    pdb.setAtomSelection(PDBFileIO.AtomSelection.BACKBONE);
+    Protein backbone = pdb.readInPDBFile(
+        ByteBuffer.wrap(m2jText.getBytes(StandardCharsets.US_ASCII)), "5m2j");
+    assertEquals(m2j.getNumResidues(), backbone.getNumResidues());
+    assertEquals(0, backbone.getNumBonds());
+    assertEquals(0, backbone.getDisulfideBonds().size());
+    for(PolypeptideChain chain : backbone){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          assertTrue(PDBFileIO.AtomSelection.BACKBONE.keeps(atom.getName()));
+          Atom full = m2j.getChain(chain.getChainID()).getResidue(res.getResidueID())
+              .getAtom(atom.getName());
+          assertEquals(full.getSerialNumber(), atom.getSerialNumber());
+          assertEquals(full.getX(), atom.getX(), 0.0);
+        }
+      }
+    }
+    // a chain built without bonds is copied without them
+    assertEquals(backbone.getNumAtoms(), backbone.copy().getNumAtoms());
+    pdb.reset();
+    assertEquals(PDBFileIO.AtomSelection.ALL_ATOMS, pdb.getAtomSelection());
+  }
+
+  @Test
+  public void testRecordFilters(){
+    ByteBuffer bytes = ByteBuffer.wrap(m2jText.getBytes(StandardCharsets.US_ASCII));
+    PDBFileIO pdb = new PDBFileIO();
+    pdb.setRecordFilter(PDBRecordFilter.ACCEPT_ALL.withChains("D").withResidueRange(10, 19));
+    Protein chainD = pdb.readInPDBFile(bytes, "5m2j");
+    assertFalse(chainD.contains("A"));
+    assertEquals(10, chainD.getChain("D").getNumResidues());
+    for(Residue res : chainD.getChain("D")){
+      assertTrue(res.getResidueID() >= 10 && res.getResidueID() <= 19);
+      assertEquals(m2j.getChain("D").getResidue(res.getResidueID()).getNumAtoms(),
+          res.getNumAtoms());
+    }
+
+    // give the first two atoms alternate locations A and B, listing B first for the second atom,
+    // and add a hydrogen with an element column and one without
+    StringBuilder altLocs = new StringBuilder();
+    int numAtomRecords = 0;
+    for(String line : m2jText.split("\n")){
+      if(line.startsWith("ATOM  ") && numAtomRecords++ < 2){
+        double x = Double.parseDouble(line.substring(30,38).trim());
+        String altLocA = line.substring(0,16) + "A" + line.substring(17) + "\n";
+        String altLocB = line.substring(0,16) + "B" + line.substring(17,30)
+            + String.format("%8.3f", x + 5.0) + line.substring(38) + "\n";
+        if(numAtomRecords == 1){
+          altLocs.append(altLocA).append(altLocB);
+          altLocs.append(line.substring(0,12)).append(" HA  ").append(line.substring(17,76))
+              .append(" H\n");
+        } else {
+          altLocs.append(altLocB).append(altLocA);
+          altLocs.append(line.substring(0,12)).append(" HB  ").append(line.substring(17,66))
+              .append("\n");
+        }
+      } else {
+        altLocs.append(line).append("\n");
+      }
+    }
+    bytes = ByteBuffer.wrap(altLocs.toString().getBytes(StandardCharsets.US_ASCII));
+    Atom firstAtom = m2j.getChain("A").iterator().next().getAtom("N");
+    int resID = m2j.getChain("A").iterator().next().getResidueID();
+
+    Protein lastAltLoc = new PDBFileIO().readInPDBFile(bytes, "5m2j");
+    assertEquals(firstAtom.getX() + 5.0,
+        lastAltLoc.getChain("A").getResidue(resID).getAtom("N").getX(), 0.0005);
+    assertEquals(m2j.getNumAtoms() + 2, lastAltLoc.getNumAtoms());
+
+    pdb = new PDBFileIO();
+    pdb.setRecordFilter(PDBRecordFilter.ACCEPT_ALL.withFirstAltLocOnly().withoutHydrogens());
+    Protein firstAltLoc = pdb.readInPDBFile(bytes, "5m2j");
+    assertEquals(firstAtom.getX(),
+        firstAltLoc.getChain("A").getResidue(resID).getAtom("N").getX(), 0.0);
+    // the second atom keeps alternate location A, the first of its residue, though B comes first
+    Atom secondAtom = m2j.getChain("A").getResidue(resID).getAtom("CA");
+    assertEquals(secondAtom.getX(),
+        firstAltLoc.getChain("A").getResidue(resID).getAtom("CA").getX(), 0.0);
+    assertSameProtein(m2j, firstAltLoc);
+
+    assertEquals(PDBRecordFilter.ACCEPT_ALL.withChains("A").withoutHydrogens(),
+        PDBRecordFilter.ACCEPT_ALL.withoutHydrogens().withChains("A"));
+  }
+
+  @Test(timeout = 60000)
+  public void testGzipRoundTrip() throws IOException{
+    Path plainFile = Files.createTempFile("5m2j", ".pdb");
+    Path file = Files.createTempFile("5m2j", ".pdb.gz");
+    try{
+      // the written file has no SSBOND records, so compare against the uncompressed copy of it
+      m2j.writeToFile(plainFile.toString());
+      Protein expected = new PDBFileIO().readInPDBFile(plainFile, "5m2j");
+      m2j.writeToFile(file.toString());
+      byte[] bytes = Files.readAllBytes(file);
+      assertEquals(0x1f, bytes[0] & 0xff);
+      assertEquals(0x8b, bytes[1] & 0xff);
+      assertSameProtein(expected, new PDBFileIO().readInPDBFile(file, "5m2j"));
+      InputStream stream = Files.newInputStream(file);
+      assertSameProtein(expected, new PDBFileIO().readInPDBFile(stream, "5m2j"));
+      stream.close();
+      assertSameProtein(expected, new PDBFileIO().readInPDBFile(ByteBuffer.wrap(bytes), "5m2j"));
+
+      // a truncated file fails to inflate
+      ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length / 2).slice();
+      try{
+        new PDBFileIO().readInPDBFile(truncated, "5m2j");
+        fail("a truncated gzip file must not be read in");
+      } catch(UncheckedIOException e){
+      }
+
+      // an Error on the inflating thread reaches the reader instead of leaving it waiting
+      InputStream failing = new FilterInputStream(new ByteArrayInputStream(bytes)){
+        private int numRead = 0;
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException{
+          if(numRead > bytes.length / 2){
+            throw new AssertionError("the compressed stream failed");
+          }
+          int n = super.read(buffer, offset, Math.min(length, 1024));
+          numRead += Math.max(n, 0);
+          return n;
+        }
+      };
+      try{
+        new PDBFileIO().readInPDBFile(failing, "5m2j");
+        fail("the Error of the inflating thread must reach the reader");
+      } catch(AssertionError e){
+        assertEquals("the compressed stream failed", e.getMessage());
+      }
+    } finally {
+      Files.delete(plainFile);
+      Files.delete(file);
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testClosingWhileTheCompressedStreamBlocks() throws IOException{
+    Path file = Files.createTempFile("5m2j", ".pdb.gz");
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch released = new CountDownLatch(1);
+    try{
+      m2j.writeToFile(file.toString());
+      byte[] bytes = Files.readAllBytes(file);
+      // a stream that stalls halfway through, and like a socket, does not heed interrupts
+      InputStream stalled = new FilterInputStream(
+          new ByteArrayInputStream(bytes, 0, bytes.length / 2)){
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException{
+          int numRead = super.read(buffer, offset, length);
+          if(numRead != -1){
+            return numRead;
+          }
+          blocked.countDown();
+          while(true){
+            try{
+              released.await();
+              return -1;
+            } catch(InterruptedException e){
+            }
+          }
+        }
+      };
+      // interrupt the reader once the inflating thread is stuck, so that the stream is closed
+      Thread reader = Thread.currentThread();
+      new Thread(() -> {
+        try{
+          blocked.await();
+          reader.interrupt();
+        } catch(InterruptedException e){
+        }
+      }).start();
+      try{
+        new PDBFileIO().readInPDBFile(stalled, "5m2j");
+        fail("an interrupted read must not finish");
+      } catch(UncheckedIOException e){
+        assertTrue(e.getCause() instanceof InterruptedIOException);
+      }
+      Thread.interrupted();
+    } finally {
+      released.countDown();
+      Files.delete(file);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestPDBStructureCache{
+  private Path ropPath;
+  private Path m2jPath;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setup() throws IOException{
+    ropPath = copyResource("1rop.pdb");
+    m2jPath = copyResource("5m2j.pdb");
+  }
+
+  @Test
+  public void testSharedProteinsAndCopies() throws IOException{
+    PDBStructureCache cache = new PDBStructureCache(100000);
+    Protein rop = cache.get(ropPath);
+    assertEquals("1rop", rop.getProteinName());
+    assertSame(rop, cache.get(ropPath));
+    // the same file by another path
+    assertSame(rop, cache.get(ropPath.getParent().resolve(".").resolve("1rop.pdb")));
+    assertEquals(1, cache.getNumMisses());
+    assertEquals(2, cache.getNumHits());
+    assertEquals(rop.getNumAtoms(), cache.getNumAtoms());
+
+    Protein copy = cache.getCopy(ropPath);
+    assertNotSame(rop, copy);
+    Atom ca = rop.getChain("A").getResidue(1).getAtom("CA");
+    double x = ca.getX();
+    copy.getChain("A").getResidue(1).getAtom("CA").setCoordinates(0.0, 0.0, 0.0);
+    assertEquals(x, cache.get(ropPath).getChain("A").getResidue(1).getAtom("CA").getX(), 0.0);
+  }
+
+  @Test
+  public void testLoadOptionsAreCachedSeparately() throws IOException{
+    PDBStructureCache cache = new PDBStructureCache(100000);
+    Protein rop = cache.get(ropPath);
+    Protein caOnly = cache.get(ropPath, CoordinateStore.Precision.DOUBLE,
+        PDBFileIO.AtomSelection.CA_ONLY, PDBRecordFilter.ACCEPT_ALL);
+    assertNotSame(rop, caOnly);
+    assertEquals(rop.getNumResidues(), caOnly.getNumAtoms());
+    Protein single = cache.get(ropPath, CoordinateStore.Precision.SINGLE,
+        PDBFileIO.AtomSelection.ALL_ATOMS, PDBRecordFilter.ACCEPT_ALL);
+    assertEquals(CoordinateStore.Precision.SINGLE, single.getCoordinateStore().getPrecision());
+    // equal filters built separately find the same Protein
+    Protein noHydrogens = cache.get(ropPath, CoordinateStore.Precision.DOUBLE,
+        PDBFileIO.AtomSelection.ALL_ATOMS, PDBRecordFilter.ACCEPT_ALL.withoutHydrogens());
+    assertSame(noHydrogens, cache.get(ropPath, CoordinateStore.Precision.DOUBLE,
+        PDBFileIO.AtomSelection.ALL_ATOMS, PDBRecordFilter.ACCEPT_ALL.withoutHydrogens()));
+    assertEquals(4, cache.getNumEntries());
+  }
+
+  @Test
+  public void testChangedFileIsReadAgain() throws IOException{
+    PDBStructureCache cache = new PDBStructureCache(100000);
+    Protein rop = cache.get(ropPath);
+    Files.setLastModifiedTime(ropPath, FileTime.fromMillis(
+        Files.getLastModifiedTime(ropPath).toMillis() + 60000));
+    Protein changed = cache.get(ropPath);
+    assertNotSame(rop, changed);
+    assertEquals(2, cache.getNumMisses());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedAreEvicted() throws IOException{
+    int ropAtoms = new PDBStructureCache(100000).get(ropPath).getNumAtoms();
+    PDBStructureCache cache = new PDBStructureCache(ropAtoms);
+    Protein rop = cache.get(ropPath);
+    assertEquals(ropAtoms, cache.getNumAtoms());
+    // 5m2j has more atoms than the cache holds, so it is returned but not kept, and 1rop stays
+    Protein m2j = cache.get(m2jPath);
+    assertTrue(m2j.getNumAtoms() > ropAtoms);
+    assertEquals(1, cache.getNumEntries());
+    assertEquals(ropAtoms, cache.getNumAtoms());
+    assertSame(rop, cache.get(ropPath));
+    assertNotSame(m2j, cache.get(m2jPath));
+
+    cache = new PDBStructureCache(ropAtoms + m2j.getNumAtoms());
+    rop = cache.get(ropPath);
+    m2j = cache.get(m2jPath);
+    // using 1rop makes 5m2j the least recently used
+    cache.get(ropPath);
+    cache.get(ropPath, CoordinateStore.Precision.DOUBLE, PDBFileIO.AtomSelection.CA_ONLY,
+        PDBRecordFilter.ACCEPT_ALL);
+    assertEquals(2, cache.getNumEntries());
+    assertSame(rop, cache.get(ropPath));
+    assertNotSame(m2j, cache.get(m2jPath));
+  }
+
+  @Test
+  public void testConcurrentReadsOfOneFile() throws Exception{
+    PDBStructureCache cache = new PDBStructureCache(100000);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try{
+      List<Future<Protein>> results = new ArrayList<Future<Protein>>();
+      List<Future<BondTable>> bondTables = new ArrayList<Future<BondTable>>();
+      for(int i = 0; i < 32; i++){
+        results.add(executor.submit(() -> cache.get(m2jPath)));
+        bondTables.add(executor.submit(() -> cache.get(m2jPath).getBondTable()));
+      }
+      Protein m2j = results.get(0).get();
+      for(Future<Protein> result : results){
+        assertSame(m2j, result.get());
+      }
+      // the BondTable was built before the Protein was shared, never by the threads sharing it
+      for(Future<BondTable> bondTable : bondTables){
+        assertSame(m2j.getBondTable(), bondTable.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, cache.getNumMisses());
+    assertEquals(63, cache.getNumHits());
+  }
+
+  @Test
+  public void testMissingFile() throws IOException{
+    PDBStructureCache cache = new PDBStructureCache(100000);
+    thrown.expect(IOException.class);
+    try{
+      cache.get(ropPath.resolveSibling("missing.pdb"));
+    } finally {
+      assertEquals(0, cache.getNumEntries());
+    }
+  }
+
+  private Path copyResource(String name) throws IOException{
+    Path path = folder.getRoot().toPath().resolve(name);
+    try(InputStream stream = TestPDBStructureCache.class.getResourceAsStream(name)){
+      Files.copy(stream, path);
+    }
+    return path;
+  }
+}
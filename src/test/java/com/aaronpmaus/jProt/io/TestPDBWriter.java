@@ -0,0 +1,125 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+public class TestPDBWriter{
+  private Protein m2j;
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestPDBWriter.class.getResourceAsStream("5m2j.pdb");
+    m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+  }
+
+  @Test
+  public void testRecordsMatchStringFormat() throws IOException{
+    // values that round awkwardly, negative zeros, values too wide for their columns, and some
+    // values halfway between two roundings, including large ones whose scaled value is too coarse
+    // to tell a tie from its neighbours
+    double[] awkward = {0.0, -0.0, -0.0004, 0.0005, -0.0005, 0.0015, 1.0005, 2.675, -2.675,
+        0.125, 99999.9995, -1234567.891, 1e9, 0.1 + 0.2, 1.0 / 3.0, -2.742033391425E8,
+        -2.79052045465E8};
+    Random random = new Random(7);
+    int i = 0;
+    for(PolypeptideChain chain : m2j){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          if(i < awkward.length * 3){
+            atom.setCoordinates(awkward[i % awkward.length], awkward[(i / 3) % awkward.length],
+                awkward[(i / 2) % awkward.length]);
+          } else if(i % 2 == 0){
+            atom.setCoordinates(random.nextGaussian() * 50, random.nextDouble() * -500,
+                random.nextInt(200000) / 1000.0 - 100);
+          }
+          i++;
+        }
+      }
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PDBWriter writer = new PDBWriter(bytes, 300);
+    Locale defaultLocale = Locale.getDefault();
+    // a default locale with decimal commas must not change the values left to String.format()
+    Locale.setDefault(Locale.GERMANY);
+    try{
+      writer.writeProtein(m2j);
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+    writer.writeEnd();
+    writer.flush();
+    assertEquals(formatWithStringFormat(m2j), new String(bytes.toByteArray(),
+        StandardCharsets.US_ASCII));
+
+    // writeToPDB() writes the same records to a Writer
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    OutputStreamWriter out = new OutputStreamWriter(written, StandardCharsets.US_ASCII);
+    new PDBFileIO().writeToPDB(out, m2j);
+    assertArrayEquals(bytes.toByteArray(), written.toByteArray());
+  }
+
+  @Test
+  public void testModelsAreReadBack() throws IOException{
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(PDBWriter writer = new PDBWriter(bytes)){
+      for(int model = 1; model <= 3; model++){
+        writer.writeModel(m2j, model);
+        m2j.applyTransformation(RigidTransform.fromMatrix(new double[][]{{1,0,0,1},{0,1,0,0},
+            {0,0,1,0},{0,0,0,1}}));
+      }
+      writer.writeEnd();
+    }
+    PDBModelReader models = new PDBModelReader(new ByteArrayInputStream(bytes.toByteArray()),
+        "5m2j");
+    Atom first = m2j.getAtom(0);
+    double x = first.getX() - 3;
+    while(models.hasNext()){
+      Protein model = models.next();
+      assertEquals(m2j.getNumAtoms(), model.getNumAtoms());
+      assertEquals(x, model.getAtom(0).getX(), 1e-9);
+      x += 1;
+    }
+    assertEquals(3, models.getModelNumber());
+  }
+
+  // the records as PDBFileIO::writeToPDB() formatted them with String.format()
+  private static String formatWithStringFormat(Protein prot){
+    StringBuilder text = new StringBuilder();
+    String chainID = null;
+    int resID = -1;
+    String resName = null;
+    int serialNum = -1;
+    for(PolypeptideChain chain : prot){
+      chainID = chain.getChainID();
+      for(Residue res : chain){
+        resID = res.getResidueID();
+        resName = res.getThreeLetterName();
+        for(Atom atom : res){
+          serialNum = atom.getSerialNumber();
+          text.append(String.format(Locale.ROOT,
+              "%-6s%5d %-4s%s%3s %s%4d%s   %8.3f%8.3f%8.3f%6.2f%6.2f          %2s%2s\n",
+              "ATOM", serialNum, atom.getName(), " ", resName, chainID, resID, " ",
+              atom.getX(), atom.getY(), atom.getZ(), atom.getOccupancy(), atom.getTempFactor(),
+              atom.getElement(), "" + (int) atom.getCharge()));
+        }
+      }
+      text.append(String.format("%-6s%5d      %s %s%4s\n", "TER", serialNum + 1, resName,
+          chainID, resID));
+    }
+    return text.append("END\n").toString();
+  }
+}
@@ -0,0 +1,95 @@
+package com.aaronpmaus.jProt;
+
+import com.aaronpmaus.jProt.protein.*;
+import com.aaronpmaus.jProt.io.*;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestTrajectoryWriter{
+  private Protein m2j;
+
+  @Before
+  public void setup() throws IOException{
+    InputStream stream = TestTrajectoryWriter.class.getResourceAsStream("5m2j.pdb");
+    m2j = new PDBFileIO().readInPDBFile(stream, "5m2j");
+    stream.close();
+  }
+
+  @Test
+  public void testFramesAreWrittenAndAppended() throws IOException{
+    RigidTransform shift = RigidTransform.fromMatrix(new double[][]{{1,0,0,0.5},{0,1,0,0},
+        {0,0,1,0},{0,0,0,1}});
+    double x = m2j.getAtom(0).getX();
+    Path file = Files.createTempFile("trajectory", ".pdb");
+    try{
+      // a pool of 2 sets of coordinates for 20 frames, so adding frames has to wait for some
+      try(TrajectoryWriter trajectory = new TrajectoryWriter(file, false, 2)){
+        for(int step = 0; step < 20; step++){
+          trajectory.addFrame(m2j);
+          m2j.applyTransformation(shift);
+        }
+        trajectory.flush();
+        assertEquals(20, trajectory.getNumFrames());
+        assertEquals(20, countModels(file));
+      }
+      try(TrajectoryWriter trajectory = new TrajectoryWriter(file, true)){
+        trajectory.addFrame(m2j);
+      }
+
+      PDBModelReader models;
+      try(InputStream in = Files.newInputStream(file)){
+        models = new PDBModelReader(in, "5m2j");
+        while(models.hasNext()){
+          Protein model = models.next();
+          assertEquals(m2j.getNumAtoms(), model.getNumAtoms());
+          assertEquals(x, model.getAtom(0).getX(), 1e-3);
+          x += 0.5;
+        }
+      }
+      assertEquals(21, models.getModelNumber());
+      String text = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+      assertTrue(text.contains("MODEL       21\n"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testFramesMustMatchTheFirst() throws IOException{
+    Path file = Files.createTempFile("trajectory", ".pdb");
+    try(TrajectoryWriter trajectory = new TrajectoryWriter(file, false)){
+      trajectory.addFrame(m2j);
+      InputStream stream = TestTrajectoryWriter.class.getResourceAsStream("1rop.pdb");
+      Protein other = new PDBFileIO().readInPDBFile(stream, "1rop");
+      stream.close();
+      try{
+        trajectory.addFrame(other);
+        fail("added a frame of a different protein");
+      } catch(IllegalArgumentException e){
+      }
+      trajectory.addFrame(m2j);
+      trajectory.flush();
+      assertEquals(2, countModels(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static int countModels(Path file) throws IOException{
+    int numModels = 0;
+    for(String line : Files.readAllLines(file, StandardCharsets.US_ASCII)){
+      if(line.startsWith("MODEL ")){
+        numModels++;
+      }
+    }
+    return numModels;
+  }
+}
@@ -81,6 +81,36 @@ public class TestConformationManipulator{
 
   }
 
+  @Test
+  public void testCopySnapshotAndRebind(){
+    Protein copy = prot.copy();
+    assertEquals(prot.getNumAtoms(), copy.getNumAtoms());
+    assertEquals(prot.getNumBonds(), copy.getNumBonds());
+    assertEquals(prot.getBondTable().getNumBonds(), copy.getBondTable().getNumBonds());
+    PolypeptideChain copyChain = copy.getChain("A");
+    assertEquals(chain.getPhiAngle(2), copyChain.getPhiAngle(2), 0.0);
+
+    // the copy is independent of the original
+    CoordinateStore snapshot = prot.snapshotCoordinates();
+    cascadeManip.rebind(copy);
+    cascadeManip.setPhiAngle("A", 2, 60.0);
+    assertEquals(60.0, copyChain.getPhiAngle(2), 0.00000001);
+    assertEquals(180.0, Math.abs(chain.getPhiAngle(2)), 0.00000001);
+    cascadeManip.rebind(prot);
+    cascadeManip.setPsiAngle("A", 2, 90.0);
+    assertEquals(90.0, chain.getPsiAngle(2), 0.00000001);
+    assertEquals(180.0, Math.abs(copyChain.getPsiAngle(2)), 0.00000001);
+
+    // restoring the snapshot returns the original to its conformation
+    prot.restoreCoordinates(snapshot);
+    assertEquals(180.0, Math.abs(chain.getPsiAngle(2)), 0.00000001);
+
+    // a protein that is not a copy can not be bound to
+    Protein other = VirtualRibosome.synthesizeProtein(new ProteinSequence("GG"), "gg");
+    exception.expect(IllegalArgumentException.class);
+    cascadeManip.rebind(other);
+  }
+
   @Test
   public void testCascadeSetBondLength(){
 
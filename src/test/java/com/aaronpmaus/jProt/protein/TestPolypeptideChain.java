@@ -106,4 +106,28 @@ public class TestPolypeptideChain{
     }
   }
 
+  @Test
+  public void testBuilderMatchesAddResidue(){
+    PolypeptideChain.Builder builder = new PolypeptideChain.Builder("A");
+    char[] names = {'I','A','M','S','T','A','R','S','T','F','F'};
+    int[] order = {6, 3, 8, 9, 2, 7, 4, 5, 11, 10, 1};
+    for(int resID : order){
+      Residue res = new Residue(names[resID-1], resID);
+      if(resID == 11){
+        res.setAsCarboxylTerminus();
+      }
+      builder.addResidue(res);
+    }
+    PolypeptideChain built = builder.build();
+    assertEquals(chain.getSequence().toString(), built.getSequence().toString());
+    assertEquals(chain.getNumAtoms(), built.getNumAtoms());
+    assertEquals(chain.getNumBonds(), built.getNumBonds());
+    assertEquals(172, built.getNumBonds());
+    int counter = 1;
+    for(Residue res : built){
+      assertEquals(counter, res.getResidueID());
+      assertTrue(built.getResidue(res.getAtom("CA")) == res);
+      counter++;
+    }
+  }
 }
@@ -2,6 +2,9 @@ package com.aaronpmaus.jProt;
 
 import com.aaronpmaus.jProt.protein.*;
 import com.aaronpmaus.jProt.io.*;
+import com.aaronpmaus.jProt.tools.*;
+import com.aaronpmaus.jMath.linearAlgebra.Vector3D;
+import com.aaronpmaus.jMath.transformations.Transformation;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -13,6 +16,8 @@ import org.junit.Rule;
 import org.junit.rules.ExpectedException;
 
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.TreeSet;
 import java.util.Scanner;
 import java.util.ArrayList;
 
@@ -136,4 +141,249 @@ public class TestProtein{
       assertTrue(Math.abs(psi - expectedPsi) < 0.001);
     }
   }
+
+  @Test
+  public void testAtomsShareProteinCoordinateStore(){
+    CoordinateStore store = rop.getCoordinateStore();
+    assertEquals(store.size(), rop.getNumAtoms());
+    for(PolypeptideChain chain : rop){
+      for(Residue res : chain){
+        for(Atom atom : res){
+          assertTrue(atom.getCoordinateStore() == store);
+        }
+      }
+    }
+    // moving an atom moves the coordinates in the store
+    Atom ca = rop.getChain("A").getResidue(1).getAtom("CA");
+    ca.setCoordinates(1.0, 2.0, 3.0);
+    assertEquals(store.getX(ca.getCoordinateIndex()), 1.0, 0.0);
+    assertEquals(store.getY(ca.getCoordinateIndex()), 2.0, 0.0);
+    assertEquals(store.getZ(ca.getCoordinateIndex()), 3.0, 0.0);
+  }
+
+  @Test
+  public void testAtomIndexLookups(){
+    for(PolypeptideChain chain : m2j){
+      assertTrue(m2j.getChain(chain.getChainID()).getChainID().equals(chain.getChainID()));
+      for(Residue res : chain){
+        assertTrue(m2j.getChain(res) == chain);
+        assertTrue(m2j.getChainID(res).equals(chain.getChainID()));
+        for(Atom atom : res){
+          assertTrue(m2j.getChain(atom) == chain);
+          assertTrue(m2j.getResidue(atom) == res);
+          assertTrue(m2j.getChainID(atom).equals(chain.getChainID()));
+        }
+      }
+    }
+    assertTrue(m2j.contains("A"));
+    assertFalse(m2j.contains("Z"));
+    // atoms and residues of another protein are not found
+    Residue res = rop.getChain("A").getResidue(1);
+    try{
+      m2j.getChain(res);
+      fail("Expected an IllegalStateException");
+    } catch(IllegalStateException e){ }
+    try{
+      m2j.getResidue(res.getAtom("CA"));
+      fail("Expected an IllegalStateException");
+    } catch(IllegalStateException e){ }
+  }
+
+  @Test
+  public void testBondTableMatchesBonds(){
+    for(Protein prot : new Protein[]{rop, m2j}){
+      BondTable table = prot.getBondTable();
+      assertTrue(table == prot.getBondTable());
+      assertEquals(prot.getNumBonds(), table.getNumBonds());
+      HashSet<Bond> bonds = new HashSet<Bond>();
+      for(PolypeptideChain chain : prot){
+        bonds.addAll(chain.getBonds());
+      }
+      bonds.addAll(prot.getDisulfideBonds());
+      assertEquals(bonds, new HashSet<Bond>(prot.getBonds()));
+      int numNeighbors = 0;
+      for(int i = 0; i < table.getNumAtoms(); i++){
+        for(int k = table.getNeighborsStart(i); k < table.getNeighborsEnd(i); k++){
+          int j = table.getNeighbor(k);
+          assertTrue(table.isBonded(j, i));
+          assertTrue(bonds.contains(new Bond(table.getAtom(i), table.getAtom(j))));
+          numNeighbors++;
+        }
+      }
+      assertEquals(2 * bonds.size(), numNeighbors);
+    }
+    Residue res = rop.getChain("A").getResidue(2);
+    BondTable table = rop.getBondTable();
+    assertTrue(table.isBonded(res.getAtom("N"), res.getAtom("CA")));
+    assertFalse(table.isBonded(res.getAtom("N"), res.getAtom("C")));
+    assertTrue(table.isBonded(rop.getChain("A").getResidue(1).getAtom("C"), res.getAtom("N")));
+    Residue other = m2j.getChain("A").iterator().next();
+    assertFalse(table.isBonded(res.getAtom("N"), other.getAtom("CA")));
+  }
+
+  @Test
+  public void testCopyIsIndependent(){
+    Protein copy = m2j.copy();
+    assertEquals(m2j.getNumAtoms(), copy.getNumAtoms());
+    // atoms of different Proteins are never equal, so compare the bonds by serial number
+    assertEquals(bondSerialNumbers(m2j), bondSerialNumbers(copy));
+    for(Atom atom : copy.getChain("A").iterator().next()){
+      assertFalse(atom.equals(m2j.getAtom(atom.getCoordinateIndex())));
+    }
+    assertEquals(m2j.getDisulfideBonds().size(), copy.getDisulfideBonds().size());
+    for(Bond bond : copy.getDisulfideBonds()){
+      assertTrue(bond.getAtomOne().getCoordinateStore() == copy.getCoordinateStore());
+    }
+    CoordinateStore store = copy.getCoordinateStore();
+    assertTrue(store != m2j.getCoordinateStore());
+    assertEquals(m2j.getCoordinateStore().size(), store.size());
+    for(int i = 0; i < store.size(); i++){
+      assertEquals(m2j.getCoordinateStore().getX(i), store.getX(i), 0.0);
+    }
+    copy.applyTransformation(RigidTransform.fromMatrix(new double[][]{
+        {1.0, 0.0, 0.0, 5.0}, {0.0, 1.0, 0.0, 0.0}, {0.0, 0.0, 1.0, 0.0}}));
+    assertEquals(m2j.getCoordinateStore().getX(0) + 5.0, store.getX(0), 0.000001);
+    assertEquals(m2j.getSequence().toString(), copy.getSequence().toString());
+  }
+
+  private static HashSet<String> bondSerialNumbers(Protein prot){
+    HashSet<String> bonds = new HashSet<String>();
+    for(Bond bond : prot.getBonds()){
+      int one = bond.getAtomOne().getSerialNumber();
+      int two = bond.getAtomTwo().getSerialNumber();
+      bonds.add(Math.min(one, two) + "-" + Math.max(one, two));
+    }
+    return bonds;
+  }
+
+  @Test
+  public void testAtomsOfDifferentProteinsAreNotEqual(){
+    InputStream stream = TestProtein.class.getResourceAsStream("1rop.pdb");
+    Protein other = new PDBFileIO().readInPDBFile(stream, "1rop");
+    Atom atom = rop.getChain("A").getResidue(1).getAtom("CA");
+    Atom sameSerial = other.getChain("A").getResidue(1).getAtom("CA");
+    assertEquals(atom.getSerialNumber(), sameSerial.getSerialNumber());
+    assertFalse(atom.equals(sameSerial));
+    HashSet<Atom> atoms = new HashSet<Atom>();
+    atoms.add(atom);
+    atoms.add(sameSerial);
+    assertEquals(2, atoms.size());
+    assertTrue(atom.equals(rop.getAtom(atom.getCoordinateIndex())));
+    // compareTo() is consistent with equals(), so a sorted set keeps both atoms too
+    assertEquals(0, atom.compareTo(rop.getAtom(atom.getCoordinateIndex())));
+    assertEquals(-Integer.signum(atom.compareTo(sameSerial)),
+        Integer.signum(sameSerial.compareTo(atom)));
+    TreeSet<Atom> sortedAtoms = new TreeSet<Atom>(atoms);
+    assertEquals(2, sortedAtoms.size());
+  }
+
+  @Test
+  public void testAtomIndexOfLaterCarboxylOxygen(){
+    Residue res = new Residue("ALA", 1);
+    PolypeptideChain chain = new PolypeptideChain("A");
+    chain.addResidue(res);
+    Protein prot = new Protein("ala");
+    prot.addChain(chain);
+    CoordinateStore store = prot.getCoordinateStore();
+    // the OXT atom is in the store, but is not an atom of the residue yet
+    int numAtoms = 0;
+    for(int i = 0; i < store.size(); i++){
+      if(prot.getAtom(i) != null){
+        numAtoms++;
+      }
+    }
+    assertEquals(res.getNumAtoms(), numAtoms);
+    assertTrue(store.size() > numAtoms);
+
+    res.setAsCarboxylTerminus();
+    Atom oxt = res.getAtom("OXT");
+    assertTrue(prot.getResidue(oxt) == res);
+    assertTrue(prot.getAtom(oxt.getCoordinateIndex()) == oxt);
+  }
+
+  @Test
+  public void testSinglePrecisionProteinMatchesDoublePrecision(){
+    InputStream stream = TestProtein.class.getResourceAsStream("1rop.pdb");
+    Protein singleRop = new PDBFileIO().readInPDBFile(stream, "1rop",
+        CoordinateStore.Precision.SINGLE);
+    CoordinateStore singleStore = singleRop.getCoordinateStore();
+    CoordinateStore doubleStore = rop.getCoordinateStore();
+    assertEquals(CoordinateStore.Precision.SINGLE, singleStore.getPrecision());
+    assertEquals(CoordinateStore.Precision.DOUBLE, doubleStore.getPrecision());
+    assertEquals(doubleStore.size(), singleStore.size());
+    // PDB coordinates have 3 decimal places, single precision must hold them to within 0.0005
+    for(int i = 0; i < doubleStore.size(); i++){
+      assertEquals(doubleStore.getX(i), singleStore.getX(i), 0.0005);
+      assertEquals(doubleStore.getY(i), singleStore.getY(i), 0.0005);
+      assertEquals(doubleStore.getZ(i), singleStore.getZ(i), 0.0005);
+    }
+    Double[][] doubleMatrix = DistanceMatrixCalculator.calculateDistanceMatrix(rop);
+    Double[][] singleMatrix = DistanceMatrixCalculator.calculateDistanceMatrix(singleRop);
+    for(int i = 0; i < doubleMatrix.length; i++){
+      for(int j = 0; j < doubleMatrix.length; j++){
+        assertEquals(doubleMatrix[i][j], singleMatrix[i][j], 0.001);
+      }
+    }
+  }
+
+  @Test
+  public void testRigidTransformMatchesTransformation(){
+    Transformation t = new Transformation();
+    t.addRotationAboutAxis(new Vector3D(1.0, 2.0, 3.0), new Vector3D(0.3, -1.0, 0.5), 37.0);
+    t.addTranslation(new Vector3D(-4.0, 5.5, 12.25));
+    CoordinateStore store = rop.getCoordinateStore();
+    ArrayList<Vector3D> expected = new ArrayList<Vector3D>();
+    for(int i = 0; i < store.size(); i++){
+      Vector3D coordinates = store.getCoordinates(i);
+      coordinates.applyTransformation(t);
+      expected.add(coordinates);
+    }
+    rop.applyTransformation(RigidTransform.fromTransformation(t));
+    for(int i = 0; i < store.size(); i++){
+      assertEquals(expected.get(i).getX(), store.getX(i), 0.000001);
+      assertEquals(expected.get(i).getY(), store.getY(i), 0.000001);
+      assertEquals(expected.get(i).getZ(), store.getZ(i), 0.000001);
+    }
+  }
+
+  @Test
+  public void testComposedAndParallelRigidTransforms(){
+    Transformation rotate = new Transformation();
+    rotate.addRotationAboutAxis(new Vector3D(0.0, 0.0, 0.0), new Vector3D(1.0, 1.0, 0.0), 90.0);
+    Transformation translate = new Transformation();
+    translate.addTranslation(new Vector3D(10.0, 0.0, -3.0));
+    ArrayList<RigidTransform> transforms = new ArrayList<RigidTransform>();
+    transforms.add(RigidTransform.fromTransformation(rotate));
+    transforms.add(RigidTransform.fromTransformation(translate));
+
+    InputStream stream = TestProtein.class.getResourceAsStream("1rop.pdb");
+    Protein expected = new PDBFileIO().readInPDBFile(stream, "1rop");
+    for(RigidTransform transform : transforms){
+      expected.applyTransformation(transform);
+    }
+    rop.applyTransformation(transforms);
+    CoordinateStore expectedStore = expected.getCoordinateStore();
+    CoordinateStore store = rop.getCoordinateStore();
+    for(int i = 0; i < store.size(); i++){
+      assertEquals(expectedStore.getX(i), store.getX(i), 0.000001);
+      assertEquals(expectedStore.getY(i), store.getY(i), 0.000001);
+      assertEquals(expectedStore.getZ(i), store.getZ(i), 0.000001);
+    }
+
+    // a store large enough to be split across threads
+    RigidTransform composed = RigidTransform.compose(transforms);
+    CoordinateStore sequential = CoordinateStore.create();
+    CoordinateStore parallel = CoordinateStore.create();
+    for(int i = 0; i < 100000; i++){
+      sequential.add(i * 0.001, -i * 0.002, 1.0);
+      parallel.add(i * 0.001, -i * 0.002, 1.0);
+    }
+    sequential.applyTransformation(composed);
+    parallel.applyTransformationInParallel(composed);
+    for(int i = 0; i < sequential.size(); i++){
+      assertEquals(sequential.getX(i), parallel.getX(i), 0.0);
+      assertEquals(sequential.getY(i), parallel.getY(i), 0.0);
+      assertEquals(sequential.getZ(i), parallel.getZ(i), 0.0);
+    }
+  }
 }
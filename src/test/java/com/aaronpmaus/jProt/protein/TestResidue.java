@@ -969,5 +969,26 @@ public class TestResidue{
     assertTrue(res.contains("2HG2"));
     assertTrue(res.contains("3HG2"));
   }
-  
+
+  @Test
+  public void testResiduesShareTemplate(){
+    ResidueTemplate phe = ResidueTemplate.get("PHE");
+    assertTrue(phe == ResidueTemplate.get("PHE"));
+    assertEquals("PHE", phe.getThreeLetterName());
+    assertEquals(12, phe.getMainBonds().size());
+    assertEquals(12, phe.getBondsToHydrogens().size());
+    assertEquals(4, phe.getHydrogens("N").size());
+    assertEquals(5, phe.getDefinedDihedralAngles().size());
+    assertEquals(7, phe.getAngleTriplets().size());
+    // hydrogens follow the atom they are bonded to
+    List<String> atomsInOrder = phe.getAtomsInOrder();
+    assertEquals("N", atomsInOrder.get(0));
+    assertEquals(atomsInOrder.indexOf("CB") + 1, atomsInOrder.indexOf("2HB"));
+    assertEquals("OXT", atomsInOrder.get(atomsInOrder.size() - 1));
+
+    Residue one = new Residue("PHE", 1);
+    Residue two = new Residue("PHE", 2);
+    assertEquals(one.getDihedralQuartets().size(), two.getDihedralQuartets().size());
+    assertEquals(2, one.getDihedralQuartets().size());
+  }
 }
@@ -131,4 +131,33 @@ public class TestVirtualRibosome{
 
     return one.subtract(two).angle(three.subtract(two));
   }
+
+  @Test
+  public void testSynthesisIsDeterministicAcrossThreads() throws Exception{
+    final ProteinSequence seq = new ProteinSequence("IAMSTARSTFF");
+    final Protein[] prots = new Protein[4];
+    Thread[] threads = new Thread[prots.length];
+    for(int i = 0; i < threads.length; i++){
+      final int index = i;
+      threads[i] = new Thread(() -> prots[index] = VirtualRibosome.synthesizeProtein(seq, "s"));
+      threads[i].start();
+    }
+    for(Thread thread : threads){
+      thread.join();
+    }
+    Protein again = VirtualRibosome.synthesizeProtein(seq, "s");
+    for(Protein other : prots){
+      assertEquals(prot.getNumAtoms(), other.getNumAtoms());
+      PolypeptideChain otherChain = other.getChain("A");
+      PolypeptideChain againChain = again.getChain("A");
+      for(Residue res : chain){
+        Residue otherRes = otherChain.getResidue(res.getResidueID());
+        Residue againRes = againChain.getResidue(res.getResidueID());
+        for(Atom atom : res){
+          assertEquals(atom.getSerialNumber(), otherRes.getAtom(atom.getName()).getSerialNumber());
+          assertEquals(atom.getSerialNumber(), againRes.getAtom(atom.getName()).getSerialNumber());
+        }
+      }
+    }
+  }
 }
@@ -88,6 +88,19 @@ public class TestDistanceMatrixCalculator{
     verifyMatrix(calculatedMatrix, ropMatrix);
   }
 
+  @Test
+  public void testCAOnlyProteinDistanceMatrix() throws IOException{
+    InputStream stream = TestDistanceMatrixCalculator.class.getResourceAsStream("1rop.pdb");
+    PDBFileIO pdb = new PDBFileIO();
+    pdb.setAtomSelection(PDBFileIO.AtomSelection.CA_ONLY);
+    Protein caOnly = pdb.readInPDBFile(stream, "1rop");
+    stream.close();
+    assertEquals(rop.getNumResidues(), caOnly.getNumResidues());
+    assertEquals(caOnly.getNumResidues(), caOnly.getNumAtoms());
+    assertEquals(0, caOnly.getNumBonds());
+    verifyMatrix(DistanceMatrixCalculator.calculateDistanceMatrix(caOnly), ropMatrix);
+  }
+
   @Test
   public void testProteinDistanceMatrixWithMask(){
     boolean[] mask = new boolean[rop.getNumResidues()];